@@ -0,0 +1,422 @@
+/*
+ * Sone - SyntheticSones.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.benchmark;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.SoneImpl;
+import net.pterodactylus.sone.data.impl.DefaultPostBuilderFactory;
+import net.pterodactylus.sone.data.impl.DefaultPostReplyBuilderFactory;
+import net.pterodactylus.sone.database.PostBuilder;
+import net.pterodactylus.sone.database.PostBuilderFactory;
+import net.pterodactylus.sone.database.PostProvider;
+import net.pterodactylus.sone.database.PostReplyBuilderFactory;
+import net.pterodactylus.sone.database.SoneProvider;
+import net.pterodactylus.sone.freenet.wot.DefaultIdentity;
+import net.pterodactylus.sone.freenet.wot.DefaultOwnIdentity;
+import net.pterodactylus.sone.freenet.wot.Identity;
+import net.pterodactylus.sone.freenet.wot.OwnIdentity;
+import net.pterodactylus.sone.freenet.wot.Trust;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
+
+import com.google.common.base.Optional;
+
+import freenet.keys.FreenetURI;
+import freenet.support.Base64;
+
+/**
+ * Generates a reproducible set of {@link Sone}s for the benchmarks. The
+ * default sizes follow what an active Sone in a real network carries: about a
+ * hundred posts, twice as many replies, a few dozen friends and profile
+ * fields, and texts that mix plain words with Sone, Freenet, and internet
+ * links.
+ * <p>
+ * The first Sone is always a local Sone with an {@link OwnIdentity}; all
+ * other Sones are remote Sones with a {@link Trust} assigned by the local
+ * Sone’s identity.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SyntheticSones implements SoneProvider, PostProvider {
+
+	/** The default number of posts per Sone. */
+	public static final int DEFAULT_POST_COUNT = 100;
+
+	/** The default number of replies per Sone. */
+	public static final int DEFAULT_REPLY_COUNT = 200;
+
+	/** The default number of liked posts per Sone. */
+	public static final int DEFAULT_LIKE_COUNT = 150;
+
+	/** The default number of friends per Sone. */
+	public static final int DEFAULT_FRIEND_COUNT = 30;
+
+	/** The default number of profile fields per Sone. */
+	public static final int DEFAULT_FIELD_COUNT = 5;
+
+	/** The words used to generate texts. */
+	private static final String[] WORDS = { "the", "node", "is", "a", "freenet", "post", "reply", "sone", "about", "with", "slow", "fast", "and", "or", "not", "today", "image", "album", "trust", "identity", "network", "update", "insert", "fetch", "key", "Ümlauts", "„quoted“", "<tag>", "&amp;" };
+
+	/** The random number generator. */
+	private final Random random;
+
+	/** The post builder factory. */
+	private final PostBuilderFactory postBuilderFactory = new DefaultPostBuilderFactory(this);
+
+	/** The reply builder factory. */
+	private final PostReplyBuilderFactory postReplyBuilderFactory = new DefaultPostReplyBuilderFactory(this, this);
+
+	/** The trust cache, filled with the trust of the local Sone. */
+	private final TrustCache trustCache = new TrustCache(Long.MAX_VALUE / 2);
+
+	/** All Sones, in creation order. */
+	private final List<Sone> sones = new ArrayList<Sone>();
+
+	/** All Sones by their ID. */
+	private final Map<String, Sone> soneIds = new HashMap<String, Sone>();
+
+	/** All posts by their ID. */
+	private final Map<String, Post> posts = new HashMap<String, Post>();
+
+	/** All posts, in creation order. */
+	private final List<Post> postList = new ArrayList<Post>();
+
+	/** All replies, in creation order. */
+	private final List<PostReply> replyList = new ArrayList<PostReply>();
+
+	/**
+	 * Creates a new set of synthetic Sones with the default sizes.
+	 *
+	 * @param soneCount
+	 *            The number of Sones to create
+	 * @param seed
+	 *            The seed of the random number generator
+	 */
+	public SyntheticSones(int soneCount, long seed) {
+		this(soneCount, DEFAULT_POST_COUNT, DEFAULT_REPLY_COUNT, seed);
+	}
+
+	/**
+	 * Creates a new set of synthetic Sones.
+	 *
+	 * @param soneCount
+	 *            The number of Sones to create
+	 * @param postCount
+	 *            The number of posts per Sone
+	 * @param replyCount
+	 *            The number of replies per Sone
+	 * @param seed
+	 *            The seed of the random number generator
+	 */
+	public SyntheticSones(int soneCount, int postCount, int replyCount, long seed) {
+		random = new Random(seed);
+		for (int soneIndex = 0; soneIndex < soneCount; ++soneIndex) {
+			SoneImpl sone = createSone(soneIndex);
+			sones.add(sone);
+			soneIds.put(sone.getId(), sone);
+		}
+		long now = System.currentTimeMillis();
+		for (Sone sone : sones) {
+			List<Post> sonePosts = new ArrayList<Post>();
+			for (int postIndex = 0; postIndex < postCount; ++postIndex) {
+				PostBuilder postBuilder = postBuilderFactory.newPostBuilder().randomId().from(sone.getId()).withTime(now - random.nextInt(Integer.MAX_VALUE)).withText(generateText());
+				if (random.nextInt(10) == 0) {
+					postBuilder.to(getRandomSone().getId());
+				}
+				Post post = postBuilder.build();
+				sonePosts.add(post);
+				posts.put(post.getId(), post);
+				postList.add(post);
+			}
+			sone.setPosts(sonePosts);
+		}
+		for (Sone sone : sones) {
+			Set<PostReply> replies = new HashSet<PostReply>();
+			for (int replyIndex = 0; replyIndex < replyCount; ++replyIndex) {
+				PostReply reply = postReplyBuilderFactory.newPostReplyBuilder().randomId().from(sone.getId()).to(getRandomPost().getId()).withTime(now - random.nextInt(Integer.MAX_VALUE)).withText(generateText()).build();
+				replies.add(reply);
+				replyList.add(reply);
+			}
+			sone.setReplies(replies);
+			Set<String> likedPostIds = new HashSet<String>();
+			for (int likeIndex = 0; likeIndex < DEFAULT_LIKE_COUNT; ++likeIndex) {
+				likedPostIds.add(getRandomPost().getId());
+			}
+			sone.setLikePostIds(likedPostIds);
+			for (int friendIndex = 0; friendIndex < Math.min(DEFAULT_FRIEND_COUNT, sones.size() - 1); ++friendIndex) {
+				sone.addFriend(getRandomSone().getId());
+			}
+		}
+		if (!sones.isEmpty()) {
+			OwnIdentity ownIdentity = (OwnIdentity) getLocalSone().getIdentity();
+			List<Identity> identities = new ArrayList<Identity>();
+			for (Sone sone : sones) {
+				sone.getIdentity().setTrust(ownIdentity, new Trust((random.nextInt(20) == 0) ? -50 : null, random.nextInt(100) - 10, 1 + random.nextInt(4)));
+				identities.add(sone.getIdentity());
+			}
+			trustCache.updateTrusts(ownIdentity, identities);
+		}
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the local Sone. The local Sone is the first generated Sone, and
+	 * its identity is an {@link OwnIdentity}.
+	 *
+	 * @return The local Sone
+	 */
+	public Sone getLocalSone() {
+		return sones.get(0);
+	}
+
+	/**
+	 * Returns all generated Sones, in creation order.
+	 *
+	 * @return All generated Sones
+	 */
+	public List<Sone> getSoneList() {
+		return sones;
+	}
+
+	/**
+	 * Returns all generated posts, in creation order.
+	 *
+	 * @return All generated posts
+	 */
+	public List<Post> getPostList() {
+		return postList;
+	}
+
+	/**
+	 * Returns all generated replies, in creation order.
+	 *
+	 * @return All generated replies
+	 */
+	public List<PostReply> getReplyList() {
+		return replyList;
+	}
+
+	/**
+	 * Returns the post builder factory that creates posts for the generated
+	 * Sones.
+	 *
+	 * @return The post builder factory
+	 */
+	public PostBuilderFactory getPostBuilderFactory() {
+		return postBuilderFactory;
+	}
+
+	/**
+	 * Returns the reply builder factory that creates replies for the generated
+	 * Sones.
+	 *
+	 * @return The reply builder factory
+	 */
+	public PostReplyBuilderFactory getPostReplyBuilderFactory() {
+		return postReplyBuilderFactory;
+	}
+
+	/**
+	 * Returns a trust cache that contains the trust of the local Sone in all
+	 * other Sones.
+	 *
+	 * @return The trust cache
+	 */
+	public TrustCache getTrustCache() {
+		return trustCache;
+	}
+
+	/**
+	 * Returns a random generated Sone.
+	 *
+	 * @return A random Sone
+	 */
+	public Sone getRandomSone() {
+		return sones.get(random.nextInt(sones.size()));
+	}
+
+	/**
+	 * Returns a random generated post.
+	 *
+	 * @return A random post
+	 */
+	public Post getRandomPost() {
+		return postList.get(random.nextInt(postList.size()));
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Generates a text of random words that sometimes contains a link to a
+	 * Sone, a Freenet key, or an internet site.
+	 *
+	 * @return The generated text
+	 */
+	public String generateText() {
+		StringBuilder text = new StringBuilder();
+		int wordCount = 10 + random.nextInt(60);
+		for (int wordIndex = 0; wordIndex < wordCount; ++wordIndex) {
+			if (wordIndex > 0) {
+				text.append((random.nextInt(15) == 0) ? '\n' : ' ');
+			}
+			int linkType = random.nextInt(60);
+			if ((linkType == 0) && !sones.isEmpty()) {
+				text.append("sone://").append(getRandomSone().getId());
+			} else if (linkType == 1) {
+				text.append("USK@").append(createKey(32)).append(',').append(createKey(32)).append(",AQACAAE/site/").append(random.nextInt(100)).append('/');
+			} else if (linkType == 2) {
+				text.append("http://www.example.com/").append(WORDS[random.nextInt(WORDS.length)]).append(".html");
+			} else {
+				text.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+		}
+		return text.toString();
+	}
+
+	//
+	// INTERFACE SoneProvider
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Optional<Sone> getSone(String soneId) {
+		return Optional.fromNullable(soneIds.get(soneId));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Collection<Sone> getSones() {
+		return sones;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Collection<Sone> getLocalSones() {
+		return sones.subList(0, Math.min(1, sones.size()));
+	}
+
+	//
+	// INTERFACE PostProvider
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Optional<Post> getPost(String postId) {
+		return Optional.fromNullable(posts.get(postId));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Collection<Post> getPosts(String soneId) {
+		Sone sone = soneIds.get(soneId);
+		return (sone == null) ? new ArrayList<Post>() : sone.getPosts();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Collection<Post> getDirectedPosts(String recipientId) {
+		List<Post> directedPosts = new ArrayList<Post>();
+		for (Post post : postList) {
+			if (recipientId.equals(post.getRecipientId().orNull())) {
+				directedPosts.add(post);
+			}
+		}
+		return directedPosts;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates a Sone with an identity, request and insert URI, and a filled
+	 * profile.
+	 *
+	 * @param soneIndex
+	 *            The index of the Sone
+	 * @return The created Sone
+	 */
+	private SoneImpl createSone(int soneIndex) {
+		String routingKey = createKey(32);
+		String cryptoKey = createKey(32);
+		String requestUri = "USK@" + routingKey + "," + cryptoKey + ",AQACAAE/WebOfTrust/0";
+		String insertUri = "USK@" + createKey(32) + "," + cryptoKey + ",AQECAAE/WebOfTrust/0";
+		Identity identity = (soneIndex == 0) ? new DefaultOwnIdentity(routingKey, "Sone" + soneIndex, requestUri, insertUri) : new DefaultIdentity(routingKey, "Sone" + soneIndex, requestUri);
+		identity.addContext("Sone");
+		SoneImpl sone = new SoneImpl(routingKey, soneIndex == 0);
+		sone.setIdentity(identity);
+		try {
+			sone.setRequestUri(new FreenetURI(requestUri));
+			if (soneIndex == 0) {
+				sone.setInsertUri(new FreenetURI(insertUri));
+			}
+		} catch (MalformedURLException mue1) {
+			throw new IllegalStateException("Generated invalid URI!", mue1);
+		}
+		sone.setTime(System.currentTimeMillis());
+		Profile profile = new Profile(sone).setFirstName("First" + soneIndex).setLastName("Last" + soneIndex).setBirthDay(1 + random.nextInt(28)).setBirthMonth(1 + random.nextInt(12)).setBirthYear(1950 + random.nextInt(60));
+		for (int fieldIndex = 0; fieldIndex < DEFAULT_FIELD_COUNT; ++fieldIndex) {
+			profile.addField("Field" + fieldIndex).setValue(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]);
+		}
+		sone.setProfile(profile);
+		return sone;
+	}
+
+	/**
+	 * Creates a random Base64-encoded key.
+	 *
+	 * @param length
+	 *            The length of the key (in bytes)
+	 * @return The encoded key
+	 */
+	private String createKey(int length) {
+		byte[] key = new byte[length];
+		random.nextBytes(key);
+		return Base64.encode(key);
+	}
+
+}
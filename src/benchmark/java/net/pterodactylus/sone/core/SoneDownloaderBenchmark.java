@@ -0,0 +1,101 @@
+/*
+ * Sone - SoneDownloaderBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.benchmark.SyntheticSones;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.memory.MemoryDatabase;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.sone.simulation.SoneXmlGenerator;
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.MapConfigurationBackend;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link SoneDownloader#parseSone(Sone, java.io.InputStream)} with
+ * a sone.xml of a typical size.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SoneDownloaderBenchmark {
+
+	/** The Sone to parse. */
+	private Sone sone;
+
+	/** The sone.xml to parse. */
+	private byte[] soneXml;
+
+	/** The Sone downloader under test. */
+	private SoneDownloader soneDownloader;
+
+	/**
+	 * Generates the sone.xml and creates the Sone downloader. The core is only
+	 * equipped with what parsing a Sone needs.
+	 */
+	@Setup
+	public void setup() {
+		SyntheticSones syntheticSones = new SyntheticSones(50, 1, 0, 0);
+		List<String> soneIds = new ArrayList<String>();
+		for (Sone sone : syntheticSones.getSoneList()) {
+			soneIds.add(sone.getId());
+		}
+		sone = syntheticSones.getSoneList().get(1);
+		soneXml = new SoneXmlGenerator(soneIds).generateSoneXml(sone.getId(), System.currentTimeMillis(), SyntheticSones.DEFAULT_POST_COUNT, SyntheticSones.DEFAULT_REPLY_COUNT, SyntheticSones.DEFAULT_LIKE_COUNT);
+		Configuration configuration = new Configuration(new MapConfigurationBackend());
+		MetricRegistry metricRegistry = new MetricRegistry();
+		Core core = new Core(configuration, null, null, null, new EventBus(), new MemoryDatabase(syntheticSones, configuration, metricRegistry), new TrustCache(), metricRegistry);
+		soneDownloader = new SoneDownloader(core, null, metricRegistry);
+	}
+
+	/**
+	 * Parses the sone.xml.
+	 *
+	 * @return The parsed Sone
+	 * @throws SoneException
+	 *             if the Sone can not be parsed
+	 */
+	@Benchmark
+	public Sone parseSone() throws SoneException {
+		return soneDownloader.parseSone(sone, new ByteArrayInputStream(soneXml));
+	}
+
+}
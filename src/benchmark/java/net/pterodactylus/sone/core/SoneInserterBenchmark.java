@@ -0,0 +1,90 @@
+/*
+ * Sone - SoneInserterBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.benchmark.SyntheticSones;
+import net.pterodactylus.sone.core.SoneInserter.InsertInformation;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.memory.MemoryDatabase;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.MapConfigurationBackend;
+
+import com.google.common.eventbus.EventBus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the rendering of the sone.xml and index.html of a Sone insert,
+ * including copying the Sone’s data.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SoneInserterBenchmark {
+
+	/** The Sone to insert. */
+	private Sone sone;
+
+	/** The Sone inserter under test. */
+	private SoneInserter soneInserter;
+
+	/**
+	 * Creates the Sones and the Sone inserter. The core is only equipped with
+	 * what rendering an insert needs.
+	 */
+	@Setup
+	public void setup() {
+		SyntheticSones syntheticSones = new SyntheticSones(50, 0);
+		sone = syntheticSones.getLocalSone();
+		Configuration configuration = new Configuration(new MapConfigurationBackend());
+		MetricRegistry metricRegistry = new MetricRegistry();
+		Core core = new Core(configuration, null, null, null, new EventBus(), new MemoryDatabase(syntheticSones, configuration, metricRegistry), new TrustCache(), metricRegistry);
+		soneInserter = new SoneInserter(core, new EventBus(), null, metricRegistry, sone);
+	}
+
+	/**
+	 * Copies the Sone and renders the manifest entries of the insert.
+	 *
+	 * @return The manifest entries
+	 */
+	@Benchmark
+	public Map<String, Object> renderInsert() {
+		InsertInformation insertInformation = soneInserter.new InsertInformation(sone);
+		return insertInformation.generateManifestEntries();
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Sone - MemoryDatabaseBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.database.memory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.benchmark.SyntheticSones;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.MapConfigurationBackend;
+
+import com.google.common.base.Optional;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the {@link MemoryDatabase} with concurrent readers and writers,
+ * similar to the web interface reading posts and replies while the Sone
+ * downloader stores the posts and replies of fetched Sones.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MemoryDatabaseBenchmark {
+
+	/** The synthetic Sones. */
+	private SyntheticSones syntheticSones;
+
+	/** The database under test. */
+	private MemoryDatabase memoryDatabase;
+
+	/**
+	 * Creates the Sones and stores all their posts and replies in the
+	 * database.
+	 */
+	@Setup
+	public void setup() {
+		syntheticSones = new SyntheticSones(50, 0);
+		memoryDatabase = new MemoryDatabase(syntheticSones, new Configuration(new MapConfigurationBackend()), new MetricRegistry());
+		for (Post post : syntheticSones.getPostList()) {
+			memoryDatabase.storePost(post);
+		}
+		for (PostReply reply : syntheticSones.getReplyList()) {
+			memoryDatabase.storePostReply(reply);
+		}
+	}
+
+	/**
+	 * Stores the next post and reply again.
+	 *
+	 * @param position
+	 *            The position of the current thread
+	 */
+	@Benchmark
+	@Group("contention")
+	@GroupThreads(1)
+	public void store(Position position) {
+		memoryDatabase.storePost(position.next(syntheticSones.getPostList()));
+		memoryDatabase.storePostReply(position.next(syntheticSones.getReplyList()));
+	}
+
+	/**
+	 * Retrieves the next post.
+	 *
+	 * @param position
+	 *            The position of the current thread
+	 * @return The retrieved post
+	 */
+	@Benchmark
+	@Group("contention")
+	@GroupThreads(3)
+	public Optional<Post> getPost(Position position) {
+		return memoryDatabase.getPost(position.next(syntheticSones.getPostList()).getId());
+	}
+
+	/**
+	 * Retrieves the replies of the next post.
+	 *
+	 * @param position
+	 *            The position of the current thread
+	 * @return The retrieved replies
+	 */
+	@Benchmark
+	@Group("contention")
+	@GroupThreads(3)
+	public List<PostReply> getReplies(Position position) {
+		return memoryDatabase.getReplies(position.next(syntheticSones.getPostList()).getId());
+	}
+
+	/**
+	 * The position of a single thread in the posts and replies.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	@State(Scope.Thread)
+	public static class Position {
+
+		/** The current position. */
+		private int position;
+
+		/**
+		 * Returns the element at the next position of the given list.
+		 *
+		 * @param <T>
+		 *            The type of the elements
+		 * @param elements
+		 *            The elements
+		 * @return The next element
+		 */
+		public <T> T next(List<T> elements) {
+			position = (position + 7) % elements.size();
+			return elements.get(position);
+		}
+
+	}
+
+}
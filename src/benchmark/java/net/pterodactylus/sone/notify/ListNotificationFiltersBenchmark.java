@@ -0,0 +1,78 @@
+/*
+ * Sone - ListNotificationFiltersBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.notify;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.benchmark.SyntheticSones;
+import net.pterodactylus.sone.data.Post;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link ListNotificationFilters#filterPosts} with all posts of
+ * the network, the way the new-post notification and the post feed filter
+ * them for the local Sone.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ListNotificationFiltersBenchmark {
+
+	/** The number of Sones in the network. */
+	@Param({ "50", "200" })
+	public int soneCount;
+
+	/** The synthetic Sones. */
+	private SyntheticSones syntheticSones;
+
+	/**
+	 * Creates the Sones.
+	 */
+	@Setup
+	public void setup() {
+		syntheticSones = new SyntheticSones(soneCount, 0);
+	}
+
+	/**
+	 * Filters all posts for the local Sone.
+	 *
+	 * @return The visible posts
+	 */
+	@Benchmark
+	public List<Post> filterPosts() {
+		return ListNotificationFilters.filterPosts(syntheticSones.getTrustCache(), syntheticSones.getPostList(), syntheticSones.getLocalSone());
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Sone - ParserFilterBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.template;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.benchmark.SyntheticSones;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.text.SoneTextParser;
+import net.pterodactylus.util.template.HtmlFilter;
+import net.pterodactylus.util.template.ReflectionAccessor;
+import net.pterodactylus.util.template.TemplateContext;
+import net.pterodactylus.util.template.TemplateContextFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the rendering of post texts by the {@link ParserFilter}, both
+ * complete and shortened the way the post feed shortens long posts. The
+ * generated texts do not contain links to posts so that the filter can run
+ * without a {@link net.pterodactylus.sone.core.Core}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParserFilterBenchmark {
+
+	/** The synthetic Sones. */
+	private SyntheticSones syntheticSones;
+
+	/** The filter under test. */
+	private ParserFilter parserFilter;
+
+	/** The template context to render in. */
+	private TemplateContext templateContext;
+
+	/** The parameters for complete rendering. */
+	private final Map<String, Object> completeParameters = new HashMap<String, Object>();
+
+	/** The parameters for shortened rendering. */
+	private final Map<String, Object> shortenedParameters = new HashMap<String, Object>();
+
+	/**
+	 * Creates the Sones and the filter.
+	 */
+	@Setup
+	public void setup() {
+		syntheticSones = new SyntheticSones(50, 0);
+		TemplateContextFactory templateContextFactory = new TemplateContextFactory();
+		templateContextFactory.addAccessor(Object.class, new ReflectionAccessor());
+		templateContextFactory.addFilter("html", new HtmlFilter());
+		parserFilter = new ParserFilter(null, templateContextFactory, new SoneTextParser(syntheticSones, syntheticSones));
+		templateContext = templateContextFactory.createTemplateContext();
+		completeParameters.put("sone", syntheticSones.getLocalSone());
+		shortenedParameters.put("sone", syntheticSones.getLocalSone());
+		shortenedParameters.put("length", "400");
+		shortenedParameters.put("cut-off-length", "350");
+	}
+
+	/**
+	 * Renders the complete texts of all posts of the local Sone.
+	 *
+	 * @param blackhole
+	 *            The blackhole that consumes the rendered texts
+	 */
+	@Benchmark
+	public void renderPostsOfSone(Blackhole blackhole) {
+		for (Post post : syntheticSones.getLocalSone().getPosts()) {
+			blackhole.consume(parserFilter.format(templateContext, post.getText(), completeParameters));
+		}
+	}
+
+	/**
+	 * Renders the shortened texts of all posts of the local Sone.
+	 *
+	 * @param blackhole
+	 *            The blackhole that consumes the rendered texts
+	 */
+	@Benchmark
+	public void renderShortenedPostsOfSone(Blackhole blackhole) {
+		for (Post post : syntheticSones.getLocalSone().getPosts()) {
+			blackhole.consume(parserFilter.format(templateContext, post.getText(), shortenedParameters));
+		}
+	}
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Sone - ViewPostTemplateBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.template;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.benchmark.SyntheticSones;
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Reply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.freenet.L10nFilter;
+import net.pterodactylus.sone.freenet.wot.Identity;
+import net.pterodactylus.sone.freenet.wot.Trust;
+import net.pterodactylus.sone.main.SonePlugin;
+import net.pterodactylus.sone.text.SoneTextParser;
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.util.io.Closer;
+import net.pterodactylus.util.template.Accessor;
+import net.pterodactylus.util.template.ClassPathTemplateProvider;
+import net.pterodactylus.util.template.CollectionSortFilter;
+import net.pterodactylus.util.template.DateFilter;
+import net.pterodactylus.util.template.HtmlFilter;
+import net.pterodactylus.util.template.MatchFilter;
+import net.pterodactylus.util.template.ReflectionAccessor;
+import net.pterodactylus.util.template.StoreFilter;
+import net.pterodactylus.util.template.Template;
+import net.pterodactylus.util.template.TemplateContext;
+import net.pterodactylus.util.template.TemplateContextFactory;
+import net.pterodactylus.util.template.TemplateException;
+import net.pterodactylus.util.template.TemplateParser;
+import net.pterodactylus.util.template.TemplateProvider;
+
+import freenet.l10n.BaseL10n;
+import freenet.l10n.BaseL10n.LANGUAGE;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the rendering of “include/viewPost.html” with the accessors and
+ * filters of the web interface, and the resolution of the members that the
+ * template accesses most often with the {@link CachingReflectionAccessor} and,
+ * for comparison, with the plain {@link ReflectionAccessor}. The core is
+ * mocked and only returns the replies of the synthetic posts, no likes, and
+ * the synthetic trust values.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ViewPostTemplateBenchmark {
+
+	/** The number of posts to render per invocation. */
+	private static final int POST_COUNT = 20;
+
+	/** The posts to render. */
+	private final List<Post> posts = new ArrayList<Post>();
+
+	/** The template context factory. */
+	private TemplateContextFactory templateContextFactory;
+
+	/** The template to render. */
+	private Template postTemplate;
+
+	/** The currently logged in Sone. */
+	private Sone currentSone;
+
+	/** The mocked core. */
+	private Core core;
+
+	/** The mocked request. */
+	private FreenetRequest request;
+
+	/** The plain reflection accessor. */
+	private final Accessor reflectionAccessor = new ReflectionAccessor();
+
+	/** The caching reflection accessor. */
+	private final Accessor cachingReflectionAccessor = new CachingReflectionAccessor();
+
+	/**
+	 * Creates the Sones, the mocked core, and the template context factory,
+	 * and parses the template.
+	 *
+	 * @throws IOException
+	 *             if the template can not be read
+	 */
+	@Setup
+	public void setup() throws IOException {
+		SyntheticSones syntheticSones = new SyntheticSones(50, 0);
+		currentSone = syntheticSones.getLocalSone();
+		final Map<String, List<PostReply>> replies = new HashMap<String, List<PostReply>>();
+		for (PostReply reply : syntheticSones.getReplyList()) {
+			if (!replies.containsKey(reply.getPostId())) {
+				replies.put(reply.getPostId(), new ArrayList<PostReply>());
+			}
+			replies.get(reply.getPostId()).add(reply);
+		}
+		posts.addAll(syntheticSones.getPostList().subList(0, POST_COUNT));
+
+		core = mock(Core.class);
+		when(core.getReplies(anyString())).thenAnswer(new Answer<List<PostReply>>() {
+
+			@Override
+			public List<PostReply> answer(InvocationOnMock invocation) {
+				List<PostReply> postReplies = replies.get(invocation.getArguments()[0]);
+				return (postReplies != null) ? postReplies : Collections.<PostReply>emptyList();
+			}
+		});
+		when(core.getLikes(any(Post.class))).thenReturn(Collections.<Sone>emptySet());
+		when(core.getLikes(any(PostReply.class))).thenReturn(Collections.<Sone>emptySet());
+		when(core.getTrustCache()).thenReturn(syntheticSones.getTrustCache());
+		when(core.getLocalSones()).thenReturn(syntheticSones.getLocalSones());
+		WebInterface webInterface = mock(WebInterface.class);
+		when(webInterface.getCore()).thenReturn(core);
+		when(webInterface.getL10n()).thenReturn(new BaseL10n("i18n", "sone.${lang}.properties", "sone.${lang}.override.properties", LANGUAGE.ENGLISH, SonePlugin.class.getClassLoader()));
+		request = mock(FreenetRequest.class);
+
+		templateContextFactory = new TemplateContextFactory();
+		templateContextFactory.addAccessor(Object.class, new CachingReflectionAccessor());
+		templateContextFactory.addAccessor(Collection.class, new CollectionAccessor());
+		templateContextFactory.addAccessor(Sone.class, new SoneAccessor(core));
+		templateContextFactory.addAccessor(Post.class, new PostAccessor(core));
+		templateContextFactory.addAccessor(Reply.class, new ReplyAccessor(core));
+		templateContextFactory.addAccessor(Identity.class, new IdentityAccessor(core));
+		templateContextFactory.addAccessor(Trust.class, new TrustAccessor());
+		templateContextFactory.addAccessor(Profile.class, new ProfileAccessor(core));
+		templateContextFactory.addFilter("date", new DateFilter());
+		templateContextFactory.addFilter("html", new HtmlFilter());
+		templateContextFactory.addFilter("store", new StoreFilter());
+		templateContextFactory.addFilter("l10n", new L10nFilter(webInterface));
+		templateContextFactory.addFilter("match", new MatchFilter());
+		templateContextFactory.addFilter("css", new CssClassNameFilter());
+		templateContextFactory.addFilter("parse", new ParserFilter(core, templateContextFactory, new SoneTextParser(syntheticSones, syntheticSones)));
+		templateContextFactory.addFilter("sort", new CollectionSortFilter());
+		templateContextFactory.addFilter("image-link", new ImageLinkFilter(core, templateContextFactory));
+		templateContextFactory.addProvider(TemplateProvider.TEMPLATE_CONTEXT_PROVIDER);
+		templateContextFactory.addProvider(new ClassPathTemplateProvider(WebInterface.class, "/templates/"));
+		templateContextFactory.addTemplateObject("webInterface", webInterface);
+		templateContextFactory.addTemplateObject("formPassword", "formPassword");
+
+		Reader templateReader = new InputStreamReader(WebInterface.class.getResourceAsStream("/templates/include/viewPost.html"), "UTF-8");
+		try {
+			postTemplate = TemplateParser.parse(templateReader);
+		} finally {
+			Closer.close(templateReader);
+		}
+	}
+
+	/**
+	 * Renders the posts and their replies.
+	 *
+	 * @return The total length of the rendered posts
+	 * @throws TemplateException
+	 *             if a template error occurs
+	 */
+	@Benchmark
+	public int renderPosts() throws TemplateException {
+		int length = 0;
+		for (Post post : posts) {
+			TemplateContext templateContext = templateContextFactory.createTemplateContext();
+			templateContext.set("core", core);
+			templateContext.set("request", request);
+			templateContext.set("currentSone", currentSone);
+			templateContext.set("localSones", core.getLocalSones());
+			templateContext.set("post", post);
+			StringWriter stringWriter = new StringWriter();
+			postTemplate.render(templateContext, stringWriter);
+			length += stringWriter.getBuffer().length();
+		}
+		return length;
+	}
+
+	/**
+	 * Resolves the members of posts, Sones, and profiles that are accessed
+	 * using reflection with the plain reflection accessor.
+	 *
+	 * @param blackhole
+	 *            The blackhole that consumes the members
+	 */
+	@Benchmark
+	public void resolveMembersWithReflection(Blackhole blackhole) {
+		resolveMembers(reflectionAccessor, blackhole);
+	}
+
+	/**
+	 * Resolves the members of posts, Sones, and profiles that are accessed
+	 * using reflection with the caching reflection accessor.
+	 *
+	 * @param blackhole
+	 *            The blackhole that consumes the members
+	 */
+	@Benchmark
+	public void resolveMembersCached(Blackhole blackhole) {
+		resolveMembers(cachingReflectionAccessor, blackhole);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Resolves the members of posts, Sones, and profiles that are accessed
+	 * using reflection with the given accessor.
+	 *
+	 * @param accessor
+	 *            The accessor to use
+	 * @param blackhole
+	 *            The blackhole that consumes the members
+	 */
+	private void resolveMembers(Accessor accessor, Blackhole blackhole) {
+		for (Post post : posts) {
+			blackhole.consume(accessor.get(null, post, "id"));
+			blackhole.consume(accessor.get(null, post, "time"));
+			blackhole.consume(accessor.get(null, post, "text"));
+			blackhole.consume(accessor.get(null, post, "recipientId"));
+			Object sone = accessor.get(null, post, "sone");
+			blackhole.consume(accessor.get(null, sone, "id"));
+			blackhole.consume(accessor.get(null, sone, "local"));
+			Object profile = accessor.get(null, sone, "profile");
+			blackhole.consume(accessor.get(null, profile, "firstName"));
+			blackhole.consume(accessor.get(null, profile, "avatar"));
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Sone - SoneTextParserBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.text;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.benchmark.SyntheticSones;
+import net.pterodactylus.sone.data.Post;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks {@link SoneTextParser#parse(SoneTextParserContext, java.io.Reader)}
+ * with the texts of all posts of a synthetic Sone.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SoneTextParserBenchmark {
+
+	/** The synthetic Sones. */
+	private SyntheticSones syntheticSones;
+
+	/** The parser under test. */
+	private SoneTextParser soneTextParser;
+
+	/** The parser context. */
+	private SoneTextParserContext parserContext;
+
+	/**
+	 * Creates the Sones and the parser.
+	 */
+	@Setup
+	public void setup() {
+		syntheticSones = new SyntheticSones(50, 0);
+		soneTextParser = new SoneTextParser(syntheticSones, syntheticSones);
+		parserContext = new SoneTextParserContext(null, syntheticSones.getLocalSone());
+	}
+
+	/**
+	 * Parses the texts of all posts of the local Sone.
+	 *
+	 * @param blackhole
+	 *            The blackhole that consumes the parsed parts
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Benchmark
+	public void parsePostsOfSone(Blackhole blackhole) throws IOException {
+		for (Post post : syntheticSones.getLocalSone().getPosts()) {
+			for (Part part : soneTextParser.parse(parserContext, new StringReader(post.getText()))) {
+				blackhole.consume(part);
+			}
+		}
+	}
+
+}
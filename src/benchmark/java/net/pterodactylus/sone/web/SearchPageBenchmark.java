@@ -0,0 +1,98 @@
+/*
+ * Sone - SearchPageBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.benchmark.SyntheticSones;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.web.SearchPage.Phrase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the scoring of the {@link SearchPage}. Every post is searched
+ * together with the texts of its replies, the same way the search page
+ * generates the strings it searches.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SearchPageBenchmark {
+
+	/** The query to search for. */
+	@Param({ "freenet", "+trust -slow \"fast node\" identity" })
+	public String query;
+
+	/** The strings generated from all posts. */
+	private final List<String> postStrings = new ArrayList<String>();
+
+	/**
+	 * Creates the Sones and generates the strings of all posts.
+	 */
+	@Setup
+	public void setup() {
+		SyntheticSones syntheticSones = new SyntheticSones(50, 0);
+		Map<String, StringBuilder> postStringBuilders = new HashMap<String, StringBuilder>();
+		for (Post post : syntheticSones.getPostList()) {
+			postStringBuilders.put(post.getId(), new StringBuilder(post.getText()));
+		}
+		for (PostReply reply : syntheticSones.getReplyList()) {
+			postStringBuilders.get(reply.getPostId()).append(' ').append(reply.getSone().getName()).append(' ').append(reply.getText());
+		}
+		for (StringBuilder postStringBuilder : postStringBuilders.values()) {
+			postStrings.add(postStringBuilder.toString());
+		}
+	}
+
+	/**
+	 * Parses the query and scores all posts.
+	 *
+	 * @return The sum of all scores
+	 */
+	@Benchmark
+	public double scorePosts() {
+		List<Phrase> phrases = SearchPage.parseSearchPhrases(query);
+		double scores = 0;
+		for (String postString : postStrings) {
+			scores += SearchPage.calculateScore(phrases, postString);
+		}
+		return scores;
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Sone - GetTimesAjaxPageBenchmark.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.main.SonePlugin;
+
+import freenet.l10n.BaseL10n;
+import freenet.l10n.BaseL10n.LANGUAGE;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the formatting of times with several threads at once, the way
+ * the AJAX pages format the times of posts, replies, and Sones when many
+ * browser tabs poll them. The synchronized {@link SimpleDateFormat} that was
+ * used before is benchmarked for comparison.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@Threads(8)
+public class GetTimesAjaxPageBenchmark {
+
+	/** The number of times to format per invocation. */
+	private static final int TIME_COUNT = 200;
+
+	/** The shared date format that has to be synchronized. */
+	private final DateFormat synchronizedDateFormat = new SimpleDateFormat("MMM d, yyyy, HH:mm:ss");
+
+	/** The times to format. */
+	private final long[] times = new long[TIME_COUNT];
+
+	/** The l10n handler. */
+	private BaseL10n l10n;
+
+	/**
+	 * Creates the l10n handler and the times to format, spread over the last
+	 * two years.
+	 */
+	@Setup
+	public void setup() {
+		l10n = new BaseL10n("i18n", "sone.${lang}.properties", "sone.${lang}.override.properties", LANGUAGE.ENGLISH, SonePlugin.class.getClassLoader());
+		Random random = new Random(0);
+		long now = System.currentTimeMillis();
+		for (int timeIndex = 0; timeIndex < TIME_COUNT; ++timeIndex) {
+			times[timeIndex] = now - (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(730));
+		}
+	}
+
+	/**
+	 * Formats the relative times and the tooltips of all times.
+	 *
+	 * @return The total length of the formatted times
+	 */
+	@Benchmark
+	public int formatTimes() {
+		int length = 0;
+		for (long time : times) {
+			length += GetTimesAjaxPage.getTime(l10n, time).getText().length();
+			length += GetTimesAjaxPage.formatDate(time).length();
+		}
+		return length;
+	}
+
+	/**
+	 * Formats the tooltips of all times with a synchronized date format.
+	 *
+	 * @return The total length of the formatted times
+	 */
+	@Benchmark
+	public int formatDatesSynchronized() {
+		int length = 0;
+		for (long time : times) {
+			synchronized (synchronizedDateFormat) {
+				length += synchronizedDateFormat.format(new Date(time)).length();
+			}
+		}
+		return length;
+	}
+
+}
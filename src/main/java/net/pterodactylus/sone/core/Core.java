@@ -20,9 +20,13 @@ package net.pterodactylus.sone.core;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.File;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,14 +35,20 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.Section;
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.core.Options.DefaultOption;
 import net.pterodactylus.sone.core.Options.Option;
 import net.pterodactylus.sone.core.Options.OptionWatcher;
+import net.pterodactylus.sone.core.SoneSummaryIndex.SortField;
 import net.pterodactylus.sone.core.event.ImageInsertFinishedEvent;
 import net.pterodactylus.sone.core.event.MarkPostKnownEvent;
 import net.pterodactylus.sone.core.event.MarkPostReplyKnownEvent;
@@ -49,6 +59,7 @@ import net.pterodactylus.sone.core.event.NewSoneFoundEvent;
 import net.pterodactylus.sone.core.event.PostRemovedEvent;
 import net.pterodactylus.sone.core.event.PostReplyRemovedEvent;
 import net.pterodactylus.sone.core.event.SoneLockedEvent;
+import net.pterodactylus.sone.core.event.SoneOptionsChangedEvent;
 import net.pterodactylus.sone.core.event.SoneRemovedEvent;
 import net.pterodactylus.sone.core.event.SoneUnlockedEvent;
 import net.pterodactylus.sone.data.Album;
@@ -76,12 +87,16 @@ import net.pterodactylus.sone.fcp.FcpInterface.FullAccessRequired;
 import net.pterodactylus.sone.freenet.wot.Identity;
 import net.pterodactylus.sone.freenet.wot.IdentityManager;
 import net.pterodactylus.sone.freenet.wot.OwnIdentity;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
 import net.pterodactylus.sone.freenet.wot.event.IdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityRemovedEvent;
 import net.pterodactylus.sone.freenet.wot.event.IdentityUpdatedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityRemovedEvent;
 import net.pterodactylus.sone.main.SonePlugin;
+import net.pterodactylus.sone.metrics.Gauge;
+import net.pterodactylus.sone.metrics.Histogram;
+import net.pterodactylus.sone.metrics.MetricRegistry;
 import net.pterodactylus.sone.utils.IntegerRangePredicate;
 import net.pterodactylus.util.config.Configuration;
 import net.pterodactylus.util.config.ConfigurationException;
@@ -114,6 +129,12 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(Core.class);
 
+	/** The time without changes after which the configuration is saved. */
+	private static final long CONFIGURATION_SAVE_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+	/** The maximum time a change of the configuration stays unsaved. */
+	private static final long MAXIMUM_CONFIGURATION_SAVE_DELAY = TimeUnit.MINUTES.toMillis(1);
+
 	/** The start time. */
 	private final long startupTime = System.currentTimeMillis();
 
@@ -129,9 +150,6 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/** The configuration. */
 	private Configuration configuration;
 
-	/** Whether we’re currently saving the configuration. */
-	private boolean storingConfiguration = false;
-
 	/** The identity manager. */
 	private final IdentityManager identityManager;
 
@@ -144,6 +162,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/** The image inserter. */
 	private final ImageInserter imageInserter;
 
+	/** The thumbnail service. */
+	private final ThumbnailService thumbnailService;
+
 	/** Sone downloader thread-pool. */
 	private final ExecutorService soneDownloaders = Executors.newFixedThreadPool(10, new NamedThreadFactory("Sone Downloader %2$d"));
 
@@ -175,12 +196,28 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/* synchronize access on this on itself. */
 	private final Map<String, Sone> sones = new HashMap<String, Sone>();
 
+	/** The local Sones, or {@code null} if they have to be collected again. */
+	/* only change while synchronized on sones. */
+	private volatile Collection<Sone> localSones;
+
+	/** The version of the local Sones; increased on every change. */
+	private final AtomicLong localSonesVersion = new AtomicLong();
+
+	/** The version of the likes of all Sones; increased on every change. */
+	private final AtomicLong likesVersion = new AtomicLong();
+
 	/** All known Sones. */
 	private final Set<String> knownSones = new HashSet<String>();
 
 	/** The post database. */
 	private final Database database;
 
+	/** The trust cache. */
+	private final TrustCache trustCache;
+
+	/** The metric registry. */
+	private final MetricRegistry metricRegistry;
+
 	/** All bookmarked posts. */
 	/* synchronize access on itself. */
 	private final Set<String> bookmarkedPosts = new HashSet<String>();
@@ -189,13 +226,34 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	private final Multimap<OwnIdentity, Identity> trustedIdentities = Multimaps.synchronizedSetMultimap(HashMultimap.<OwnIdentity, Identity>create());
 
 	/** All temporary images. */
-	private final Map<String, TemporaryImage> temporaryImages = new HashMap<String, TemporaryImage>();
+	private final TemporaryImageStore temporaryImageStore = new TemporaryImageStore(new File("sone-temporary-images"), TemporaryImageStore.DEFAULT_MEMORY_BUDGET);
 
 	/** Ticker for threads that mark own elements as known. */
 	private final ScheduledExecutorService localElementTicker = Executors.newScheduledThreadPool(1);
 
-	/** The time the configuration was last touched. */
-	private volatile long lastConfigurationUpdate;
+	/** The sections of the configuration that have to be saved. */
+	private final DirtyConfiguration dirtyConfiguration = new DirtyConfiguration();
+
+	/** The executor that saves the configuration. */
+	private final ExecutorService configurationSaver = Executors.newSingleThreadExecutor(new NamedThreadFactory("Sone Configuration Saver %2$d"));
+
+	/** Whether saving the configuration has been scheduled but not started. */
+	private final AtomicBoolean configurationSaveScheduled = new AtomicBoolean();
+
+	/** The latencies of saving the configuration. */
+	private final Histogram configurationSaveLatency;
+
+	/** The summaries of all downloaded Sones. */
+	private final SoneSummaryIndex soneSummaryIndex = new SoneSummaryIndex();
+
+	/** The Sones mentioned in posts and replies. */
+	private final MentionIndex mentionIndex = new MentionIndex();
+
+	/** The version of the data; increased on every change. */
+	private final AtomicLong dataVersion = new AtomicLong();
+
+	/** The time the data was last changed. */
+	private volatile long lastDataUpdate = System.currentTimeMillis();
 
 	/**
 	 * Creates a new core.
@@ -212,19 +270,27 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 *            The event bus
 	 * @param database
 	 *            The database
+	 * @param trustCache
+	 *            The trust cache
+	 * @param metricRegistry
+	 *            The metric registry
 	 */
 	@Inject
-	public Core(Configuration configuration, FreenetInterface freenetInterface, IdentityManager identityManager, WebOfTrustUpdater webOfTrustUpdater, EventBus eventBus, Database database) {
+	public Core(Configuration configuration, FreenetInterface freenetInterface, IdentityManager identityManager, WebOfTrustUpdater webOfTrustUpdater, EventBus eventBus, Database database, TrustCache trustCache, MetricRegistry metricRegistry) {
 		super("Sone Core");
 		this.configuration = configuration;
 		this.freenetInterface = freenetInterface;
 		this.identityManager = identityManager;
-		this.soneDownloader = new SoneDownloader(this, freenetInterface);
-		this.imageInserter = new ImageInserter(freenetInterface);
+		this.soneDownloader = new SoneDownloader(this, freenetInterface, metricRegistry);
+		this.imageInserter = new ImageInserter(freenetInterface, eventBus);
+		this.thumbnailService = new ThumbnailService(freenetInterface, temporaryImageStore, new File("sone-thumbnails"), ThumbnailService.DEFAULT_CACHE_SIZE);
 		this.updateChecker = new UpdateChecker(eventBus, freenetInterface);
 		this.webOfTrustUpdater = webOfTrustUpdater;
 		this.eventBus = eventBus;
 		this.database = database;
+		this.trustCache = trustCache;
+		this.metricRegistry = metricRegistry;
+		this.configurationSaveLatency = metricRegistry.histogram("Core.SaveConfiguration");
 	}
 
 	//
@@ -279,6 +345,87 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		return updateChecker;
 	}
 
+	/**
+	 * Returns the trust cache.
+	 *
+	 * @return The trust cache
+	 */
+	public TrustCache getTrustCache() {
+		return trustCache;
+	}
+
+	/**
+	 * Returns the metric registry.
+	 *
+	 * @return The metric registry
+	 */
+	public MetricRegistry getMetricRegistry() {
+		return metricRegistry;
+	}
+
+	/**
+	 * Returns the version of Sone’s data. The version is increased whenever
+	 * a Sone is updated, the configuration is touched, or an event is
+	 * posted, so it can be used to validate everything that is shown in the
+	 * web interface.
+	 *
+	 * @return The version of the data
+	 */
+	public long getDataVersion() {
+		return dataVersion.get();
+	}
+
+	/**
+	 * Returns the version of the local Sones. The version is increased
+	 * whenever a local Sone is added, replaced, or removed, and whenever the
+	 * profile of a local Sone is changed.
+	 *
+	 * @return The version of the local Sones
+	 */
+	public long getLocalSonesVersion() {
+		return localSonesVersion.get();
+	}
+
+	/**
+	 * Returns the version of the likes. The version is increased whenever a
+	 * local Sone likes or unlikes a post or reply, and whenever a Sone is
+	 * loaded, updated, or removed. Comparing this version is a lot cheaper
+	 * than collecting the {@link #getLikes(Post) likes} of a post.
+	 *
+	 * @return The version of the likes
+	 */
+	public long getLikesVersion() {
+		return likesVersion.get();
+	}
+
+	/**
+	 * Returns the time of the last change of Sone’s data.
+	 *
+	 * @return The time of the last change (in milliseconds since Jan 1, 1970
+	 *         UTC)
+	 */
+	public long getLastDataUpdate() {
+		return lastDataUpdate;
+	}
+
+	/**
+	 * Returns the thumbnail service.
+	 *
+	 * @return The thumbnail service
+	 */
+	public ThumbnailService getThumbnailService() {
+		return thumbnailService;
+	}
+
+	/**
+	 * Returns the image inserter.
+	 *
+	 * @return The image inserter
+	 */
+	public ImageInserter getImageInserter() {
+		return imageInserter;
+	}
+
 	/**
 	 * Sets the FCP interface to use.
 	 *
@@ -333,6 +480,26 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 	}
 
+	/**
+	 * Returns all Sones, sorted by the given field. The summaries of remote
+	 * Sones are updated whenever a remote Sone is {@link #updateSone(Sone)
+	 * updated}; the summaries of local Sones, which are changed in place,
+	 * are updated every time this method is called.
+	 *
+	 * @param sortField
+	 *            The field to sort the Sones by
+	 * @param reverse
+	 *            {@code true} to reverse the order of the given field,
+	 *            {@code false} otherwise
+	 * @return All Sones, sorted by the given field
+	 */
+	public List<Sone> getSortedSones(SortField sortField, boolean reverse) {
+		for (Sone localSone : getLocalSones()) {
+			soneSummaryIndex.update(localSone);
+		}
+		return soneSummaryIndex.getSones(sortField, reverse);
+	}
+
 	/**
 	 * Returns the Sone with the given ID, regardless whether it’s local or
 	 * remote.
@@ -351,17 +518,26 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 
 	/**
 	 * {@inheritDocs}
+	 * <p>
+	 * The local Sones are only collected again after they have changed.
 	 */
 	@Override
 	public Collection<Sone> getLocalSones() {
+		Collection<Sone> localSones = this.localSones;
+		if (localSones != null) {
+			return localSones;
+		}
 		synchronized (sones) {
-			return FluentIterable.from(sones.values()).filter(new Predicate<Sone>() {
+			if (this.localSones == null) {
+				this.localSones = FluentIterable.from(sones.values()).filter(new Predicate<Sone>() {
 
-				@Override
-				public boolean apply(Sone sone) {
-					return sone.isLocal();
-				}
-			}).toSet();
+					@Override
+					public boolean apply(Sone sone) {
+						return sone.isLocal();
+					}
+				}).toSet();
+			}
+			return this.localSones;
 		}
 	}
 
@@ -381,10 +557,12 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			if ((sone == null) && create) {
 				sone = new SoneImpl(id, true);
 				sones.put(id, sone);
+				localSonesChanged();
 			}
 			if ((sone != null) && !sone.isLocal()) {
 				sone = new SoneImpl(id, true);
 				sones.put(id, sone);
+				localSonesChanged();
 			}
 			return sone;
 		}
@@ -503,6 +681,50 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		return database.getDirectedPosts(recipientId);
 	}
 
+	/**
+	 * Returns all posts that mention the given Sone, either in their own text
+	 * or in the text of one of their replies.
+	 *
+	 * @param sone
+	 *            The mentioned Sone
+	 * @return The mentioning posts, sorted by time, newest first
+	 */
+	public List<Post> getMentioningPosts(Sone sone) {
+		List<Post> posts = new ArrayList<Post>();
+		for (String postId : mentionIndex.getMentioningPostIds(sone.getId())) {
+			Optional<Post> post = database.getPost(postId);
+			if (post.isPresent()) {
+				posts.add(post.get());
+			}
+		}
+		Collections.sort(posts, Post.TIME_COMPARATOR);
+		return posts;
+	}
+
+	/**
+	 * Returns whether the given post mentions a local Sone.
+	 *
+	 * @param post
+	 *            The post to check
+	 * @return {@code true} if the post mentions a local Sone, {@code false}
+	 *         otherwise
+	 */
+	public boolean isLocalSoneMentioned(Post post) {
+		return containsLocalSone(mentionIndex.getMentionedSoneIdsOfPost(post.getId()));
+	}
+
+	/**
+	 * Returns whether the given reply mentions a local Sone.
+	 *
+	 * @param reply
+	 *            The reply to check
+	 * @return {@code true} if the reply mentions a local Sone, {@code false}
+	 *         otherwise
+	 */
+	public boolean isLocalSoneMentioned(PostReply reply) {
+		return containsLocalSone(mentionIndex.getMentionedSoneIdsOfReply(reply.getId()));
+	}
+
 	/**
 	 * Returns a post reply builder.
 	 *
@@ -643,6 +865,46 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		return newAlbum;
 	}
 
+	/**
+	 * Returns the albums that follow the album with the given ID when all
+	 * albums that are not empty are sorted by their title.
+	 *
+	 * @see net.pterodactylus.sone.database.AlbumProvider#getAlbumsAfter(Optional,
+	 *      Optional, int)
+	 * @param soneId
+	 *            The ID of the Sone to return albums of, or
+	 *            {@link Optional#absent()} for the albums of all Sones
+	 * @param albumId
+	 *            The ID of the album to return the following albums of, or
+	 *            {@link Optional#absent()} to start with the first album
+	 * @param maximumCount
+	 *            The maximum number of albums to return
+	 * @return The albums following the given album
+	 */
+	public List<Album> getAlbumsAfter(Optional<String> soneId, Optional<String> albumId, int maximumCount) {
+		return database.getAlbumsAfter(soneId, albumId, maximumCount);
+	}
+
+	/**
+	 * Returns the albums that precede the album with the given ID when all
+	 * albums that are not empty are sorted by their title.
+	 *
+	 * @see net.pterodactylus.sone.database.AlbumProvider#getAlbumsBefore(Optional,
+	 *      Optional, int)
+	 * @param soneId
+	 *            The ID of the Sone to return albums of, or
+	 *            {@link Optional#absent()} for the albums of all Sones
+	 * @param albumId
+	 *            The ID of the album to return the preceding albums of, or
+	 *            {@link Optional#absent()} to end with the last album
+	 * @param maximumCount
+	 *            The maximum number of albums to return
+	 * @return The albums preceding the given album
+	 */
+	public List<Album> getAlbumsBefore(Optional<String> soneId, Optional<String> albumId, int maximumCount) {
+		return database.getAlbumsBefore(soneId, albumId, maximumCount);
+	}
+
 	/**
 	 * Returns the image with the given ID, creating it if necessary.
 	 *
@@ -688,9 +950,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 *         image with the given ID
 	 */
 	public TemporaryImage getTemporaryImage(String imageId) {
-		synchronized (temporaryImages) {
-			return temporaryImages.get(imageId);
-		}
+		return temporaryImageStore.getTemporaryImage(imageId);
 	}
 
 	//
@@ -754,7 +1014,8 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			sone.setKnown(true);
 			/* TODO - load posts ’n stuff */
 			sones.put(ownIdentity.getId(), sone);
-			final SoneInserter soneInserter = new SoneInserter(this, eventBus, freenetInterface, sone);
+			localSonesChanged();
+			final SoneInserter soneInserter = new SoneInserter(this, eventBus, freenetInterface, metricRegistry, sone);
 			soneInserters.put(sone, soneInserter);
 			sone.setStatus(SoneStatus.idle);
 			loadSone(sone);
@@ -784,7 +1045,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		sone.getOptions().addEnumOption("ShowCustomAvatars", new DefaultOption<ShowCustomAvatars>(ShowCustomAvatars.NEVER));
 
 		followSone(sone, "nwa8lHa271k2QvJ8aa0Ov7IHAV-DFOCFgmDt3X6BpCI");
-		touchConfiguration();
+		touchConfiguration(sone, SoneSection.values());
 		return sone;
 	}
 
@@ -869,7 +1130,8 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				}
 			}
 		}
-		touchConfiguration();
+		touchConfiguration(sone, SoneSection.FRIENDS);
+		touchConfiguration(Section.FOLLOWING_TIMES);
 	}
 
 	/**
@@ -893,7 +1155,8 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				soneFollowingTimes.remove(soneId);
 			}
 		}
-		touchConfiguration();
+		touchConfiguration(sone, SoneSection.FRIENDS);
+		touchConfiguration(Section.FOLLOWING_TIMES);
 	}
 
 	/**
@@ -997,6 +1260,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			Collection<Post> existingPosts = database.getPosts(sone.getId());
 			for (Post oldPost : existingPosts) {
 				if (!sone.getPosts().contains(oldPost)) {
+					mentionIndex.removePost(oldPost.getId());
 					eventBus.post(new PostRemovedEvent(oldPost));
 				}
 			}
@@ -1005,6 +1269,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				if (existingPosts.contains(newPost)) {
 					continue;
 				}
+				mentionIndex.indexPost(newPost);
 				if (newPost.getTime() < getSoneFollowingTime(sone)) {
 					newPost.setKnown(true);
 				} else if (!newPost.isKnown()) {
@@ -1016,6 +1281,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			if (!soneRescueMode) {
 				for (PostReply reply : storedSone.get().getReplies()) {
 					if (!sone.getReplies().contains(reply)) {
+						mentionIndex.removeReply(reply.getId());
 						eventBus.post(new PostReplyRemovedEvent(reply));
 					}
 				}
@@ -1025,6 +1291,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				if (storedReplies.contains(reply)) {
 					continue;
 				}
+				mentionIndex.indexReply(reply);
 				if (reply.getTime() < getSoneFollowingTime(sone)) {
 					reply.setKnown(true);
 				} else if (!reply.isKnown()) {
@@ -1032,13 +1299,13 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				}
 			}
 			database.storePostReplies(sone, sone.getReplies());
-			for (Album album : storedSone.get().getRootAlbum().getAlbums()) {
+			for (Album album : FluentIterable.from(storedSone.get().getRootAlbum().getAlbums()).transformAndConcat(Album.FLATTENER)) {
 				database.removeAlbum(album);
 				for (Image image : album.getImages()) {
 					database.removeImage(image);
 				}
 			}
-			for (Album album : sone.getRootAlbum().getAlbums()) {
+			for (Album album : FluentIterable.from(sone.getRootAlbum().getAlbums()).transformAndConcat(Album.FLATTENER)) {
 				database.storeAlbum(album);
 				for (Image image : album.getImages()) {
 					database.storeImage(image);
@@ -1050,11 +1317,17 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				sone.setStatus((sone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
 				if (sone.isLocal()) {
 					soneInserters.get(storedSone.get()).setSone(sone);
-					touchConfiguration();
+					touchConfiguration(sone, SoneSection.values());
 				}
 				sones.put(sone.getId(), sone);
+				likesVersion.incrementAndGet();
+				if (sone.isLocal()) {
+					localSonesChanged();
+				}
 			}
+			soneSummaryIndex.update(sone);
 		}
+		touchData();
 	}
 
 	/**
@@ -1076,9 +1349,15 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				return;
 			}
 			sones.remove(sone.getId());
+			likesVersion.incrementAndGet();
+			localSonesChanged();
+			soneSummaryIndex.remove(sone.getId());
 			SoneInserter soneInserter = soneInserters.remove(sone);
 			soneInserter.stop();
 		}
+		for (Album album : FluentIterable.from(sone.getRootAlbum().getAlbums()).transformAndConcat(Album.FLATTENER)) {
+			database.removeAlbum(album);
+		}
 		webOfTrustUpdater.removeContext((OwnIdentity) sone.getIdentity(), "Sone");
 		webOfTrustUpdater.removeProperty((OwnIdentity) sone.getIdentity(), "Sone.LatestEdition");
 		try {
@@ -1086,6 +1365,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		} catch (ConfigurationException ce1) {
 			logger.log(Level.WARNING, "Could not remove Sone from configuration!", ce1);
 		}
+		touchConfiguration(sone, SoneSection.STATE);
 	}
 
 	/**
@@ -1102,7 +1382,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				knownSones.add(sone.getId());
 			}
 			eventBus.post(new MarkSoneKnownEvent(sone));
-			touchConfiguration();
+			touchConfiguration(Section.KNOWN_SONES);
 		}
 	}
 
@@ -1261,6 +1541,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 
 		/* load images. */
+		Map<TemporaryImage, Image> queuedImages = new HashMap<TemporaryImage, Image>();
 		int imageCounter = 0;
 		while (true) {
 			String imagePrefix = sonePrefix + "/Images/" + imageCounter++;
@@ -1275,7 +1556,8 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			Long creationTime = configuration.getLongValue(imagePrefix + "/CreationTime").getValue(null);
 			Integer width = configuration.getIntValue(imagePrefix + "/Width").getValue(null);
 			Integer height = configuration.getIntValue(imagePrefix + "/Height").getValue(null);
-			if ((albumId == null) || (key == null) || (title == null) || (description == null) || (creationTime == null) || (width == null) || (height == null)) {
+			String mimeType = configuration.getStringValue(imagePrefix + "/MimeType").getValue(null);
+			if ((albumId == null) || ((key == null) && (mimeType == null)) || (title == null) || (description == null) || (creationTime == null) || (width == null) || (height == null)) {
 				logger.log(Level.WARNING, "Invalid image found, aborting load!");
 				return;
 			}
@@ -1284,8 +1566,19 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				logger.log(Level.WARNING, "Invalid album image encountered, aborting load!");
 				return;
 			}
+			TemporaryImage temporaryImage = null;
+			if (key == null) {
+				temporaryImage = temporaryImageStore.restoreTemporaryImage(imageId, mimeType);
+				if (temporaryImage == null) {
+					logger.log(Level.WARNING, String.format("Image data for not inserted image %s is missing, skipping image.", imageId));
+					continue;
+				}
+			}
 			Image image = getImage(imageId).modify().setSone(sone).setCreationTime(creationTime).setKey(key).setTitle(title).setDescription(description).setWidth(width).setHeight(height).update();
 			album.addImage(image);
+			if (temporaryImage != null) {
+				queuedImages.put(temporaryImage, image);
+			}
 		}
 
 		/* load avatar. */
@@ -1310,6 +1603,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			sone.setReplies(replies);
 			sone.setLikePostIds(likedPostIds);
 			sone.setLikeReplyIds(likedReplyIds);
+			likesVersion.incrementAndGet();
 			for (String friendId : friends) {
 				followSone(sone, friendId);
 			}
@@ -1321,6 +1615,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			}
 			soneInserters.get(sone).setLastInsertFingerprint(lastInsertFingerprint);
 		}
+		for (Album album : FluentIterable.from(topLevelAlbums).transformAndConcat(Album.FLATTENER)) {
+			database.storeAlbum(album);
+		}
 		synchronized (knownSones) {
 			for (String friend : friends) {
 				knownSones.add(friend);
@@ -1329,10 +1626,15 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		database.storePosts(sone, posts);
 		for (Post post : posts) {
 			post.setKnown(true);
+			mentionIndex.indexPost(post);
 		}
 		database.storePostReplies(sone, replies);
 		for (PostReply reply : replies) {
 			reply.setKnown(true);
+			mentionIndex.indexReply(reply);
+		}
+		for (Entry<TemporaryImage, Image> queuedImage : queuedImages.entrySet()) {
+			imageInserter.insertImage(queuedImage.getKey(), queuedImage.getValue());
 		}
 
 		logger.info(String.format("Sone loaded successfully: %s", sone));
@@ -1410,9 +1712,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 		final Post post = postBuilder.build();
 		database.storePost(post);
+		mentionIndex.indexPost(post);
 		eventBus.post(new NewPostFoundEvent(post));
 		sone.addPost(post);
-		touchConfiguration();
+		touchConfiguration(sone, SoneSection.POSTS);
 		localElementTicker.schedule(new Runnable() {
 
 			/**
@@ -1438,9 +1741,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			return;
 		}
 		database.removePost(post);
+		mentionIndex.removePost(post.getId());
 		eventBus.post(new PostRemovedEvent(post));
 		markPostKnown(post);
-		touchConfiguration();
+		touchConfiguration(post.getSone(), SoneSection.POSTS);
 	}
 
 	/**
@@ -1453,7 +1757,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	public void markPostKnown(Post post) {
 		post.setKnown(true);
 		eventBus.post(new MarkPostKnownEvent(post));
-		touchConfiguration();
+		touchConfiguration(Section.KNOWN_POSTS);
 		for (PostReply reply : getReplies(post.getId())) {
 			markReplyKnown(reply);
 		}
@@ -1479,6 +1783,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		synchronized (bookmarkedPosts) {
 			bookmarkedPosts.add(id);
 		}
+		touchConfiguration(Section.BOOKMARKS);
 	}
 
 	/**
@@ -1501,6 +1806,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		synchronized (bookmarkedPosts) {
 			bookmarkedPosts.remove(id);
 		}
+		touchConfiguration(Section.BOOKMARKS);
 	}
 
 	/**
@@ -1525,9 +1831,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		postReplyBuilder.randomId().from(sone.getId()).to(post.getId()).currentTime().withText(text.trim());
 		final PostReply reply = postReplyBuilder.build();
 		database.storePostReply(reply);
+		mentionIndex.indexReply(reply);
 		eventBus.post(new NewPostReplyFoundEvent(reply));
 		sone.addReply(reply);
-		touchConfiguration();
+		touchConfiguration(sone, SoneSection.REPLIES);
 		localElementTicker.schedule(new Runnable() {
 
 			/**
@@ -1554,9 +1861,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			return;
 		}
 		database.removePostReply(reply);
+		mentionIndex.removeReply(reply.getId());
 		markReplyKnown(reply);
 		sone.removeReply(reply);
-		touchConfiguration();
+		touchConfiguration(sone, SoneSection.REPLIES);
 	}
 
 	/**
@@ -1571,7 +1879,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		reply.setKnown(true);
 		eventBus.post(new MarkPostReplyKnownEvent(reply));
 		if (!previouslyKnown) {
-			touchConfiguration();
+			touchConfiguration(Section.KNOWN_POSTS);
 		}
 	}
 
@@ -1601,9 +1909,23 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		database.storeAlbum(album);
 		album.setSone(sone);
 		parent.addAlbum(album);
+		database.storeAlbum(album);
 		return album;
 	}
 
+	/**
+	 * Stores the given album again after its title or description have been
+	 * changed, so that the album index of the database is updated.
+	 *
+	 * @param album
+	 *            The album that was changed
+	 */
+	public void updateAlbum(Album album) {
+		checkNotNull(album, "album must not be null");
+		database.storeAlbum(album);
+		touchConfiguration(album.getSone(), SoneSection.ALBUMS);
+	}
+
 	/**
 	 * Deletes the given album. The owner of the album has to be a local Sone,
 	 * and the album has to be {@link Album#isEmpty() empty} to be deleted.
@@ -1619,7 +1941,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 		album.getParent().removeAlbum(album);
 		database.removeAlbum(album);
-		touchConfiguration();
+		touchConfiguration(album.getSone(), SoneSection.ALBUMS);
 	}
 
 	/**
@@ -1658,9 +1980,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		checkNotNull(image, "image must not be null");
 		checkArgument(image.getSone().isLocal(), "image must belong to a local Sone");
 		deleteTemporaryImage(image.getId());
+		thumbnailService.removeThumbnails(image);
 		image.getAlbum().removeImage(image);
 		database.removeImage(image);
-		touchConfiguration();
+		touchConfiguration(image.getSone(), SoneSection.ALBUMS);
 	}
 
 	/**
@@ -1673,12 +1996,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 * @return The temporary image
 	 */
 	public TemporaryImage createTemporaryImage(String mimeType, byte[] imageData) {
-		TemporaryImage temporaryImage = new TemporaryImage();
-		temporaryImage.setMimeType(mimeType).setImageData(imageData);
-		synchronized (temporaryImages) {
-			temporaryImages.put(temporaryImage.getId(), temporaryImage);
-		}
-		return temporaryImage;
+		return temporaryImageStore.createTemporaryImage(mimeType, imageData);
 	}
 
 	/**
@@ -1700,9 +2018,7 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 */
 	public void deleteTemporaryImage(String imageId) {
 		checkNotNull(imageId, "imageId must not be null");
-		synchronized (temporaryImages) {
-			temporaryImages.remove(imageId);
-		}
+		temporaryImageStore.removeTemporaryImage(imageId);
 		Image image = getImage(imageId, false);
 		if (image != null) {
 			imageInserter.cancelImageInsert(image);
@@ -1712,10 +2028,65 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	/**
 	 * Notifies the core that the configuration, either of the core or of a
 	 * single local Sone, has changed, and that the configuration should be
-	 * saved.
+	 * saved. As it is not known what has changed, the complete configuration,
+	 * including all local Sones, will be saved; use
+	 * {@link #touchConfiguration(Section)} or
+	 * {@link #touchConfiguration(Sone, SoneSection...)} if only a part of the
+	 * configuration has changed.
 	 */
 	public void touchConfiguration() {
-		lastConfigurationUpdate = System.currentTimeMillis();
+		dirtyConfiguration.touchAll();
+		touchData();
+	}
+
+	/**
+	 * Notifies the core that the given section of the configuration has
+	 * changed and should be saved.
+	 *
+	 * @param section
+	 *            The changed section
+	 */
+	public void touchConfiguration(Section section) {
+		dirtyConfiguration.touch(section);
+		touchData();
+	}
+
+	/**
+	 * Notifies the core that the given sections of the given local Sone have
+	 * changed and should be saved. If the options of the Sone have changed, a
+	 * {@link SoneOptionsChangedEvent} is posted; if its likes or its profile
+	 * have changed, the {@link #getLikesVersion() likes version} or the
+	 * {@link #getLocalSonesVersion() local Sones version} is increased.
+	 *
+	 * @param sone
+	 *            The changed Sone
+	 * @param sections
+	 *            The changed sections of the Sone
+	 */
+	public void touchConfiguration(Sone sone, SoneSection... sections) {
+		dirtyConfiguration.touch(sone.getId(), sections);
+		touchData();
+		List<SoneSection> changedSections = Arrays.asList(sections);
+		if (changedSections.contains(SoneSection.LIKES)) {
+			likesVersion.incrementAndGet();
+		}
+		if (changedSections.contains(SoneSection.PROFILE)) {
+			synchronized (sones) {
+				localSonesChanged();
+			}
+		}
+		if (changedSections.contains(SoneSection.OPTIONS)) {
+			eventBus.post(new SoneOptionsChangedEvent(sone));
+		}
+	}
+
+	/**
+	 * Notifies the core that Sone’s data has changed, increasing the
+	 * {@link #getDataVersion() data version}.
+	 */
+	public void touchData() {
+		dataVersion.incrementAndGet();
+		lastDataUpdate = System.currentTimeMillis();
 	}
 
 	//
@@ -1733,6 +2104,8 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		webOfTrustUpdater.init();
 		webOfTrustUpdater.start();
 		database.start();
+		thumbnailService.start();
+		registerGauges();
 	}
 
 	/**
@@ -1740,16 +2113,10 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	 */
 	@Override
 	public void serviceRun() {
-		long lastSaved = System.currentTimeMillis();
 		while (!shouldStop()) {
 			sleep(1000);
-			long now = System.currentTimeMillis();
-			if (shouldStop() || ((lastConfigurationUpdate > lastSaved) && ((now - lastConfigurationUpdate) > 5000))) {
-				for (Sone localSone : getLocalSones()) {
-					saveSone(localSone);
-				}
-				saveConfiguration();
-				lastSaved = now;
+			if (dirtyConfiguration.isSaveDue(System.currentTimeMillis(), CONFIGURATION_SAVE_DELAY, MAXIMUM_CONFIGURATION_SAVE_DELAY)) {
+				scheduleConfigurationSave();
 			}
 		}
 	}
@@ -1761,18 +2128,28 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	public void serviceStop() {
 		localElementTicker.shutdownNow();
 		synchronized (sones) {
-			for (Entry<Sone, SoneInserter> soneInserter : soneInserters.entrySet()) {
-				soneInserter.getValue().stop();
-				saveSone(getLocalSone(soneInserter.getKey().getId(), false));
+			for (SoneInserter soneInserter : soneInserters.values()) {
+				soneInserter.stop();
 			}
 		}
-		saveConfiguration();
+		configurationSaver.shutdown();
+		try {
+			configurationSaver.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException ie1) {
+			logger.log(Level.WARNING, "Interrupted while waiting for configuration to be saved.", ie1);
+		}
+		/* the database writes into the configuration when it is stopped. */
 		database.stop();
+		/* save everything one last time. */
+		dirtyConfiguration.touchAll();
+		saveConfiguration(dirtyConfiguration.takeChanges());
 		webOfTrustUpdater.stop();
 		updateChecker.stop();
 		soneDownloader.stop();
 		soneDownloaders.shutdown();
 		identityManager.stop();
+		imageInserter.stop();
+		thumbnailService.stop();
 	}
 
 	//
@@ -1780,29 +2157,196 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	//
 
 	/**
-	 * Saves the given Sone. This will persist all local settings for the given
-	 * Sone, such as the friends list and similar, private options.
+	 * Returns whether any of the Sones with the given IDs is a local Sone.
+	 *
+	 * @param soneIds
+	 *            The IDs of the Sones
+	 * @return {@code true} if one of the Sones is a local Sone, {@code false}
+	 *         otherwise
+	 */
+	private boolean containsLocalSone(Set<String> soneIds) {
+		for (String soneId : soneIds) {
+			Optional<Sone> sone = getSone(soneId);
+			if (sone.isPresent() && sone.get().isLocal()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Notifies the core that a local Sone has been added, replaced, or
+	 * removed. The local Sones will be collected again when they are
+	 * requested the next time. This method has to be called while
+	 * synchronized on {@link #sones}.
+	 */
+	private void localSonesChanged() {
+		localSones = null;
+		localSonesVersion.incrementAndGet();
+	}
+
+	/**
+	 * Registers the gauges for the sizes of the core’s collections and the
+	 * queues of its services.
+	 */
+	private void registerGauges() {
+		metricRegistry.register("Core.Sones", new Gauge() {
+
+			@Override
+			public long getValue() {
+				synchronized (sones) {
+					return sones.size();
+				}
+			}
+		});
+		metricRegistry.register("Core.LocalSones", new Gauge() {
+
+			@Override
+			public long getValue() {
+				return getLocalSones().size();
+			}
+		});
+		metricRegistry.register("Core.LockedSones", new Gauge() {
+
+			@Override
+			public long getValue() {
+				synchronized (lockedSones) {
+					return lockedSones.size();
+				}
+			}
+		});
+		metricRegistry.register("WebOfTrustUpdater.QueueSize", new Gauge() {
+
+			@Override
+			public long getValue() {
+				return webOfTrustUpdater.getQueueSize();
+			}
+		});
+		metricRegistry.register("Runtime.UsedMemory", new Gauge() {
+
+			@Override
+			public long getValue() {
+				return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+			}
+		});
+	}
+
+	/**
+	 * Schedules saving the changed sections of the configuration on the
+	 * configuration saver. If a save is already scheduled but has not yet
+	 * started, no new save is scheduled; the scheduled save will include all
+	 * changes made until it starts.
+	 */
+	private void scheduleConfigurationSave() {
+		if (!configurationSaveScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			configurationSaver.execute(new Runnable() {
+
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public void run() {
+					configurationSaveScheduled.set(false);
+					saveConfiguration(dirtyConfiguration.takeChanges());
+				}
+			});
+		} catch (RejectedExecutionException ree1) {
+			/* core is being stopped, the configuration is saved there. */
+			configurationSaveScheduled.set(false);
+		}
+	}
+
+	/**
+	 * Saves the changed sections of the configuration. All sections are
+	 * written to the configuration first, and the configuration is then saved
+	 * once. If saving fails for any reason, including unexpected runtime
+	 * exceptions, the sections are marked as changed again so that the next
+	 * save will retry them.
+	 *
+	 * @param changes
+	 *            The changed sections of the configuration
+	 */
+	private void saveConfiguration(DirtyConfiguration changes) {
+		if (changes.isEmpty()) {
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			List<Sone> savedSones = new ArrayList<Sone>();
+			if (changes.isAllSones()) {
+				for (Sone localSone : getLocalSones()) {
+					if (saveSone(localSone, EnumSet.allOf(SoneSection.class))) {
+						savedSones.add(localSone);
+					}
+				}
+			} else {
+				for (Entry<String, Set<SoneSection>> soneSections : changes.getSoneSections().entrySet()) {
+					Optional<Sone> sone = getSone(soneSections.getKey());
+					if (sone.isPresent() && saveSone(sone.get(), soneSections.getValue())) {
+						savedSones.add(sone.get());
+					}
+				}
+			}
+			saveSections(changes.getSections());
+
+			/* now save it. */
+			configuration.save();
+
+			for (Sone savedSone : savedSones) {
+				webOfTrustUpdater.setProperty((OwnIdentity) savedSone.getIdentity(), "Sone.LatestEdition", String.valueOf(savedSone.getLatestEdition()));
+			}
+			configurationSaveLatency.update(System.nanoTime() - start);
+		} catch (ConfigurationException ce1) {
+			logger.log(Level.SEVERE, "Could not store configuration!", ce1);
+			dirtyConfiguration.touch(changes);
+		} catch (DatabaseException de1) {
+			logger.log(Level.SEVERE, "Could not save database!", de1);
+			dirtyConfiguration.touch(changes);
+		} catch (RuntimeException re1) {
+			logger.log(Level.SEVERE, "Could not store configuration!", re1);
+			dirtyConfiguration.touch(changes);
+		}
+	}
+
+	/**
+	 * Writes the given sections of the given Sone into the configuration. The
+	 * time and the last insert of the Sone are written every time. This will
+	 * persist all local settings for the given Sone, such as the friends list
+	 * and similar, private options.
 	 *
 	 * @param sone
 	 *            The Sone to save
-	 */
-	private synchronized void saveSone(Sone sone) {
+	 * @param sections
+	 *            The sections of the Sone to save
+	 * @return {@code true} if the Sone was written, {@code false} if the Sone
+	 *         is not a local Sone
+	 * @throws ConfigurationException
+	 *             if a configuration error occurs
+	 */
+	private boolean saveSone(Sone sone, Set<SoneSection> sections) throws ConfigurationException {
 		if (!sone.isLocal()) {
 			logger.log(Level.FINE, String.format("Tried to save non-local Sone: %s", sone));
-			return;
+			return false;
 		}
 		if (!(sone.getIdentity() instanceof OwnIdentity)) {
 			logger.log(Level.WARNING, String.format("Local Sone without OwnIdentity found, refusing to save: %s", sone));
-			return;
+			return false;
 		}
 
 		logger.log(Level.INFO, String.format("Saving Sone: %s", sone));
-		try {
-			/* save Sone into configuration. */
-			String sonePrefix = "Sone/" + sone.getId();
-			configuration.getLongValue(sonePrefix + "/Time").setValue(sone.getTime());
-			configuration.getStringValue(sonePrefix + "/LastInsertFingerprint").setValue(soneInserters.get(sone).getLastInsertFingerprint());
+		/* save Sone into configuration. */
+		String sonePrefix = "Sone/" + sone.getId();
+		configuration.getLongValue(sonePrefix + "/Time").setValue(sone.getTime());
+		SoneInserter soneInserter;
+		synchronized (sones) {
+			soneInserter = soneInserters.get(sone);
+		}
+		if (soneInserter != null) {
+			configuration.getStringValue(sonePrefix + "/LastInsertFingerprint").setValue(soneInserter.getLastInsertFingerprint());
+		}
 
+		if (sections.contains(SoneSection.PROFILE)) {
 			/* save profile. */
 			Profile profile = sone.getProfile();
 			configuration.getStringValue(sonePrefix + "/Profile/FirstName").setValue(profile.getFirstName());
@@ -1821,7 +2365,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				configuration.getStringValue(fieldPrefix + "/Value").setValue(profileField.getValue());
 			}
 			configuration.getStringValue(sonePrefix + "/Profile/Fields/" + fieldCounter + "/Name").setValue(null);
+		}
 
+		if (sections.contains(SoneSection.POSTS)) {
 			/* save posts. */
 			int postCounter = 0;
 			for (Post post : sone.getPosts()) {
@@ -1832,7 +2378,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				configuration.getStringValue(postPrefix + "/Text").setValue(post.getText());
 			}
 			configuration.getStringValue(sonePrefix + "/Posts/" + postCounter + "/ID").setValue(null);
+		}
 
+		if (sections.contains(SoneSection.REPLIES)) {
 			/* save replies. */
 			int replyCounter = 0;
 			for (PostReply reply : sone.getReplies()) {
@@ -1843,7 +2391,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				configuration.getStringValue(replyPrefix + "/Text").setValue(reply.getText());
 			}
 			configuration.getStringValue(sonePrefix + "/Replies/" + replyCounter + "/ID").setValue(null);
+		}
 
+		if (sections.contains(SoneSection.LIKES)) {
 			/* save post likes. */
 			int postLikeCounter = 0;
 			for (String postId : sone.getLikedPostIds()) {
@@ -1857,14 +2407,18 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				configuration.getStringValue(sonePrefix + "/Likes/Reply/" + replyLikeCounter++ + "/ID").setValue(replyId);
 			}
 			configuration.getStringValue(sonePrefix + "/Likes/Reply/" + replyLikeCounter + "/ID").setValue(null);
+		}
 
+		if (sections.contains(SoneSection.FRIENDS)) {
 			/* save friends. */
 			int friendCounter = 0;
 			for (String friendId : sone.getFriends()) {
 				configuration.getStringValue(sonePrefix + "/Friends/" + friendCounter++ + "/ID").setValue(friendId);
 			}
 			configuration.getStringValue(sonePrefix + "/Friends/" + friendCounter + "/ID").setValue(null);
+		}
 
+		if (sections.contains(SoneSection.ALBUMS)) {
 			/* save albums. first, collect in a flat structure, top-level first. */
 			List<Album> albums = FluentIterable.from(sone.getRootAlbum().getAlbums()).transformAndConcat(Album.FLATTENER).toList();
 
@@ -1883,13 +2437,19 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			int imageCounter = 0;
 			for (Album album : albums) {
 				for (Image image : album.getImages()) {
+					String mimeType = null;
 					if (!image.isInserted()) {
-						continue;
+						TemporaryImage temporaryImage = temporaryImageStore.getTemporaryImage(image.getId());
+						if ((temporaryImage == null) || !temporaryImageStore.persistTemporaryImage(image.getId())) {
+							continue;
+						}
+						mimeType = temporaryImage.getMimeType();
 					}
 					String imagePrefix = sonePrefix + "/Images/" + imageCounter++;
 					configuration.getStringValue(imagePrefix + "/ID").setValue(image.getId());
 					configuration.getStringValue(imagePrefix + "/Album").setValue(album.getId());
 					configuration.getStringValue(imagePrefix + "/Key").setValue(image.getKey());
+					configuration.getStringValue(imagePrefix + "/MimeType").setValue(mimeType);
 					configuration.getStringValue(imagePrefix + "/Title").setValue(image.getTitle());
 					configuration.getStringValue(imagePrefix + "/Description").setValue(image.getDescription());
 					configuration.getLongValue(imagePrefix + "/CreationTime").setValue(image.getCreationTime());
@@ -1898,7 +2458,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				}
 			}
 			configuration.getStringValue(sonePrefix + "/Images/" + imageCounter + "/ID").setValue(null);
+		}
 
+		if (sections.contains(SoneSection.OPTIONS)) {
 			/* save options. */
 			configuration.getBooleanValue(sonePrefix + "/Options/AutoFollow").setValue(sone.getOptions().getBooleanOption("AutoFollow").getReal());
 			configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewSones").setValue(sone.getOptions().getBooleanOption("ShowNotification/NewSones").getReal());
@@ -1906,31 +2468,26 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			configuration.getBooleanValue(sonePrefix + "/Options/ShowNotification/NewReplies").setValue(sone.getOptions().getBooleanOption("ShowNotification/NewReplies").getReal());
 			configuration.getBooleanValue(sonePrefix + "/Options/EnableSoneInsertNotifications").setValue(sone.getOptions().getBooleanOption("EnableSoneInsertNotifications").getReal());
 			configuration.getStringValue(sonePrefix + "/Options/ShowCustomAvatars").setValue(sone.getOptions().<ShowCustomAvatars> getEnumOption("ShowCustomAvatars").get().name());
-
-			configuration.save();
-
-			webOfTrustUpdater.setProperty((OwnIdentity) sone.getIdentity(), "Sone.LatestEdition", String.valueOf(sone.getLatestEdition()));
-
-			logger.log(Level.INFO, String.format("Sone %s saved.", sone));
-		} catch (ConfigurationException ce1) {
-			logger.log(Level.WARNING, String.format("Could not save Sone: %s", sone), ce1);
 		}
+
+		logger.log(Level.INFO, String.format("Sone %s saved.", sone));
+		return true;
 	}
 
 	/**
-	 * Saves the current options.
+	 * Writes the given sections of the configuration that are not specific to
+	 * a Sone into the configuration.
+	 *
+	 * @param sections
+	 *            The sections to save
+	 * @throws ConfigurationException
+	 *             if a configuration error occurs
+	 * @throws DatabaseException
+	 *             if the database can not be saved
 	 */
-	private void saveConfiguration() {
-		synchronized (configuration) {
-			if (storingConfiguration) {
-				logger.log(Level.FINE, "Already storing configuration…");
-				return;
-			}
-			storingConfiguration = true;
-		}
-
-		/* store the options first. */
-		try {
+	private void saveSections(Set<Section> sections) throws ConfigurationException, DatabaseException {
+		if (sections.contains(Section.OPTIONS)) {
+			/* store the options first. */
 			configuration.getIntValue("Option/ConfigurationVersion").setValue(0);
 			configuration.getIntValue("Option/InsertionDelay").setValue(options.getIntegerOption("InsertionDelay").getReal());
 			configuration.getIntValue("Option/PostsPerPage").setValue(options.getIntegerOption("PostsPerPage").getReal());
@@ -1943,7 +2500,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 			configuration.getStringValue("Option/TrustComment").setValue(options.getStringOption("TrustComment").getReal());
 			configuration.getBooleanValue("Option/ActivateFcpInterface").setValue(options.getBooleanOption("ActivateFcpInterface").getReal());
 			configuration.getIntValue("Option/FcpFullAccessRequired").setValue(options.getIntegerOption("FcpFullAccessRequired").getReal());
+		}
 
+		if (sections.contains(Section.KNOWN_SONES)) {
 			/* save known Sones. */
 			int soneCounter = 0;
 			synchronized (knownSones) {
@@ -1952,9 +2511,11 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				}
 				configuration.getStringValue("KnownSone/" + soneCounter + "/ID").setValue(null);
 			}
+		}
 
+		if (sections.contains(Section.FOLLOWING_TIMES)) {
 			/* save Sone following times. */
-			soneCounter = 0;
+			int soneCounter = 0;
 			synchronized (soneFollowingTimes) {
 				for (Entry<String, Long> soneFollowingTime : soneFollowingTimes.entrySet()) {
 					configuration.getStringValue("SoneFollowingTimes/" + soneCounter + "/Sone").setValue(soneFollowingTime.getKey());
@@ -1963,10 +2524,14 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				}
 				configuration.getStringValue("SoneFollowingTimes/" + soneCounter + "/Sone").setValue(null);
 			}
+		}
 
+		if (sections.contains(Section.KNOWN_POSTS)) {
 			/* save known posts. */
 			database.save();
+		}
 
+		if (sections.contains(Section.BOOKMARKS)) {
 			/* save bookmarked posts. */
 			int bookmarkedPostCounter = 0;
 			synchronized (bookmarkedPosts) {
@@ -1975,18 +2540,6 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 				}
 			}
 			configuration.getStringValue("Bookmarks/Post/" + bookmarkedPostCounter++ + "/ID").setValue(null);
-
-			/* now save it. */
-			configuration.save();
-
-		} catch (ConfigurationException ce1) {
-			logger.log(Level.SEVERE, "Could not store configuration!", ce1);
-		} catch (DatabaseException de1) {
-			logger.log(Level.SEVERE, "Could not save database!", de1);
-		} finally {
-			synchronized (configuration) {
-				storingConfiguration = false;
-			}
 		}
 	}
 
@@ -2195,18 +2748,40 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 		}
 		database.removePosts(sone.get());
 		for (Post post : sone.get().getPosts()) {
+			mentionIndex.removePost(post.getId());
 			eventBus.post(new PostRemovedEvent(post));
 		}
 		database.removePostReplies(sone.get());
 		for (PostReply reply : sone.get().getReplies()) {
+			mentionIndex.removeReply(reply.getId());
 			eventBus.post(new PostReplyRemovedEvent(reply));
 		}
+		for (Album album : FluentIterable.from(sone.get().getRootAlbum().getAlbums()).transformAndConcat(Album.FLATTENER)) {
+			database.removeAlbum(album);
+		}
 		synchronized (sones) {
 			sones.remove(identity.getId());
+			likesVersion.incrementAndGet();
+			if (sone.get().isLocal()) {
+				localSonesChanged();
+			}
 		}
+		soneSummaryIndex.remove(identity.getId());
 		eventBus.post(new SoneRemovedEvent(sone.get()));
 	}
 
+	/**
+	 * Increases the data version for every event that is posted on the event
+	 * bus, as all events signal changes to Sone’s data.
+	 *
+	 * @param event
+	 *            The event
+	 */
+	@Subscribe
+	public void eventPosted(Object event) {
+		touchData();
+	}
+
 	/**
 	 * Deletes the temporary image.
 	 *
@@ -2217,8 +2792,9 @@ public class Core extends AbstractService implements SoneProvider, PostProvider,
 	public void imageInsertFinished(ImageInsertFinishedEvent imageInsertFinishedEvent) {
 		logger.log(Level.WARNING, String.format("Image insert finished for %s: %s", imageInsertFinishedEvent.image(), imageInsertFinishedEvent.resultingUri()));
 		imageInsertFinishedEvent.image().modify().setKey(imageInsertFinishedEvent.resultingUri().toString()).update();
+		database.storeImage(imageInsertFinishedEvent.image());
 		deleteTemporaryImage(imageInsertFinishedEvent.image().getId());
-		touchConfiguration();
+		touchConfiguration(imageInsertFinishedEvent.image().getSone(), SoneSection.ALBUMS);
 	}
 
 }
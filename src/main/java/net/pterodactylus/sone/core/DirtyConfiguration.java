@@ -0,0 +1,278 @@
+/*
+ * Sone - DirtyConfiguration.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the sections of the configuration that have been changed
+ * since they were last saved, so that only these sections have to be written
+ * again. Changes that are made while earlier changes are waiting to be saved
+ * are merged with them, and the time of the first and of the last unsaved
+ * change is recorded so that a save can be delayed until the changes have
+ * settled down.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class DirtyConfiguration {
+
+	/**
+	 * The sections of the configuration that are not specific to a Sone.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public enum Section {
+
+		/** The options of the core. */
+		OPTIONS,
+
+		/** The IDs of the known Sones. */
+		KNOWN_SONES,
+
+		/** The times the Sones were followed. */
+		FOLLOWING_TIMES,
+
+		/** The known posts and replies. */
+		KNOWN_POSTS,
+
+		/** The bookmarked posts. */
+		BOOKMARKS
+
+	}
+
+	/**
+	 * The sections of the configuration of a single local Sone.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public enum SoneSection {
+
+		/** The time, the last insert, and the latest edition of the Sone. */
+		STATE,
+
+		/** The profile of the Sone. */
+		PROFILE,
+
+		/** The posts of the Sone. */
+		POSTS,
+
+		/** The replies of the Sone. */
+		REPLIES,
+
+		/** The liked posts and replies of the Sone. */
+		LIKES,
+
+		/** The friends of the Sone. */
+		FRIENDS,
+
+		/** The albums and images of the Sone. */
+		ALBUMS,
+
+		/** The options of the Sone. */
+		OPTIONS
+
+	}
+
+	/** The changed sections. */
+	private final Set<Section> sections = EnumSet.noneOf(Section.class);
+
+	/** The changed sections of the local Sones, by Sone ID. */
+	private final Map<String, Set<SoneSection>> soneSections = new HashMap<String, Set<SoneSection>>();
+
+	/** Whether all sections of all local Sones have been changed. */
+	private boolean allSones;
+
+	/** The time of the first unsaved change, or {@code 0} if none. */
+	private long firstChangeTime;
+
+	/** The time of the last unsaved change. */
+	private long lastChangeTime;
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns whether no section has been changed.
+	 *
+	 * @return {@code true} if no section has been changed, {@code false}
+	 *         otherwise
+	 */
+	public synchronized boolean isEmpty() {
+		return sections.isEmpty() && soneSections.isEmpty() && !allSones;
+	}
+
+	/**
+	 * Returns the changed sections that are not specific to a Sone.
+	 *
+	 * @return The changed sections
+	 */
+	public synchronized Set<Section> getSections() {
+		return Collections.unmodifiableSet(EnumSet.copyOf(sections));
+	}
+
+	/**
+	 * Returns whether all sections of all local Sones have been changed.
+	 *
+	 * @return {@code true} if all local Sones have to be saved completely,
+	 *         {@code false} if only the {@link #getSoneSections() Sone
+	 *         sections} have to be saved
+	 */
+	public synchronized boolean isAllSones() {
+		return allSones;
+	}
+
+	/**
+	 * Returns the changed sections of the local Sones.
+	 *
+	 * @return The changed sections, by Sone ID
+	 */
+	public synchronized Map<String, Set<SoneSection>> getSoneSections() {
+		Map<String, Set<SoneSection>> soneSections = new HashMap<String, Set<SoneSection>>();
+		for (Map.Entry<String, Set<SoneSection>> soneSection : this.soneSections.entrySet()) {
+			soneSections.put(soneSection.getKey(), Collections.unmodifiableSet(EnumSet.copyOf(soneSection.getValue())));
+		}
+		return Collections.unmodifiableMap(soneSections);
+	}
+
+	/**
+	 * Returns whether the changes should be saved now. They should be saved if
+	 * there was no change for the given quiet time, or if the first unsaved
+	 * change is older than the given maximum delay.
+	 *
+	 * @param now
+	 *            The current time
+	 * @param quietTime
+	 *            The time without changes after which to save (in
+	 *            milliseconds)
+	 * @param maximumDelay
+	 *            The maximum time to delay saving a change (in milliseconds)
+	 * @return {@code true} if the changes should be saved, {@code false}
+	 *         otherwise
+	 */
+	public synchronized boolean isSaveDue(long now, long quietTime, long maximumDelay) {
+		if (isEmpty()) {
+			return false;
+		}
+		return ((now - lastChangeTime) >= quietTime) || ((now - firstChangeTime) >= maximumDelay);
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Marks the given section as changed.
+	 *
+	 * @param section
+	 *            The changed section
+	 */
+	public synchronized void touch(Section section) {
+		sections.add(section);
+		changed();
+	}
+
+	/**
+	 * Marks the given sections of the local Sone with the given ID as changed.
+	 *
+	 * @param soneId
+	 *            The ID of the changed Sone
+	 * @param sections
+	 *            The changed sections of the Sone
+	 */
+	public synchronized void touch(String soneId, SoneSection... sections) {
+		Set<SoneSection> soneSections = this.soneSections.get(soneId);
+		if (soneSections == null) {
+			soneSections = EnumSet.noneOf(SoneSection.class);
+			this.soneSections.put(soneId, soneSections);
+		}
+		Collections.addAll(soneSections, sections);
+		changed();
+	}
+
+	/**
+	 * Marks all sections, including all sections of all local Sones, as
+	 * changed.
+	 */
+	public synchronized void touchAll() {
+		sections.addAll(EnumSet.allOf(Section.class));
+		allSones = true;
+		changed();
+	}
+
+	/**
+	 * Marks the sections that are changed in the given dirty configuration as
+	 * changed again, e.g. because saving them has failed.
+	 *
+	 * @param dirtyConfiguration
+	 *            The dirty configuration to merge into this one
+	 */
+	public void touch(DirtyConfiguration dirtyConfiguration) {
+		Set<Section> sections = dirtyConfiguration.getSections();
+		Map<String, Set<SoneSection>> soneSections = dirtyConfiguration.getSoneSections();
+		boolean allSones = dirtyConfiguration.isAllSones();
+		synchronized (this) {
+			this.sections.addAll(sections);
+			for (Map.Entry<String, Set<SoneSection>> soneSection : soneSections.entrySet()) {
+				touch(soneSection.getKey(), soneSection.getValue().toArray(new SoneSection[0]));
+			}
+			this.allSones |= allSones;
+			changed();
+		}
+	}
+
+	/**
+	 * Removes all changes from this dirty configuration and returns them.
+	 *
+	 * @return A dirty configuration with the changes of this dirty
+	 *         configuration
+	 */
+	public synchronized DirtyConfiguration takeChanges() {
+		DirtyConfiguration changes = new DirtyConfiguration();
+		changes.sections.addAll(sections);
+		changes.soneSections.putAll(soneSections);
+		changes.allSones = allSones;
+		changes.firstChangeTime = firstChangeTime;
+		changes.lastChangeTime = lastChangeTime;
+		sections.clear();
+		soneSections.clear();
+		allSones = false;
+		firstChangeTime = 0;
+		return changes;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Records the time of a change.
+	 */
+	private void changed() {
+		long now = System.currentTimeMillis();
+		if (firstChangeTime == 0) {
+			firstChangeTime = now;
+		}
+		lastChangeTime = now;
+	}
+
+}
@@ -17,91 +17,24 @@
 
 package net.pterodactylus.sone.core;
 
-import java.net.MalformedURLException;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-import net.pterodactylus.sone.core.event.ImageInsertAbortedEvent;
-import net.pterodactylus.sone.core.event.ImageInsertFailedEvent;
-import net.pterodactylus.sone.core.event.ImageInsertFinishedEvent;
-import net.pterodactylus.sone.core.event.ImageInsertStartedEvent;
+
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.TemporaryImage;
-import net.pterodactylus.util.logging.Logging;
-
-import com.db4o.ObjectContainer;
-import com.google.common.eventbus.EventBus;
-import com.google.inject.Inject;
 
-import freenet.client.ClientMetadata;
-import freenet.client.FetchException;
 import freenet.client.FetchResult;
-import freenet.client.HighLevelSimpleClient;
-import freenet.client.HighLevelSimpleClientImpl;
-import freenet.client.InsertBlock;
-import freenet.client.InsertContext;
 import freenet.client.InsertException;
-import freenet.client.async.BaseClientPutter;
-import freenet.client.async.ClientContext;
-import freenet.client.async.ClientPutCallback;
-import freenet.client.async.ClientPutter;
-import freenet.client.async.USKCallback;
 import freenet.keys.FreenetURI;
-import freenet.keys.InsertableClientSSK;
-import freenet.keys.USK;
-import freenet.node.Node;
-import freenet.node.RequestStarter;
-import freenet.support.api.Bucket;
-import freenet.support.io.ArrayBucket;
 
 /**
- * Contains all necessary functionality for interacting with the Freenet node.
+ * Contains all necessary functionality for interacting with Freenet: fetching
+ * and inserting data, and subscribing to USK updates.
  *
+ * @see NodeFreenetInterface
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class FreenetInterface {
-
-	/** The logger. */
-	private static final Logger logger = Logging.getLogger(FreenetInterface.class);
-
-	/** The event bus. */
-	private final EventBus eventBus;
-
-	/** The node to interact with. */
-	private final Node node;
-
-	/** The high-level client to use for requests. */
-	private final HighLevelSimpleClient client;
-
-	/** The USK callbacks. */
-	private final Map<String, USKCallback> soneUskCallbacks = new HashMap<String, USKCallback>();
-
-	/** The not-Sone-related USK callbacks. */
-	private final Map<FreenetURI, USKCallback> uriUskCallbacks = Collections.synchronizedMap(new HashMap<FreenetURI, USKCallback>());
-
-	/**
-	 * Creates a new Freenet interface.
-	 *
-	 * @param eventBus
-	 *            The event bus
-	 * @param node
-	 *            The node to interact with
-	 */
-	@Inject
-	public FreenetInterface(EventBus eventBus, Node node) {
-		this.eventBus = eventBus;
-		this.node = node;
-		this.client = node.clientCore.makeClient(RequestStarter.INTERACTIVE_PRIORITY_CLASS, false, true);
-	}
-
-	//
-	// ACTIONS
-	//
+public interface FreenetInterface {
 
 	/**
 	 * Fetches the given URI.
@@ -110,63 +43,31 @@ public class FreenetInterface {
 	 *            The URI to fetch
 	 * @return The result of the fetch, or {@code null} if an error occured
 	 */
-	public Fetched fetchUri(FreenetURI uri) {
-		FetchResult fetchResult = null;
-		FreenetURI currentUri = new FreenetURI(uri);
-		while (true) {
-			try {
-				fetchResult = client.fetch(currentUri);
-				return new Fetched(currentUri, fetchResult);
-			} catch (FetchException fe1) {
-				if (fe1.getMode() == FetchException.PERMANENT_REDIRECT) {
-					currentUri = fe1.newURI;
-					continue;
-				}
-				logger.log(Level.WARNING, String.format("Could not fetch “%s”!", uri), fe1);
-				return null;
-			}
-		}
-	}
+	public Fetched fetchUri(FreenetURI uri);
 
 	/**
 	 * Creates a key pair.
 	 *
 	 * @return The request key at index 0, the insert key at index 1
 	 */
-	public String[] generateKeyPair() {
-		FreenetURI[] keyPair = client.generateKeyPair("");
-		return new String[] { keyPair[1].toString(), keyPair[0].toString() };
-	}
+	public String[] generateKeyPair();
 
 	/**
 	 * Inserts the image data of the given {@link TemporaryImage} and returns
-	 * the given insert token that can be used to add listeners or cancel the
-	 * insert.
+	 * an insert token that can be used to cancel the insert. The given image
+	 * insert listener is notified about the progress of the insert.
 	 *
 	 * @param temporaryImage
 	 *            The temporary image data
 	 * @param image
 	 *            The image
-	 * @param insertToken
-	 *            The insert token
+	 * @param imageInsertListener
+	 *            The listener to notify
+	 * @return The insert token of the started insert
 	 * @throws SoneException
 	 *             if the insert could not be started
 	 */
-	public void insertImage(TemporaryImage temporaryImage, Image image, InsertToken insertToken) throws SoneException {
-		String filenameHint = image.getId() + "." + temporaryImage.getMimeType().substring(temporaryImage.getMimeType().lastIndexOf("/") + 1);
-		InsertableClientSSK key = InsertableClientSSK.createRandom(node.random, "");
-		FreenetURI targetUri = key.getInsertURI().setDocName(filenameHint);
-		InsertContext insertContext = client.getInsertContext(true);
-		Bucket bucket = new ArrayBucket(temporaryImage.getImageData());
-		ClientMetadata metadata = new ClientMetadata(temporaryImage.getMimeType());
-		InsertBlock insertBlock = new InsertBlock(bucket, metadata, targetUri);
-		try {
-			ClientPutter clientPutter = client.insert(insertBlock, false, null, false, insertContext, insertToken, RequestStarter.INTERACTIVE_PRIORITY_CLASS);
-			insertToken.setClientPutter(clientPutter);
-		} catch (InsertException ie1) {
-			throw new SoneInsertException("Could not start image insert.", ie1);
-		}
-	}
+	public InsertToken insertImage(TemporaryImage temporaryImage, Image image, ImageInsertListener imageInsertListener) throws SoneException;
 
 	/**
 	 * Inserts a directory into Freenet.
@@ -181,13 +82,7 @@ public class FreenetInterface {
 	 * @throws SoneException
 	 *             if an insert error occurs
 	 */
-	public FreenetURI insertDirectory(FreenetURI insertUri, HashMap<String, Object> manifestEntries, String defaultFile) throws SoneException {
-		try {
-			return client.insertManifest(insertUri, manifestEntries, defaultFile);
-		} catch (InsertException ie1) {
-			throw new SoneException(ie1);
-		}
-	}
+	public FreenetURI insertDirectory(FreenetURI insertUri, HashMap<String, Object> manifestEntries, String defaultFile) throws SoneException;
 
 	/**
 	 * Registers the USK for the given Sone and notifies the given
@@ -198,44 +93,7 @@ public class FreenetInterface {
 	 * @param soneDownloader
 	 *            The Sone download to notify on updates
 	 */
-	public void registerUsk(final Sone sone, final SoneDownloader soneDownloader) {
-		try {
-			logger.log(Level.FINE, String.format("Registering Sone “%s” for USK updates at %s…", sone, sone.getRequestUri().setMetaString(new String[] { "sone.xml" })));
-			USKCallback uskCallback = new USKCallback() {
-
-				@Override
-				@SuppressWarnings("synthetic-access")
-				public void onFoundEdition(long edition, USK key, ObjectContainer objectContainer, ClientContext clientContext, boolean metadata, short codec, byte[] data, boolean newKnownGood, boolean newSlotToo) {
-					logger.log(Level.FINE, String.format("Found USK update for Sone “%s” at %s, new known good: %s, new slot too: %s.", sone, key, newKnownGood, newSlotToo));
-					if (edition > sone.getLatestEdition()) {
-						sone.setLatestEdition(edition);
-						new Thread(new Runnable() {
-
-							@Override
-							public void run() {
-								soneDownloader.fetchSone(sone);
-							}
-						}, "Sone Downloader").start();
-					}
-				}
-
-				@Override
-				public short getPollingPriorityProgress() {
-					return RequestStarter.INTERACTIVE_PRIORITY_CLASS;
-				}
-
-				@Override
-				public short getPollingPriorityNormal() {
-					return RequestStarter.INTERACTIVE_PRIORITY_CLASS;
-				}
-			};
-			soneUskCallbacks.put(sone.getId(), uskCallback);
-			boolean runBackgroundFetch = (System.currentTimeMillis() - sone.getTime()) < TimeUnit.DAYS.toMillis(7);
-			node.clientCore.uskManager.subscribe(USK.create(sone.getRequestUri()), uskCallback, runBackgroundFetch, (HighLevelSimpleClientImpl) client);
-		} catch (MalformedURLException mue1) {
-			logger.log(Level.WARNING, String.format("Could not subscribe USK “%s”!", sone.getRequestUri()), mue1);
-		}
-	}
+	public void registerUsk(Sone sone, SoneDownloader soneDownloader);
 
 	/**
 	 * Unsubscribes the request URI of the given Sone.
@@ -243,18 +101,7 @@ public class FreenetInterface {
 	 * @param sone
 	 *            The Sone to unregister
 	 */
-	public void unregisterUsk(Sone sone) {
-		USKCallback uskCallback = soneUskCallbacks.remove(sone.getId());
-		if (uskCallback == null) {
-			return;
-		}
-		try {
-			logger.log(Level.FINEST, String.format("Unsubscribing from USK for %s…", sone));
-			node.clientCore.uskManager.unsubscribe(USK.create(sone.getRequestUri()), uskCallback);
-		} catch (MalformedURLException mue1) {
-			logger.log(Level.FINE, String.format("Could not unsubscribe USK “%s”!", sone.getRequestUri()), mue1);
-		}
-	}
+	public void unregisterUsk(Sone sone);
 
 	/**
 	 * Registers an arbitrary URI and calls the given callback if a new edition
@@ -265,32 +112,7 @@ public class FreenetInterface {
 	 * @param callback
 	 *            The callback to call
 	 */
-	public void registerUsk(FreenetURI uri, final Callback callback) {
-		USKCallback uskCallback = new USKCallback() {
-
-			@Override
-			public void onFoundEdition(long edition, USK key, ObjectContainer objectContainer, ClientContext clientContext, boolean metadata, short codec, byte[] data, boolean newKnownGood, boolean newSlotToo) {
-				callback.editionFound(key.getURI(), edition, newKnownGood, newSlotToo);
-			}
-
-			@Override
-			public short getPollingPriorityNormal() {
-				return RequestStarter.PREFETCH_PRIORITY_CLASS;
-			}
-
-			@Override
-			public short getPollingPriorityProgress() {
-				return RequestStarter.INTERACTIVE_PRIORITY_CLASS;
-			}
-
-		};
-		try {
-			node.clientCore.uskManager.subscribe(USK.create(uri), uskCallback, true, (HighLevelSimpleClientImpl) client);
-			uriUskCallbacks.put(uri, uskCallback);
-		} catch (MalformedURLException mue1) {
-			logger.log(Level.WARNING, String.format("Could not subscribe to USK: %s", uri), mue1);
-		}
-	}
+	public void registerUsk(FreenetURI uri, Callback callback);
 
 	/**
 	 * Unregisters the USK watcher for the given URI.
@@ -298,18 +120,7 @@ public class FreenetInterface {
 	 * @param uri
 	 *            The URI to unregister the USK watcher for
 	 */
-	public void unregisterUsk(FreenetURI uri) {
-		USKCallback uskCallback = uriUskCallbacks.remove(uri);
-		if (uskCallback == null) {
-			logger.log(Level.INFO, String.format("Could not unregister unknown USK: %s", uri));
-			return;
-		}
-		try {
-			node.clientCore.uskManager.unsubscribe(USK.create(uri), uskCallback);
-		} catch (MalformedURLException mue1) {
-			logger.log(Level.INFO, String.format("Could not unregister invalid USK: %s", uri), mue1);
-		}
-	}
+	public void unregisterUsk(FreenetURI uri);
 
 	/**
 	 * Container for a fetched URI and the {@link FetchResult}.
@@ -386,122 +197,78 @@ public class FreenetInterface {
 	}
 
 	/**
-	 * Insert token that can cancel a running insert and sends events.
+	 * Listener for the progress of image inserts.
 	 *
-	 * @see ImageInsertAbortedEvent
-	 * @see ImageInsertStartedEvent
-	 * @see ImageInsertFailedEvent
-	 * @see ImageInsertFinishedEvent
+	 * @see FreenetInterface#insertImage(TemporaryImage, Image,
+	 *      ImageInsertListener)
 	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
 	 */
-	public class InsertToken implements ClientPutCallback {
-
-		/** The image being inserted. */
-		private final Image image;
-
-		/** The client putter. */
-		private ClientPutter clientPutter;
-
-		/** The final URI. */
-		private volatile FreenetURI resultingUri;
+	public static interface ImageInsertListener {
 
 		/**
-		 * Creates a new insert token for the given image.
+		 * Notifies a listener that the insert of the given image was started.
 		 *
 		 * @param image
 		 *            The image being inserted
 		 */
-		public InsertToken(Image image) {
-			this.image = image;
-		}
-
-		//
-		// ACCESSORS
-		//
+		public void imageInsertStarted(Image image);
 
 		/**
-		 * Sets the client putter that is inserting the image. This will also
-		 * signal all registered listeners that the image has started.
+		 * Notifies a listener that the insert of the given image has made
+		 * progress.
 		 *
-		 * @param clientPutter
-		 *            The client putter
-		 */
-		@SuppressWarnings("synthetic-access")
-		public void setClientPutter(ClientPutter clientPutter) {
-			this.clientPutter = clientPutter;
-			eventBus.post(new ImageInsertStartedEvent(image));
-		}
-
-		//
-		// ACTIONS
-		//
-
-		/**
-		 * Cancels the running insert.
+		 * @param image
+		 *            The image being inserted
+		 * @param succeededBlocks
+		 *            The number of blocks that have been inserted
+		 * @param totalBlocks
+		 *            The total number of blocks to insert
 		 */
-		@SuppressWarnings("synthetic-access")
-		public void cancel() {
-			clientPutter.cancel(null, node.clientCore.clientContext);
-			eventBus.post(new ImageInsertAbortedEvent(image));
-		}
-
-		//
-		// INTERFACE ClientPutCallback
-		//
+		public void imageInsertProgressed(Image image, int succeededBlocks, int totalBlocks);
 
 		/**
-		 * {@inheritDoc}
+		 * Notifies a listener that the insert of the given image was aborted.
+		 *
+		 * @param image
+		 *            The image whose insert was aborted
 		 */
-		@Override
-		public void onMajorProgress(ObjectContainer objectContainer) {
-			/* ignore, we don’t care. */
-		}
+		public void imageInsertAborted(Image image);
 
 		/**
-		 * {@inheritDoc}
+		 * Notifies a listener that the insert of the given image has failed.
+		 *
+		 * @param image
+		 *            The image whose insert failed
+		 * @param insertException
+		 *            The cause of the failure (may be {@code null})
 		 */
-		@Override
-		@SuppressWarnings("synthetic-access")
-		public void onFailure(InsertException insertException, BaseClientPutter clientPutter, ObjectContainer objectContainer) {
-			if ((insertException != null) && ("Cancelled by user".equals(insertException.getMessage()))) {
-				eventBus.post(new ImageInsertAbortedEvent(image));
-			} else {
-				eventBus.post(new ImageInsertFailedEvent(image, insertException));
-			}
-		}
+		public void imageInsertFailed(Image image, InsertException insertException);
 
 		/**
-		 * {@inheritDoc}
+		 * Notifies a listener that the given image was inserted.
+		 *
+		 * @param image
+		 *            The inserted image
+		 * @param resultingUri
+		 *            The URI of the inserted image
 		 */
-		@Override
-		public void onFetchable(BaseClientPutter clientPutter, ObjectContainer objectContainer) {
-			/* ignore, we don’t care. */
-		}
+		public void imageInsertFinished(Image image, FreenetURI resultingUri);
 
-		/**
-		 * {@inheritDoc}
-		 */
-		@Override
-		public void onGeneratedMetadata(Bucket metadata, BaseClientPutter clientPutter, ObjectContainer objectContainer) {
-			/* ignore, we don’t care. */
-		}
+	}
 
-		/**
-		 * {@inheritDoc}
-		 */
-		@Override
-		public void onGeneratedURI(FreenetURI generatedUri, BaseClientPutter clientPutter, ObjectContainer objectContainer) {
-			resultingUri = generatedUri;
-		}
+	/**
+	 * Token for a running image insert that can be used to cancel the insert.
+	 *
+	 * @see FreenetInterface#insertImage(TemporaryImage, Image,
+	 *      ImageInsertListener)
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public static interface InsertToken {
 
 		/**
-		 * {@inheritDoc}
+		 * Cancels the running insert.
 		 */
-		@Override
-		@SuppressWarnings("synthetic-access")
-		public void onSuccess(BaseClientPutter clientPutter, ObjectContainer objectContainer) {
-			eventBus.post(new ImageInsertFinishedEvent(image, resultingUri));
-		}
+		public void cancel();
 
 	}
 
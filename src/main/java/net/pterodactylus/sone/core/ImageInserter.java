@@ -20,48 +20,161 @@ package net.pterodactylus.sone.core;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.pterodactylus.sone.core.FreenetInterface.ImageInsertListener;
 import net.pterodactylus.sone.core.FreenetInterface.InsertToken;
+import net.pterodactylus.sone.core.event.ImageInsertAbortedEvent;
+import net.pterodactylus.sone.core.event.ImageInsertFailedEvent;
+import net.pterodactylus.sone.core.event.ImageInsertFinishedEvent;
+import net.pterodactylus.sone.core.event.ImageInsertStartedEvent;
+import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.TemporaryImage;
 import net.pterodactylus.util.logging.Logging;
+import net.pterodactylus.util.thread.NamedThreadFactory;
+
+import com.google.common.eventbus.EventBus;
+
+import freenet.client.InsertException;
+import freenet.keys.FreenetURI;
 
 /**
  * The image inserter is responsible for inserting images using
- * {@link FreenetInterface#insertImage(TemporaryImage, Image, InsertToken)} and
- * also tracks running inserts, giving the possibility to abort a running
- * insert.
+ * {@link FreenetInterface#insertImage(TemporaryImage, Image, ImageInsertListener)}
+ * and also tracks queued and running inserts, giving the possibility to abort
+ * an insert.
+ * <p>
+ * Images are inserted in the order they were added, with the exception of
+ * album images and avatars which are inserted before all other images. At most
+ * a configurable number of inserts are running at the same time. Inserts that
+ * failed with a non-fatal error are retried a couple of times with increasing
+ * delays before an {@link ImageInsertFailedEvent} is sent.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class ImageInserter {
+public class ImageInserter implements ImageInsertListener {
 
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(ImageInserter.class);
 
+	/** The default number of concurrent inserts. */
+	public static final int DEFAULT_MAX_CONCURRENT_INSERTS = 2;
+
+	/** The default delay before the first retry of a failed insert (30s). */
+	public static final long DEFAULT_RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+	/** The maximum number of attempts for an insert. */
+	public static final int MAX_ATTEMPTS = 5;
+
 	/** The freenet interface. */
 	private final FreenetInterface freenetInterface;
 
-	/** The tokens of running inserts. */
-	private final Map<String, InsertToken> insertTokens = Collections.synchronizedMap(new HashMap<String, InsertToken>());
+	/** The event bus. */
+	private final EventBus eventBus;
+
+	/** The maximum number of concurrent inserts. */
+	private final int maxConcurrentInserts;
+
+	/** The delay before the first retry of a failed insert (in milliseconds). */
+	private final long retryDelay;
+
+	/** The executor that schedules retries. */
+	private final ScheduledExecutorService retryExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("Sone Image Insert Retrier %2$d"));
+
+	/** The queued and running inserts, by image ID. */
+	/* synchronize access on itself. */
+	private final Map<String, ImageInsert> imageInserts = new LinkedHashMap<String, ImageInsert>();
+
+	/** The number of currently running inserts. */
+	/* synchronize access on imageInserts. */
+	private int runningInserts;
+
+	/**
+	 * Creates a new image inserter with the default number of concurrent
+	 * inserts and the default retry delay.
+	 *
+	 * @param freenetInterface
+	 *            The freenet interface
+	 * @param eventBus
+	 *            The event bus
+	 */
+	public ImageInserter(FreenetInterface freenetInterface, EventBus eventBus) {
+		this(freenetInterface, eventBus, DEFAULT_MAX_CONCURRENT_INSERTS, DEFAULT_RETRY_DELAY);
+	}
 
 	/**
 	 * Creates a new image inserter.
 	 *
 	 * @param freenetInterface
 	 *            The freenet interface
+	 * @param eventBus
+	 *            The event bus
+	 * @param maxConcurrentInserts
+	 *            The maximum number of concurrent inserts
+	 * @param retryDelay
+	 *            The delay before the first retry of a failed insert (in
+	 *            milliseconds); it is doubled for every further retry
 	 */
-	public ImageInserter(FreenetInterface freenetInterface) {
+	public ImageInserter(FreenetInterface freenetInterface, EventBus eventBus, int maxConcurrentInserts, long retryDelay) {
+		checkArgument(maxConcurrentInserts > 0, "maxConcurrentInserts must be positive");
+		checkArgument(retryDelay >= 0, "retryDelay must not be negative");
 		this.freenetInterface = freenetInterface;
+		this.eventBus = eventBus;
+		this.maxConcurrentInserts = maxConcurrentInserts;
+		this.retryDelay = retryDelay;
 	}
 
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns a snapshot of all queued and running inserts, in the order they
+	 * were added.
+	 *
+	 * @return All queued and running inserts
+	 */
+	public List<ImageInsert> getImageInserts() {
+		List<ImageInsert> imageInserts = new ArrayList<ImageInsert>();
+		synchronized (this.imageInserts) {
+			for (ImageInsert imageInsert : this.imageInserts.values()) {
+				imageInserts.add(new ImageInsert(imageInsert));
+			}
+		}
+		return imageInserts;
+	}
+
+	/**
+	 * Returns whether an insert for the given image is queued or running.
+	 *
+	 * @param image
+	 *            The image to check
+	 * @return {@code true} if the image is queued or being inserted,
+	 *         {@code false} otherwise
+	 */
+	public boolean isInserting(Image image) {
+		synchronized (imageInserts) {
+			return imageInserts.containsKey(image.getId());
+		}
+	}
+
+	//
+	// ACTIONS
+	//
+
 	/**
-	 * Inserts the given image.
+	 * Queues the given image for insertion. If the image is already queued,
+	 * nothing happens.
 	 *
 	 * @param temporaryImage
 	 *            The temporary image data
@@ -72,28 +185,370 @@ public class ImageInserter {
 		checkNotNull(temporaryImage, "temporaryImage must not be null");
 		checkNotNull(image, "image must not be null");
 		checkArgument(image.getId().equals(temporaryImage.getId()), "image IDs must match");
-		try {
-			InsertToken insertToken = freenetInterface.new InsertToken(image);
-			insertTokens.put(image.getId(), insertToken);
-			freenetInterface.insertImage(temporaryImage, image, insertToken);
-		} catch (SoneException se1) {
-			logger.log(Level.WARNING, "Could not insert image!", se1);
+		synchronized (imageInserts) {
+			if (imageInserts.containsKey(image.getId())) {
+				return;
+			}
+			imageInserts.put(image.getId(), new ImageInsert(image, temporaryImage));
 		}
+		startInserts();
 	}
 
 	/**
-	 * Cancels a running image insert. If no insert is running for the given
-	 * image, nothing happens.
+	 * Cancels a queued or running image insert. If no insert is queued or
+	 * running for the given image, nothing happens.
 	 *
 	 * @param image
 	 *            The image being inserted
 	 */
 	public void cancelImageInsert(Image image) {
-		InsertToken insertToken = insertTokens.remove(image.getId());
-		if (insertToken == null) {
+		InsertToken insertToken;
+		synchronized (imageInserts) {
+			ImageInsert imageInsert = imageInserts.remove(image.getId());
+			if (imageInsert == null) {
+				return;
+			}
+			insertToken = imageInsert.insertToken;
+			if (imageInsert.running) {
+				runningInserts--;
+			}
+		}
+		if (insertToken != null) {
+			insertToken.cancel();
+		}
+		eventBus.post(new ImageInsertAbortedEvent(image));
+		startInserts();
+	}
+
+	/**
+	 * Stops the image inserter. Queued inserts are not started anymore and
+	 * pending retries are dropped; running inserts are left alone.
+	 */
+	public void stop() {
+		retryExecutor.shutdownNow();
+	}
+
+	//
+	// INTERFACE ImageInsertListener
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void imageInsertStarted(Image image) {
+		synchronized (imageInserts) {
+			ImageInsert imageInsert = imageInserts.get(image.getId());
+			if ((imageInsert == null) || (imageInsert.attempts > 1)) {
+				return;
+			}
+		}
+		eventBus.post(new ImageInsertStartedEvent(image));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void imageInsertProgressed(Image image, int succeededBlocks, int totalBlocks) {
+		synchronized (imageInserts) {
+			ImageInsert imageInsert = imageInserts.get(image.getId());
+			if (imageInsert == null) {
+				return;
+			}
+			imageInsert.succeededBlocks = succeededBlocks;
+			imageInsert.totalBlocks = totalBlocks;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void imageInsertAborted(Image image) {
+		if (removeImageInsert(image) == null) {
 			return;
 		}
-		insertToken.cancel();
+		eventBus.post(new ImageInsertAbortedEvent(image));
+		startInserts();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void imageInsertFailed(final Image image, InsertException insertException) {
+		boolean retry = false;
+		synchronized (imageInserts) {
+			final ImageInsert imageInsert = imageInserts.get(image.getId());
+			if ((imageInsert == null) || !imageInsert.running) {
+				return;
+			}
+			imageInsert.running = false;
+			imageInsert.insertToken = null;
+			runningInserts--;
+			if ((insertException != null) && !insertException.isFatal() && (imageInsert.attempts < MAX_ATTEMPTS) && !retryExecutor.isShutdown()) {
+				long delay = retryDelay << (imageInsert.attempts - 1);
+				logger.log(Level.INFO, String.format("Insert of %s failed (attempt %d), retrying in %d ms.", image.getId(), imageInsert.attempts, delay), insertException);
+				imageInsert.waiting = true;
+				retry = true;
+				retryExecutor.schedule(new Runnable() {
+
+					@Override
+					@SuppressWarnings("synthetic-access")
+					public void run() {
+						synchronized (imageInserts) {
+							imageInsert.waiting = false;
+						}
+						startInserts();
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			} else {
+				imageInserts.remove(image.getId());
+			}
+		}
+		if (!retry) {
+			logger.log(Level.WARNING, String.format("Could not insert %s!", image.getId()), insertException);
+			eventBus.post(new ImageInsertFailedEvent(image, insertException));
+		}
+		startInserts();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void imageInsertFinished(Image image, FreenetURI resultingUri) {
+		if (removeImageInsert(image) == null) {
+			return;
+		}
+		eventBus.post(new ImageInsertFinishedEvent(image, resultingUri));
+		startInserts();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Starts queued inserts until the maximum number of concurrent inserts is
+	 * reached or no more inserts are waiting.
+	 */
+	private void startInserts() {
+		while (true) {
+			ImageInsert nextImageInsert = null;
+			synchronized (imageInserts) {
+				if (runningInserts >= maxConcurrentInserts) {
+					return;
+				}
+				for (ImageInsert imageInsert : imageInserts.values()) {
+					if (imageInsert.running || imageInsert.waiting) {
+						continue;
+					}
+					if (isPriorityImage(imageInsert.image)) {
+						nextImageInsert = imageInsert;
+						break;
+					}
+					if (nextImageInsert == null) {
+						nextImageInsert = imageInsert;
+					}
+				}
+				if (nextImageInsert == null) {
+					return;
+				}
+				nextImageInsert.running = true;
+				nextImageInsert.attempts++;
+				runningInserts++;
+			}
+			startInsert(nextImageInsert);
+		}
+	}
+
+	/**
+	 * Starts the insert of the given image.
+	 *
+	 * @param imageInsert
+	 *            The image insert to start
+	 */
+	private void startInsert(ImageInsert imageInsert) {
+		InsertToken insertToken;
+		try {
+			insertToken = freenetInterface.insertImage(imageInsert.temporaryImage, imageInsert.image, this);
+		} catch (SoneException se1) {
+			logger.log(Level.WARNING, String.format("Could not start insert of %s!", imageInsert.image.getId()), se1);
+			if (removeImageInsert(imageInsert.image) != null) {
+				eventBus.post(new ImageInsertFailedEvent(imageInsert.image, se1));
+			}
+			return;
+		}
+		synchronized (imageInserts) {
+			if (imageInserts.get(imageInsert.image.getId()) == imageInsert) {
+				imageInsert.insertToken = insertToken;
+				return;
+			}
+		}
+		/* insert was cancelled while it was being started. */
+		if (insertToken != null) {
+			insertToken.cancel();
+		}
+	}
+
+	/**
+	 * Removes the insert of the given image, updating the number of running
+	 * inserts.
+	 *
+	 * @param image
+	 *            The image whose insert to remove
+	 * @return The removed image insert, or {@code null} if there was no insert
+	 *         for the given image
+	 */
+	private ImageInsert removeImageInsert(Image image) {
+		synchronized (imageInserts) {
+			ImageInsert imageInsert = imageInserts.remove(image.getId());
+			if ((imageInsert != null) && imageInsert.running) {
+				runningInserts--;
+			}
+			return imageInsert;
+		}
+	}
+
+	/**
+	 * Returns whether the given image should be inserted before all other
+	 * images, i.e. whether it is the image of its album or the avatar of its
+	 * Sone.
+	 *
+	 * @param image
+	 *            The image to check
+	 * @return {@code true} if the image should be inserted first, {@code false}
+	 *         otherwise
+	 */
+	private static boolean isPriorityImage(Image image) {
+		Album album = image.getAlbum();
+		if ((album != null) && image.equals(album.getAlbumImage())) {
+			return true;
+		}
+		Sone sone = image.getSone();
+		return (sone != null) && (sone.getProfile() != null) && image.getId().equals(sone.getProfile().getAvatar());
+	}
+
+	/**
+	 * Container for the state of a queued or running image insert.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public static class ImageInsert {
+
+		/** The image being inserted. */
+		private final Image image;
+
+		/** The temporary image data. */
+		private final TemporaryImage temporaryImage;
+
+		/** The number of times the insert has been started. */
+		private int attempts;
+
+		/** Whether the insert is currently running. */
+		private boolean running;
+
+		/** Whether the insert is waiting for a retry. */
+		private boolean waiting;
+
+		/** The number of inserted blocks. */
+		private int succeededBlocks;
+
+		/** The total number of blocks. */
+		private int totalBlocks;
+
+		/** The insert token of the running insert. */
+		private InsertToken insertToken;
+
+		/**
+		 * Creates a new image insert.
+		 *
+		 * @param image
+		 *            The image being inserted
+		 * @param temporaryImage
+		 *            The temporary image data
+		 */
+		private ImageInsert(Image image, TemporaryImage temporaryImage) {
+			this.image = image;
+			this.temporaryImage = temporaryImage;
+		}
+
+		/**
+		 * Creates a copy of the given image insert.
+		 *
+		 * @param imageInsert
+		 *            The image insert to copy
+		 */
+		private ImageInsert(ImageInsert imageInsert) {
+			this.image = imageInsert.image;
+			this.temporaryImage = imageInsert.temporaryImage;
+			this.attempts = imageInsert.attempts;
+			this.running = imageInsert.running;
+			this.waiting = imageInsert.waiting;
+			this.succeededBlocks = imageInsert.succeededBlocks;
+			this.totalBlocks = imageInsert.totalBlocks;
+		}
+
+		/**
+		 * Returns the image being inserted.
+		 *
+		 * @return The image being inserted
+		 */
+		public Image getImage() {
+			return image;
+		}
+
+		/**
+		 * Returns the number of times the insert has been started.
+		 *
+		 * @return The number of attempts
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+
+		/**
+		 * Returns whether the insert is currently running.
+		 *
+		 * @return {@code true} if the insert is running, {@code false} if it
+		 *         is queued
+		 */
+		public boolean isRunning() {
+			return running;
+		}
+
+		/**
+		 * Returns whether the insert is waiting for a retry after a failed
+		 * attempt.
+		 *
+		 * @return {@code true} if the insert is waiting for a retry,
+		 *         {@code false} otherwise
+		 */
+		public boolean isWaiting() {
+			return waiting;
+		}
+
+		/**
+		 * Returns the number of blocks that have been inserted.
+		 *
+		 * @return The number of inserted blocks
+		 */
+		public int getSucceededBlocks() {
+			return succeededBlocks;
+		}
+
+		/**
+		 * Returns the total number of blocks to insert.
+		 *
+		 * @return The total number of blocks, or {@code 0} if it is not known
+		 *         yet
+		 */
+		public int getTotalBlocks() {
+			return totalBlocks;
+		}
+
 	}
 
 }
@@ -0,0 +1,253 @@
+/*
+ * Sone - MentionIndex.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.text.SoneTextParser;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Index of the Sones that are mentioned in posts and replies. The text of a
+ * post or reply is scanned for links to Sones once, when it is indexed; the
+ * index can then be queried for the Sones a post or reply mentions, and for
+ * the posts that mention a Sone, either themselves or in one of their
+ * replies.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class MentionIndex {
+
+	/** The scheme of links to Sones. */
+	private static final String SONE_SCHEME = "sone://";
+
+	/** The length of a Sone ID. */
+	private static final int SONE_ID_LENGTH = 43;
+
+	/** The IDs of the mentioned Sones, by the ID of the mentioning post. */
+	private final Map<String, Set<String>> postMentions = new HashMap<String, Set<String>>();
+
+	/** The IDs of the mentioned Sones, by the ID of the mentioning reply. */
+	private final Map<String, Set<String>> replyMentions = new HashMap<String, Set<String>>();
+
+	/** The IDs of the posts of mentioning replies, by reply ID. */
+	private final Map<String, String> replyPostIds = new HashMap<String, String>();
+
+	/** The IDs of the mentioning posts, by the ID of the mentioned Sone. */
+	private final SetMultimap<String, String> mentioningPosts = HashMultimap.create();
+
+	/** The IDs of the mentioning replies, by the ID of the mentioned Sone. */
+	private final SetMultimap<String, String> mentioningReplies = HashMultimap.create();
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the IDs of the Sones that are mentioned in the post with the
+	 * given ID.
+	 *
+	 * @param postId
+	 *            The ID of the post
+	 * @return The IDs of the mentioned Sones
+	 */
+	public synchronized Set<String> getMentionedSoneIdsOfPost(String postId) {
+		Set<String> soneIds = postMentions.get(postId);
+		return (soneIds != null) ? soneIds : Collections.<String> emptySet();
+	}
+
+	/**
+	 * Returns the IDs of the Sones that are mentioned in the reply with the
+	 * given ID.
+	 *
+	 * @param replyId
+	 *            The ID of the reply
+	 * @return The IDs of the mentioned Sones
+	 */
+	public synchronized Set<String> getMentionedSoneIdsOfReply(String replyId) {
+		Set<String> soneIds = replyMentions.get(replyId);
+		return (soneIds != null) ? soneIds : Collections.<String> emptySet();
+	}
+
+	/**
+	 * Returns the IDs of all posts that mention the Sone with the given ID,
+	 * either in their own text or in the text of one of their replies.
+	 *
+	 * @param soneId
+	 *            The ID of the Sone
+	 * @return The IDs of the mentioning posts
+	 */
+	public synchronized Set<String> getMentioningPostIds(String soneId) {
+		Set<String> postIds = new HashSet<String>(mentioningPosts.get(soneId));
+		for (String replyId : mentioningReplies.get(soneId)) {
+			postIds.add(replyPostIds.get(replyId));
+		}
+		return postIds;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Indexes the Sones mentioned in the given post.
+	 *
+	 * @param post
+	 *            The post to index
+	 */
+	public void indexPost(Post post) {
+		Set<String> soneIds = getMentionedSoneIds(post.getText());
+		if (soneIds.isEmpty()) {
+			return;
+		}
+		synchronized (this) {
+			removePost(post.getId());
+			postMentions.put(post.getId(), soneIds);
+			for (String soneId : soneIds) {
+				mentioningPosts.put(soneId, post.getId());
+			}
+		}
+	}
+
+	/**
+	 * Indexes the Sones mentioned in the given reply.
+	 *
+	 * @param reply
+	 *            The reply to index
+	 */
+	public void indexReply(PostReply reply) {
+		Set<String> soneIds = getMentionedSoneIds(reply.getText());
+		if (soneIds.isEmpty()) {
+			return;
+		}
+		synchronized (this) {
+			removeReply(reply.getId());
+			replyMentions.put(reply.getId(), soneIds);
+			replyPostIds.put(reply.getId(), reply.getPostId());
+			for (String soneId : soneIds) {
+				mentioningReplies.put(soneId, reply.getId());
+			}
+		}
+	}
+
+	/**
+	 * Removes the post with the given ID from the index.
+	 *
+	 * @param postId
+	 *            The ID of the post to remove
+	 */
+	public synchronized void removePost(String postId) {
+		Set<String> soneIds = postMentions.remove(postId);
+		if (soneIds == null) {
+			return;
+		}
+		for (String soneId : soneIds) {
+			mentioningPosts.remove(soneId, postId);
+		}
+	}
+
+	/**
+	 * Removes the reply with the given ID from the index.
+	 *
+	 * @param replyId
+	 *            The ID of the reply to remove
+	 */
+	public synchronized void removeReply(String replyId) {
+		Set<String> soneIds = replyMentions.remove(replyId);
+		if (soneIds == null) {
+			return;
+		}
+		replyPostIds.remove(replyId);
+		for (String soneId : soneIds) {
+			mentioningReplies.remove(soneId, replyId);
+		}
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Returns the IDs of all Sones that are linked from the given text. Like
+	 * {@link SoneTextParser}, every “sone://” that is followed by at least 43
+	 * characters in the same line is considered to be a link to the Sone
+	 * whose ID are those 43 characters. Most texts do not contain “sone://”
+	 * at all, so they are not looked at any further after a single search.
+	 *
+	 * @param text
+	 *            The text to scan
+	 * @return The IDs of the linked Sones, as an unmodifiable set
+	 */
+	static Set<String> getMentionedSoneIds(String text) {
+		if (text == null) {
+			return Collections.emptySet();
+		}
+		int nextSone = text.indexOf(SONE_SCHEME);
+		if (nextSone == -1) {
+			return Collections.emptySet();
+		}
+		ImmutableSet.Builder<String> soneIds = ImmutableSet.builder();
+		while (nextSone != -1) {
+			int soneIdStart = nextSone + SONE_SCHEME.length();
+			int soneIdEnd = soneIdStart + SONE_ID_LENGTH;
+			if ((soneIdEnd <= text.length()) && !containsLineBreak(text, soneIdStart, soneIdEnd)) {
+				soneIds.add(text.substring(soneIdStart, soneIdEnd));
+				nextSone = text.indexOf(SONE_SCHEME, soneIdEnd);
+			} else {
+				nextSone = text.indexOf(SONE_SCHEME, soneIdStart);
+			}
+		}
+		return soneIds.build();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns whether the given range of the given text contains a line break.
+	 *
+	 * @param text
+	 *            The text to check
+	 * @param start
+	 *            The index of the first character to check
+	 * @param end
+	 *            The index after the last character to check
+	 * @return {@code true} if the range contains a line break, {@code false}
+	 *         otherwise
+	 */
+	private static boolean containsLineBreak(String text, int start, int end) {
+		for (int index = start; index < end; ++index) {
+			char character = text.charAt(index);
+			if ((character == '\n') || (character == '\r')) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
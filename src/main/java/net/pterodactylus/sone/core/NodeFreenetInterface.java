@@ -0,0 +1,450 @@
+/*
+ * Sone - NodeFreenetInterface.java - Copyright © 2010–2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.TemporaryImage;
+import net.pterodactylus.util.io.Closer;
+import net.pterodactylus.util.logging.Logging;
+
+import com.db4o.ObjectContainer;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Inject;
+
+import freenet.client.ClientMetadata;
+import freenet.client.FetchException;
+import freenet.client.FetchResult;
+import freenet.client.HighLevelSimpleClient;
+import freenet.client.HighLevelSimpleClientImpl;
+import freenet.client.InsertBlock;
+import freenet.client.InsertContext;
+import freenet.client.InsertException;
+import freenet.client.async.BaseClientPutter;
+import freenet.client.async.ClientContext;
+import freenet.client.async.ClientPutCallback;
+import freenet.client.async.ClientPutter;
+import freenet.client.async.USKCallback;
+import freenet.client.events.ClientEvent;
+import freenet.client.events.ClientEventListener;
+import freenet.client.events.SimpleEventProducer;
+import freenet.client.events.SplitfileProgressEvent;
+import freenet.keys.FreenetURI;
+import freenet.keys.InsertableClientSSK;
+import freenet.keys.USK;
+import freenet.node.Node;
+import freenet.node.RequestStarter;
+import freenet.support.api.Bucket;
+
+/**
+ * {@link FreenetInterface} implementation that interacts with a Freenet
+ * {@link Node}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class NodeFreenetInterface implements FreenetInterface {
+
+	/** The logger. */
+	private static final Logger logger = Logging.getLogger(NodeFreenetInterface.class);
+
+	/** The node to interact with. */
+	private final Node node;
+
+	/** The high-level client to use for requests. */
+	private final HighLevelSimpleClient client;
+
+	/** The USK callbacks. */
+	private final Map<String, USKCallback> soneUskCallbacks = new HashMap<String, USKCallback>();
+
+	/** The not-Sone-related USK callbacks. */
+	private final Map<FreenetURI, USKCallback> uriUskCallbacks = Collections.synchronizedMap(new HashMap<FreenetURI, USKCallback>());
+
+	/**
+	 * Creates a new Freenet interface.
+	 *
+	 * @param node
+	 *            The node to interact with
+	 */
+	@Inject
+	public NodeFreenetInterface(Node node) {
+		this.node = node;
+		this.client = node.clientCore.makeClient(RequestStarter.INTERACTIVE_PRIORITY_CLASS, false, true);
+	}
+
+	//
+	// INTERFACE FreenetInterface
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Fetched fetchUri(FreenetURI uri) {
+		FetchResult fetchResult = null;
+		FreenetURI currentUri = new FreenetURI(uri);
+		while (true) {
+			try {
+				fetchResult = client.fetch(currentUri);
+				return new Fetched(currentUri, fetchResult);
+			} catch (FetchException fe1) {
+				if (fe1.getMode() == FetchException.PERMANENT_REDIRECT) {
+					currentUri = fe1.newURI;
+					continue;
+				}
+				logger.log(Level.WARNING, String.format("Could not fetch “%s”!", uri), fe1);
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[] generateKeyPair() {
+		FreenetURI[] keyPair = client.generateKeyPair("");
+		return new String[] { keyPair[1].toString(), keyPair[0].toString() };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InsertToken insertImage(TemporaryImage temporaryImage, Image image, ImageInsertListener imageInsertListener) throws SoneException {
+		String filenameHint = image.getId() + "." + temporaryImage.getMimeType().substring(temporaryImage.getMimeType().lastIndexOf("/") + 1);
+		InsertableClientSSK key = InsertableClientSSK.createRandom(node.random, "");
+		FreenetURI targetUri = key.getInsertURI().setDocName(filenameHint);
+		NodeInsertToken insertToken = new NodeInsertToken(image, imageInsertListener);
+		InsertContext insertContext = new InsertContext(client.getInsertContext(true), new SimpleEventProducer());
+		insertContext.eventProducer.addEventListener(insertToken);
+		Bucket bucket = createBucket(temporaryImage);
+		ClientMetadata metadata = new ClientMetadata(temporaryImage.getMimeType());
+		InsertBlock insertBlock = new InsertBlock(bucket, metadata, targetUri);
+		try {
+			ClientPutter clientPutter = client.insert(insertBlock, false, null, false, insertContext, insertToken, RequestStarter.INTERACTIVE_PRIORITY_CLASS);
+			insertToken.setClientPutter(clientPutter);
+		} catch (InsertException ie1) {
+			throw new SoneInsertException("Could not start image insert.", ie1);
+		}
+		return insertToken;
+	}
+
+	/**
+	 * Copies the image data of the given temporary image into a bucket created
+	 * by the node’s temp bucket factory so that large images do not have to
+	 * be kept in memory during the insert.
+	 *
+	 * @param temporaryImage
+	 *            The temporary image to copy
+	 * @return The bucket containing the image data
+	 * @throws SoneException
+	 *             if the image data can not be copied
+	 */
+	private Bucket createBucket(TemporaryImage temporaryImage) throws SoneException {
+		InputStream imageInputStream = null;
+		OutputStream bucketOutputStream = null;
+		try {
+			Bucket bucket = node.clientCore.tempBucketFactory.makeBucket(temporaryImage.getSize());
+			imageInputStream = temporaryImage.getInputStream();
+			bucketOutputStream = bucket.getOutputStream();
+			ByteStreams.copy(imageInputStream, bucketOutputStream);
+			return bucket;
+		} catch (IOException ioe1) {
+			throw new SoneInsertException("Could not copy image data.", ioe1);
+		} finally {
+			Closer.close(bucketOutputStream);
+			Closer.close(imageInputStream);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public FreenetURI insertDirectory(FreenetURI insertUri, HashMap<String, Object> manifestEntries, String defaultFile) throws SoneException {
+		try {
+			return client.insertManifest(insertUri, manifestEntries, defaultFile);
+		} catch (InsertException ie1) {
+			throw new SoneException(ie1);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerUsk(final Sone sone, final SoneDownloader soneDownloader) {
+		try {
+			logger.log(Level.FINE, String.format("Registering Sone “%s” for USK updates at %s…", sone, sone.getRequestUri().setMetaString(new String[] { "sone.xml" })));
+			USKCallback uskCallback = new USKCallback() {
+
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public void onFoundEdition(long edition, USK key, ObjectContainer objectContainer, ClientContext clientContext, boolean metadata, short codec, byte[] data, boolean newKnownGood, boolean newSlotToo) {
+					logger.log(Level.FINE, String.format("Found USK update for Sone “%s” at %s, new known good: %s, new slot too: %s.", sone, key, newKnownGood, newSlotToo));
+					if (edition > sone.getLatestEdition()) {
+						sone.setLatestEdition(edition);
+						new Thread(new Runnable() {
+
+							@Override
+							public void run() {
+								soneDownloader.fetchSone(sone);
+							}
+						}, "Sone Downloader").start();
+					}
+				}
+
+				@Override
+				public short getPollingPriorityProgress() {
+					return RequestStarter.INTERACTIVE_PRIORITY_CLASS;
+				}
+
+				@Override
+				public short getPollingPriorityNormal() {
+					return RequestStarter.INTERACTIVE_PRIORITY_CLASS;
+				}
+			};
+			soneUskCallbacks.put(sone.getId(), uskCallback);
+			boolean runBackgroundFetch = (System.currentTimeMillis() - sone.getTime()) < TimeUnit.DAYS.toMillis(7);
+			node.clientCore.uskManager.subscribe(USK.create(sone.getRequestUri()), uskCallback, runBackgroundFetch, (HighLevelSimpleClientImpl) client);
+		} catch (MalformedURLException mue1) {
+			logger.log(Level.WARNING, String.format("Could not subscribe USK “%s”!", sone.getRequestUri()), mue1);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unregisterUsk(Sone sone) {
+		USKCallback uskCallback = soneUskCallbacks.remove(sone.getId());
+		if (uskCallback == null) {
+			return;
+		}
+		try {
+			logger.log(Level.FINEST, String.format("Unsubscribing from USK for %s…", sone));
+			node.clientCore.uskManager.unsubscribe(USK.create(sone.getRequestUri()), uskCallback);
+		} catch (MalformedURLException mue1) {
+			logger.log(Level.FINE, String.format("Could not unsubscribe USK “%s”!", sone.getRequestUri()), mue1);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerUsk(FreenetURI uri, final Callback callback) {
+		USKCallback uskCallback = new USKCallback() {
+
+			@Override
+			public void onFoundEdition(long edition, USK key, ObjectContainer objectContainer, ClientContext clientContext, boolean metadata, short codec, byte[] data, boolean newKnownGood, boolean newSlotToo) {
+				callback.editionFound(key.getURI(), edition, newKnownGood, newSlotToo);
+			}
+
+			@Override
+			public short getPollingPriorityNormal() {
+				return RequestStarter.PREFETCH_PRIORITY_CLASS;
+			}
+
+			@Override
+			public short getPollingPriorityProgress() {
+				return RequestStarter.INTERACTIVE_PRIORITY_CLASS;
+			}
+
+		};
+		try {
+			node.clientCore.uskManager.subscribe(USK.create(uri), uskCallback, true, (HighLevelSimpleClientImpl) client);
+			uriUskCallbacks.put(uri, uskCallback);
+		} catch (MalformedURLException mue1) {
+			logger.log(Level.WARNING, String.format("Could not subscribe to USK: %s", uri), mue1);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unregisterUsk(FreenetURI uri) {
+		USKCallback uskCallback = uriUskCallbacks.remove(uri);
+		if (uskCallback == null) {
+			logger.log(Level.INFO, String.format("Could not unregister unknown USK: %s", uri));
+			return;
+		}
+		try {
+			node.clientCore.uskManager.unsubscribe(USK.create(uri), uskCallback);
+		} catch (MalformedURLException mue1) {
+			logger.log(Level.INFO, String.format("Could not unregister invalid USK: %s", uri), mue1);
+		}
+	}
+
+	/**
+	 * Insert token that can cancel a running insert and notifies an
+	 * {@link ImageInsertListener} about the progress of the insert.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private class NodeInsertToken implements InsertToken, ClientPutCallback, ClientEventListener {
+
+		/** The image being inserted. */
+		private final Image image;
+
+		/** The listener to notify. */
+		private final ImageInsertListener imageInsertListener;
+
+		/** The client putter. */
+		private ClientPutter clientPutter;
+
+		/** The final URI. */
+		private volatile FreenetURI resultingUri;
+
+		/**
+		 * Creates a new insert token for the given image.
+		 *
+		 * @param image
+		 *            The image being inserted
+		 * @param imageInsertListener
+		 *            The listener to notify
+		 */
+		public NodeInsertToken(Image image, ImageInsertListener imageInsertListener) {
+			this.image = image;
+			this.imageInsertListener = imageInsertListener;
+		}
+
+		//
+		// ACCESSORS
+		//
+
+		/**
+		 * Sets the client putter that is inserting the image. This will also
+		 * signal the listener that the image has started.
+		 *
+		 * @param clientPutter
+		 *            The client putter
+		 */
+		public void setClientPutter(ClientPutter clientPutter) {
+			this.clientPutter = clientPutter;
+			imageInsertListener.imageInsertStarted(image);
+		}
+
+		//
+		// ACTIONS
+		//
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public void cancel() {
+			clientPutter.cancel(null, node.clientCore.clientContext);
+			imageInsertListener.imageInsertAborted(image);
+		}
+
+		//
+		// INTERFACE ClientPutCallback
+		//
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void onMajorProgress(ObjectContainer objectContainer) {
+			/* ignore, we don’t care. */
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void onFailure(InsertException insertException, BaseClientPutter clientPutter, ObjectContainer objectContainer) {
+			if ((insertException != null) && ("Cancelled by user".equals(insertException.getMessage()))) {
+				imageInsertListener.imageInsertAborted(image);
+			} else {
+				imageInsertListener.imageInsertFailed(image, insertException);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void onFetchable(BaseClientPutter clientPutter, ObjectContainer objectContainer) {
+			/* ignore, we don’t care. */
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void onGeneratedMetadata(Bucket metadata, BaseClientPutter clientPutter, ObjectContainer objectContainer) {
+			/* ignore, we don’t care. */
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void onGeneratedURI(FreenetURI generatedUri, BaseClientPutter clientPutter, ObjectContainer objectContainer) {
+			resultingUri = generatedUri;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void onSuccess(BaseClientPutter clientPutter, ObjectContainer objectContainer) {
+			imageInsertListener.imageInsertFinished(image, resultingUri);
+		}
+
+		//
+		// INTERFACE ClientEventListener
+		//
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void receive(ClientEvent clientEvent, ObjectContainer objectContainer, ClientContext clientContext) {
+			if (clientEvent instanceof SplitfileProgressEvent) {
+				SplitfileProgressEvent splitfileProgressEvent = (SplitfileProgressEvent) clientEvent;
+				imageInsertListener.imageInsertProgressed(image, splitfileProgressEvent.succeedBlocks, splitfileProgressEvent.totalBlocks);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void onRemoveEventProducer(ObjectContainer objectContainer) {
+			/* ignore, we don’t care. */
+		}
+
+	}
+
+}
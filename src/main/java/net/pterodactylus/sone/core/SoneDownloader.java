@@ -38,6 +38,9 @@ import net.pterodactylus.sone.data.Sone.SoneStatus;
 import net.pterodactylus.sone.data.SoneImpl;
 import net.pterodactylus.sone.database.PostBuilder;
 import net.pterodactylus.sone.database.PostReplyBuilder;
+import net.pterodactylus.sone.metrics.Counter;
+import net.pterodactylus.sone.metrics.Histogram;
+import net.pterodactylus.sone.metrics.MetricRegistry;
 import net.pterodactylus.util.io.Closer;
 import net.pterodactylus.util.logging.Logging;
 import net.pterodactylus.util.number.Numbers;
@@ -73,6 +76,21 @@ public class SoneDownloader extends AbstractService {
 	/** The sones to update. */
 	private final Set<Sone> sones = new HashSet<Sone>();
 
+	/** The latencies of fetching sone.xml files. */
+	private final Histogram fetchLatency;
+
+	/** The latencies of parsing sone.xml files. */
+	private final Histogram parseLatency;
+
+	/** The latencies of updating the core with parsed Sones. */
+	private final Histogram updateLatency;
+
+	/** The number of failed fetches. */
+	private final Counter failedFetches;
+
+	/** The number of sone.xml files that could not be parsed. */
+	private final Counter failedParses;
+
 	/**
 	 * Creates a new Sone downloader.
 	 *
@@ -80,11 +98,18 @@ public class SoneDownloader extends AbstractService {
 	 *            The core
 	 * @param freenetInterface
 	 *            The Freenet interface
+	 * @param metricRegistry
+	 *            The metric registry
 	 */
-	public SoneDownloader(Core core, FreenetInterface freenetInterface) {
+	public SoneDownloader(Core core, FreenetInterface freenetInterface, MetricRegistry metricRegistry) {
 		super("Sone Downloader", false);
 		this.core = core;
 		this.freenetInterface = freenetInterface;
+		fetchLatency = metricRegistry.histogram("SoneDownloader.Fetch");
+		parseLatency = metricRegistry.histogram("SoneDownloader.Parse");
+		updateLatency = metricRegistry.histogram("SoneDownloader.Update");
+		failedFetches = metricRegistry.counter("SoneDownloader.FailedFetches");
+		failedParses = metricRegistry.counter("SoneDownloader.FailedParses");
 	}
 
 	//
@@ -156,11 +181,14 @@ public class SoneDownloader extends AbstractService {
 	public Sone fetchSone(Sone sone, FreenetURI soneUri, boolean fetchOnly) {
 		logger.log(Level.FINE, String.format("Starting fetch for Sone “%s” from %s…", sone, soneUri));
 		FreenetURI requestUri = soneUri.setMetaString(new String[] { "sone.xml" });
-		sone.setStatus(SoneStatus.downloading);
+		setStatus(sone, SoneStatus.downloading);
 		try {
+			long fetchStart = System.nanoTime();
 			Fetched fetchResults = freenetInterface.fetchUri(requestUri);
+			fetchLatency.update(System.nanoTime() - fetchStart);
 			if (fetchResults == null) {
 				/* TODO - mark Sone as bad. */
+				failedFetches.increment();
 				return null;
 			}
 			logger.log(Level.FINEST, String.format("Got %d bytes back.", fetchResults.getFetchResult().size()));
@@ -168,13 +196,15 @@ public class SoneDownloader extends AbstractService {
 			if (parsedSone != null) {
 				if (!fetchOnly) {
 					parsedSone.setStatus((parsedSone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
+					long updateStart = System.nanoTime();
 					core.updateSone(parsedSone);
+					updateLatency.update(System.nanoTime() - updateStart);
 					addSone(parsedSone);
 				}
 			}
 			return parsedSone;
 		} finally {
-			sone.setStatus((sone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
+			setStatus(sone, (sone.getTime() == 0) ? SoneStatus.unknown : SoneStatus.idle);
 		}
 	}
 
@@ -193,10 +223,14 @@ public class SoneDownloader extends AbstractService {
 		logger.log(Level.FINEST, String.format("Parsing FetchResult (%d bytes, %s) for %s…", fetchResult.size(), fetchResult.getMimeType(), originalSone));
 		Bucket soneBucket = fetchResult.asBucket();
 		InputStream soneInputStream = null;
+		long parseStart = System.nanoTime();
 		try {
 			soneInputStream = soneBucket.getInputStream();
 			Sone parsedSone = parseSone(originalSone, soneInputStream);
-			if (parsedSone != null) {
+			parseLatency.update(System.nanoTime() - parseStart);
+			if (parsedSone == null) {
+				failedParses.increment();
+			} else {
 				parsedSone.setLatestEdition(requestUri.getEdition());
 				if (requestUri.getKeyType().equals("USK")) {
 					parsedSone.setRequestUri(requestUri.setMetaString(new String[0]));
@@ -206,6 +240,7 @@ public class SoneDownloader extends AbstractService {
 			}
 			return parsedSone;
 		} catch (Exception e1) {
+			failedParses.increment();
 			logger.log(Level.WARNING, String.format("Could not parse Sone from %s!", requestUri), e1);
 		} finally {
 			Closer.close(soneInputStream);
@@ -533,4 +568,25 @@ public class SoneDownloader extends AbstractService {
 		}
 	}
 
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Sets the status of the given Sone. If the status changes, the core is
+	 * {@link Core#touchData() notified} because the status is shown on the
+	 * web interface.
+	 *
+	 * @param sone
+	 *            The Sone to set the status of
+	 * @param status
+	 *            The new status of the Sone
+	 */
+	private void setStatus(Sone sone, SoneStatus status) {
+		if (sone.getStatus() != status) {
+			sone.setStatus(status);
+			core.touchData();
+		}
+	}
+
 }
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.core.event.SoneInsertAbortedEvent;
 import net.pterodactylus.sone.core.event.SoneInsertedEvent;
 import net.pterodactylus.sone.core.event.SoneInsertingEvent;
@@ -39,11 +40,14 @@ import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.SoneStatus;
 import net.pterodactylus.sone.freenet.StringBucket;
 import net.pterodactylus.sone.main.SonePlugin;
+import net.pterodactylus.sone.metrics.Counter;
+import net.pterodactylus.sone.metrics.Histogram;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.sone.template.CachingReflectionAccessor;
 import net.pterodactylus.util.io.Closer;
 import net.pterodactylus.util.logging.Logging;
 import net.pterodactylus.util.service.AbstractService;
 import net.pterodactylus.util.template.HtmlFilter;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.Template;
 import net.pterodactylus.util.template.TemplateContext;
 import net.pterodactylus.util.template.TemplateContextFactory;
@@ -51,6 +55,7 @@ import net.pterodactylus.util.template.TemplateException;
 import net.pterodactylus.util.template.TemplateParser;
 import net.pterodactylus.util.template.XmlFilter;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Ordering;
 import com.google.common.eventbus.EventBus;
@@ -75,7 +80,7 @@ public class SoneInserter extends AbstractService {
 	private static final TemplateContextFactory templateContextFactory = new TemplateContextFactory();
 
 	static {
-		templateContextFactory.addAccessor(Object.class, new ReflectionAccessor());
+		templateContextFactory.addAccessor(Object.class, new CachingReflectionAccessor());
 		templateContextFactory.addFilter("xml", new XmlFilter());
 		templateContextFactory.addFilter("html", new HtmlFilter());
 	}
@@ -92,6 +97,18 @@ public class SoneInserter extends AbstractService {
 	/** The Freenet interface. */
 	private final FreenetInterface freenetInterface;
 
+	/** The latencies of calculating the fingerprint of the Sone. */
+	private final Histogram fingerprintLatency;
+
+	/** The latencies of rendering the files of an insert. */
+	private final Histogram renderLatency;
+
+	/** The latencies of inserting the Sone. */
+	private final Histogram insertLatency;
+
+	/** The number of failed inserts. */
+	private final Counter failedInserts;
+
 	/** The Sone to insert. */
 	private volatile Sone sone;
 
@@ -110,14 +127,20 @@ public class SoneInserter extends AbstractService {
 	 *            The event bus
 	 * @param freenetInterface
 	 *            The freenet interface
+	 * @param metricRegistry
+	 *            The metric registry
 	 * @param sone
 	 *            The Sone to insert
 	 */
-	public SoneInserter(Core core, EventBus eventBus, FreenetInterface freenetInterface, Sone sone) {
+	public SoneInserter(Core core, EventBus eventBus, FreenetInterface freenetInterface, MetricRegistry metricRegistry, Sone sone) {
 		super("Sone Inserter for “" + sone.getName() + "”", false);
 		this.core = core;
 		this.eventBus = eventBus;
 		this.freenetInterface = freenetInterface;
+		this.fingerprintLatency = metricRegistry.histogram("SoneInserter.Fingerprint");
+		this.renderLatency = metricRegistry.histogram("SoneInserter.Render");
+		this.insertLatency = metricRegistry.histogram("SoneInserter.Insert");
+		this.failedInserts = metricRegistry.counter("SoneInserter.FailedInserts");
 		this.sone = sone;
 	}
 
@@ -211,7 +234,9 @@ public class SoneInserter extends AbstractService {
 
 				InsertInformation insertInformation = null;
 				synchronized (sone) {
+					long fingerprintStart = System.nanoTime();
 					String fingerprint = sone.getFingerprint();
+					fingerprintLatency.update(System.nanoTime() - fingerprintStart);
 					if (!fingerprint.equals(lastFingerprint)) {
 						if (fingerprint.equals(lastInsertedFingerprint)) {
 							modified = false;
@@ -239,7 +264,12 @@ public class SoneInserter extends AbstractService {
 						long insertTime = System.currentTimeMillis();
 						insertInformation.setTime(insertTime);
 						eventBus.post(new SoneInsertingEvent(sone));
-						FreenetURI finalUri = freenetInterface.insertDirectory(insertInformation.getInsertUri(), insertInformation.generateManifestEntries(), "index.html");
+						long renderStart = System.nanoTime();
+						HashMap<String, Object> manifestEntries = insertInformation.generateManifestEntries();
+						renderLatency.update(System.nanoTime() - renderStart);
+						long insertStart = System.nanoTime();
+						FreenetURI finalUri = freenetInterface.insertDirectory(insertInformation.getInsertUri(), manifestEntries, "index.html");
+						insertLatency.update(System.nanoTime() - insertStart);
 						eventBus.post(new SoneInsertedEvent(sone, System.currentTimeMillis() - insertTime));
 						/* at this point we might already be stopped. */
 						if (shouldStop()) {
@@ -248,10 +278,11 @@ public class SoneInserter extends AbstractService {
 						}
 						sone.setTime(insertTime);
 						sone.setLatestEdition(finalUri.getEdition());
-						core.touchConfiguration();
+						core.touchConfiguration(sone, SoneSection.STATE);
 						success = true;
 						logger.log(Level.INFO, String.format("Inserted Sone “%s” at %s.", sone.getName(), finalUri));
 					} catch (SoneException se1) {
+						failedInserts.increment();
 						eventBus.post(new SoneInsertAbortedEvent(sone, se1));
 						logger.log(Level.WARNING, String.format("Could not insert Sone “%s”!", sone.getName()), se1);
 					} finally {
@@ -268,7 +299,7 @@ public class SoneInserter extends AbstractService {
 								logger.log(Level.FINE, String.format("Sone “%s” was not modified further, resetting counter…", sone));
 								lastModificationTime = 0;
 								lastInsertFingerprint = lastInsertedFingerprint;
-								core.touchConfiguration();
+								core.touchConfiguration(sone, SoneSection.STATE);
 								modified = false;
 							}
 						}
@@ -287,7 +318,8 @@ public class SoneInserter extends AbstractService {
 	 *
 	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
 	 */
-	private class InsertInformation {
+	@VisibleForTesting
+	class InsertInformation {
 
 		/** All properties of the Sone, copied for thread safety. */
 		private final Map<String, Object> soneProperties = new HashMap<String, Object>();
@@ -0,0 +1,270 @@
+/*
+ * Sone - SoneSummaryIndex.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static com.google.common.collect.FluentIterable.from;
+import static java.util.Arrays.asList;
+import static net.pterodactylus.sone.data.Album.FLATTENER;
+import static net.pterodactylus.sone.data.Album.IMAGES;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.template.SoneAccessor;
+
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+
+/**
+ * Index of summaries of Sones—the number of their posts, replies, and
+ * images, the time of their last activity, and their nice name—that keeps
+ * the Sones sorted by each of these values. Calculating these values for a
+ * Sone requires copying its posts and walking its albums, so it is only
+ * done when a Sone is {@link #update(Sone) updated}, and not every time two
+ * Sones are compared.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneSummaryIndex {
+
+	/**
+	 * The values Sones can be sorted by.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public enum SortField {
+
+		/** Sort by nice name, ascending. */
+		NAME(new Comparator<SoneSummary>() {
+
+			@Override
+			public int compare(SoneSummary leftSummary, SoneSummary rightSummary) {
+				int diff = leftSummary.niceNameKey.compareTo(rightSummary.niceNameKey);
+				return (diff != 0) ? diff : compareIds(leftSummary, rightSummary);
+			}
+		}),
+
+		/** Sort by last activity, most recent first. */
+		ACTIVITY(new Comparator<SoneSummary>() {
+
+			@Override
+			public int compare(SoneSummary leftSummary, SoneSummary rightSummary) {
+				int diff = Longs.compare(rightSummary.lastActivity, leftSummary.lastActivity);
+				return (diff != 0) ? diff : compareIds(leftSummary, rightSummary);
+			}
+		}),
+
+		/** Sort by number of posts and then replies, descending. */
+		POSTS(new Comparator<SoneSummary>() {
+
+			@Override
+			public int compare(SoneSummary leftSummary, SoneSummary rightSummary) {
+				int diff = Ints.compare(rightSummary.postCount, leftSummary.postCount);
+				if (diff == 0) {
+					diff = Ints.compare(rightSummary.replyCount, leftSummary.replyCount);
+				}
+				return (diff != 0) ? diff : compareIds(leftSummary, rightSummary);
+			}
+		}),
+
+		/** Sort by number of images, descending. */
+		IMAGES(new Comparator<SoneSummary>() {
+
+			@Override
+			public int compare(SoneSummary leftSummary, SoneSummary rightSummary) {
+				int diff = Ints.compare(rightSummary.imageCount, leftSummary.imageCount);
+				return (diff != 0) ? diff : compareIds(leftSummary, rightSummary);
+			}
+		});
+
+		/** The comparator for summaries. */
+		private final Comparator<SoneSummary> comparator;
+
+		/**
+		 * Creates a new sort field.
+		 *
+		 * @param comparator
+		 *            The comparator for summaries
+		 */
+		private SortField(Comparator<SoneSummary> comparator) {
+			this.comparator = comparator;
+		}
+
+		/**
+		 * Compares the IDs of the Sones of the given summaries, so that no two
+		 * summaries of different Sones are considered equal.
+		 *
+		 * @param leftSummary
+		 *            The first summary
+		 * @param rightSummary
+		 *            The second summary
+		 * @return The result of the comparison
+		 */
+		private static int compareIds(SoneSummary leftSummary, SoneSummary rightSummary) {
+			int diff = leftSummary.sone.getId().compareToIgnoreCase(rightSummary.sone.getId());
+			return (diff != 0) ? diff : leftSummary.sone.getId().compareTo(rightSummary.sone.getId());
+		}
+
+	}
+
+	/** The summaries, by Sone ID. */
+	private final Map<String, SoneSummary> summaries = new HashMap<String, SoneSummary>();
+
+	/** The sorted summaries, by sort field. */
+	private final Map<SortField, NavigableSet<SoneSummary>> sortedSummaries = new EnumMap<SortField, NavigableSet<SoneSummary>>(SortField.class);
+
+	/**
+	 * Creates a new, empty Sone summary index.
+	 */
+	public SoneSummaryIndex() {
+		for (SortField sortField : SortField.values()) {
+			sortedSummaries.put(sortField, new TreeSet<SoneSummary>(sortField.comparator));
+		}
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns all indexed Sones, sorted by the given field.
+	 *
+	 * @param sortField
+	 *            The field to sort the Sones by
+	 * @param reverse
+	 *            {@code true} to reverse the order of the given field,
+	 *            {@code false} otherwise
+	 * @return The sorted Sones
+	 */
+	public synchronized List<Sone> getSones(SortField sortField, boolean reverse) {
+		NavigableSet<SoneSummary> sortedSummaries = this.sortedSummaries.get(sortField);
+		List<Sone> sones = new ArrayList<Sone>(sortedSummaries.size());
+		for (SoneSummary soneSummary : reverse ? sortedSummaries.descendingSet() : sortedSummaries) {
+			sones.add(soneSummary.sone);
+		}
+		return sones;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Calculates the summary of the given Sone, replacing a summary of a
+	 * previous version of the Sone.
+	 *
+	 * @param sone
+	 *            The Sone to update
+	 */
+	public void update(Sone sone) {
+		SoneSummary soneSummary = new SoneSummary(sone);
+		synchronized (this) {
+			remove(sone.getId());
+			summaries.put(sone.getId(), soneSummary);
+			for (NavigableSet<SoneSummary> sortedSummaries : this.sortedSummaries.values()) {
+				sortedSummaries.add(soneSummary);
+			}
+		}
+	}
+
+	/**
+	 * Removes the summary of the Sone with the given ID.
+	 *
+	 * @param soneId
+	 *            The ID of the Sone to remove
+	 */
+	public synchronized void remove(String soneId) {
+		SoneSummary soneSummary = summaries.remove(soneId);
+		if (soneSummary == null) {
+			return;
+		}
+		for (NavigableSet<SoneSummary> sortedSummaries : this.sortedSummaries.values()) {
+			sortedSummaries.remove(soneSummary);
+		}
+	}
+
+	/**
+	 * The summary of a single Sone.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class SoneSummary {
+
+		/** The Sone. */
+		private final Sone sone;
+
+		/**
+		 * The nice name of the Sone, with every character converted so that
+		 * comparing it is equivalent to {@link String#compareToIgnoreCase}.
+		 */
+		private final String niceNameKey;
+
+		/** The time of the last activity of the Sone. */
+		private final long lastActivity;
+
+		/** The number of posts of the Sone. */
+		private final int postCount;
+
+		/** The number of replies of the Sone. */
+		private final int replyCount;
+
+		/** The number of images of the Sone. */
+		private final int imageCount;
+
+		/**
+		 * Creates the summary of the given Sone.
+		 *
+		 * @param sone
+		 *            The Sone to summarize
+		 */
+		public SoneSummary(Sone sone) {
+			this.sone = sone;
+			niceNameKey = createCollationKey(SoneAccessor.getNiceName(sone));
+			lastActivity = sone.getTime();
+			postCount = sone.getPosts().size();
+			replyCount = sone.getReplies().size();
+			imageCount = from(asList(sone.getRootAlbum())).transformAndConcat(FLATTENER).transformAndConcat(IMAGES).size();
+		}
+
+		/**
+		 * Converts every character of the given text the same way
+		 * {@link String#compareToIgnoreCase(String)} converts the characters
+		 * it compares.
+		 *
+		 * @param text
+		 *            The text to convert
+		 * @return The converted text
+		 */
+		private static String createCollationKey(String text) {
+			char[] characters = text.toCharArray();
+			for (int characterIndex = 0; characterIndex < characters.length; ++characterIndex) {
+				characters[characterIndex] = Character.toLowerCase(Character.toUpperCase(characters[characterIndex]));
+			}
+			return new String(characters);
+		}
+
+	}
+
+}
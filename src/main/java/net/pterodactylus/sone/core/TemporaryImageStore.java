@@ -0,0 +1,284 @@
+/*
+ * Sone - TemporaryImageStore.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.pterodactylus.sone.data.TemporaryImage;
+import net.pterodactylus.util.logging.Logging;
+
+/**
+ * Stores {@link TemporaryImage}s until they have been inserted. Image data is
+ * kept in memory as long as the total size of all images kept in memory does
+ * not exceed the memory budget; once it does, the least recently used images
+ * are moved to files in the store’s directory.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class TemporaryImageStore {
+
+	/** The logger. */
+	private static final Logger logger = Logging.getLogger(TemporaryImageStore.class);
+
+	/** The default memory budget (16 MiB). */
+	public static final long DEFAULT_MEMORY_BUDGET = 16 * 1024 * 1024;
+
+	/** The directory to move image data to. */
+	private final File directory;
+
+	/** The maximum number of bytes to keep in memory. */
+	private final long memoryBudget;
+
+	/** All temporary images, in order of last access. */
+	/* synchronize access on itself. */
+	private final Map<String, TemporaryImage> temporaryImages = new LinkedHashMap<String, TemporaryImage>(16, 0.75f, true);
+
+	/** The number of bytes currently kept in memory. */
+	/* synchronize access on temporaryImages. */
+	private long memoryUsage;
+
+	/** The number of bytes currently stored in files. */
+	/* synchronize access on temporaryImages. */
+	private long diskUsage;
+
+	/**
+	 * Creates a new temporary image store.
+	 *
+	 * @param directory
+	 *            The directory to move image data to
+	 * @param memoryBudget
+	 *            The maximum number of bytes to keep in memory
+	 */
+	public TemporaryImageStore(File directory, long memoryBudget) {
+		checkNotNull(directory, "directory must not be null");
+		checkArgument(memoryBudget >= 0, "memoryBudget must not be negative");
+		this.directory = directory;
+		this.memoryBudget = memoryBudget;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the temporary image with the given ID.
+	 *
+	 * @param imageId
+	 *            The ID of the temporary image
+	 * @return The temporary image, or {@code null} if there is no temporary
+	 *         image with the given ID
+	 */
+	public TemporaryImage getTemporaryImage(String imageId) {
+		synchronized (temporaryImages) {
+			return temporaryImages.get(imageId);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of image data currently kept in memory.
+	 *
+	 * @return The number of bytes kept in memory
+	 */
+	public long getMemoryUsage() {
+		synchronized (temporaryImages) {
+			return memoryUsage;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of image data currently stored in files.
+	 *
+	 * @return The number of bytes stored in files
+	 */
+	public long getDiskUsage() {
+		synchronized (temporaryImages) {
+			return diskUsage;
+		}
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Creates a new temporary image and adds it to this store.
+	 *
+	 * @param mimeType
+	 *            The MIME type of the temporary image
+	 * @param imageData
+	 *            The encoded data of the image
+	 * @return The temporary image
+	 */
+	public TemporaryImage createTemporaryImage(String mimeType, byte[] imageData) {
+		TemporaryImage temporaryImage = new TemporaryImage();
+		temporaryImage.setMimeType(mimeType).setImageData(imageData);
+		synchronized (temporaryImages) {
+			temporaryImages.put(temporaryImage.getId(), temporaryImage);
+			memoryUsage += temporaryImage.getSize();
+			evictImages();
+		}
+		return temporaryImage;
+	}
+
+	/**
+	 * Restores a temporary image whose image data has been
+	 * {@link #persistTemporaryImage(String) persisted} before.
+	 *
+	 * @param imageId
+	 *            The ID of the temporary image
+	 * @param mimeType
+	 *            The MIME type of the temporary image
+	 * @return The restored temporary image, or {@code null} if there is no
+	 *         image data for the given ID
+	 */
+	public TemporaryImage restoreTemporaryImage(String imageId, String mimeType) {
+		synchronized (temporaryImages) {
+			TemporaryImage temporaryImage = temporaryImages.get(imageId);
+			if (temporaryImage != null) {
+				return temporaryImage;
+			}
+			File imageFile = new File(directory, imageId);
+			if (!directory.equals(imageFile.getParentFile()) || !imageFile.isFile()) {
+				return null;
+			}
+			temporaryImage = new TemporaryImage(imageId);
+			temporaryImage.setMimeType(mimeType).setImageFile(imageFile);
+			temporaryImages.put(imageId, temporaryImage);
+			diskUsage += temporaryImage.getSize();
+			return temporaryImage;
+		}
+	}
+
+	/**
+	 * Moves the image data of the temporary image with the given ID to a file
+	 * so that it can be {@link #restoreTemporaryImage(String, String)
+	 * restored} after a restart.
+	 *
+	 * @param imageId
+	 *            The ID of the temporary image
+	 * @return {@code true} if the image data is stored in a file,
+	 *         {@code false} otherwise
+	 */
+	public boolean persistTemporaryImage(String imageId) {
+		synchronized (temporaryImages) {
+			TemporaryImage temporaryImage = temporaryImages.get(imageId);
+			if (temporaryImage == null) {
+				return false;
+			}
+			if (!temporaryImage.isInMemory()) {
+				return true;
+			}
+			return moveToFile(temporaryImage);
+		}
+	}
+
+	/**
+	 * Removes the temporary image with the given ID from this store, deleting
+	 * its image data.
+	 *
+	 * @param imageId
+	 *            The ID of the temporary image to remove
+	 */
+	public void removeTemporaryImage(String imageId) {
+		synchronized (temporaryImages) {
+			TemporaryImage temporaryImage = temporaryImages.remove(imageId);
+			if (temporaryImage == null) {
+				return;
+			}
+			if (temporaryImage.isInMemory()) {
+				memoryUsage -= temporaryImage.getSize();
+			} else {
+				diskUsage -= temporaryImage.getSize();
+			}
+			temporaryImage.delete();
+		}
+	}
+
+	/**
+	 * Removes all temporary images from this store.
+	 */
+	public void clear() {
+		synchronized (temporaryImages) {
+			for (String imageId : new ArrayList<String>(temporaryImages.keySet())) {
+				removeTemporaryImage(imageId);
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Moves the image data of the least recently used temporary images to
+	 * files until the memory usage is within the memory budget again.
+	 */
+	private void evictImages() {
+		if (memoryUsage <= memoryBudget) {
+			return;
+		}
+		List<TemporaryImage> inMemoryImages = new ArrayList<TemporaryImage>();
+		for (TemporaryImage temporaryImage : temporaryImages.values()) {
+			if (temporaryImage.isInMemory()) {
+				inMemoryImages.add(temporaryImage);
+			}
+		}
+		for (TemporaryImage temporaryImage : inMemoryImages) {
+			if (memoryUsage <= memoryBudget) {
+				break;
+			}
+			moveToFile(temporaryImage);
+		}
+	}
+
+	/**
+	 * Moves the image data of the given temporary image to a file in the
+	 * store’s directory.
+	 *
+	 * @param temporaryImage
+	 *            The temporary image to move to a file
+	 * @return {@code true} if the image data was moved, {@code false} if an
+	 *         error occured
+	 */
+	private boolean moveToFile(TemporaryImage temporaryImage) {
+		if (!directory.exists() && !directory.mkdirs()) {
+			logger.log(Level.WARNING, String.format("Could not create directory for temporary images: %s", directory));
+			return false;
+		}
+		try {
+			temporaryImage.moveToFile(new File(directory, temporaryImage.getId()));
+			memoryUsage -= temporaryImage.getSize();
+			diskUsage += temporaryImage.getSize();
+			return true;
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, String.format("Could not move temporary image %s to disk!", temporaryImage.getId()), ioe1);
+			return false;
+		}
+	}
+
+}
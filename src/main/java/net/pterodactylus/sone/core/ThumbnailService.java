@@ -0,0 +1,494 @@
+/*
+ * Sone - ThumbnailService.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import net.pterodactylus.sone.core.FreenetInterface.Fetched;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.TemporaryImage;
+import net.pterodactylus.util.io.Closer;
+import net.pterodactylus.util.logging.Logging;
+import net.pterodactylus.util.thread.NamedThreadFactory;
+
+import freenet.keys.FreenetURI;
+import freenet.support.api.Bucket;
+
+import com.google.common.io.Files;
+
+/**
+ * Generates scaled-down variants of {@link Image}s and caches them on disk.
+ * Thumbnails are generated for a small number of fixed sizes (see
+ * {@link #SIZES}) on a background thread pool, both for images that are still
+ * only available as {@link TemporaryImage}s and for images that have already
+ * been inserted and have to be fetched first. The cache is limited in size;
+ * once the limit is exceeded, the least recently used thumbnails are deleted.
+ * Thumbnails of images without transparency are stored as JPEG, all others
+ * as PNG. If a thumbnail can not be generated, e.g. because the image could
+ * not be fetched, no new attempt is made for {@link #FAILURE_TIMEOUT}
+ * milliseconds.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ThumbnailService {
+
+	/** The logger. */
+	private static final Logger logger = Logging.getLogger(ThumbnailService.class);
+
+	/** The maximum widths and heights of the generated thumbnails. */
+	public static final int[] SIZES = { 64, 128, 256, 640 };
+
+	/** Pattern for image IDs that are safe to use as part of a file name. */
+	private static final Pattern VALID_IMAGE_ID = Pattern.compile("[A-Za-z0-9-]+");
+
+	/** The default size of the thumbnail cache (32 MiB). */
+	public static final long DEFAULT_CACHE_SIZE = 32 * 1024 * 1024;
+
+	/** The time after which a failed thumbnail is generated again (in ms). */
+	public static final long FAILURE_TIMEOUT = 60 * 1000;
+
+	/** The Freenet interface. */
+	private final FreenetInterface freenetInterface;
+
+	/** The temporary image store. */
+	private final TemporaryImageStore temporaryImageStore;
+
+	/** The directory thumbnails are stored in. */
+	private final File directory;
+
+	/** The maximum number of bytes of all cached thumbnails. */
+	private final long cacheSize;
+
+	/** The thumbnail generators. */
+	private final ExecutorService thumbnailGenerators = Executors.newFixedThreadPool(2, new NamedThreadFactory("Sone Thumbnail Generator %2$d"));
+
+	/** The cached thumbnails, in order of last access. */
+	/* synchronize access on itself. */
+	private final Map<String, File> thumbnails = new LinkedHashMap<String, File>(16, 0.75f, true);
+
+	/** The generators of the thumbnails that are currently being generated. */
+	/* synchronize access on thumbnails. */
+	private final Map<String, Future<?>> pendingThumbnails = new HashMap<String, Future<?>>();
+
+	/** The times the generation of thumbnails last failed. */
+	/* synchronize access on thumbnails. */
+	private final Map<String, Long> failedThumbnails = new HashMap<String, Long>();
+
+	/** The number of bytes of all cached thumbnails. */
+	/* synchronize access on thumbnails. */
+	private long usedCacheSize;
+
+	/**
+	 * Creates a new thumbnail service.
+	 *
+	 * @param freenetInterface
+	 *            The Freenet interface
+	 * @param temporaryImageStore
+	 *            The temporary image store
+	 * @param directory
+	 *            The directory to store thumbnails in
+	 * @param cacheSize
+	 *            The maximum number of bytes of all cached thumbnails
+	 */
+	public ThumbnailService(FreenetInterface freenetInterface, TemporaryImageStore temporaryImageStore, File directory, long cacheSize) {
+		this.freenetInterface = freenetInterface;
+		this.temporaryImageStore = temporaryImageStore;
+		this.directory = checkNotNull(directory, "directory must not be null");
+		this.cacheSize = cacheSize;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the smallest thumbnail size that is at least as large as the
+	 * given size.
+	 *
+	 * @param size
+	 *            The size of the image as it will be displayed
+	 * @return The matching thumbnail size, or {@code -1} if all thumbnails
+	 *         would be smaller than the given size
+	 */
+	public static int getThumbnailSize(int size) {
+		for (int thumbnailSize : SIZES) {
+			if (thumbnailSize >= size) {
+				return thumbnailSize;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the cached thumbnail of the given image. If the thumbnail has
+	 * not been generated yet, its generation is started in the background and
+	 * {@code null} is returned.
+	 *
+	 * @param image
+	 *            The image to get a thumbnail for
+	 * @param size
+	 *            The size of the thumbnail (one of {@link #SIZES})
+	 * @return The file containing the thumbnail, or {@code null} if the
+	 *         thumbnail is not available yet
+	 */
+	public File getThumbnail(Image image, int size) {
+		return getThumbnail(image, size, 0);
+	}
+
+	/**
+	 * Returns the cached thumbnail of the given image. If the thumbnail has
+	 * not been generated yet, its generation is started in the background and
+	 * this method waits at most the given number of milliseconds for it to
+	 * finish.
+	 *
+	 * @param image
+	 *            The image to get a thumbnail for
+	 * @param size
+	 *            The size of the thumbnail (one of {@link #SIZES})
+	 * @param timeout
+	 *            The maximum number of milliseconds to wait for the thumbnail
+	 * @return The file containing the thumbnail, or {@code null} if the
+	 *         thumbnail is not available yet or could not be generated
+	 */
+	public File getThumbnail(final Image image, final int size, long timeout) {
+		checkNotNull(image, "image must not be null");
+		if ((Arrays.binarySearch(SIZES, size) < 0) || !VALID_IMAGE_ID.matcher(image.getId()).matches()) {
+			return null;
+		}
+		final String thumbnailName = getThumbnailName(image.getId(), size);
+		Future<?> thumbnailGenerator;
+		FutureTask<Void> newThumbnailGenerator = null;
+		synchronized (thumbnails) {
+			File thumbnail = thumbnails.get(thumbnailName);
+			if (thumbnail != null) {
+				return thumbnail;
+			}
+			Long failureTime = failedThumbnails.get(thumbnailName);
+			if (failureTime != null) {
+				if ((System.currentTimeMillis() - failureTime) < FAILURE_TIMEOUT) {
+					return null;
+				}
+				failedThumbnails.remove(thumbnailName);
+			}
+			thumbnailGenerator = pendingThumbnails.get(thumbnailName);
+			if (thumbnailGenerator == null) {
+				newThumbnailGenerator = new FutureTask<Void>(new Runnable() {
+
+					@Override
+					@SuppressWarnings("synthetic-access")
+					public void run() {
+						boolean generated = false;
+						try {
+							generated = generateThumbnail(image, size, thumbnailName);
+						} finally {
+							synchronized (thumbnails) {
+								pendingThumbnails.remove(thumbnailName);
+								if (!generated) {
+									failedThumbnails.put(thumbnailName, System.currentTimeMillis());
+								}
+							}
+						}
+					}
+				}, null);
+				pendingThumbnails.put(thumbnailName, newThumbnailGenerator);
+				thumbnailGenerator = newThumbnailGenerator;
+			}
+		}
+		if (newThumbnailGenerator != null) {
+			thumbnailGenerators.execute(newThumbnailGenerator);
+		}
+		if (timeout <= 0) {
+			return null;
+		}
+		try {
+			thumbnailGenerator.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ie1) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ee1) {
+			logger.log(Level.WARNING, String.format("Could not generate thumbnail for %s!", image.getId()), ee1);
+		} catch (TimeoutException te1) {
+			/* still generating, return null below. */
+		}
+		synchronized (thumbnails) {
+			return thumbnails.get(thumbnailName);
+		}
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Loads all thumbnails that are already present in the thumbnail
+	 * directory.
+	 */
+	public void start() {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		List<File> thumbnailFiles = new ArrayList<File>(Arrays.asList(files));
+		Collections.sort(thumbnailFiles, new Comparator<File>() {
+
+			@Override
+			public int compare(File leftFile, File rightFile) {
+				return (leftFile.lastModified() < rightFile.lastModified()) ? -1 : ((leftFile.lastModified() > rightFile.lastModified()) ? 1 : 0);
+			}
+		});
+		synchronized (thumbnails) {
+			for (File thumbnailFile : thumbnailFiles) {
+				if (thumbnailFile.isFile()) {
+					thumbnails.put(Files.getNameWithoutExtension(thumbnailFile.getName()), thumbnailFile);
+					usedCacheSize += thumbnailFile.length();
+				}
+			}
+			evictThumbnails();
+		}
+	}
+
+	/**
+	 * Stops all thumbnail generators.
+	 */
+	public void stop() {
+		thumbnailGenerators.shutdownNow();
+	}
+
+	/**
+	 * Removes all cached thumbnails of the given image.
+	 *
+	 * @param image
+	 *            The image to remove the thumbnails of
+	 */
+	public void removeThumbnails(Image image) {
+		synchronized (thumbnails) {
+			for (int size : SIZES) {
+				File thumbnail = thumbnails.remove(getThumbnailName(image.getId(), size));
+				if (thumbnail != null) {
+					usedCacheSize -= thumbnail.length();
+					deleteFile(thumbnail);
+				}
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Generates the thumbnail of the given size for the given image.
+	 *
+	 * @param image
+	 *            The image to generate a thumbnail for
+	 * @param size
+	 *            The maximum width and height of the thumbnail
+	 * @param thumbnailName
+	 *            The name of the thumbnail
+	 * @return {@code true} if the thumbnail was generated, {@code false}
+	 *         otherwise
+	 */
+	private boolean generateThumbnail(Image image, int size, String thumbnailName) {
+		Bucket imageBucket = null;
+		InputStream imageInputStream = null;
+		try {
+			TemporaryImage temporaryImage = temporaryImageStore.getTemporaryImage(image.getId());
+			if (temporaryImage != null) {
+				imageInputStream = temporaryImage.getInputStream();
+			} else {
+				imageBucket = fetchImage(image);
+				if (imageBucket == null) {
+					return false;
+				}
+				imageInputStream = imageBucket.getInputStream();
+			}
+			BufferedImage sourceImage = ImageIO.read(imageInputStream);
+			if (sourceImage == null) {
+				logger.log(Level.FINE, String.format("Could not decode image %s.", image.getId()));
+				return false;
+			}
+			BufferedImage thumbnailImage = scaleImage(sourceImage, size);
+			if (!directory.exists() && !directory.mkdirs()) {
+				logger.log(Level.WARNING, String.format("Could not create thumbnail directory: %s", directory));
+				return false;
+			}
+			String format = thumbnailImage.getColorModel().hasAlpha() ? "png" : "jpg";
+			File thumbnailFile = new File(directory, thumbnailName + "." + format);
+			if (!ImageIO.write(thumbnailImage, format, thumbnailFile)) {
+				logger.log(Level.WARNING, String.format("Could not write thumbnail for %s as %s!", image.getId(), format));
+				return false;
+			}
+			synchronized (thumbnails) {
+				thumbnails.put(thumbnailName, thumbnailFile);
+				usedCacheSize += thumbnailFile.length();
+				evictThumbnails();
+			}
+			return true;
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, String.format("Could not generate thumbnail for %s!", image.getId()), ioe1);
+			return false;
+		} finally {
+			Closer.close(imageInputStream);
+			if (imageBucket != null) {
+				imageBucket.free();
+			}
+		}
+	}
+
+	/**
+	 * Fetches the encoded data of the given inserted image. The returned
+	 * bucket has to be {@link Bucket#free() freed} by the caller.
+	 *
+	 * @param image
+	 *            The image to fetch
+	 * @return The bucket containing the encoded image, or {@code null} if the
+	 *         image is not inserted or could not be fetched
+	 */
+	private Bucket fetchImage(Image image) {
+		if (!image.isInserted()) {
+			return null;
+		}
+		try {
+			Fetched fetched = freenetInterface.fetchUri(new FreenetURI(image.getKey()));
+			if (fetched == null) {
+				return null;
+			}
+			return fetched.getFetchResult().asBucket();
+		} catch (MalformedURLException mue1) {
+			logger.log(Level.WARNING, String.format("Invalid key for image %s: %s", image.getId(), image.getKey()), mue1);
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes the least recently used thumbnails until the size of the cache
+	 * is within its limit again.
+	 */
+	private void evictThumbnails() {
+		while ((usedCacheSize > cacheSize) && !thumbnails.isEmpty()) {
+			String thumbnailName = thumbnails.keySet().iterator().next();
+			File thumbnail = thumbnails.remove(thumbnailName);
+			usedCacheSize -= thumbnail.length();
+			deleteFile(thumbnail);
+		}
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Returns the content type of the given thumbnail.
+	 *
+	 * @param thumbnail
+	 *            The thumbnail file, as returned by
+	 *            {@link #getThumbnail(Image, int, long)}
+	 * @return The content type of the thumbnail
+	 */
+	public static String getContentType(File thumbnail) {
+		return thumbnail.getName().endsWith(".jpg") ? "image/jpeg" : "image/png";
+	}
+
+	/**
+	 * Scales the given image so that neither its width nor its height exceed
+	 * the given size. Images that are already small enough are returned
+	 * unchanged.
+	 *
+	 * @param sourceImage
+	 *            The image to scale
+	 * @param size
+	 *            The maximum width and height of the scaled image
+	 * @return The scaled image
+	 */
+	private static BufferedImage scaleImage(BufferedImage sourceImage, int size) {
+		int width = sourceImage.getWidth();
+		int height = sourceImage.getHeight();
+		if ((width <= size) && (height <= size)) {
+			return sourceImage;
+		}
+		double scale = Math.min(size / (double) width, size / (double) height);
+		int scaledWidth = Math.max(1, (int) (width * scale + 0.5));
+		int scaledHeight = Math.max(1, (int) (height * scale + 0.5));
+		BufferedImage scaledImage = new BufferedImage(scaledWidth, scaledHeight, sourceImage.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = scaledImage.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.drawImage(sourceImage, 0, 0, scaledWidth, scaledHeight, null);
+		} finally {
+			graphics.dispose();
+		}
+		return scaledImage;
+	}
+
+	/**
+	 * Returns the name of the thumbnail of the given size for the image with
+	 * the given ID. The file name of the thumbnail consists of this name and
+	 * the extension of its format.
+	 *
+	 * @param imageId
+	 *            The ID of the image
+	 * @param size
+	 *            The size of the thumbnail
+	 * @return The name of the thumbnail
+	 */
+	private static String getThumbnailName(String imageId, int size) {
+		return imageId + "-" + size;
+	}
+
+	/**
+	 * Deletes the given file, scheduling it for deletion on exit if it can not
+	 * be deleted right away.
+	 *
+	 * @param file
+	 *            The file to delete
+	 */
+	private static void deleteFile(File file) {
+		if (!file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+}
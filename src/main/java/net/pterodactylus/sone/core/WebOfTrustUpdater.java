@@ -19,8 +19,16 @@ package net.pterodactylus.sone.core;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,14 +39,25 @@ import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.sone.freenet.wot.Trust;
 import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector;
 import net.pterodactylus.sone.freenet.wot.WebOfTrustException;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
 import net.pterodactylus.util.logging.Logging;
 import net.pterodactylus.util.service.AbstractService;
+import net.pterodactylus.util.thread.NamedThreadFactory;
 
+import com.google.common.eventbus.EventBus;
 import com.google.inject.Inject;
 
 /**
  * Updates WebOfTrust identity data in a background thread because communicating
  * with the WebOfTrust plugin can potentially last quite long.
+ * <p/>
+ * Pending jobs are kept in a table keyed by the identity and the trustee,
+ * context, or property they update; a new job for the same key replaces the
+ * pending job so that only the last value is sent to the WebOfTrust plugin.
+ * Jobs are run by a small pool of workers; all pending jobs of an own identity
+ * are handed to a single worker at once and are run in the order they were
+ * added, and no two workers ever run jobs of the same own identity at the same
+ * time.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
@@ -47,26 +66,136 @@ public class WebOfTrustUpdater extends AbstractService {
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(WebOfTrustUpdater.class);
 
-	/** Stop job. */
-	@SuppressWarnings("synthetic-access")
-	private final WebOfTrustUpdateJob stopJob = new WebOfTrustUpdateJob();
+	/** The default number of workers. */
+	public static final int DEFAULT_WORKER_COUNT = 2;
+
+	/** The event bus. */
+	private final EventBus eventBus;
 
 	/** The web of trust connector. */
 	private final WebOfTrustConnector webOfTrustConnector;
 
-	/** The queue for jobs. */
-	private final BlockingQueue<WebOfTrustUpdateJob> updateJobs = new LinkedBlockingQueue<WebOfTrustUpdateJob>();
+	/** The number of workers. */
+	private final int workerCount;
+
+	/** The workers that run the update jobs. */
+	private final ExecutorService workers;
+
+	/** The pending jobs, by key, in the order they were added. */
+	/* synchronize access on itself. */
+	private final Map<Object, WebOfTrustUpdateJob> pendingJobs = new LinkedHashMap<Object, WebOfTrustUpdateJob>();
+
+	/** The IDs of the own identities whose jobs are currently running. */
+	/* synchronize access on pendingJobs. */
+	private final Set<String> busyOwnIdentities = new HashSet<String>();
+
+	/** The number of jobs that have been run. */
+	/* synchronize access on pendingJobs. */
+	private long finishedJobCount;
+
+	/** The number of jobs that were replaced by a later job. */
+	/* synchronize access on pendingJobs. */
+	private long coalescedJobCount;
+
+	/** The total time from creation to completion of all jobs (in ms). */
+	/* synchronize access on pendingJobs. */
+	private long totalJobLatency;
+
+	/** The maximum time from creation to completion of a job (in ms). */
+	/* synchronize access on pendingJobs. */
+	private long maximumJobLatency;
 
 	/**
 	 * Creates a new trust updater.
 	 *
+	 * @param eventBus
+	 * 		The event bus
 	 * @param webOfTrustConnector
 	 * 		The web of trust connector
 	 */
 	@Inject
-	public WebOfTrustUpdater(WebOfTrustConnector webOfTrustConnector) {
+	public WebOfTrustUpdater(EventBus eventBus, WebOfTrustConnector webOfTrustConnector) {
+		this(eventBus, webOfTrustConnector, DEFAULT_WORKER_COUNT);
+	}
+
+	/**
+	 * Creates a new trust updater.
+	 *
+	 * @param eventBus
+	 * 		The event bus
+	 * @param webOfTrustConnector
+	 * 		The web of trust connector
+	 * @param workerCount
+	 * 		The number of workers that run update jobs
+	 */
+	public WebOfTrustUpdater(EventBus eventBus, WebOfTrustConnector webOfTrustConnector, int workerCount) {
 		super("Trust Updater");
+		this.eventBus = eventBus;
 		this.webOfTrustConnector = webOfTrustConnector;
+		this.workerCount = workerCount;
+		this.workers = Executors.newFixedThreadPool(workerCount, new NamedThreadFactory("Sone Trust Updater %2$d"));
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of pending jobs.
+	 *
+	 * @return The number of pending jobs
+	 */
+	public int getQueueSize() {
+		synchronized (pendingJobs) {
+			return pendingJobs.size();
+		}
+	}
+
+	/**
+	 * Returns the number of jobs that have been run.
+	 *
+	 * @return The number of finished jobs
+	 */
+	public long getFinishedJobCount() {
+		synchronized (pendingJobs) {
+			return finishedJobCount;
+		}
+	}
+
+	/**
+	 * Returns the number of jobs that were replaced by a later job for the
+	 * same key before they were run.
+	 *
+	 * @return The number of coalesced jobs
+	 */
+	public long getCoalescedJobCount() {
+		synchronized (pendingJobs) {
+			return coalescedJobCount;
+		}
+	}
+
+	/**
+	 * Returns the average time from creation to completion of all finished
+	 * jobs.
+	 *
+	 * @return The average job latency (in milliseconds)
+	 */
+	public long getAverageJobLatency() {
+		synchronized (pendingJobs) {
+			return (finishedJobCount == 0) ? 0 : (totalJobLatency / finishedJobCount);
+		}
+	}
+
+	/**
+	 * Returns the maximum time from creation to completion of all finished
+	 * jobs.
+	 *
+	 * @return The maximum job latency (in milliseconds)
+	 */
+	public long getMaximumJobLatency() {
+		synchronized (pendingJobs) {
+			return maximumJobLatency;
+		}
 	}
 
 	//
@@ -89,15 +218,8 @@ public class WebOfTrustUpdater extends AbstractService {
 	 */
 	public void setTrust(OwnIdentity truster, Identity trustee, Integer score, String comment) {
 		SetTrustJob setTrustJob = new SetTrustJob(truster, trustee, score, comment);
-		if (updateJobs.contains(setTrustJob)) {
-			updateJobs.remove(setTrustJob);
-		}
 		logger.log(Level.FINER, "Adding Trust Update Job: " + setTrustJob);
-		try {
-			updateJobs.put(setTrustJob);
-		} catch (InterruptedException e) {
-			/* the queue is unbounded so it should never block. */
-		}
+		addJob(setTrustJob);
 	}
 
 	/**
@@ -144,23 +266,18 @@ public class WebOfTrustUpdater extends AbstractService {
 	 */
 	private boolean addContextWait(OwnIdentity ownIdentity, String context, boolean wait) {
 		AddContextJob addContextJob = new AddContextJob(ownIdentity, context);
-		if (!updateJobs.contains(addContextJob)) {
-			logger.log(Level.FINER, "Adding Context Job: " + addContextJob);
-			try {
-				updateJobs.put(addContextJob);
-			} catch (InterruptedException ie1) {
-				/* the queue is unbounded so it should never block. */
-			}
-			if (wait) {
-				return addContextJob.waitForCompletion();
-			}
-		} else if (wait) {
-			for (WebOfTrustUpdateJob updateJob : updateJobs) {
-				if (updateJob.equals(addContextJob)) {
-					return updateJob.waitForCompletion();
-				}
+		WebOfTrustUpdateJob updateJob;
+		synchronized (pendingJobs) {
+			updateJob = pendingJobs.get(addContextJob.getKey());
+			if (!addContextJob.equals(updateJob)) {
+				logger.log(Level.FINER, "Adding Context Job: " + addContextJob);
+				addJob(addContextJob);
+				updateJob = addContextJob;
 			}
 		}
+		if (wait) {
+			return updateJob.waitForCompletion();
+		}
 		return false;
 	}
 
@@ -174,12 +291,10 @@ public class WebOfTrustUpdater extends AbstractService {
 	 */
 	public void removeContext(OwnIdentity ownIdentity, String context) {
 		RemoveContextJob removeContextJob = new RemoveContextJob(ownIdentity, context);
-		if (!updateJobs.contains(removeContextJob)) {
-			logger.log(Level.FINER, "Adding Context Job: " + removeContextJob);
-			try {
-				updateJobs.put(removeContextJob);
-			} catch (InterruptedException ie1) {
-				/* the queue is unbounded so it should never block. */
+		synchronized (pendingJobs) {
+			if (!removeContextJob.equals(pendingJobs.get(removeContextJob.getKey()))) {
+				logger.log(Level.FINER, "Adding Context Job: " + removeContextJob);
+				addJob(removeContextJob);
 			}
 		}
 	}
@@ -196,14 +311,13 @@ public class WebOfTrustUpdater extends AbstractService {
 	 */
 	public void setProperty(OwnIdentity ownIdentity, String propertyName, String propertyValue) {
 		SetPropertyJob setPropertyJob = new SetPropertyJob(ownIdentity, propertyName, propertyValue);
-		if (updateJobs.contains(setPropertyJob)) {
-			updateJobs.remove(setPropertyJob);
-		}
-		logger.log(Level.FINER, "Adding Property Job: " + setPropertyJob);
-		try {
-			updateJobs.put(setPropertyJob);
-		} catch (InterruptedException e) {
-			/* the queue is unbounded so it should never block. */
+		synchronized (pendingJobs) {
+			if (!pendingJobs.containsKey(setPropertyJob.getKey()) && equal(ownIdentity.getProperty(propertyName), propertyValue)) {
+				/* property already has the value, and no other value is pending. */
+				return;
+			}
+			logger.log(Level.FINER, "Adding Property Job: " + setPropertyJob);
+			addJob(setPropertyJob);
 		}
 	}
 
@@ -227,32 +341,138 @@ public class WebOfTrustUpdater extends AbstractService {
 	@Override
 	protected void serviceRun() {
 		while (!shouldStop()) {
-			try {
-				WebOfTrustUpdateJob updateJob = updateJobs.take();
-				if (shouldStop() || (updateJob == stopJob)) {
+			final List<WebOfTrustUpdateJob> updateJobs;
+			synchronized (pendingJobs) {
+				if (shouldStop()) {
 					break;
 				}
-				logger.log(Level.FINE, "Running Trust Update Job: " + updateJob);
-				long startTime = System.currentTimeMillis();
-				updateJob.run();
-				long endTime = System.currentTimeMillis();
-				logger.log(Level.FINE, "Trust Update Job finished, took " + (endTime - startTime) + " ms.");
-			} catch (InterruptedException ie1) {
-				/* happens, ignore, loop. */
+				updateJobs = takeNextJobs();
+				if (updateJobs.isEmpty()) {
+					try {
+						pendingJobs.wait();
+					} catch (InterruptedException ie1) {
+						/* happens, ignore, loop. */
+					}
+					continue;
+				}
 			}
+			workers.execute(new Runnable() {
+
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public void run() {
+					runJobs(updateJobs);
+				}
+			});
 		}
+		/* only shut down here so that no jobs are handed to a stopped pool. */
+		workers.shutdown();
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	protected void serviceStop() {
-		try {
-			updateJobs.put(stopJob);
-		} catch (InterruptedException ie1) {
-			/* the queue is unbounded so it should never block. */
+		synchronized (pendingJobs) {
+			pendingJobs.notifyAll();
 		}
 	}
 
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Adds the given job to the pending jobs. If a job with the same key is
+	 * already pending, it is replaced by the given job but keeps its position.
+	 *
+	 * @param updateJob
+	 * 		The job to add
+	 */
+	private void addJob(WebOfTrustUpdateJob updateJob) {
+		synchronized (pendingJobs) {
+			WebOfTrustUpdateJob replacedJob = pendingJobs.put(updateJob.getKey(), updateJob);
+			if (replacedJob != null) {
+				coalescedJobCount++;
+				replacedJob.finish(false);
+			}
+			pendingJobs.notifyAll();
+		}
+	}
+
+	/**
+	 * Removes and returns all pending jobs of the first own identity that has
+	 * pending jobs and whose jobs are not currently being run. If all workers
+	 * are busy, or no such own identity exists, an empty list is returned.
+	 * <p/>
+	 * This method has to be called while holding the lock on
+	 * {@link #pendingJobs}.
+	 *
+	 * @return The jobs to run, in the order they were added
+	 */
+	private List<WebOfTrustUpdateJob> takeNextJobs() {
+		List<WebOfTrustUpdateJob> updateJobs = new ArrayList<WebOfTrustUpdateJob>();
+		if (busyOwnIdentities.size() >= workerCount) {
+			return updateJobs;
+		}
+		String ownIdentityId = null;
+		for (Iterator<WebOfTrustUpdateJob> updateJobIterator = pendingJobs.values().iterator(); updateJobIterator.hasNext();) {
+			WebOfTrustUpdateJob updateJob = updateJobIterator.next();
+			String jobOwnIdentityId = updateJob.getOwnIdentity().getId();
+			if ((ownIdentityId == null) && !busyOwnIdentities.contains(jobOwnIdentityId)) {
+				ownIdentityId = jobOwnIdentityId;
+			}
+			if (jobOwnIdentityId.equals(ownIdentityId)) {
+				updateJobs.add(updateJob);
+				updateJobIterator.remove();
+			}
+		}
+		if (ownIdentityId != null) {
+			busyOwnIdentities.add(ownIdentityId);
+		}
+		return updateJobs;
+	}
+
+	/**
+	 * Runs the given jobs, all of which belong to the same own identity.
+	 *
+	 * @param updateJobs
+	 * 		The jobs to run
+	 */
+	private void runJobs(List<WebOfTrustUpdateJob> updateJobs) {
+		logger.log(Level.FINE, String.format("Running %d Trust Update Jobs for %s.", updateJobs.size(), updateJobs.get(0).getOwnIdentity().getId()));
+		for (WebOfTrustUpdateJob updateJob : updateJobs) {
+			logger.log(Level.FINE, "Running Trust Update Job: " + updateJob);
+			long startTime = System.currentTimeMillis();
+			updateJob.run();
+			long endTime = System.currentTimeMillis();
+			logger.log(Level.FINE, "Trust Update Job finished, took " + (endTime - startTime) + " ms.");
+			synchronized (pendingJobs) {
+				long latency = endTime - updateJob.getCreationTime();
+				finishedJobCount++;
+				totalJobLatency += latency;
+				maximumJobLatency = Math.max(maximumJobLatency, latency);
+			}
+		}
+		synchronized (pendingJobs) {
+			busyOwnIdentities.remove(updateJobs.get(0).getOwnIdentity().getId());
+			pendingJobs.notifyAll();
+		}
+	}
+
+	/**
+	 * Compares the two given strings, treating {@code null} as equal to
+	 * {@code null}.
+	 *
+	 * @param first
+	 * 		The first string
+	 * @param second
+	 * 		The second string
+	 * @return {@code true} if both strings are equal, {@code false} otherwise
+	 */
+	private static boolean equal(String first, String second) {
+		return (first == null) ? (second == null) : first.equals(second);
+	}
+
 	/**
 	 * Base class for WebOfTrust update jobs.
 	 *
@@ -270,6 +490,43 @@ public class WebOfTrustUpdater extends AbstractService {
 		/** Whether the job was successful. */
 		private boolean success;
 
+		/** The time this job was created. */
+		private final long creationTime = System.currentTimeMillis();
+
+		//
+		// ACCESSORS
+		//
+
+		/**
+		 * Returns the key of this job. A pending job is replaced by a new job
+		 * with the same key.
+		 *
+		 * @return The key of this job
+		 */
+		public Object getKey() {
+			return this;
+		}
+
+		/**
+		 * Returns the own identity this job updates. Jobs of the same own
+		 * identity are run in the order they were added.
+		 *
+		 * @return The own identity of this job
+		 */
+		public OwnIdentity getOwnIdentity() {
+			return null;
+		}
+
+		/**
+		 * Returns the time this job was created.
+		 *
+		 * @return The creation time of this job (in milliseconds since Jan 1,
+		 *         1970 UTC)
+		 */
+		public long getCreationTime() {
+			return creationTime;
+		}
+
 		//
 		// ACTIONS
 		//
@@ -363,10 +620,23 @@ public class WebOfTrustUpdater extends AbstractService {
 			this.comment = comment;
 		}
 
+		/** {@inheritDoc} */
+		@Override
+		public Object getKey() {
+			return Arrays.asList("Trust", truster.getId(), trustee.getId());
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public OwnIdentity getOwnIdentity() {
+			return truster;
+		}
+
 		/** {@inheritDoc} */
 		@Override
 		@SuppressWarnings("synthetic-access")
 		public void run() {
+			Trust previousTrust = trustee.getTrust(truster);
 			try {
 				if (score != null) {
 					if (trustee instanceof DefaultIdentity) {
@@ -379,9 +649,14 @@ public class WebOfTrustUpdater extends AbstractService {
 					}
 					webOfTrustConnector.removeTrust(truster, trustee);
 				}
+				/* only announce the trust once the web of trust has stored it. */
+				eventBus.post(new TrustUpdatedEvent(truster, trustee, score));
 				finish(true);
 			} catch (WebOfTrustException wote1) {
 				logger.log(Level.WARNING, "Could not set Trust value for " + truster + " -> " + trustee + " to " + score + " (" + comment + ")!", wote1);
+				if (trustee instanceof DefaultIdentity) {
+					((DefaultIdentity) trustee).setTrust(truster, previousTrust);
+				}
 				finish(false);
 			}
 		}
@@ -441,6 +716,18 @@ public class WebOfTrustUpdater extends AbstractService {
 			this.context = checkNotNull(context, "context must not be null");
 		}
 
+		/** {@inheritDoc} */
+		@Override
+		public Object getKey() {
+			return Arrays.asList("Context", ownIdentity.getId(), context);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public OwnIdentity getOwnIdentity() {
+			return ownIdentity;
+		}
+
 		//
 		// OBJECT METHODS
 		//
@@ -571,6 +858,18 @@ public class WebOfTrustUpdater extends AbstractService {
 			this.propertyValue = propertyValue;
 		}
 
+		/** {@inheritDoc} */
+		@Override
+		public Object getKey() {
+			return Arrays.asList("Property", ownIdentity.getId(), propertyName);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public OwnIdentity getOwnIdentity() {
+			return ownIdentity;
+		}
+
 		/** {@inheritDoc} */
 		@Override
 		@SuppressWarnings("synthetic-access")
@@ -24,15 +24,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
-import com.google.common.base.Predicates;
-import com.google.common.collect.Collections2;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 
@@ -58,6 +56,12 @@ public class AlbumImpl implements Album {
 	/** The images in this album. */
 	private final Map<String, Image> images = new HashMap<String, Image>();
 
+	/**
+	 * The images in this album in order, or {@code null} if the images have
+	 * been changed since the list was last created.
+	 */
+	private volatile List<Image> imageList;
+
 	/** The parent album. */
 	private Album parent;
 
@@ -161,14 +165,19 @@ public class AlbumImpl implements Album {
 
 	@Override
 	public List<Image> getImages() {
-		return new ArrayList<Image>(Collections2.filter(Collections2.transform(imageIds, new Function<String, Image>() {
-
-			@Override
-			@SuppressWarnings("synthetic-access")
-			public Image apply(String imageId) {
-				return images.get(imageId);
+		List<Image> imageList = this.imageList;
+		if (imageList == null) {
+			List<Image> newImageList = new ArrayList<Image>(imageIds.size());
+			for (String imageId : imageIds) {
+				Image image = images.get(imageId);
+				if (image != null) {
+					newImageList.add(image);
+				}
 			}
-		}), Predicates.notNull()));
+			imageList = Collections.unmodifiableList(newImageList);
+			this.imageList = imageList;
+		}
+		return imageList;
 	}
 
 	@Override
@@ -186,6 +195,7 @@ public class AlbumImpl implements Album {
 		if (!imageIds.contains(image.getId())) {
 			imageIds.add(image.getId());
 			images.put(image.getId(), image);
+			imageList = null;
 		}
 	}
 
@@ -196,6 +206,7 @@ public class AlbumImpl implements Album {
 		checkArgument(image.getSone().equals(sone), "image must belong to the same Sone as this album");
 		imageIds.remove(image.getId());
 		images.remove(image.getId());
+		imageList = null;
 		if (image.getId().equals(albumImage)) {
 			if (images.isEmpty()) {
 				albumImage = null;
@@ -217,6 +228,7 @@ public class AlbumImpl implements Album {
 		}
 		imageIds.remove(image.getId());
 		imageIds.add(oldIndex - 1, image.getId());
+		imageList = null;
 		return images.get(imageIds.get(oldIndex));
 	}
 
@@ -232,6 +244,7 @@ public class AlbumImpl implements Album {
 		}
 		imageIds.remove(image.getId());
 		imageIds.add(oldIndex + 1, image.getId());
+		imageList = null;
 		return images.get(imageIds.get(oldIndex));
 	}
 
@@ -20,11 +20,20 @@ package net.pterodactylus.sone.data;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
 
+import com.google.common.io.Files;
+
 /**
- * A temporary image stores an uploaded image in memory until it has been
- * inserted into Freenet and is subsequently loaded from there.
+ * A temporary image stores an uploaded image until it has been inserted into
+ * Freenet and is subsequently loaded from there. The encoded image data is
+ * kept in memory until it is {@link #moveToFile(File) moved to a file} by the
+ * {@link net.pterodactylus.sone.core.TemporaryImageStore}.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
@@ -36,9 +45,17 @@ public class TemporaryImage {
 	/** The MIME type of the image. */
 	private String mimeType;
 
-	/** The encoded image data. */
+	/** The encoded image data, {@code null} once moved to a file. */
+	/* synchronize access on this. */
 	private byte[] imageData;
 
+	/** The file the encoded image data has been moved to. */
+	/* synchronize access on this. */
+	private File imageFile;
+
+	/** The size of the encoded image data. */
+	private volatile long size = -1;
+
 	/**
 	 * Creates a new temporary image with a random ID.
 	 */
@@ -90,12 +107,33 @@ public class TemporaryImage {
 	}
 
 	/**
-	 * Returns the encoded image data.
+	 * Returns the size of the encoded image data.
 	 *
-	 * @return The encoded image data
+	 * @return The size of the encoded image data (in bytes), or {@code -1} if
+	 *         no image data has been set
 	 */
-	public byte[] getImageData() {
-		return imageData;
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns whether the encoded image data is currently kept in memory.
+	 *
+	 * @return {@code true} if the image data is kept in memory, {@code false}
+	 *         if it has been moved to a file
+	 */
+	public synchronized boolean isInMemory() {
+		return imageData != null;
+	}
+
+	/**
+	 * Returns the file the encoded image data has been moved to.
+	 *
+	 * @return The file of the image data, or {@code null} if the image data is
+	 *         kept in memory
+	 */
+	public synchronized File getImageFile() {
+		return imageFile;
 	}
 
 	/**
@@ -106,11 +144,75 @@ public class TemporaryImage {
 	 *            The encoded image data
 	 * @return This temporary image
 	 */
-	public TemporaryImage setImageData(byte[] imageData) {
+	public synchronized TemporaryImage setImageData(byte[] imageData) {
 		checkNotNull(imageData, "imageData must not be null");
-		checkState(this.imageData == null, "image data must not already be set");
+		checkState(size == -1, "image data must not already be set");
 		this.imageData = imageData;
+		this.size = imageData.length;
+		return this;
+	}
+
+	/**
+	 * Sets the file that contains the encoded image data. This is used to
+	 * restore a temporary image whose image data has been moved to a file
+	 * before. The image data can only be set once.
+	 *
+	 * @param imageFile
+	 *            The file containing the encoded image data
+	 * @return This temporary image
+	 */
+	public synchronized TemporaryImage setImageFile(File imageFile) {
+		checkNotNull(imageFile, "imageFile must not be null");
+		checkState(size == -1, "image data must not already be set");
+		this.imageFile = imageFile;
+		this.size = imageFile.length();
 		return this;
 	}
 
+	/**
+	 * Returns a stream that reads the encoded image data, either from memory
+	 * or from the file it has been moved to. Streams that have been opened
+	 * before the image data was moved continue to work.
+	 *
+	 * @return A stream containing the encoded image data
+	 * @throws IOException
+	 *             if the image data can not be read
+	 */
+	public synchronized InputStream getInputStream() throws IOException {
+		if (imageData != null) {
+			return new ByteArrayInputStream(imageData);
+		}
+		checkState(imageFile != null, "image data must be set");
+		return new FileInputStream(imageFile);
+	}
+
+	/**
+	 * Moves the encoded image data from memory into the given file. If the
+	 * image data has already been moved, nothing happens.
+	 *
+	 * @param file
+	 *            The file to write the image data to
+	 * @throws IOException
+	 *             if the image data can not be written
+	 */
+	public synchronized void moveToFile(File file) throws IOException {
+		if (imageData == null) {
+			return;
+		}
+		Files.write(imageData, file);
+		imageFile = file;
+		imageData = null;
+	}
+
+	/**
+	 * Releases the encoded image data, deleting the file it was moved to.
+	 */
+	public synchronized void delete() {
+		imageData = null;
+		if ((imageFile != null) && !imageFile.delete()) {
+			imageFile.deleteOnExit();
+		}
+		imageFile = null;
+	}
+
 }
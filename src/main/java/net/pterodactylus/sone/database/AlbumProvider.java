@@ -17,6 +17,8 @@
 
 package net.pterodactylus.sone.database;
 
+import java.util.List;
+
 import net.pterodactylus.sone.data.Album;
 
 import com.google.common.base.Optional;
@@ -38,4 +40,38 @@ public interface AlbumProvider {
 	 */
 	Optional<Album> getAlbum(String albumId);
 
+	/**
+	 * Returns the albums that follow the album with the given ID. Only albums
+	 * that are not {@link Album#NOT_EMPTY empty} are considered, and they are
+	 * sorted by their {@link Album#TITLE_COMPARATOR title}.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone to return albums of, or {@link Optional#absent()} to
+	 * 		return albums of all Sones
+	 * @param albumId
+	 * 		The ID of the album to return the following albums of, or {@link
+	 * 		Optional#absent()} to start with the first album
+	 * @param maximumCount
+	 * 		The maximum number of albums to return
+	 * @return The albums following the given album, in order
+	 */
+	List<Album> getAlbumsAfter(Optional<String> soneId, Optional<String> albumId, int maximumCount);
+
+	/**
+	 * Returns the albums that precede the album with the given ID. Only albums
+	 * that are not {@link Album#NOT_EMPTY empty} are considered, and they are
+	 * sorted by their {@link Album#TITLE_COMPARATOR title}.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone to return albums of, or {@link Optional#absent()} to
+	 * 		return albums of all Sones
+	 * @param albumId
+	 * 		The ID of the album to return the preceding albums of, or {@link
+	 * 		Optional#absent()} to end with the last album
+	 * @param maximumCount
+	 * 		The maximum number of albums to return
+	 * @return The albums preceding the given album, in order
+	 */
+	List<Album> getAlbumsBefore(Optional<String> soneId, Optional<String> albumId, int maximumCount);
+
 }
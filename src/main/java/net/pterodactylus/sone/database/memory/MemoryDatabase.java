@@ -19,6 +19,7 @@ package net.pterodactylus.sone.database.memory;
 
 import static com.google.common.base.Optional.fromNullable;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static net.pterodactylus.sone.data.Album.NOT_EMPTY;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -28,6 +29,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -50,6 +52,9 @@ import net.pterodactylus.sone.database.PostBuilder;
 import net.pterodactylus.sone.database.PostDatabase;
 import net.pterodactylus.sone.database.PostReplyBuilder;
 import net.pterodactylus.sone.database.SoneProvider;
+import net.pterodactylus.sone.metrics.Histogram;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.sone.metrics.TimedReadWriteLock;
 import net.pterodactylus.util.config.Configuration;
 import net.pterodactylus.util.config.ConfigurationException;
 
@@ -67,7 +72,7 @@ import com.google.inject.Inject;
 public class MemoryDatabase extends AbstractService implements Database {
 
 	/** The lock. */
-	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final ReadWriteLock lock;
 
 	/** The Sone provider. */
 	private final SoneProvider soneProvider;
@@ -107,8 +112,20 @@ public class MemoryDatabase extends AbstractService implements Database {
 
 	private final Map<String, Album> allAlbums = new HashMap<String, Album>();
 
+	/** The index entries of all albums that are not empty, by album ID. */
+	private final Map<String, AlbumEntry> albumEntries = new HashMap<String, AlbumEntry>();
+
+	/** The index entries of all albums that are not empty, sorted by title. */
+	private final NavigableSet<AlbumEntry> sortedAlbumEntries = new TreeSet<AlbumEntry>(AlbumEntry.TITLE_COMPARATOR);
+
+	/** The index entries of albums that are not empty, sorted by title, by Sone. */
+	private final Map<String, NavigableSet<AlbumEntry>> soneAlbumEntries = new HashMap<String, NavigableSet<AlbumEntry>>();
+
 	private final Map<String, Image> allImages = new HashMap<String, Image>();
 
+	/** The latencies of saving the database. */
+	private final Histogram saveLatency;
+
 	/**
 	 * Creates a new memory database.
 	 *
@@ -116,11 +133,15 @@ public class MemoryDatabase extends AbstractService implements Database {
 	 * 		The Sone provider
 	 * @param configuration
 	 * 		The configuration for loading and saving elements
+	 * @param metricRegistry
+	 * 		The metric registry
 	 */
 	@Inject
-	public MemoryDatabase(SoneProvider soneProvider, Configuration configuration) {
+	public MemoryDatabase(SoneProvider soneProvider, Configuration configuration, MetricRegistry metricRegistry) {
 		this.soneProvider = soneProvider;
 		this.configuration = configuration;
+		this.lock = new TimedReadWriteLock(new ReentrantReadWriteLock(), metricRegistry.histogram("Database.ReadLockWait"), metricRegistry.histogram("Database.WriteLockWait"));
+		this.saveLatency = metricRegistry.histogram("Database.Save");
 	}
 
 	//
@@ -135,8 +156,10 @@ public class MemoryDatabase extends AbstractService implements Database {
 	 */
 	@Override
 	public void save() throws DatabaseException {
+		long start = System.nanoTime();
 		saveKnownPosts();
 		saveKnownPostReplies();
+		saveLatency.update(System.nanoTime() - start);
 	}
 
 	//
@@ -436,6 +459,32 @@ public class MemoryDatabase extends AbstractService implements Database {
 		}
 	}
 
+	@Override
+	public List<Album> getAlbumsAfter(Optional<String> soneId, Optional<String> albumId, int maximumCount) {
+		lock.readLock().lock();
+		try {
+			NavigableSet<AlbumEntry> albumEntries = getAlbumEntries(soneId);
+			AlbumEntry albumEntry = albumId.isPresent() ? this.albumEntries.get(albumId.get()) : null;
+			return getAlbums((albumEntry != null) ? albumEntries.tailSet(albumEntry, false) : albumEntries, maximumCount);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<Album> getAlbumsBefore(Optional<String> soneId, Optional<String> albumId, int maximumCount) {
+		lock.readLock().lock();
+		try {
+			NavigableSet<AlbumEntry> albumEntries = getAlbumEntries(soneId);
+			AlbumEntry albumEntry = albumId.isPresent() ? this.albumEntries.get(albumId.get()) : null;
+			List<Album> albums = getAlbums(((albumEntry != null) ? albumEntries.headSet(albumEntry, false) : albumEntries).descendingSet(), maximumCount);
+			Collections.reverse(albums);
+			return albums;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	//
 	// ALBUMBUILDERFACTORY METHODS
 	//
@@ -454,6 +503,7 @@ public class MemoryDatabase extends AbstractService implements Database {
 		lock.writeLock().lock();
 		try {
 			allAlbums.put(album.getId(), album);
+			indexAlbums(album);
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -464,6 +514,8 @@ public class MemoryDatabase extends AbstractService implements Database {
 		lock.writeLock().lock();
 		try {
 			allAlbums.remove(album.getId());
+			unindexAlbum(album.getId());
+			indexAlbums(album.getParent());
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -501,6 +553,7 @@ public class MemoryDatabase extends AbstractService implements Database {
 		lock.writeLock().lock();
 		try {
 			allImages.put(image.getId(), image);
+			indexAlbums(image.getAlbum());
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -511,6 +564,7 @@ public class MemoryDatabase extends AbstractService implements Database {
 		lock.writeLock().lock();
 		try {
 			allImages.remove(image.getId());
+			indexAlbums(image.getAlbum());
 		} finally {
 			lock.writeLock().unlock();
 		}
@@ -661,6 +715,90 @@ public class MemoryDatabase extends AbstractService implements Database {
 		return posts;
 	}
 
+	/**
+	 * Returns the index entries of the albums of the given Sone, or of all
+	 * albums. The caller has to hold at least the read lock.
+	 *
+	 * @param soneId
+	 * 		The ID of the Sone, or {@link Optional#absent()} for all albums
+	 * @return The index entries, sorted by title
+	 */
+	private NavigableSet<AlbumEntry> getAlbumEntries(Optional<String> soneId) {
+		if (!soneId.isPresent()) {
+			return sortedAlbumEntries;
+		}
+		NavigableSet<AlbumEntry> albumEntries = soneAlbumEntries.get(soneId.get());
+		return (albumEntries != null) ? albumEntries : new TreeSet<AlbumEntry>(AlbumEntry.TITLE_COMPARATOR);
+	}
+
+	/**
+	 * Returns the albums of the given index entries.
+	 *
+	 * @param albumEntries
+	 * 		The index entries
+	 * @param maximumCount
+	 * 		The maximum number of albums to return
+	 * @return The albums of the first index entries
+	 */
+	private static List<Album> getAlbums(Iterable<AlbumEntry> albumEntries, int maximumCount) {
+		List<Album> albums = new ArrayList<Album>();
+		for (AlbumEntry albumEntry : albumEntries) {
+			if (albums.size() >= maximumCount) {
+				break;
+			}
+			albums.add(albumEntry.album);
+		}
+		return albums;
+	}
+
+	/**
+	 * Updates the index entries of the given album and all its parent albums.
+	 * Whether an album is empty also depends on the albums below it, and its
+	 * title may have changed since it was last stored, so every album is
+	 * removed from the index and added again if it is stored and not empty.
+	 * The caller has to hold the write lock.
+	 *
+	 * @param album
+	 * 		The album to index (may be {@code null})
+	 */
+	private void indexAlbums(Album album) {
+		for (Album indexedAlbum = album; (indexedAlbum != null) && !indexedAlbum.isRoot(); indexedAlbum = indexedAlbum.getParent()) {
+			unindexAlbum(indexedAlbum.getId());
+			if (!allAlbums.containsKey(indexedAlbum.getId()) || (indexedAlbum.getSone() == null) || !NOT_EMPTY.apply(indexedAlbum)) {
+				continue;
+			}
+			AlbumEntry albumEntry = new AlbumEntry(indexedAlbum);
+			albumEntries.put(albumEntry.albumId, albumEntry);
+			sortedAlbumEntries.add(albumEntry);
+			NavigableSet<AlbumEntry> albumEntries = soneAlbumEntries.get(albumEntry.soneId);
+			if (albumEntries == null) {
+				albumEntries = new TreeSet<AlbumEntry>(AlbumEntry.TITLE_COMPARATOR);
+				soneAlbumEntries.put(albumEntry.soneId, albumEntries);
+			}
+			albumEntries.add(albumEntry);
+		}
+	}
+
+	/**
+	 * Removes the index entry of the album with the given ID. The caller has
+	 * to hold the write lock.
+	 *
+	 * @param albumId
+	 * 		The ID of the album
+	 */
+	private void unindexAlbum(String albumId) {
+		AlbumEntry albumEntry = albumEntries.remove(albumId);
+		if (albumEntry == null) {
+			return;
+		}
+		sortedAlbumEntries.remove(albumEntry);
+		NavigableSet<AlbumEntry> albumEntries = soneAlbumEntries.get(albumEntry.soneId);
+		albumEntries.remove(albumEntry);
+		if (albumEntries.isEmpty()) {
+			soneAlbumEntries.remove(albumEntry.soneId);
+		}
+	}
+
 	/** Loads the known posts. */
 	private void loadKnownPosts() {
 		lock.writeLock().lock();
@@ -756,4 +894,53 @@ public class MemoryDatabase extends AbstractService implements Database {
 		}
 	}
 
+	/**
+	 * Index entry of an album. The title of the album is copied when the entry
+	 * is created so that an album that is renamed before it is stored again
+	 * can still be found in the sorted entries.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class AlbumEntry {
+
+		/** Comparator that sorts entries by title, and then by album ID. */
+		public static final Comparator<AlbumEntry> TITLE_COMPARATOR = new Comparator<AlbumEntry>() {
+
+			@Override
+			public int compare(AlbumEntry leftAlbumEntry, AlbumEntry rightAlbumEntry) {
+				int diff = leftAlbumEntry.title.compareToIgnoreCase(rightAlbumEntry.title);
+				if (diff == 0) {
+					diff = leftAlbumEntry.title.compareTo(rightAlbumEntry.title);
+				}
+				return (diff != 0) ? diff : leftAlbumEntry.albumId.compareTo(rightAlbumEntry.albumId);
+			}
+		};
+
+		/** The album. */
+		private final Album album;
+
+		/** The ID of the album. */
+		private final String albumId;
+
+		/** The ID of the Sone of the album. */
+		private final String soneId;
+
+		/** The title of the album. */
+		private final String title;
+
+		/**
+		 * Creates a new index entry for the given album.
+		 *
+		 * @param album
+		 * 		The album
+		 */
+		public AlbumEntry(Album album) {
+			this.album = album;
+			this.albumId = album.getId();
+			this.soneId = album.getSone().getId();
+			this.title = (album.getTitle() != null) ? album.getTitle() : "";
+		}
+
+	}
+
 }
@@ -29,6 +29,8 @@ import net.pterodactylus.sone.core.Core;
 import net.pterodactylus.sone.freenet.fcp.Command.AccessType;
 import net.pterodactylus.sone.freenet.fcp.Command.ErrorResponse;
 import net.pterodactylus.sone.freenet.fcp.Command.Response;
+import net.pterodactylus.sone.metrics.Counter;
+import net.pterodactylus.sone.metrics.MetricRegistry;
 import net.pterodactylus.util.logging.Logging;
 
 import com.google.inject.Inject;
@@ -77,14 +79,24 @@ public class FcpInterface {
 	/** All available FCP commands. */
 	private final Map<String, AbstractSoneCommand> commands = Collections.synchronizedMap(new HashMap<String, AbstractSoneCommand>());
 
+	/** The metric registry. */
+	private final MetricRegistry metricRegistry;
+
+	/** The number of commands that failed. */
+	private final Counter failedCommands;
+
 	/**
 	 * Creates a new FCP interface.
 	 *
 	 * @param core
 	 *            The core
+	 * @param metricRegistry
+	 *            The metric registry
 	 */
 	@Inject
-	public FcpInterface(Core core) {
+	public FcpInterface(Core core, MetricRegistry metricRegistry) {
+		this.metricRegistry = metricRegistry;
+		failedCommands = metricRegistry.counter("Fcp.FailedCommands");
 		commands.put("Version", new VersionCommand(core));
 		commands.put("GetLocalSones", new GetLocalSonesCommand(core));
 		commands.put("GetSones", new GetSonesCommand(core));
@@ -175,9 +187,12 @@ public class FcpInterface {
 				return;
 			}
 			try {
+				long start = System.nanoTime();
 				Response response = command.execute(parameters, data, AccessType.values()[accessType]);
+				metricRegistry.histogram("Fcp." + parameters.get("Message")).update(System.nanoTime() - start);
 				sendReply(pluginReplySender, identifier, response);
 			} catch (Exception e1) {
+				failedCommands.increment();
 				logger.log(Level.WARNING, "Could not process FCP command “%s”.", command);
 				sendReply(pluginReplySender, identifier, new ErrorResponse("Error executing command: " + e1.getMessage()));
 			}
@@ -18,6 +18,7 @@
 package net.pterodactylus.sone.fcp;
 
 import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.freenet.SimpleFieldSetBuilder;
@@ -50,6 +51,7 @@ public class LikePostCommand extends AbstractSoneCommand {
 		Post post = getPost(parameters, "Post");
 		Sone sone = getSone(parameters, "Sone", true);
 		sone.addLikedPostId(post.getId());
+		getCore().touchConfiguration(sone, SoneSection.LIKES);
 		return new Response("PostLiked", new SimpleFieldSetBuilder().put("LikeCount", getCore().getLikes(post).size()).get());
 	}
 
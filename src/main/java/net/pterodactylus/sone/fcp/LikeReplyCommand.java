@@ -18,6 +18,7 @@
 package net.pterodactylus.sone.fcp;
 
 import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.freenet.SimpleFieldSetBuilder;
@@ -50,6 +51,7 @@ public class LikeReplyCommand extends AbstractSoneCommand {
 		PostReply reply = getReply(parameters, "Reply");
 		Sone sone = getSone(parameters, "Sone", true);
 		sone.addLikedReplyId(reply.getId());
+		getCore().touchConfiguration(sone, SoneSection.LIKES);
 		return new Response("ReplyLiked", new SimpleFieldSetBuilder().put("LikeCount", getCore().getLikes(reply).size()).get());
 	}
 
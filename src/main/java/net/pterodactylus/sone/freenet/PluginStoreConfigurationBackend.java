@@ -30,6 +30,12 @@ import freenet.pluginmanager.PluginStore;
 
 /**
  * Backend for a {@link Configuration} that is based on a {@link PluginStore}.
+ * <p>
+ * Storing the plugin store serializes the complete store to the node’s
+ * database, so changed values are only kept in memory until {@link #save()}
+ * is called, e.g. by {@link Configuration#save()}; saving then stores the
+ * plugin store once, and only if a value has been changed since the last
+ * save.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
@@ -45,6 +51,9 @@ public class PluginStoreConfigurationBackend implements ExtendedConfigurationBac
 	/** The backing plugin store. */
 	private final PluginStore pluginStore;
 
+	/** Whether a value has been changed since the store was last saved. */
+	private boolean dirty;
+
 	/**
 	 * Creates a new configuration backend based on a plugin store.
 	 *
@@ -78,7 +87,7 @@ public class PluginStoreConfigurationBackend implements ExtendedConfigurationBac
 	@Override
 	public void putValue(String attribute, String value) throws ConfigurationException {
 		pluginStore.strings.put(attribute, value);
-		save();
+		changed();
 	}
 
 	/**
@@ -98,7 +107,7 @@ public class PluginStoreConfigurationBackend implements ExtendedConfigurationBac
 	@Override
 	public void setBooleanValue(String attribute, Boolean value) throws ConfigurationException {
 		pluginStore.booleans.put(attribute, value);
-		save();
+		changed();
 	}
 
 	/**
@@ -126,7 +135,7 @@ public class PluginStoreConfigurationBackend implements ExtendedConfigurationBac
 	@Override
 	public void setDoubleValue(String attribute, Double value) throws ConfigurationException {
 		pluginStore.strings.put(attribute, String.valueOf(value));
-		save();
+		changed();
 	}
 
 	/**
@@ -146,7 +155,7 @@ public class PluginStoreConfigurationBackend implements ExtendedConfigurationBac
 	@Override
 	public void setIntegerValue(String attribute, Integer value) throws ConfigurationException {
 		pluginStore.integers.put(attribute, value);
-		save();
+		changed();
 	}
 
 	/**
@@ -166,19 +175,35 @@ public class PluginStoreConfigurationBackend implements ExtendedConfigurationBac
 	@Override
 	public void setLongValue(String attribute, Long value) throws ConfigurationException {
 		pluginStore.longs.put(attribute, value);
-		save();
+		changed();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void save() throws ConfigurationException {
+	public synchronized void save() throws ConfigurationException {
+		if (!dirty) {
+			return;
+		}
 		try {
 			pluginRespirator.putStore(pluginStore);
+			dirty = false;
 		} catch (DatabaseDisabledException dde1) {
 			throw new ConfigurationException("Could not store plugin store, database is disabled.", dde1);
 		}
 	}
 
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Marks the plugin store as changed so that it is stored on the next
+	 * {@link #save()}.
+	 */
+	private synchronized void changed() {
+		dirty = true;
+	}
+
 }
@@ -19,47 +19,18 @@ package net.pterodactylus.sone.freenet.plugin;
 
 import net.pterodactylus.sone.freenet.plugin.event.ReceivedReplyEvent;
 
-import com.google.common.eventbus.EventBus;
-import com.google.inject.Inject;
-
-import freenet.pluginmanager.FredPluginTalker;
-import freenet.pluginmanager.PluginNotFoundException;
-import freenet.pluginmanager.PluginRespirator;
-import freenet.pluginmanager.PluginTalker;
 import freenet.support.SimpleFieldSet;
 import freenet.support.api.Bucket;
 
 /**
  * Interface for talking to other plugins. Other plugins are identified by their
- * name and a unique connection identifier.
+ * name and a unique connection identifier. Replies are delivered as
+ * {@link ReceivedReplyEvent}s.
  *
+ * @see FredPluginConnector
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class PluginConnector implements FredPluginTalker {
-
-	/** The event bus. */
-	private final EventBus eventBus;
-
-	/** The plugin respirator. */
-	private final PluginRespirator pluginRespirator;
-
-	/**
-	 * Creates a new plugin connector.
-	 *
-	 * @param eventBus
-	 *            The event bus
-	 * @param pluginRespirator
-	 *            The plugin respirator
-	 */
-	@Inject
-	public PluginConnector(EventBus eventBus, PluginRespirator pluginRespirator) {
-		this.eventBus = eventBus;
-		this.pluginRespirator = pluginRespirator;
-	}
-
-	//
-	// ACTIONS
-	//
+public interface PluginConnector {
 
 	/**
 	 * Sends a request to the given plugin.
@@ -73,9 +44,7 @@ public class PluginConnector implements FredPluginTalker {
 	 * @throws PluginException
 	 *             if the plugin can not be found
 	 */
-	public void sendRequest(String pluginName, String identifier, SimpleFieldSet fields) throws PluginException {
-		sendRequest(pluginName, identifier, fields, null);
-	}
+	public void sendRequest(String pluginName, String identifier, SimpleFieldSet fields) throws PluginException;
 
 	/**
 	 * Sends a request to the given plugin.
@@ -91,43 +60,6 @@ public class PluginConnector implements FredPluginTalker {
 	 * @throws PluginException
 	 *             if the plugin can not be found
 	 */
-	public void sendRequest(String pluginName, String identifier, SimpleFieldSet fields, Bucket data) throws PluginException {
-		getPluginTalker(pluginName, identifier).send(fields, data);
-	}
-
-	//
-	// PRIVATE METHODS
-	//
-
-	/**
-	 * Returns the plugin talker for the given plugin connection.
-	 *
-	 * @param pluginName
-	 *            The name of the plugin
-	 * @param identifier
-	 *            The identifier of the connection
-	 * @return The plugin talker
-	 * @throws PluginException
-	 *             if the plugin can not be found
-	 */
-	private PluginTalker getPluginTalker(String pluginName, String identifier) throws PluginException {
-		try {
-			return pluginRespirator.getPluginTalker(this, pluginName, identifier);
-		} catch (PluginNotFoundException pnfe1) {
-			throw new PluginException(pnfe1);
-		}
-	}
-
-	//
-	// INTERFACE FredPluginTalker
-	//
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public void onReply(String pluginName, String identifier, SimpleFieldSet params, Bucket data) {
-		eventBus.post(new ReceivedReplyEvent(this, pluginName, identifier, params, data));
-	}
+	public void sendRequest(String pluginName, String identifier, SimpleFieldSet fields, Bucket data) throws PluginException;
 
 }
@@ -17,12 +17,20 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,8 +42,13 @@ import net.pterodactylus.sone.freenet.wot.event.OwnIdentityAddedEvent;
 import net.pterodactylus.sone.freenet.wot.event.OwnIdentityRemovedEvent;
 import net.pterodactylus.util.logging.Logging;
 import net.pterodactylus.util.service.AbstractService;
+import net.pterodactylus.util.thread.NamedThreadFactory;
 
+import com.google.common.base.Charsets;
 import com.google.common.eventbus.EventBus;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
@@ -61,6 +74,9 @@ public class IdentityManager extends AbstractService {
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(IdentityManager.class);
 
+	/** The hash function used to calculate identity fingerprints. */
+	private static final HashFunction fingerprintFunction = Hashing.murmur3_128();
+
 	/** The event bus. */
 	private final EventBus eventBus;
 
@@ -70,10 +86,16 @@ public class IdentityManager extends AbstractService {
 	/** The context to filter for. */
 	private final String context;
 
+	/** The trust cache. */
+	private final TrustCache trustCache;
+
 	/** The currently known own identities. */
 	/* synchronize access on syncObject. */
 	private final Map<String, OwnIdentity> currentOwnIdentities = new HashMap<String, OwnIdentity>();
 
+	/** The executor that loads the trusted identities of own identities. */
+	private final ExecutorService identityLoaders = Executors.newFixedThreadPool(4, new NamedThreadFactory("Sone Identity Loader %2$d"));
+
 	/** The last time all identities were loaded. */
 	private volatile long identitiesLastLoaded;
 
@@ -87,13 +109,16 @@ public class IdentityManager extends AbstractService {
 	 * @param context
 	 *            The context to focus on (may be {@code null} to ignore
 	 *            contexts)
+	 * @param trustCache
+	 *            The trust cache to fill with the loaded trust values
 	 */
 	@Inject
-	public IdentityManager(EventBus eventBus, WebOfTrustConnector webOfTrustConnector, @Named("WebOfTrustContext") String context) {
+	public IdentityManager(EventBus eventBus, WebOfTrustConnector webOfTrustConnector, @Named("WebOfTrustContext") String context, TrustCache trustCache) {
 		super("Sone Identity Manager", false);
 		this.eventBus = eventBus;
 		this.webOfTrustConnector = webOfTrustConnector;
 		this.context = context;
+		this.trustCache = trustCache;
 	}
 
 	//
@@ -162,10 +187,10 @@ public class IdentityManager extends AbstractService {
 	 */
 	@Override
 	protected void serviceRun() {
-		Map<OwnIdentity, Map<String, Identity>> oldIdentities = Collections.emptyMap();
+		Map<String, Map<String, IdentityState>> oldIdentityStates = Collections.emptyMap();
 		while (!shouldStop()) {
-			Map<OwnIdentity, Map<String, Identity>> currentIdentities = new HashMap<OwnIdentity, Map<String, Identity>>();
 			Map<String, OwnIdentity> currentOwnIdentities = new HashMap<String, OwnIdentity>();
+			Map<OwnIdentity, Future<IdentityChanges>> identityChangeFutures = new HashMap<OwnIdentity, Future<IdentityChanges>>();
 
 			Set<OwnIdentity> ownIdentities = null;
 			boolean identitiesLoaded = false;
@@ -175,32 +200,26 @@ public class IdentityManager extends AbstractService {
 				ownIdentities = webOfTrustConnector.loadAllOwnIdentities();
 				logger.finest(String.format("Loaded %d Own Identities.", ownIdentities.size()));
 
-				/* load trusted identities. */
+				/* load trusted identities of all own identities in parallel. */
 				for (OwnIdentity ownIdentity : ownIdentities) {
 					currentOwnIdentities.put(ownIdentity.getId(), ownIdentity);
-					Map<String, Identity> identities = new HashMap<String, Identity>();
-					currentIdentities.put(ownIdentity, identities);
-
-					/*
-					 * if the context doesn’t match, skip getting trusted
-					 * identities.
-					 */
-					if ((context != null) && !ownIdentity.hasContext(context)) {
-						continue;
-					}
-
-					/* load trusted identities. */
-					logger.finer(String.format("Getting trusted identities for %s...", ownIdentity.getId()));
-					Set<Identity> trustedIdentities = webOfTrustConnector.loadTrustedIdentities(ownIdentity, context);
-					logger.finest(String.format("Got %d trusted identities.", trustedIdentities.size()));
-					for (Identity identity : trustedIdentities) {
-						identities.put(identity.getId(), identity);
-					}
+					Map<String, IdentityState> oldStates = oldIdentityStates.get(ownIdentity.getId());
+					identityChangeFutures.put(ownIdentity, identityLoaders.submit(new IdentityChangeDetector(ownIdentity, (oldStates == null) ? Collections.<String, IdentityState> emptyMap() : oldStates)));
+				}
+				for (Future<IdentityChanges> identityChangeFuture : identityChangeFutures.values()) {
+					identityChangeFuture.get();
 				}
 				identitiesLoaded = true;
 				identitiesLastLoaded = System.currentTimeMillis();
 			} catch (WebOfTrustException wote1) {
 				logger.log(Level.WARNING, "WoT has disappeared!", wote1);
+			} catch (ExecutionException ee1) {
+				logger.log(Level.WARNING, "WoT has disappeared!", ee1.getCause());
+			} catch (InterruptedException ie1) {
+				logger.log(Level.FINE, "Interrupted while loading identities.", ie1);
+			} catch (RejectedExecutionException ree1) {
+				/* identity manager is being stopped. */
+				break;
 			}
 
 			if (identitiesLoaded) {
@@ -208,74 +227,17 @@ public class IdentityManager extends AbstractService {
 				/* check for changes. */
 				checkOwnIdentities(currentOwnIdentities);
 
-				/* now check for changes in remote identities. */
-				for (OwnIdentity ownIdentity : currentOwnIdentities.values()) {
-
-					/* find new identities. */
-					for (Identity currentIdentity : currentIdentities.get(ownIdentity).values()) {
-						if (!oldIdentities.containsKey(ownIdentity) || !oldIdentities.get(ownIdentity).containsKey(currentIdentity.getId())) {
-							logger.finest(String.format("Identity added for %s: %s", ownIdentity.getId(), currentIdentity));
-							eventBus.post(new IdentityAddedEvent(ownIdentity, currentIdentity));
-						}
-					}
-
-					/* find removed identities. */
-					if (oldIdentities.containsKey(ownIdentity)) {
-						for (Identity oldIdentity : oldIdentities.get(ownIdentity).values()) {
-							if (!currentIdentities.get(ownIdentity).containsKey(oldIdentity.getId())) {
-								logger.finest(String.format("Identity removed for %s: %s", ownIdentity.getId(), oldIdentity));
-								eventBus.post(new IdentityRemovedEvent(ownIdentity, oldIdentity));
-							}
-						}
-
-						/* check for changes in the contexts. */
-						for (Identity oldIdentity : oldIdentities.get(ownIdentity).values()) {
-							if (!currentIdentities.get(ownIdentity).containsKey(oldIdentity.getId())) {
-								continue;
-							}
-							Identity newIdentity = currentIdentities.get(ownIdentity).get(oldIdentity.getId());
-							Set<String> oldContexts = oldIdentity.getContexts();
-							Set<String> newContexts = newIdentity.getContexts();
-							if (oldContexts.size() != newContexts.size()) {
-								logger.finest(String.format("Contexts changed for %s: was: %s, is now: %s", ownIdentity.getId(), oldContexts, newContexts));
-								eventBus.post(new IdentityUpdatedEvent(ownIdentity, newIdentity));
-								continue;
-							}
-							for (String oldContext : oldContexts) {
-								if (!newContexts.contains(oldContext)) {
-									logger.finest(String.format("Context was removed for %s: %s", ownIdentity.getId(), oldContext));
-									eventBus.post(new IdentityUpdatedEvent(ownIdentity, newIdentity));
-									break;
-								}
-							}
-						}
-
-						/* check for changes in the properties. */
-						for (Identity oldIdentity : oldIdentities.get(ownIdentity).values()) {
-							if (!currentIdentities.get(ownIdentity).containsKey(oldIdentity.getId())) {
-								continue;
-							}
-							Identity newIdentity = currentIdentities.get(ownIdentity).get(oldIdentity.getId());
-							Map<String, String> oldProperties = oldIdentity.getProperties();
-							Map<String, String> newProperties = newIdentity.getProperties();
-							if (oldProperties.size() != newProperties.size()) {
-								logger.finest(String.format("Properties changed for %s: was: %s, is now: %s", ownIdentity.getId(), oldProperties, newProperties));
-								eventBus.post(new IdentityUpdatedEvent(ownIdentity, newIdentity));
-								continue;
-							}
-							for (Entry<String, String> oldProperty : oldProperties.entrySet()) {
-								if (!newProperties.containsKey(oldProperty.getKey()) || !newProperties.get(oldProperty.getKey()).equals(oldProperty.getValue())) {
-									logger.finest(String.format("Property was removed for %s: %s", ownIdentity.getId(), oldProperty));
-									eventBus.post(new IdentityUpdatedEvent(ownIdentity, newIdentity));
-									break;
-								}
-							}
-						}
+				/* post changes in remote identities, remember the new states. */
+				Map<String, Map<String, IdentityState>> currentIdentityStates = new HashMap<String, Map<String, IdentityState>>();
+				for (Entry<OwnIdentity, Future<IdentityChanges>> identityChangeFuture : identityChangeFutures.entrySet()) {
+					IdentityChanges identityChanges = Futures.getUnchecked(identityChangeFuture.getValue());
+					trustCache.updateTrusts(identityChangeFuture.getKey(), identityChanges.getIdentities());
+					for (Object identityEvent : identityChanges.getEvents()) {
+						eventBus.post(identityEvent);
 					}
+					currentIdentityStates.put(identityChangeFuture.getKey().getId(), identityChanges.getIdentityStates());
 				}
-
-				/* remember the current set of identities. */
-				oldIdentities = currentIdentities;
+				oldIdentityStates = currentIdentityStates;
 			}
 
 			/* wait a minute before checking again. */
@@ -283,6 +245,14 @@ public class IdentityManager extends AbstractService {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void serviceStop() {
+		identityLoaders.shutdownNow();
+	}
+
 	//
 	// PRIVATE METHODS
 	//
@@ -320,4 +290,210 @@ public class IdentityManager extends AbstractService {
 		}
 	}
 
+	/**
+	 * Calculates a fingerprint over the contexts and properties of the given
+	 * identity. The fingerprint does not depend on the order of the contexts
+	 * and properties.
+	 *
+	 * @param identity
+	 *            The identity to calculate the fingerprint for
+	 * @return The fingerprint of the identity
+	 */
+	private static long calculateFingerprint(Identity identity) {
+		long fingerprint = 0;
+		for (String context : identity.getContexts()) {
+			fingerprint += fingerprintFunction.hashString("C" + context, Charsets.UTF_8).asLong();
+		}
+		for (Entry<String, String> property : identity.getProperties().entrySet()) {
+			fingerprint += fingerprintFunction.hashString("P" + property.getKey() + "\0" + property.getValue(), Charsets.UTF_8).asLong();
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Loads the trusted identities of a single own identity and compares them
+	 * to the previously loaded identities of that own identity.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private class IdentityChangeDetector implements Callable<IdentityChanges> {
+
+		/** The own identity to load the trusted identities for. */
+		private final OwnIdentity ownIdentity;
+
+		/** The states of the previously loaded identities, by ID. */
+		private final Map<String, IdentityState> oldIdentityStates;
+
+		/**
+		 * Creates a new identity change detector.
+		 *
+		 * @param ownIdentity
+		 *            The own identity to load the trusted identities for
+		 * @param oldIdentityStates
+		 *            The states of the previously loaded identities
+		 */
+		public IdentityChangeDetector(OwnIdentity ownIdentity, Map<String, IdentityState> oldIdentityStates) {
+			this.ownIdentity = ownIdentity;
+			this.oldIdentityStates = oldIdentityStates;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public IdentityChanges call() throws WebOfTrustException {
+			IdentityChanges identityChanges = new IdentityChanges();
+
+			/* if the context doesn’t match, skip getting trusted identities. */
+			Set<Identity> trustedIdentities = Collections.emptySet();
+			if ((context == null) || ownIdentity.hasContext(context)) {
+				logger.finer(String.format("Getting trusted identities for %s...", ownIdentity.getId()));
+				trustedIdentities = webOfTrustConnector.loadTrustedIdentities(ownIdentity, context);
+				logger.finest(String.format("Got %d trusted identities.", trustedIdentities.size()));
+			}
+
+			/* find new and changed identities. */
+			Map<String, IdentityState> identityStates = identityChanges.getIdentityStates();
+			for (Identity identity : trustedIdentities) {
+				identityChanges.addIdentity(identity);
+				IdentityState identityState = new IdentityState(identity, calculateFingerprint(identity));
+				identityStates.put(identity.getId(), identityState);
+				IdentityState oldIdentityState = oldIdentityStates.get(identity.getId());
+				if (oldIdentityState == null) {
+					logger.finest(String.format("Identity added for %s: %s", ownIdentity.getId(), identity));
+					identityChanges.addEvent(new IdentityAddedEvent(ownIdentity, identity));
+				} else if (oldIdentityState.getFingerprint() != identityState.getFingerprint()) {
+					logger.finest(String.format("Contexts or properties changed for %s: %s", ownIdentity.getId(), identity));
+					identityChanges.addEvent(new IdentityUpdatedEvent(ownIdentity, identity));
+				}
+			}
+
+			/* find removed identities. */
+			for (IdentityState oldIdentityState : oldIdentityStates.values()) {
+				if (!identityStates.containsKey(oldIdentityState.getIdentity().getId())) {
+					logger.finest(String.format("Identity removed for %s: %s", ownIdentity.getId(), oldIdentityState.getIdentity()));
+					identityChanges.addEvent(new IdentityRemovedEvent(ownIdentity, oldIdentityState.getIdentity()));
+				}
+			}
+
+			return identityChanges;
+		}
+
+	}
+
+	/**
+	 * The changes detected for the trusted identities of a single own
+	 * identity, consisting of the loaded identities, the events to post, and
+	 * the new states of the identities.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class IdentityChanges {
+
+		/** The loaded identities. */
+		private final List<Identity> identities = new ArrayList<Identity>();
+
+		/** The events to post. */
+		private final List<Object> events = new ArrayList<Object>();
+
+		/**
+		 * Returns the loaded identities.
+		 *
+		 * @return The loaded identities
+		 */
+		public List<Identity> getIdentities() {
+			return identities;
+		}
+
+		/**
+		 * Adds a loaded identity.
+		 *
+		 * @param identity
+		 *            The loaded identity
+		 */
+		public void addIdentity(Identity identity) {
+			identities.add(identity);
+		}
+
+		/** The states of the loaded identities, by ID. */
+		private final Map<String, IdentityState> identityStates = new HashMap<String, IdentityState>();
+
+		/**
+		 * Returns the events to post.
+		 *
+		 * @return The events to post
+		 */
+		public List<Object> getEvents() {
+			return events;
+		}
+
+		/**
+		 * Adds an event to post.
+		 *
+		 * @param event
+		 *            The event to post
+		 */
+		public void addEvent(Object event) {
+			events.add(event);
+		}
+
+		/**
+		 * Returns the states of the loaded identities.
+		 *
+		 * @return The states of the loaded identities, by ID
+		 */
+		public Map<String, IdentityState> getIdentityStates() {
+			return identityStates;
+		}
+
+	}
+
+	/**
+	 * The state of an identity as of the last time it was loaded, consisting
+	 * of the identity and a fingerprint of its contexts and properties.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class IdentityState {
+
+		/** The identity. */
+		private final Identity identity;
+
+		/** The fingerprint of the identity’s contexts and properties. */
+		private final long fingerprint;
+
+		/**
+		 * Creates a new identity state.
+		 *
+		 * @param identity
+		 *            The identity
+		 * @param fingerprint
+		 *            The fingerprint of the identity’s contexts and properties
+		 */
+		public IdentityState(Identity identity, long fingerprint) {
+			this.identity = identity;
+			this.fingerprint = fingerprint;
+		}
+
+		/**
+		 * Returns the identity.
+		 *
+		 * @return The identity
+		 */
+		public Identity getIdentity() {
+			return identity;
+		}
+
+		/**
+		 * Returns the fingerprint of the identity’s contexts and properties.
+		 *
+		 * @return The fingerprint of the identity
+		 */
+		public long getFingerprint() {
+			return fingerprint;
+		}
+
+	}
+
 }
@@ -0,0 +1,311 @@
+/*
+ * Sone - TrustCache.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.freenet.wot;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.pterodactylus.sone.freenet.wot.event.OwnIdentityRemovedEvent;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.MapMaker;
+import com.google.common.eventbus.Subscribe;
+import com.google.inject.Inject;
+
+/**
+ * Caches the {@link Trust} that {@link OwnIdentity}s assign to
+ * {@link Identity}s. The cache is filled in bulk by the {@link IdentityManager}
+ * every time it has loaded the trusted identities of an own identity, and it
+ * is updated whenever a local Sone changes the trust it assigns to another
+ * identity. Looking up a trust value never talks to the Web of Trust plugin;
+ * if there is no (or only an expired) cached value, the trust value the
+ * identity was loaded with is returned. Every change of a cached value
+ * increases the {@link #getVersion() version} of the cache.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class TrustCache {
+
+	/** The default time a cached trust value is valid (10 minutes). */
+	public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(10);
+
+	/** The time a cached trust value is valid (in milliseconds). */
+	private final long timeToLive;
+
+	/**
+	 * The cached trust values, by own identity ID and identity ID. The inner
+	 * maps are never modified once they are stored.
+	 */
+	private final ConcurrentMap<String, Map<String, CachedTrust>> cachedTrusts = new MapMaker().makeMap();
+
+	/** The version of the cached trust values; increased on every change. */
+	private final AtomicLong version = new AtomicLong();
+
+	/**
+	 * Creates a new trust cache with the default time to live.
+	 */
+	@Inject
+	public TrustCache() {
+		this(DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * Creates a new trust cache.
+	 *
+	 * @param timeToLive
+	 *            The time a cached trust value is valid (in milliseconds)
+	 */
+	public TrustCache(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the trust the given own identity assigns to the given identity.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @param identity
+	 *            The identity to get the trust for
+	 * @return The trust, or {@code null} if the trust is not known
+	 */
+	public Trust getTrust(OwnIdentity ownIdentity, Identity identity) {
+		return getTrust(ownIdentity, identity, getCachedTrusts(ownIdentity), System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns the trust the given own identity assigns to each of the given
+	 * identities.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @param identities
+	 *            The identities to get the trust for
+	 * @return The trust of the identities; identities whose trust is not known
+	 *         are mapped to {@code null}
+	 */
+	public Map<Identity, Trust> getTrusts(OwnIdentity ownIdentity, Collection<? extends Identity> identities) {
+		Map<String, CachedTrust> cachedTrusts = getCachedTrusts(ownIdentity);
+		long now = System.currentTimeMillis();
+		Map<Identity, Trust> trusts = new HashMap<Identity, Trust>(identities.size() * 2);
+		for (Identity identity : identities) {
+			trusts.put(identity, getTrust(ownIdentity, identity, cachedTrusts, now));
+		}
+		return trusts;
+	}
+
+	/**
+	 * Returns the version of the cached trust values. The version is
+	 * increased whenever a cached trust value is added, changed, or removed.
+	 *
+	 * @return The version of the cached trust values
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Replaces all cached trust values of the given own identity with the
+	 * trust values stored in the given identities.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @param identities
+	 *            The identities trusted by the own identity
+	 */
+	public void updateTrusts(OwnIdentity ownIdentity, Collection<? extends Identity> identities) {
+		long now = System.currentTimeMillis();
+		Map<String, CachedTrust> newCachedTrusts = new HashMap<String, CachedTrust>(identities.size() * 2);
+		for (Identity identity : identities) {
+			Trust trust = identity.getTrust(ownIdentity);
+			if (trust != null) {
+				newCachedTrusts.put(identity.getId(), new CachedTrust(trust, now));
+			}
+		}
+		synchronized (cachedTrusts) {
+			Map<String, CachedTrust> oldCachedTrusts = cachedTrusts.put(ownIdentity.getId(), newCachedTrusts);
+			if (!isSameTrust(oldCachedTrusts, newCachedTrusts)) {
+				version.incrementAndGet();
+			}
+		}
+	}
+
+	//
+	// EVENT HANDLERS
+	//
+
+	/**
+	 * Updates the cached trust value after a local trust change.
+	 *
+	 * @param trustUpdatedEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void trustUpdated(TrustUpdatedEvent trustUpdatedEvent) {
+		OwnIdentity ownIdentity = trustUpdatedEvent.ownIdentity();
+		Identity identity = trustUpdatedEvent.identity();
+		synchronized (cachedTrusts) {
+			Map<String, CachedTrust> newCachedTrusts = new HashMap<String, CachedTrust>(getCachedTrusts(ownIdentity));
+			Trust oldTrust = getTrust(ownIdentity, identity, newCachedTrusts, System.currentTimeMillis());
+			Trust newTrust = new Trust(trustUpdatedEvent.score(), (oldTrust != null) ? oldTrust.getImplicit() : null, (oldTrust != null) ? oldTrust.getDistance() : null);
+			newCachedTrusts.put(identity.getId(), new CachedTrust(newTrust, System.currentTimeMillis()));
+			cachedTrusts.put(ownIdentity.getId(), newCachedTrusts);
+		}
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Removes all cached trust values of an own identity that was removed.
+	 *
+	 * @param ownIdentityRemovedEvent
+	 *            The event
+	 */
+	@Subscribe
+	public void ownIdentityRemoved(OwnIdentityRemovedEvent ownIdentityRemovedEvent) {
+		if (cachedTrusts.remove(ownIdentityRemovedEvent.ownIdentity().getId()) != null) {
+			version.incrementAndGet();
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the cached trust values of the given own identity.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @return The cached trust values of the own identity, by identity ID
+	 */
+	private Map<String, CachedTrust> getCachedTrusts(OwnIdentity ownIdentity) {
+		Map<String, CachedTrust> cachedTrusts = this.cachedTrusts.get(ownIdentity.getId());
+		return (cachedTrusts != null) ? cachedTrusts : Collections.<String, CachedTrust> emptyMap();
+	}
+
+	/**
+	 * Returns the trust of the given identity from the given cached trust
+	 * values, falling back to the trust stored in the identity if there is no
+	 * valid cached trust value.
+	 *
+	 * @param ownIdentity
+	 *            The own identity
+	 * @param identity
+	 *            The identity to get the trust for
+	 * @param cachedTrusts
+	 *            The cached trust values of the own identity
+	 * @param now
+	 *            The current time (in milliseconds since Jan 1, 1970 UTC)
+	 * @return The trust, or {@code null} if the trust is not known
+	 */
+	private Trust getTrust(OwnIdentity ownIdentity, Identity identity, Map<String, CachedTrust> cachedTrusts, long now) {
+		CachedTrust cachedTrust = cachedTrusts.get(identity.getId());
+		if ((cachedTrust != null) && ((now - cachedTrust.getTime()) <= timeToLive)) {
+			return cachedTrust.getTrust();
+		}
+		return identity.getTrust(ownIdentity);
+	}
+
+	/**
+	 * Returns whether the given cached trust values contain the same trust
+	 * values for the same identities.
+	 *
+	 * @param oldCachedTrusts
+	 *            The old cached trust values (may be {@code null})
+	 * @param newCachedTrusts
+	 *            The new cached trust values
+	 * @return {@code true} if the cached trust values contain the same trust
+	 *         values, {@code false} otherwise
+	 */
+	private static boolean isSameTrust(Map<String, CachedTrust> oldCachedTrusts, Map<String, CachedTrust> newCachedTrusts) {
+		if ((oldCachedTrusts == null) || !oldCachedTrusts.keySet().equals(newCachedTrusts.keySet())) {
+			return false;
+		}
+		for (Entry<String, CachedTrust> newCachedTrust : newCachedTrusts.entrySet()) {
+			Trust oldTrust = oldCachedTrusts.get(newCachedTrust.getKey()).getTrust();
+			Trust newTrust = newCachedTrust.getValue().getTrust();
+			if (!Objects.equal(oldTrust.getExplicit(), newTrust.getExplicit()) || !Objects.equal(oldTrust.getImplicit(), newTrust.getImplicit()) || !Objects.equal(oldTrust.getDistance(), newTrust.getDistance())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A trust value and the time it was stored in the cache.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class CachedTrust {
+
+		/** The trust value. */
+		private final Trust trust;
+
+		/** The time the trust value was stored. */
+		private final long time;
+
+		/**
+		 * Creates a new cached trust value.
+		 *
+		 * @param trust
+		 *            The trust value
+		 * @param time
+		 *            The time the trust value was stored (in milliseconds
+		 *            since Jan 1, 1970 UTC)
+		 */
+		public CachedTrust(Trust trust, long time) {
+			this.trust = trust;
+			this.time = time;
+		}
+
+		/**
+		 * Returns the trust value.
+		 *
+		 * @return The trust value
+		 */
+		public Trust getTrust() {
+			return trust;
+		}
+
+		/**
+		 * Returns the time the trust value was stored.
+		 *
+		 * @return The time the trust value was stored (in milliseconds since
+		 *         Jan 1, 1970 UTC)
+		 */
+		public long getTime() {
+			return time;
+		}
+
+	}
+
+}
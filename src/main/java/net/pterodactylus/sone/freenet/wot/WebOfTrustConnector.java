@@ -17,10 +17,18 @@
 
 package net.pterodactylus.sone.freenet.wot;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -28,11 +36,19 @@ import java.util.logging.Logger;
 import net.pterodactylus.sone.freenet.plugin.PluginConnector;
 import net.pterodactylus.sone.freenet.plugin.PluginException;
 import net.pterodactylus.sone.freenet.plugin.event.ReceivedReplyEvent;
+import net.pterodactylus.sone.metrics.Counter;
+import net.pterodactylus.sone.metrics.Gauge;
+import net.pterodactylus.sone.metrics.MetricRegistry;
 import net.pterodactylus.util.logging.Logging;
 import net.pterodactylus.util.number.Numbers;
+import net.pterodactylus.util.thread.NamedThreadFactory;
 
 import com.google.common.collect.MapMaker;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 
 import freenet.support.SimpleFieldSet;
@@ -40,6 +56,14 @@ import freenet.support.api.Bucket;
 
 /**
  * Connector for the Web of Trust plugin.
+ * <p>
+ * Every request is backed by a {@link ListenableFuture} that is completed
+ * once the reply of the Web of Trust plugin has been received, the request
+ * has timed out, or the request was cancelled. Any number of requests can be
+ * outstanding at the same time; replies are matched to their requests using
+ * the request identifier. Requests for the trusted identities of an own
+ * identity use the longer {@link #SCORE_REQUEST_TIMEOUT} because the Web of
+ * Trust plugin can take a long time to answer them for large trust graphs.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
@@ -51,14 +75,38 @@ public class WebOfTrustConnector {
 	/** The name of the WoT plugin. */
 	private static final String WOT_PLUGIN_NAME = "plugins.WebOfTrust.WebOfTrust";
 
+	/** The default request timeout (2 minutes). */
+	public static final long DEFAULT_REQUEST_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+	/** The timeout for loading trusted identities (30 minutes). */
+	public static final long SCORE_REQUEST_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
 	/** Counter for connection identifiers. */
 	private final AtomicLong counter = new AtomicLong();
 
 	/** The plugin connector. */
 	private final PluginConnector pluginConnector;
 
-	/** Map for replies. */
-	private final Map<PluginIdentifier, Reply> replies = new MapMaker().makeMap();
+	/** The request timeout (in milliseconds). */
+	private final long requestTimeout;
+
+	/** The executor that times out requests. */
+	private final ScheduledExecutorService timeoutExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("Sone WoT Request Timeout %2$d"));
+
+	/** The pending requests. */
+	private final Map<PluginIdentifier, PendingRequest> pendingRequests = new MapMaker().makeMap();
+
+	/** The request statistics, by message name. */
+	private final ConcurrentMap<String, RequestStatistics> requestStatistics = new MapMaker().makeMap();
+
+	/** The metric registry. */
+	private final MetricRegistry metricRegistry;
+
+	/** The number of failed requests. */
+	private final Counter failedRequests;
+
+	/** The number of requests that timed out. */
+	private final Counter timedOutRequests;
 
 	/**
 	 * Creates a new Web of Trust connector that uses the given plugin
@@ -66,10 +114,62 @@ public class WebOfTrustConnector {
 	 *
 	 * @param pluginConnector
 	 *            The plugin connector
+	 * @param metricRegistry
+	 *            The metric registry
 	 */
 	@Inject
-	public WebOfTrustConnector(PluginConnector pluginConnector) {
+	public WebOfTrustConnector(PluginConnector pluginConnector, MetricRegistry metricRegistry) {
+		this(pluginConnector, metricRegistry, DEFAULT_REQUEST_TIMEOUT);
+	}
+
+	/**
+	 * Creates a new Web of Trust connector that uses the given plugin
+	 * connector.
+	 *
+	 * @param pluginConnector
+	 *            The plugin connector
+	 * @param metricRegistry
+	 *            The metric registry
+	 * @param requestTimeout
+	 *            The time after which requests are failed if no reply has
+	 *            been received (in milliseconds)
+	 */
+	public WebOfTrustConnector(PluginConnector pluginConnector, MetricRegistry metricRegistry, long requestTimeout) {
 		this.pluginConnector = pluginConnector;
+		this.metricRegistry = metricRegistry;
+		this.requestTimeout = requestTimeout;
+		failedRequests = metricRegistry.counter("WebOfTrust.FailedRequests");
+		timedOutRequests = metricRegistry.counter("WebOfTrust.TimedOutRequests");
+		metricRegistry.register("WebOfTrust.PendingRequests", new Gauge() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public long getValue() {
+				return pendingRequests.size();
+			}
+		});
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of requests that are currently waiting for a reply.
+	 *
+	 * @return The number of pending requests
+	 */
+	public int getPendingRequestCount() {
+		return pendingRequests.size();
+	}
+
+	/**
+	 * Returns the statistics of all requests sent so far, by message name.
+	 *
+	 * @return The request statistics
+	 */
+	public Map<String, RequestStatistics> getRequestStatistics() {
+		return Collections.unmodifiableMap(requestStatistics);
 	}
 
 	//
@@ -77,10 +177,13 @@ public class WebOfTrustConnector {
 	//
 
 	/**
-	 * Stops the web of trust connector.
+	 * Stops the web of trust connector. All pending requests are cancelled.
 	 */
 	public void stop() {
-		/* does nothing. */
+		timeoutExecutor.shutdownNow();
+		for (PendingRequest pendingRequest : pendingRequests.values()) {
+			pendingRequest.getReplyFuture().cancel(false);
+		}
 	}
 
 	/**
@@ -138,7 +241,7 @@ public class WebOfTrustConnector {
 	 *             if an error occured talking to the Web of Trust plugin
 	 */
 	public Set<Identity> loadTrustedIdentities(OwnIdentity ownIdentity, String context) throws PluginException {
-		Reply reply = performRequest(SimpleFieldSetConstructor.create().put("Message", "GetIdentitiesByScore").put("Truster", ownIdentity.getId()).put("Selection", "+").put("Context", (context == null) ? "" : context).put("WantTrustValues", "true").get());
+		Reply reply = performRequest(SimpleFieldSetConstructor.create().put("Message", "GetIdentitiesByScore").put("Truster", ownIdentity.getId()).put("Selection", "+").put("Context", (context == null) ? "" : context).put("WantTrustValues", "true").get(), SCORE_REQUEST_TIMEOUT);
 		SimpleFieldSet fields = reply.getFields();
 		Set<Identity> identities = new HashSet<Identity>();
 		int identityCounter = -1;
@@ -363,57 +466,136 @@ public class WebOfTrustConnector {
 	}
 
 	/**
-	 * Sends a request containing the given fields and waits for the target
-	 * message.
+	 * Waits for the given future to complete and returns its result.
+	 *
+	 * @param future
+	 *            The future to wait for
+	 * @return The result of the future
+	 * @throws PluginException
+	 *             if the request failed, timed out, or was cancelled
+	 */
+	private static <T> T getResult(ListenableFuture<T> future) throws PluginException {
+		try {
+			return Uninterruptibles.getUninterruptibly(future);
+		} catch (ExecutionException ee1) {
+			if (ee1.getCause() instanceof PluginException) {
+				throw (PluginException) ee1.getCause();
+			}
+			throw new PluginException(ee1.getCause());
+		} catch (CancellationException ce1) {
+			throw new PluginException("Request was cancelled.", ce1);
+		}
+	}
+
+	/**
+	 * Sends a request containing the given fields and waits for the reply,
+	 * using the request timeout of this connector.
 	 *
 	 * @param fields
 	 *            The fields of the message
 	 * @return The reply message
 	 * @throws PluginException
-	 *             if the request could not be sent
+	 *             if the request failed, timed out, or was cancelled
 	 */
 	private Reply performRequest(SimpleFieldSet fields) throws PluginException {
-		return performRequest(fields, null);
+		return performRequest(fields, requestTimeout);
 	}
 
 	/**
-	 * Sends a request containing the given fields and waits for the target
-	 * message.
+	 * Sends a request containing the given fields and waits for the reply.
 	 *
 	 * @param fields
 	 *            The fields of the message
-	 * @param data
-	 *            The payload of the message
+	 * @param timeout
+	 *            The time after which the request is failed if no reply has
+	 *            been received (in milliseconds)
 	 * @return The reply message
 	 * @throws PluginException
-	 *             if the request could not be sent
+	 *             if the request failed, timed out, or was cancelled
 	 */
-	private Reply performRequest(SimpleFieldSet fields, Bucket data) throws PluginException {
+	private Reply performRequest(SimpleFieldSet fields, long timeout) throws PluginException {
+		return getResult(performRequestAsync(fields, null, timeout));
+	}
+
+	/**
+	 * Sends a request containing the given fields. The returned future fails
+	 * with a {@link PluginException} if the request could not be sent, the
+	 * plugin replied with an error, or no reply was received within the
+	 * given timeout. Cancelling the returned future removes the pending
+	 * request.
+	 *
+	 * @param fields
+	 *            The fields of the message
+	 * @param data
+	 *            The payload of the message
+	 * @param timeout
+	 *            The time after which the request is failed if no reply has
+	 *            been received (in milliseconds)
+	 * @return A future containing the reply message
+	 */
+	private ListenableFuture<Reply> performRequestAsync(SimpleFieldSet fields, Bucket data, long timeout) {
 		String identifier = "FCP-Command-" + System.currentTimeMillis() + "-" + counter.getAndIncrement();
-		Reply reply = new Reply();
-		PluginIdentifier pluginIdentifier = new PluginIdentifier(WOT_PLUGIN_NAME, identifier);
-		replies.put(pluginIdentifier, reply);
-
-		logger.log(Level.FINE, String.format("Sending FCP Request: %s", fields.get("Message")));
-		synchronized (reply) {
-			try {
-				pluginConnector.sendRequest(WOT_PLUGIN_NAME, identifier, fields, data);
-				while (reply.getFields() == null) {
-					try {
-						reply.wait();
-					} catch (InterruptedException ie1) {
-						logger.log(Level.WARNING, String.format("Got interrupted while waiting for reply on %s.", fields.get("Message")), ie1);
+		final PluginIdentifier pluginIdentifier = new PluginIdentifier(WOT_PLUGIN_NAME, identifier);
+		final PendingRequest pendingRequest = new PendingRequest(fields.get("Message"));
+		pendingRequests.put(pluginIdentifier, pendingRequest);
+
+		logger.log(Level.FINE, String.format("Sending FCP Request: %s", pendingRequest.getMessage()));
+		try {
+			final ScheduledFuture<?> timeoutFuture = timeoutExecutor.schedule(new Runnable() {
+
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public void run() {
+					if (pendingRequest.getReplyFuture().setException(new PluginException(String.format("Request for %s timed out.", pendingRequest.getMessage())))) {
+						getRequestStatistics(pendingRequest.getMessage()).addTimeout();
+						timedOutRequests.increment();
+					}
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+			pendingRequest.getReplyFuture().addListener(new Runnable() {
+
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public void run() {
+					pendingRequests.remove(pluginIdentifier);
+					timeoutFuture.cancel(false);
+					if (pendingRequest.getReplyFuture().isCancelled()) {
+						getRequestStatistics(pendingRequest.getMessage()).addCancellation();
 					}
 				}
-			} finally {
-				replies.remove(pluginIdentifier);
+			}, MoreExecutors.sameThreadExecutor());
+			pluginConnector.sendRequest(WOT_PLUGIN_NAME, identifier, fields, data);
+		} catch (PluginException pe1) {
+			if (pendingRequest.getReplyFuture().setException(pe1)) {
+				getRequestStatistics(pendingRequest.getMessage()).addError(pendingRequest.getElapsedTime());
+				failedRequests.increment();
 			}
+		} catch (RuntimeException re1) {
+			/* timeout executor has been stopped. */
+			pendingRequests.remove(pluginIdentifier);
+			pendingRequest.getReplyFuture().setException(new PluginException("Could not send request for " + pendingRequest.getMessage(), re1));
 		}
-		logger.log(Level.FINEST, String.format("Received FCP Response for %s: %s", fields.get("Message"), (reply.getFields() != null) ? reply.getFields().get("Message") : null));
-		if ((reply.getFields() == null) || "Error".equals(reply.getFields().get("Message"))) {
-			throw new PluginException("Could not perform request for " + fields.get("Message"));
+		return pendingRequest.getReplyFuture();
+	}
+
+	/**
+	 * Returns the statistics for the message with the given name, creating
+	 * them if necessary.
+	 *
+	 * @param message
+	 *            The name of the message
+	 * @return The statistics of the message
+	 */
+	private RequestStatistics getRequestStatistics(String message) {
+		RequestStatistics statistics = requestStatistics.get(message);
+		if (statistics == null) {
+			RequestStatistics newStatistics = new RequestStatistics();
+			statistics = requestStatistics.putIfAbsent(message, newStatistics);
+			if (statistics == null) {
+				statistics = newStatistics;
+			}
 		}
-		return reply;
+		return statistics;
 	}
 
 	/**
@@ -425,53 +607,114 @@ public class WebOfTrustConnector {
 	@Subscribe
 	public void receivedReply(ReceivedReplyEvent receivedReplyEvent) {
 		PluginIdentifier pluginIdentifier = new PluginIdentifier(receivedReplyEvent.pluginName(), receivedReplyEvent.identifier());
-		Reply reply = replies.remove(pluginIdentifier);
-		if (reply == null) {
+		PendingRequest pendingRequest = pendingRequests.remove(pluginIdentifier);
+		if (pendingRequest == null) {
 			return;
 		}
-		logger.log(Level.FINEST, String.format("Received Reply from Plugin: %s", receivedReplyEvent.fieldSet().get("Message")));
-		synchronized (reply) {
-			reply.setFields(receivedReplyEvent.fieldSet());
-			reply.setData(receivedReplyEvent.data());
-			reply.notify();
+		SimpleFieldSet fields = receivedReplyEvent.fieldSet();
+		logger.log(Level.FINEST, String.format("Received FCP Response for %s: %s", pendingRequest.getMessage(), (fields != null) ? fields.get("Message") : null));
+		if ((fields == null) || "Error".equals(fields.get("Message"))) {
+			if (pendingRequest.getReplyFuture().setException(new PluginException("Could not perform request for " + pendingRequest.getMessage()))) {
+				getRequestStatistics(pendingRequest.getMessage()).addError(pendingRequest.getElapsedTime());
+				failedRequests.increment();
+			}
+			return;
+		}
+		if (pendingRequest.getReplyFuture().set(new Reply(fields, receivedReplyEvent.data()))) {
+			long elapsedTime = pendingRequest.getElapsedTime();
+			getRequestStatistics(pendingRequest.getMessage()).addSuccess(elapsedTime);
+			metricRegistry.histogram("WebOfTrust." + pendingRequest.getMessage()).update(elapsedTime);
 		}
 	}
 
 	/**
-	 * Container for the data of the reply from a plugin.
+	 * Container for a request that is waiting for its reply.
 	 *
 	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
 	 */
-	private static class Reply {
+	private static class PendingRequest {
 
-		/** The fields of the reply. */
-		private SimpleFieldSet fields;
+		/** The name of the request message. */
+		private final String message;
 
-		/** The payload of the reply. */
-		private Bucket data;
+		/** The time the request was sent (in nanoseconds). */
+		private final long startTime = System.nanoTime();
+
+		/** The future for the reply. */
+		private final SettableFuture<Reply> replyFuture = SettableFuture.create();
 
-		/** Empty constructor. */
-		public Reply() {
-			/* do nothing. */
+		/**
+		 * Creates a new pending request.
+		 *
+		 * @param message
+		 *            The name of the request message
+		 */
+		public PendingRequest(String message) {
+			this.message = message;
 		}
 
 		/**
-		 * Returns the fields of the reply.
+		 * Returns the name of the request message.
 		 *
-		 * @return The fields of the reply
+		 * @return The name of the request message
 		 */
-		public SimpleFieldSet getFields() {
-			return fields;
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * Returns the time that has passed since the request was sent.
+		 *
+		 * @return The elapsed time (in nanoseconds)
+		 */
+		public long getElapsedTime() {
+			return System.nanoTime() - startTime;
 		}
 
 		/**
-		 * Sets the fields of the reply.
+		 * Returns the future for the reply.
+		 *
+		 * @return The future for the reply
+		 */
+		public SettableFuture<Reply> getReplyFuture() {
+			return replyFuture;
+		}
+
+	}
+
+	/**
+	 * Container for the data of the reply from a plugin.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class Reply {
+
+		/** The fields of the reply. */
+		private final SimpleFieldSet fields;
+
+		/** The payload of the reply. */
+		private final Bucket data;
+
+		/**
+		 * Creates a new reply.
 		 *
 		 * @param fields
 		 *            The fields of the reply
+		 * @param data
+		 *            The payload of the reply (may be {@code null})
 		 */
-		public void setFields(SimpleFieldSet fields) {
+		public Reply(SimpleFieldSet fields, Bucket data) {
 			this.fields = fields;
+			this.data = data;
+		}
+
+		/**
+		 * Returns the fields of the reply.
+		 *
+		 * @return The fields of the reply
+		 */
+		public SimpleFieldSet getFields() {
+			return fields;
 		}
 
 		/**
@@ -484,14 +727,142 @@ public class WebOfTrustConnector {
 			return data;
 		}
 
+	}
+
+	/**
+	 * Statistics about the requests for a single message name: the number of
+	 * successful, failed, timed out and cancelled requests, and the latency of
+	 * the requests that were answered.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public static class RequestStatistics {
+
+		/** The number of successful requests. */
+		private final AtomicLong successes = new AtomicLong();
+
+		/** The number of requests that failed. */
+		private final AtomicLong errors = new AtomicLong();
+
+		/** The number of requests that timed out. */
+		private final AtomicLong timeouts = new AtomicLong();
+
+		/** The number of cancelled requests. */
+		private final AtomicLong cancellations = new AtomicLong();
+
+		/** The total latency of all answered requests (in nanoseconds). */
+		private final AtomicLong totalLatency = new AtomicLong();
+
+		/** The maximum latency of all answered requests (in nanoseconds). */
+		private final AtomicLong maximumLatency = new AtomicLong();
+
 		/**
-		 * Sets the payload of the reply.
+		 * Returns the number of successful requests.
 		 *
-		 * @param data
-		 *            The payload of the reply (may be {@code null})
+		 * @return The number of successful requests
 		 */
-		public void setData(Bucket data) {
-			this.data = data;
+		public long getSuccessCount() {
+			return successes.get();
+		}
+
+		/**
+		 * Returns the number of requests that could not be sent or that were
+		 * answered with an error.
+		 *
+		 * @return The number of failed requests
+		 */
+		public long getErrorCount() {
+			return errors.get();
+		}
+
+		/**
+		 * Returns the number of requests that timed out.
+		 *
+		 * @return The number of timed out requests
+		 */
+		public long getTimeoutCount() {
+			return timeouts.get();
+		}
+
+		/**
+		 * Returns the number of cancelled requests.
+		 *
+		 * @return The number of cancelled requests
+		 */
+		public long getCancellationCount() {
+			return cancellations.get();
+		}
+
+		/**
+		 * Returns the average latency of all answered requests.
+		 *
+		 * @return The average latency (in milliseconds)
+		 */
+		public double getAverageLatency() {
+			long answered = successes.get() + errors.get();
+			return (answered == 0) ? 0 : (totalLatency.get() / 1000000.0 / answered);
+		}
+
+		/**
+		 * Returns the maximum latency of all answered requests.
+		 *
+		 * @return The maximum latency (in milliseconds)
+		 */
+		public double getMaximumLatency() {
+			return maximumLatency.get() / 1000000.0;
+		}
+
+		/**
+		 * Records a successful request.
+		 *
+		 * @param latency
+		 *            The latency of the request (in nanoseconds)
+		 */
+		void addSuccess(long latency) {
+			successes.incrementAndGet();
+			addLatency(latency);
+		}
+
+		/**
+		 * Records a failed request.
+		 *
+		 * @param latency
+		 *            The latency of the request (in nanoseconds)
+		 */
+		void addError(long latency) {
+			errors.incrementAndGet();
+			addLatency(latency);
+		}
+
+		/**
+		 * Records a request that timed out.
+		 */
+		void addTimeout() {
+			timeouts.incrementAndGet();
+		}
+
+		/**
+		 * Records a cancelled request.
+		 */
+		void addCancellation() {
+			cancellations.incrementAndGet();
+		}
+
+		/**
+		 * Adds the given latency to the total latency and updates the maximum
+		 * latency.
+		 *
+		 * @param latency
+		 *            The latency to add (in nanoseconds)
+		 */
+		private void addLatency(long latency) {
+			totalLatency.addAndGet(latency);
+			long currentMaximum;
+			while (latency > (currentMaximum = maximumLatency.get())) {
+				if (maximumLatency.compareAndSet(currentMaximum, latency)) {
+					break;
+				}
+			}
 		}
 
 	}
@@ -24,6 +24,7 @@ import java.util.logging.Logger;
 
 import net.pterodactylus.sone.core.Core;
 import net.pterodactylus.sone.core.FreenetInterface;
+import net.pterodactylus.sone.core.NodeFreenetInterface;
 import net.pterodactylus.sone.core.WebOfTrustUpdater;
 import net.pterodactylus.sone.database.Database;
 import net.pterodactylus.sone.database.PostBuilderFactory;
@@ -33,9 +34,12 @@ import net.pterodactylus.sone.database.SoneProvider;
 import net.pterodactylus.sone.database.memory.MemoryDatabase;
 import net.pterodactylus.sone.fcp.FcpInterface;
 import net.pterodactylus.sone.freenet.PluginStoreConfigurationBackend;
+import net.pterodactylus.sone.freenet.plugin.FredPluginConnector;
 import net.pterodactylus.sone.freenet.plugin.PluginConnector;
 import net.pterodactylus.sone.freenet.wot.IdentityManager;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
 import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector;
+import net.pterodactylus.sone.metrics.MetricRegistry;
 import net.pterodactylus.sone.web.WebInterface;
 import net.pterodactylus.util.config.Configuration;
 import net.pterodactylus.util.config.ConfigurationException;
@@ -217,11 +221,13 @@ public class SonePlugin implements FredPlugin, FredPluginFCP, FredPluginL10n, Fr
 				bind(MemoryDatabase.class).in(Singleton.class);
 				bind(EventBus.class).toInstance(eventBus);
 				bind(Configuration.class).toInstance(startConfiguration);
-				bind(FreenetInterface.class).in(Singleton.class);
-				bind(PluginConnector.class).in(Singleton.class);
+				bind(FreenetInterface.class).to(NodeFreenetInterface.class).in(Singleton.class);
+				bind(PluginConnector.class).to(FredPluginConnector.class).in(Singleton.class);
 				bind(WebOfTrustConnector.class).in(Singleton.class);
 				bind(WebOfTrustUpdater.class).in(Singleton.class);
 				bind(IdentityManager.class).in(Singleton.class);
+				bind(TrustCache.class).in(Singleton.class);
+				bind(MetricRegistry.class).in(Singleton.class);
 				bind(String.class).annotatedWith(Names.named("WebOfTrustContext")).toInstance("Sone");
 				bind(SonePlugin.class).toInstance(SonePlugin.this);
 				bind(FcpInterface.class).in(Singleton.class);
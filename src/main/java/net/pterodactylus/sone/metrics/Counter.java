@@ -0,0 +1,66 @@
+/*
+ * Sone - Counter.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter that can only be incremented.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class Counter {
+
+	/** The value of the counter. */
+	private final AtomicLong value = new AtomicLong();
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the current value of this counter.
+	 *
+	 * @return The value of this counter
+	 */
+	public long getValue() {
+		return value.get();
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Increments this counter by one.
+	 */
+	public void increment() {
+		value.incrementAndGet();
+	}
+
+	/**
+	 * Increments this counter by the given amount.
+	 *
+	 * @param amount
+	 *            The amount to add
+	 */
+	public void add(long amount) {
+		value.addAndGet(amount);
+	}
+
+}
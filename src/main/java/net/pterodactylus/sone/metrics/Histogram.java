@@ -0,0 +1,177 @@
+/*
+ * Sone - Histogram.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies. Latencies are sorted into buckets whose upper bounds
+ * are powers of two microseconds, so recording a latency only needs a few
+ * atomic operations and no locking; in exchange, percentiles are only
+ * accurate to a factor of two.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class Histogram {
+
+	/**
+	 * The number of buckets. The last bucket holds all latencies of more than
+	 * 2<sup>38</sup> microseconds (about three days).
+	 */
+	private static final int BUCKET_COUNT = 40;
+
+	/** The number of latencies in each bucket. */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/** The number of recorded latencies. */
+	private final AtomicLong count = new AtomicLong();
+
+	/** The sum of all recorded latencies (in nanoseconds). */
+	private final AtomicLong total = new AtomicLong();
+
+	/** The largest recorded latency (in nanoseconds). */
+	private final AtomicLong maximum = new AtomicLong();
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of recorded latencies.
+	 *
+	 * @return The number of recorded latencies
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the sum of all recorded latencies.
+	 *
+	 * @return The sum of all latencies (in nanoseconds)
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * Returns the average of all recorded latencies.
+	 *
+	 * @return The average latency (in nanoseconds), or {@code 0} if no latency
+	 *         has been recorded
+	 */
+	public long getMean() {
+		long currentCount = count.get();
+		return (currentCount == 0) ? 0 : (total.get() / currentCount);
+	}
+
+	/**
+	 * Returns the largest recorded latency.
+	 *
+	 * @return The largest latency (in nanoseconds)
+	 */
+	public long getMaximum() {
+		return maximum.get();
+	}
+
+	/**
+	 * Returns the latency below which the given fraction of all recorded
+	 * latencies lies. The returned value is the upper bound of the bucket the
+	 * percentile falls into, but never more than the {@link #getMaximum()
+	 * largest} recorded latency.
+	 *
+	 * @param fraction
+	 *            The fraction of latencies (between {@code 0} and {@code 1})
+	 * @return The latency of the percentile (in nanoseconds), or {@code 0} if
+	 *         no latency has been recorded
+	 */
+	public long getPercentile(double fraction) {
+		checkArgument((fraction >= 0) && (fraction <= 1), "fraction must be between 0 and 1");
+		long[] bucketCounts = new long[BUCKET_COUNT];
+		long bucketTotal = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket) {
+			bucketCounts[bucket] = buckets.get(bucket);
+			bucketTotal += bucketCounts[bucket];
+		}
+		if (bucketTotal == 0) {
+			return 0;
+		}
+		long threshold = (long) Math.ceil(bucketTotal * fraction);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket) {
+			seen += bucketCounts[bucket];
+			if ((seen >= threshold) && (seen > 0)) {
+				return Math.min(getUpperBound(bucket), maximum.get());
+			}
+		}
+		return maximum.get();
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Records the given latency.
+	 *
+	 * @param latency
+	 *            The latency to record (in nanoseconds)
+	 */
+	public void update(long latency) {
+		long positiveLatency = Math.max(0, latency);
+		buckets.incrementAndGet(getBucket(positiveLatency));
+		count.incrementAndGet();
+		total.addAndGet(positiveLatency);
+		long currentMaximum = maximum.get();
+		while ((positiveLatency > currentMaximum) && !maximum.compareAndSet(currentMaximum, positiveLatency)) {
+			currentMaximum = maximum.get();
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the index of the bucket for the given latency. Bucket
+	 * <i>n</i> holds all latencies of less than 2<sup><i>n</i></sup>
+	 * microseconds that are not in a lower bucket.
+	 *
+	 * @param latency
+	 *            The latency (in nanoseconds)
+	 * @return The index of the bucket
+	 */
+	private static int getBucket(long latency) {
+		return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(latency / 1000));
+	}
+
+	/**
+	 * Returns the upper bound of the bucket with the given index.
+	 *
+	 * @param bucket
+	 *            The index of the bucket
+	 * @return The upper bound of the bucket (in nanoseconds)
+	 */
+	private static long getUpperBound(int bucket) {
+		return (1L << bucket) * 1000;
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Sone - MetricRegistry.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.MapMaker;
+
+/**
+ * Registry for all {@link Counter}s, {@link Gauge}s, and {@link Histogram}s of
+ * Sone. Metrics are identified by their name; requesting a counter or a
+ * histogram with a name that has not been used before creates it, so
+ * components can simply request their metrics once and keep them.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class MetricRegistry {
+
+	/** The counters, by name. */
+	private final ConcurrentMap<String, Counter> counters = new MapMaker().makeMap();
+
+	/** The gauges, by name. */
+	private final ConcurrentMap<String, Gauge> gauges = new MapMaker().makeMap();
+
+	/** The histograms, by name. */
+	private final ConcurrentMap<String, Histogram> histograms = new MapMaker().makeMap();
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the counter with the given name, creating it if necessary.
+	 *
+	 * @param name
+	 *            The name of the counter
+	 * @return The counter with the given name
+	 */
+	public Counter counter(String name) {
+		checkNotNull(name, "name must not be null");
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			Counter newCounter = new Counter();
+			counter = counters.putIfAbsent(name, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Returns the histogram with the given name, creating it if necessary.
+	 *
+	 * @param name
+	 *            The name of the histogram
+	 * @return The histogram with the given name
+	 */
+	public Histogram histogram(String name) {
+		checkNotNull(name, "name must not be null");
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram();
+			histogram = histograms.putIfAbsent(name, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Returns all counters, sorted by their names.
+	 *
+	 * @return All counters
+	 */
+	public SortedMap<String, Counter> getCounters() {
+		return ImmutableSortedMap.copyOf(counters);
+	}
+
+	/**
+	 * Returns all gauges, sorted by their names.
+	 *
+	 * @return All gauges
+	 */
+	public SortedMap<String, Gauge> getGauges() {
+		return ImmutableSortedMap.copyOf(gauges);
+	}
+
+	/**
+	 * Returns all histograms, sorted by their names.
+	 *
+	 * @return All histograms
+	 */
+	public SortedMap<String, Histogram> getHistograms() {
+		return ImmutableSortedMap.copyOf(histograms);
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Registers the given gauge, replacing a gauge that has previously been
+	 * registered with the same name.
+	 *
+	 * @param name
+	 *            The name of the gauge
+	 * @param gauge
+	 *            The gauge to register
+	 */
+	public void register(String name, Gauge gauge) {
+		gauges.put(checkNotNull(name, "name must not be null"), checkNotNull(gauge, "gauge must not be null"));
+	}
+
+}
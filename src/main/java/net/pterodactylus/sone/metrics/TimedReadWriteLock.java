@@ -0,0 +1,160 @@
+/*
+ * Sone - TimedReadWriteLock.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * {@link ReadWriteLock} wrapper that records how long threads have to wait
+ * for the read and the write lock in a {@link Histogram} each. The number of
+ * recorded latencies is the number of times each lock was acquired.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class TimedReadWriteLock implements ReadWriteLock {
+
+	/** The timed read lock. */
+	private final Lock readLock;
+
+	/** The timed write lock. */
+	private final Lock writeLock;
+
+	/**
+	 * Creates a new timed read-write lock.
+	 *
+	 * @param readWriteLock
+	 *            The lock to wrap
+	 * @param readLockWait
+	 *            The histogram for the time spent waiting for the read lock
+	 * @param writeLockWait
+	 *            The histogram for the time spent waiting for the write lock
+	 */
+	public TimedReadWriteLock(ReadWriteLock readWriteLock, Histogram readLockWait, Histogram writeLockWait) {
+		readLock = new TimedLock(readWriteLock.readLock(), readLockWait);
+		writeLock = new TimedLock(readWriteLock.writeLock(), writeLockWait);
+	}
+
+	//
+	// INTERFACE ReadWriteLock
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Lock readLock() {
+		return readLock;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Lock writeLock() {
+		return writeLock;
+	}
+
+	/**
+	 * {@link Lock} wrapper that records the time spent in
+	 * {@link Lock#lock()} and {@link Lock#lockInterruptibly()}.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class TimedLock implements Lock {
+
+		/** The wrapped lock. */
+		private final Lock lock;
+
+		/** The histogram for the waiting times. */
+		private final Histogram lockWait;
+
+		/**
+		 * Creates a new timed lock.
+		 *
+		 * @param lock
+		 *            The lock to wrap
+		 * @param lockWait
+		 *            The histogram for the waiting times
+		 */
+		public TimedLock(Lock lock, Histogram lockWait) {
+			this.lock = lock;
+			this.lockWait = lockWait;
+		}
+
+		//
+		// INTERFACE Lock
+		//
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void lock() {
+			long start = System.nanoTime();
+			lock.lock();
+			lockWait.update(System.nanoTime() - start);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			long start = System.nanoTime();
+			lock.lockInterruptibly();
+			lockWait.update(System.nanoTime() - start);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean tryLock() {
+			return lock.tryLock();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			return lock.tryLock(time, unit);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void unlock() {
+			lock.unlock();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Condition newCondition() {
+			return lock.newCondition();
+		}
+
+	}
+
+}
@@ -17,16 +17,37 @@
 
 package net.pterodactylus.sone.notify;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Set;
 
 import net.pterodactylus.util.notify.TemplateNotification;
 import net.pterodactylus.util.template.Template;
 
+import com.google.common.base.Predicate;
+
 /**
  * Notification that maintains a list of new elements.
+ * <p>
+ * The elements are kept in an insertion-ordered set so that adding and
+ * removing an element does not depend on the number of elements; an element
+ * can only be contained once. The hash code of the elements and a version
+ * that is increased on every change are updated with every change, so that
+ * polling clients can compare notifications without iterating the elements.
+ * Optionally only a limited number of elements is shown in the template; the
+ * number of elements that are not shown is available as the
+ * {@code hiddenCount} member of the elements in the template. Only the shown
+ * elements are copied for rendering. The stored elements themselves are not
+ * limited because they are still used to find out which elements are new,
+ * and an element that is dropped from here would not be shown again once the
+ * shown elements are removed.
  *
  * @param <T>
  *            The type of the items
@@ -37,8 +58,32 @@ public class ListNotification<T> extends TemplateNotification {
 	/** The key under which to store the elements in the template. */
 	private final String key;
 
-	/** The list of new elements. */
-	private final List<T> elements = new CopyOnWriteArrayList<T>();
+	/** The maximum number of elements to show in the template. */
+	private final int maximumDisplayedElements;
+
+	/** The new elements, in insertion order. */
+	private final Set<T> elements = new LinkedHashSet<T>();
+
+	/** The combined hash code of all elements. */
+	private int elementsHashCode;
+
+	/** The version of the elements; increased on every change. */
+	private volatile long version;
+
+	/**
+	 * The elements as an unmodifiable list, or {@code null} if the elements
+	 * have changed since the list was last created.
+	 */
+	private volatile List<T> elementList;
+
+	/**
+	 * The elements that are shown in the template, or {@code null} if the
+	 * elements have changed since the list was last created.
+	 */
+	private volatile List<T> displayedElementList;
+
+	/** The filtered copies of this notification, by their elements. */
+	private final Map<List<T>, ListNotification<T>> filteredNotifications = new HashMap<List<T>, ListNotification<T>>();
 
 	/**
 	 * Creates a new list notification.
@@ -68,9 +113,29 @@ public class ListNotification<T> extends TemplateNotification {
 	 *            user, {@code false} otherwise
 	 */
 	public ListNotification(String id, String key, Template template, boolean dismissable) {
+		this(id, key, template, dismissable, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new list notification.
+	 *
+	 * @param id
+	 *            The ID of the notification
+	 * @param key
+	 *            The key under which to store the elements in the template
+	 * @param template
+	 *            The template to render
+	 * @param dismissable
+	 *            {@code true} if this notification should be dismissable by the
+	 *            user, {@code false} otherwise
+	 * @param maximumDisplayedElements
+	 *            The maximum number of elements to show in the template
+	 */
+	public ListNotification(String id, String key, Template template, boolean dismissable, int maximumDisplayedElements) {
 		super(id, System.currentTimeMillis(), System.currentTimeMillis(), dismissable, template);
 		this.key = key;
-		template.getInitialContext().set(key, elements);
+		this.maximumDisplayedElements = maximumDisplayedElements;
+		template.getInitialContext().set(key, new DisplayedElements());
 	}
 
 	/**
@@ -83,34 +148,43 @@ public class ListNotification<T> extends TemplateNotification {
 	public ListNotification(ListNotification<T> listNotification) {
 		super(listNotification.getId(), listNotification.getCreatedTime(), listNotification.getLastUpdatedTime(), listNotification.isDismissable(), new Template());
 		this.key = listNotification.key;
+		this.maximumDisplayedElements = listNotification.maximumDisplayedElements;
 		getTemplate().add(listNotification.getTemplate());
-		getTemplate().getInitialContext().set(key, elements);
+		getTemplate().getInitialContext().set(key, new DisplayedElements());
 	}
 
 	//
-	// ACTIONS
+	// ACCESSORS
 	//
 
 	/**
 	 * Returns the current list of elements.
 	 *
-	 * @return The current list of elements
+	 * @return The current list of elements (unmodifiable)
 	 */
 	public List<T> getElements() {
-		return new ArrayList<T>(elements);
+		List<T> elementList = this.elementList;
+		if (elementList == null) {
+			synchronized (elements) {
+				elementList = Collections.unmodifiableList(new ArrayList<T>(elements));
+				this.elementList = elementList;
+			}
+		}
+		return elementList;
 	}
 
 	/**
-	 * Sets the elements to show in this notification. This method will not call
-	 * {@link #touch()}.
+	 * Returns whether the given element is contained in this notification.
 	 *
-	 * @param elements
-	 *            The elements to show
+	 * @param element
+	 *            The element to check for
+	 * @return {@code true} if the element is contained in this notification,
+	 *         {@code false} otherwise
 	 */
-	public void setElements(Collection<? extends T> elements) {
-		this.elements.clear();
-		this.elements.addAll(elements);
-		touch();
+	public boolean contains(T element) {
+		synchronized (elements) {
+			return elements.contains(element);
+		}
 	}
 
 	/**
@@ -120,7 +194,44 @@ public class ListNotification<T> extends TemplateNotification {
 	 *         are new elements
 	 */
 	public boolean isEmpty() {
-		return elements.isEmpty();
+		synchronized (elements) {
+			return elements.isEmpty();
+		}
+	}
+
+	/**
+	 * Returns the version of the elements of this notification. The version
+	 * is increased every time an element is added or removed.
+	 *
+	 * @return The version of the elements
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Sets the elements to show in this notification. This method will not call
+	 * {@link #touch()}.
+	 *
+	 * @param elements
+	 *            The elements to show
+	 */
+	public void setElements(Collection<? extends T> elements) {
+		synchronized (this.elements) {
+			this.elements.clear();
+			elementsHashCode = 0;
+			for (T element : elements) {
+				if (this.elements.add(element)) {
+					elementsHashCode ^= element.hashCode();
+				}
+			}
+			elementsChanged();
+		}
+		touch();
 	}
 
 	/**
@@ -130,7 +241,12 @@ public class ListNotification<T> extends TemplateNotification {
 	 *            The new element
 	 */
 	public void add(T element) {
-		elements.add(element);
+		synchronized (elements) {
+			if (elements.add(element)) {
+				elementsHashCode ^= element.hashCode();
+				elementsChanged();
+			}
+		}
 		touch();
 	}
 
@@ -141,15 +257,57 @@ public class ListNotification<T> extends TemplateNotification {
 	 *            The element to remove
 	 */
 	public void remove(T element) {
-		while (elements.remove(element)) {
-			/* do nothing, just remove all instances of the element. */
+		boolean empty;
+		synchronized (elements) {
+			if (elements.remove(element)) {
+				elementsHashCode ^= element.hashCode();
+				elementsChanged();
+			}
+			empty = elements.isEmpty();
 		}
-		if (elements.isEmpty()) {
+		if (empty) {
 			dismiss();
 		}
 		touch();
 	}
 
+	/**
+	 * Returns a notification that contains only the elements of this
+	 * notification that match the given predicate. If all elements match,
+	 * this notification is returned. Otherwise a copy of this notification is
+	 * returned; the copies are kept until this notification changes, so that
+	 * viewers that see the same elements also get the same copy.
+	 *
+	 * @param predicate
+	 *            The predicate the elements have to match
+	 * @return A notification with the matching elements
+	 */
+	public ListNotification<T> filter(Predicate<? super T> predicate) {
+		long version = this.version;
+		List<T> elements = getElements();
+		List<T> filteredElements = new ArrayList<T>(elements.size());
+		for (T element : elements) {
+			if (predicate.apply(element)) {
+				filteredElements.add(element);
+			}
+		}
+		if (filteredElements.size() == elements.size()) {
+			return this;
+		}
+		synchronized (this.elements) {
+			ListNotification<T> filteredNotification = filteredNotifications.get(filteredElements);
+			if (filteredNotification == null) {
+				filteredNotification = new ListNotification<T>(this);
+				filteredNotification.setElements(filteredElements);
+				filteredNotification.setLastUpdateTime(getLastUpdatedTime());
+				if (version == this.version) {
+					filteredNotifications.put(filteredElements, filteredNotification);
+				}
+			}
+			return filteredNotification;
+		}
+	}
+
 	//
 	// ABSTRACTNOTIFICATION METHODS
 	//
@@ -160,7 +318,27 @@ public class ListNotification<T> extends TemplateNotification {
 	@Override
 	public void dismiss() {
 		super.dismiss();
-		elements.clear();
+		synchronized (elements) {
+			elements.clear();
+			elementsHashCode = 0;
+			elementsChanged();
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Updates the version and drops the cached list and filtered copies after
+	 * the elements have been changed. The caller has to hold the lock on the
+	 * elements.
+	 */
+	private void elementsChanged() {
+		version++;
+		elementList = null;
+		displayedElementList = null;
+		filteredNotifications.clear();
 	}
 
 	//
@@ -172,11 +350,9 @@ public class ListNotification<T> extends TemplateNotification {
 	 */
 	@Override
 	public int hashCode() {
-		int hashCode = super.hashCode();
-		for (T element : elements) {
-			hashCode ^= element.hashCode();
+		synchronized (elements) {
+			return super.hashCode() ^ elementsHashCode;
 		}
-		return hashCode;
 	}
 
 	/**
@@ -194,15 +370,79 @@ public class ListNotification<T> extends TemplateNotification {
 		if (!key.equals(listNotification.key)) {
 			return false;
 		}
-		if (elements.size() != listNotification.elements.size()) {
+		if (hashCode() != listNotification.hashCode()) {
 			return false;
 		}
-		for (int index = 0; index < elements.size(); ++index) {
-			if (!elements.get(index).equals(listNotification.elements.get(index))) {
-				return false;
+		return getElements().equals(listNotification.getElements());
+	}
+
+	/**
+	 * The elements that are shown in the template: the first elements of this
+	 * notification, up to the maximum number of displayed elements. The list
+	 * always reflects the current elements of the notification.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public class DisplayedElements extends AbstractList<T> {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public T get(int index) {
+			return getDisplayedElements().get(index);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Iterator<T> iterator() {
+			return getDisplayedElements().iterator();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int size() {
+			return getDisplayedElements().size();
+		}
+
+		/**
+		 * Returns the number of elements that are not shown.
+		 *
+		 * @return The number of elements that are not shown
+		 */
+		public int getHiddenCount() {
+			synchronized (elements) {
+				return Math.max(0, elements.size() - maximumDisplayedElements);
+			}
+		}
+
+		/**
+		 * Returns the elements that are currently shown.
+		 *
+		 * @return The elements that are currently shown
+		 */
+		private List<T> getDisplayedElements() {
+			List<T> displayedElementList = ListNotification.this.displayedElementList;
+			if (displayedElementList == null) {
+				synchronized (elements) {
+					List<T> displayedElements = new ArrayList<T>(Math.min(elements.size(), maximumDisplayedElements));
+					for (T element : elements) {
+						if (displayedElements.size() == maximumDisplayedElements) {
+							break;
+						}
+						displayedElements.add(element);
+					}
+					displayedElementList = Collections.unmodifiableList(displayedElements);
+					ListNotification.this.displayedElementList = displayedElementList;
+				}
 			}
+			return displayedElementList;
 		}
-		return true;
+
 	}
 
 }
@@ -21,17 +21,24 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.freenet.wot.Identity;
 import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.sone.freenet.wot.Trust;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
 import net.pterodactylus.util.notify.Notification;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
 
 /**
  * Filter for {@link ListNotification}s.
@@ -48,6 +55,8 @@ public class ListNotificationFilters {
 	 * itself, and replies that are replies to posts of friend Sones or the Sone
 	 * itself will be retained in the notifications.
 	 *
+	 * @param trustCache
+	 *            The trust cache
 	 * @param notifications
 	 *            The notifications to filter
 	 * @param currentSone
@@ -55,7 +64,7 @@ public class ListNotificationFilters {
 	 * @return The filtered notifications
 	 */
 	@SuppressWarnings("unchecked")
-	public static List<Notification> filterNotifications(Collection<? extends Notification> notifications, Sone currentSone) {
+	public static List<Notification> filterNotifications(TrustCache trustCache, Collection<? extends Notification> notifications, Sone currentSone) {
 		List<Notification> filteredNotifications = new ArrayList<Notification>();
 		for (Notification notification : notifications) {
 			if (notification.getId().equals("new-sone-notification")) {
@@ -67,7 +76,7 @@ public class ListNotificationFilters {
 				if ((currentSone != null) && (!currentSone.getOptions().getBooleanOption("ShowNotification/NewPosts").get())) {
 					continue;
 				}
-				ListNotification<Post> filteredNotification = filterNewPostNotification((ListNotification<Post>) notification, currentSone, true);
+				ListNotification<Post> filteredNotification = filterNewPostNotification(trustCache, (ListNotification<Post>) notification, currentSone, true);
 				if (filteredNotification != null) {
 					filteredNotifications.add(filteredNotification);
 				}
@@ -75,12 +84,12 @@ public class ListNotificationFilters {
 				if ((currentSone != null) && (!currentSone.getOptions().getBooleanOption("ShowNotification/NewReplies").get())) {
 					continue;
 				}
-				ListNotification<PostReply> filteredNotification = filterNewReplyNotification((ListNotification<PostReply>) notification, currentSone);
+				ListNotification<PostReply> filteredNotification = filterNewReplyNotification(trustCache, (ListNotification<PostReply>) notification, currentSone);
 				if (filteredNotification != null) {
 					filteredNotifications.add(filteredNotification);
 				}
 			} else if (notification.getId().equals("mention-notification")) {
-				ListNotification<Post> filteredNotification = filterNewPostNotification((ListNotification<Post>) notification, null, false);
+				ListNotification<Post> filteredNotification = filterNewPostNotification(trustCache, (ListNotification<Post>) notification, null, false);
 				if (filteredNotification != null) {
 					filteredNotifications.add(filteredNotification);
 				}
@@ -96,8 +105,11 @@ public class ListNotificationFilters {
 	 * is {@code null} and {@code soneRequired} is {@code true}, {@code null} is
 	 * returned and the notification is subsequently removed. Otherwise only
 	 * posts that are posted by friend Sones of the given Sone are retained; all
-	 * other posts are removed.
+	 * other posts are removed. Viewers that see the same posts share the same
+	 * filtered notification, see {@link ListNotification#filter(Predicate)}.
 	 *
+	 * @param trustCache
+	 *            The trust cache
 	 * @param newPostNotification
 	 *            The new-post notification
 	 * @param currentSone
@@ -108,26 +120,18 @@ public class ListNotificationFilters {
 	 * @return The filtered new-post notification, or {@code null} if the
 	 *         notification should be removed
 	 */
-	public static ListNotification<Post> filterNewPostNotification(ListNotification<Post> newPostNotification, Sone currentSone, boolean soneRequired) {
+	public static ListNotification<Post> filterNewPostNotification(final TrustCache trustCache, ListNotification<Post> newPostNotification, final Sone currentSone, boolean soneRequired) {
 		if (soneRequired && (currentSone == null)) {
 			return null;
 		}
-		List<Post> newPosts = new ArrayList<Post>();
-		for (Post post : newPostNotification.getElements()) {
-			if (isPostVisible(currentSone, post)) {
-				newPosts.add(post);
+		ListNotification<Post> filteredNotification = newPostNotification.filter(new Predicate<Post>() {
+
+			@Override
+			public boolean apply(Post post) {
+				return isPostVisible(trustCache, currentSone, post);
 			}
-		}
-		if (newPosts.isEmpty()) {
-			return null;
-		}
-		if (newPosts.size() == newPostNotification.getElements().size()) {
-			return newPostNotification;
-		}
-		ListNotification<Post> filteredNotification = new ListNotification<Post>(newPostNotification);
-		filteredNotification.setElements(newPosts);
-		filteredNotification.setLastUpdateTime(newPostNotification.getLastUpdatedTime());
-		return filteredNotification;
+		});
+		return filteredNotification.isEmpty() ? null : filteredNotification;
 	}
 
 	/**
@@ -137,6 +141,8 @@ public class ListNotificationFilters {
 	 * that are posted by friend Sones of the given Sone are retained; all other
 	 * replies are removed.
 	 *
+	 * @param trustCache
+	 *            The trust cache
 	 * @param newReplyNotification
 	 *            The new-reply notification
 	 * @param currentSone
@@ -144,45 +150,50 @@ public class ListNotificationFilters {
 	 * @return The filtered new-reply notification, or {@code null} if the
 	 *         notification should be removed
 	 */
-	public static ListNotification<PostReply> filterNewReplyNotification(ListNotification<PostReply> newReplyNotification, Sone currentSone) {
+	public static ListNotification<PostReply> filterNewReplyNotification(final TrustCache trustCache, ListNotification<PostReply> newReplyNotification, final Sone currentSone) {
 		if (currentSone == null) {
 			return null;
 		}
-		List<PostReply> newReplies = new ArrayList<PostReply>();
-		for (PostReply reply : newReplyNotification.getElements()) {
-			if (isReplyVisible(currentSone, reply)) {
-				newReplies.add(reply);
+		ListNotification<PostReply> filteredNotification = newReplyNotification.filter(new Predicate<PostReply>() {
+
+			@Override
+			public boolean apply(PostReply reply) {
+				return isReplyVisible(trustCache, currentSone, reply);
 			}
-		}
-		if (newReplies.isEmpty()) {
-			return null;
-		}
-		if (newReplies.size() == newReplyNotification.getElements().size()) {
-			return newReplyNotification;
-		}
-		ListNotification<PostReply> filteredNotification = new ListNotification<PostReply>(newReplyNotification);
-		filteredNotification.setElements(newReplies);
-		filteredNotification.setLastUpdateTime(newReplyNotification.getLastUpdatedTime());
-		return filteredNotification;
+		});
+		return filteredNotification.isEmpty() ? null : filteredNotification;
 	}
 
 	/**
-	 * Filters the given posts, using {@link #isPostVisible(Sone, Post)} to
-	 * decide whether a post should be contained in the returned list. If
-	 * {@code currentSone} is not {@code null} it is used to filter out posts
-	 * that are from Sones that are not followed or not trusted by the given
-	 * Sone.
+	 * Filters the given posts, using
+	 * {@link #isPostVisible(TrustCache, Sone, Post)} to decide whether a post
+	 * should be contained in the returned list. If {@code currentSone} is not
+	 * {@code null} it is used to filter out posts that are from Sones that are
+	 * not followed or not trusted by the given Sone. The trust values of all
+	 * posts’ Sones are retrieved from the trust cache in a single call.
 	 *
+	 * @param trustCache
+	 *            The trust cache
 	 * @param posts
 	 *            The posts to filter
 	 * @param currentSone
 	 *            The current Sone (may be {@code null})
 	 * @return The filtered posts
 	 */
-	public static List<Post> filterPosts(Collection<Post> posts, Sone currentSone) {
+	public static List<Post> filterPosts(TrustCache trustCache, Collection<Post> posts, Sone currentSone) {
+		Map<Identity, Trust> trusts = Collections.emptyMap();
+		if (currentSone != null) {
+			Set<Identity> postIdentities = new HashSet<Identity>();
+			for (Post post : posts) {
+				if (post.getSone() != null) {
+					postIdentities.add(post.getSone().getIdentity());
+				}
+			}
+			trusts = trustCache.getTrusts((OwnIdentity) currentSone.getIdentity(), postIdentities);
+		}
 		List<Post> filteredPosts = new ArrayList<Post>();
 		for (Post post : posts) {
-			if (isPostVisible(currentSone, post)) {
+			if (isPostVisible(currentSone, post, (post.getSone() != null) ? trusts.get(post.getSone().getIdentity()) : null)) {
 				filteredPosts.add(post);
 			}
 		}
@@ -212,6 +223,8 @@ public class ListNotificationFilters {
 	 * </ul>
 	 * If none of these statements is true the post is considered visible.
 	 *
+	 * @param trustCache
+	 *            The trust cache
 	 * @param sone
 	 *            The Sone that checks for a post’s visibility (may be
 	 *            {@code null} to skip Sone-specific checks, such as trust)
@@ -220,14 +233,37 @@ public class ListNotificationFilters {
 	 * @return {@code true} if the post is considered visible, {@code false}
 	 *         otherwise
 	 */
-	public static boolean isPostVisible(Sone sone, Post post) {
+	public static boolean isPostVisible(TrustCache trustCache, Sone sone, Post post) {
 		checkNotNull(post, "post must not be null");
+		Sone postSone = post.getSone();
+		if (postSone == null) {
+			return false;
+		}
+		return isPostVisible(sone, post, (sone != null) ? trustCache.getTrust((OwnIdentity) sone.getIdentity(), postSone.getIdentity()) : null);
+	}
+
+	/**
+	 * Checks whether a post is visible to the given Sone, using the given
+	 * trust of the given Sone in the post’s Sone.
+	 *
+	 * @see #isPostVisible(TrustCache, Sone, Post)
+	 * @param sone
+	 *            The Sone that checks for a post’s visibility (may be
+	 *            {@code null} to skip Sone-specific checks, such as trust)
+	 * @param post
+	 *            The post to check for visibility
+	 * @param trust
+	 *            The trust of the given Sone in the post’s Sone (may be
+	 *            {@code null} if it is not known)
+	 * @return {@code true} if the post is considered visible, {@code false}
+	 *         otherwise
+	 */
+	private static boolean isPostVisible(Sone sone, Post post, Trust trust) {
 		Sone postSone = post.getSone();
 		if (postSone == null) {
 			return false;
 		}
 		if (sone != null) {
-			Trust trust = postSone.getIdentity().getTrust((OwnIdentity) sone.getIdentity());
 			if (trust != null) {
 				if ((trust.getExplicit() != null) && (trust.getExplicit() < 0)) {
 					return false;
@@ -273,6 +309,8 @@ public class ListNotificationFilters {
 	 * </ul>
 	 * If none of these statements is true the reply is considered visible.
 	 *
+	 * @param trustCache
+	 *            The trust cache
 	 * @param sone
 	 *            The Sone that checks for a post’s visibility (may be
 	 *            {@code null} to skip Sone-specific checks, such as trust)
@@ -281,13 +319,13 @@ public class ListNotificationFilters {
 	 * @return {@code true} if the reply is considered visible, {@code false}
 	 *         otherwise
 	 */
-	public static boolean isReplyVisible(Sone sone, PostReply reply) {
+	public static boolean isReplyVisible(TrustCache trustCache, Sone sone, PostReply reply) {
 		checkNotNull(reply, "reply must not be null");
 		Optional<Post> post = reply.getPost();
 		if (!post.isPresent()) {
 			return false;
 		}
-		if (!isPostVisible(sone, post.get())) {
+		if (!isPostVisible(trustCache, sone, post.get())) {
 			return false;
 		}
 		if (reply.getTime() > System.currentTimeMillis()) {
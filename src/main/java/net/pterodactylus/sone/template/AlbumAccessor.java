@@ -22,7 +22,6 @@ import java.util.List;
 
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.util.template.Accessor;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 
 /**
@@ -32,7 +31,7 @@ import net.pterodactylus.util.template.TemplateContext;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class AlbumAccessor extends ReflectionAccessor {
+public class AlbumAccessor extends CachingReflectionAccessor {
 
 	/**
 	 * {@inheritDoc}
@@ -0,0 +1,141 @@
+/*
+ * Sone - CachingReflectionAccessor.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.template;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.pterodactylus.util.logging.Logging;
+import net.pterodactylus.util.template.ReflectionAccessor;
+import net.pterodactylus.util.template.TemplateContext;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.MapMaker;
+
+/**
+ * {@link ReflectionAccessor} that looks up the method for a member of a class
+ * only once. A member “foo” is resolved to the first of the public methods
+ * “getFoo()”, “isFoo()”, and “foo()” that exists; the resolved method (or the
+ * fact that there is none) is cached per class and member and shared by all
+ * instances, so all further accesses only have to invoke the method.
+ * <p>
+ * All of Sone’s accessors extend this class so that members they do not
+ * handle themselves are resolved using the cache as well.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class CachingReflectionAccessor extends ReflectionAccessor {
+
+	/** The logger. */
+	private static final Logger logger = Logging.getLogger(CachingReflectionAccessor.class);
+
+	/** The resolved methods, by class and member. */
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Optional<Method>>> methods = new MapMaker().makeMap();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object get(TemplateContext templateContext, Object object, String member) {
+		if (object == null) {
+			return null;
+		}
+		Optional<Method> method = getMethod(object.getClass(), member);
+		if (!method.isPresent()) {
+			return null;
+		}
+		try {
+			return method.get().invoke(object);
+		} catch (IllegalAccessException iae1) {
+			logger.log(Level.FINE, String.format("Could not access %s of %s!", member, object.getClass().getName()), iae1);
+		} catch (InvocationTargetException ite1) {
+			logger.log(Level.FINE, String.format("Could not get %s of %s!", member, object.getClass().getName()), ite1);
+		}
+		return null;
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Returns the method that returns the given member of the given class,
+	 * resolving and caching it if it has not been resolved before.
+	 *
+	 * @param objectClass
+	 *            The class of the object
+	 * @param member
+	 *            The name of the member
+	 * @return The method for the member, or {@link Optional#absent()} if the
+	 *         class does not have the member
+	 */
+	static Optional<Method> getMethod(Class<?> objectClass, String member) {
+		ConcurrentMap<String, Optional<Method>> classMethods = methods.get(objectClass);
+		if (classMethods == null) {
+			ConcurrentMap<String, Optional<Method>> newClassMethods = new MapMaker().makeMap();
+			classMethods = methods.putIfAbsent(objectClass, newClassMethods);
+			if (classMethods == null) {
+				classMethods = newClassMethods;
+			}
+		}
+		Optional<Method> method = classMethods.get(member);
+		if (method == null) {
+			method = resolveMethod(objectClass, member);
+			classMethods.putIfAbsent(member, method);
+		}
+		return method;
+	}
+
+	/**
+	 * Resolves the method that returns the given member of the given class.
+	 * Access checks are suppressed for the resolved method because the public
+	 * methods of non-public classes could not be invoked otherwise, and
+	 * because invocations without access checks are faster.
+	 *
+	 * @param objectClass
+	 *            The class of the object
+	 * @param member
+	 *            The name of the member
+	 * @return The method for the member, or {@link Optional#absent()} if the
+	 *         class does not have the member
+	 */
+	private static Optional<Method> resolveMethod(Class<?> objectClass, String member) {
+		if (member.length() == 0) {
+			return Optional.absent();
+		}
+		String capitalizedMember = member.substring(0, 1).toUpperCase() + member.substring(1);
+		for (String methodName : new String[] { "get" + capitalizedMember, "is" + capitalizedMember, member }) {
+			try {
+				Method method = objectClass.getMethod(methodName);
+				try {
+					method.setAccessible(true);
+				} catch (SecurityException se1) {
+					/* then we’ll just have to live with the access checks. */
+				}
+				return Optional.of(method);
+			} catch (NoSuchMethodException nsme1) {
+				/* try the next name. */
+			}
+		}
+		return Optional.absent();
+	}
+
+}
@@ -24,7 +24,6 @@ import java.util.List;
 
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.util.template.Accessor;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 
 /**
@@ -38,7 +37,7 @@ import net.pterodactylus.util.template.TemplateContext;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class CollectionAccessor extends ReflectionAccessor {
+public class CollectionAccessor extends CachingReflectionAccessor {
 
 	/**
 	 * {@inheritDoc}
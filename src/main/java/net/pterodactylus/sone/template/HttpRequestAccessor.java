@@ -18,7 +18,6 @@
 package net.pterodactylus.sone.template;
 
 import net.pterodactylus.util.template.Accessor;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 import freenet.support.api.HTTPRequest;
 
@@ -29,7 +28,7 @@ import freenet.support.api.HTTPRequest;
  * @see HTTPRequest#getHeader(String)
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class HttpRequestAccessor extends ReflectionAccessor {
+public class HttpRequestAccessor extends CachingReflectionAccessor {
 
 	/**
 	 * {@inheritDoc}
@@ -23,7 +23,6 @@ import net.pterodactylus.sone.core.Core;
 import net.pterodactylus.sone.freenet.wot.Identity;
 import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.util.template.Accessor;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 
 /**
@@ -32,7 +31,7 @@ import net.pterodactylus.util.template.TemplateContext;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class IdentityAccessor extends ReflectionAccessor {
+public class IdentityAccessor extends CachingReflectionAccessor {
 
 	/** The core. */
 	private final Core core;
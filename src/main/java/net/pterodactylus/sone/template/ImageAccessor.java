@@ -20,7 +20,6 @@ package net.pterodactylus.sone.template;
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.util.template.Accessor;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 
 /**
@@ -35,7 +34,7 @@ import net.pterodactylus.util.template.TemplateContext;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class ImageAccessor extends ReflectionAccessor {
+public class ImageAccessor extends CachingReflectionAccessor {
 
 	/**
 	 * {@inheritDoc}
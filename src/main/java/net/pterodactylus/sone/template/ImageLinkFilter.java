@@ -22,6 +22,7 @@ import java.io.StringWriter;
 import java.util.Map;
 
 import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.ThumbnailService;
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.util.number.Numbers;
 import net.pterodactylus.util.template.Filter;
@@ -34,7 +35,9 @@ import com.google.common.base.Optional;
 
 /**
  * Template filter that turns an {@link Image} into an HTML &lt;img&gt; tag,
- * using some parameters to influence parameters of the image.
+ * using some parameters to influence parameters of the image. If the image is
+ * displayed considerably smaller than its original size, the tag references a
+ * thumbnail from the {@link ThumbnailService} instead of the full image.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
@@ -84,18 +87,14 @@ public class ImageLinkFilter implements Filter {
 
 		TemplateContext linkTemplateContext = templateContextFactory.createTemplateContext();
 		linkTemplateContext.set("class", imageClass);
-		if (image.isInserted()) {
-			linkTemplateContext.set("src", "/" + image.getKey());
-			linkTemplateContext.set("forceDownload", true);
-		} else {
-			linkTemplateContext.set("src", "getImage.html?image=" + image.getId());
-		}
 		int imageWidth = image.getWidth();
 		int imageHeight = image.getHeight();
+		int displayWidth;
+		int displayHeight;
 		if ("enlarge".equals(mode)) {
 			double scale = Math.max(maxWidth / (double) imageWidth, maxHeight / (double) imageHeight);
-			linkTemplateContext.set("width", (int) (imageWidth * scale + 0.5));
-			linkTemplateContext.set("height", (int) (imageHeight * scale + 0.5));
+			displayWidth = (int) (imageWidth * scale + 0.5);
+			displayHeight = (int) (imageHeight * scale + 0.5);
 			linkTemplateContext.set("left", String.format("%dpx", (int) (maxWidth - (imageWidth * scale)) / 2));
 			linkTemplateContext.set("top", String.format("%dpx", (int) (maxHeight - (imageHeight * scale)) / 2));
 		} else {
@@ -103,8 +102,19 @@ public class ImageLinkFilter implements Filter {
 			if ((imageWidth > maxWidth) || (imageHeight > maxHeight)) {
 				scale = Math.min(maxWidth / (double) imageWidth, maxHeight / (double) imageHeight);
 			}
-			linkTemplateContext.set("width", (int) (imageWidth * scale + 0.5));
-			linkTemplateContext.set("height", (int) (imageHeight * scale + 0.5));
+			displayWidth = (int) (imageWidth * scale + 0.5);
+			displayHeight = (int) (imageHeight * scale + 0.5);
+		}
+		linkTemplateContext.set("width", displayWidth);
+		linkTemplateContext.set("height", displayHeight);
+		int thumbnailSize = ThumbnailService.getThumbnailSize(Math.max(displayWidth, displayHeight));
+		if ((thumbnailSize != -1) && (thumbnailSize < Math.max(imageWidth, imageHeight))) {
+			linkTemplateContext.set("src", "getThumbnail.html?image=" + image.getId() + "&size=" + thumbnailSize);
+		} else if (image.isInserted()) {
+			linkTemplateContext.set("src", "/" + image.getKey());
+			linkTemplateContext.set("forceDownload", true);
+		} else {
+			linkTemplateContext.set("src", "getImage.html?image=" + image.getId());
 		}
 		linkTemplateContext.set("alt", Optional.fromNullable(title).or(image.getDescription()));
 		linkTemplateContext.set("title", Optional.fromNullable(title).or(image.getTitle()));
@@ -21,7 +21,6 @@ import net.pterodactylus.sone.core.Core;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Reply;
 import net.pterodactylus.sone.data.Sone;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 
 import com.google.common.collect.Collections2;
@@ -35,7 +34,7 @@ import com.google.common.collect.Collections2;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class PostAccessor extends ReflectionAccessor {
+public class PostAccessor extends CachingReflectionAccessor {
 
 	/** The core to get the replies from. */
 	private final Core core;
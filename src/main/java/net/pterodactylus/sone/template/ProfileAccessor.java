@@ -24,7 +24,6 @@ import net.pterodactylus.sone.data.Sone.ShowCustomAvatars;
 import net.pterodactylus.sone.freenet.wot.OwnIdentity;
 import net.pterodactylus.sone.freenet.wot.Trust;
 import net.pterodactylus.util.template.Accessor;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 
 /**
@@ -34,7 +33,7 @@ import net.pterodactylus.util.template.TemplateContext;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class ProfileAccessor extends ReflectionAccessor {
+public class ProfileAccessor extends CachingReflectionAccessor {
 
 	/** The core. */
 	private final Core core;
@@ -84,7 +83,7 @@ public class ProfileAccessor extends ReflectionAccessor {
 			if (showCustomAvatars == ShowCustomAvatars.FOLLOWED) {
 				return currentSone.hasFriend(remoteSone.getId()) ? avatarId : null;
 			}
-			Trust trust = remoteSone.getIdentity().getTrust((OwnIdentity) currentSone.getIdentity());
+			Trust trust = core.getTrustCache().getTrust((OwnIdentity) currentSone.getIdentity(), remoteSone.getIdentity());
 			if (trust == null) {
 				return null;
 			}
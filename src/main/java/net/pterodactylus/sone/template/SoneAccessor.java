@@ -35,7 +35,6 @@ import net.pterodactylus.sone.web.WebInterface;
 import net.pterodactylus.sone.web.ajax.GetTimesAjaxPage;
 import net.pterodactylus.util.logging.Logging;
 import net.pterodactylus.util.template.Accessor;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 
 /**
@@ -55,7 +54,7 @@ import net.pterodactylus.util.template.TemplateContext;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class SoneAccessor extends ReflectionAccessor {
+public class SoneAccessor extends CachingReflectionAccessor {
 
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(SoneAccessor.class);
@@ -110,7 +109,7 @@ public class SoneAccessor extends ReflectionAccessor {
 			if (currentSone == null) {
 				return null;
 			}
-			Trust trust = sone.getIdentity().getTrust((OwnIdentity) currentSone.getIdentity());
+			Trust trust = core.getTrustCache().getTrust((OwnIdentity) currentSone.getIdentity(), sone.getIdentity());
 			logger.log(Level.FINEST, String.format("Trust for %s by %s: %s", sone, currentSone, trust));
 			if (trust == null) {
 				return new Trust(null, null, null);
@@ -19,7 +19,6 @@ package net.pterodactylus.sone.template;
 
 import net.pterodactylus.sone.freenet.wot.Trust;
 import net.pterodactylus.util.template.Accessor;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.TemplateContext;
 
 /**
@@ -33,7 +32,7 @@ import net.pterodactylus.util.template.TemplateContext;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class TrustAccessor extends ReflectionAccessor {
+public class TrustAccessor extends CachingReflectionAccessor {
 
 	/**
 	 * {@inheritDoc}
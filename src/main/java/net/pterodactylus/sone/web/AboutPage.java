@@ -60,4 +60,12 @@ public class AboutPage extends SoneTemplatePage {
 		templateContext.set("version", version);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
 }
@@ -78,4 +78,12 @@ public class BookmarksPage extends SoneTemplatePage {
 		templateContext.set("postsNotLoaded", allPosts.size() != loadedPosts.size());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
 }
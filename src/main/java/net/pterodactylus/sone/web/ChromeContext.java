@@ -0,0 +1,155 @@
+/*
+ * Sone - ChromeContext.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.pterodactylus.sone.core.UpdateChecker;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.main.SonePlugin;
+import net.pterodactylus.util.notify.Notification;
+import net.pterodactylus.util.template.TemplateContext;
+import net.pterodactylus.util.version.Version;
+
+/**
+ * The values that every page shows around its own content—the local Sones,
+ * the notifications that are visible to the current Sone, and the state of
+ * the update checker. A chrome context is created once for a combination of
+ * current Sone and {@link #getVersion() version} and is then shared by all
+ * pages and AJAX requests of that Sone until the version changes; it is
+ * never modified after it has been created.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ChromeContext {
+
+	/** The version this chrome context was created for. */
+	private final List<Object> version;
+
+	/** The local Sones. */
+	private final Collection<Sone> localSones;
+
+	/** The visible notifications, sorted by creation time. */
+	private final List<Notification> notifications;
+
+	/** The hash code of the visible notifications. */
+	private final int notificationHash;
+
+	/** Whether a newer version of Sone has been found. */
+	private final boolean hasLatestVersion;
+
+	/** The edition of the latest version. */
+	private final long latestEdition;
+
+	/** The latest version. */
+	private final Version latestVersion;
+
+	/** The release time of the latest version. */
+	private final long latestVersionTime;
+
+	/**
+	 * Creates a new chrome context.
+	 *
+	 * @param version
+	 *            The version of the chrome context
+	 * @param localSones
+	 *            The local Sones
+	 * @param notifications
+	 *            The visible notifications, sorted by creation time
+	 * @param updateChecker
+	 *            The update checker
+	 */
+	public ChromeContext(List<Object> version, Collection<Sone> localSones, List<Notification> notifications, UpdateChecker updateChecker) {
+		this.version = version;
+		this.localSones = localSones;
+		this.notifications = Collections.unmodifiableList(notifications);
+		notificationHash = notifications.hashCode();
+		hasLatestVersion = updateChecker.hasLatestVersion();
+		latestEdition = updateChecker.getLatestEdition();
+		latestVersion = updateChecker.getLatestVersion();
+		latestVersionTime = updateChecker.getLatestVersionDate();
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the version this chrome context was created for. A chrome
+	 * context can be reused as long as the version it would be created for
+	 * now is equal to this version.
+	 *
+	 * @return The version of this chrome context
+	 */
+	public List<Object> getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the local Sones.
+	 *
+	 * @return The local Sones
+	 */
+	public Collection<Sone> getLocalSones() {
+		return localSones;
+	}
+
+	/**
+	 * Returns the notifications that are visible to the current Sone, sorted
+	 * by creation time.
+	 *
+	 * @return The visible notifications
+	 */
+	public List<Notification> getNotifications() {
+		return notifications;
+	}
+
+	/**
+	 * Returns the hash code of the {@link #getNotifications() visible
+	 * notifications}.
+	 *
+	 * @return The hash code of the visible notifications
+	 */
+	public int getNotificationHash() {
+		return notificationHash;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Stores the values of this chrome context in the given template context.
+	 *
+	 * @param templateContext
+	 *            The template context to store the values in
+	 */
+	public void setTemplateVariables(TemplateContext templateContext) {
+		templateContext.set("localSones", localSones);
+		templateContext.set("currentVersion", SonePlugin.VERSION);
+		templateContext.set("hasLatestVersion", hasLatestVersion);
+		templateContext.set("latestEdition", latestEdition);
+		templateContext.set("latestVersion", latestVersion);
+		templateContext.set("latestVersionTime", latestVersionTime);
+		templateContext.set("notifications", notifications);
+		templateContext.set("notificationHash", notificationHash);
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Sone - ChromeContextCache.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.pterodactylus.sone.web;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.event.SoneOptionsChangedEvent;
+import net.pterodactylus.sone.core.event.UpdateFoundEvent;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Reply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.notify.ListNotification;
+import net.pterodactylus.sone.notify.ListNotificationFilters;
+import net.pterodactylus.util.notify.Notification;
+import net.pterodactylus.util.notify.NotificationManager;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Cache for {@link ChromeContext}s, by the ID of the current Sone. A cached
+ * chrome context is reused until the notifications, the local Sones, the
+ * friends of the current Sone, or the {@link Core#getTrustCache() cached
+ * trust values} change, until an event changes the options of a Sone or the
+ * update checker finds a new version, or until a post or reply of a
+ * notification that was hidden because of its time in the future becomes
+ * visible. Other changes to Sone’s data do not affect the chrome context.
+ * Hits and misses are counted as “ChromeContext.Hits” and
+ * “ChromeContext.Misses” in the {@link Core#getMetricRegistry() metric
+ * registry}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ChromeContextCache {
+
+	/** The Sone core. */
+	private final Core core;
+
+	/** The notification manager. */
+	private final NotificationManager notificationManager;
+
+	/** The chrome contexts, by the ID of the current Sone. */
+	private final ConcurrentMap<String, CachedChromeContext> chromeContexts = new ConcurrentHashMap<String, CachedChromeContext>();
+
+	/** The version of the values that are not covered by other versions. */
+	private final AtomicLong chromeVersion = new AtomicLong();
+
+	/**
+	 * Creates a new chrome context cache.
+	 *
+	 * @param core
+	 *            The Sone core
+	 * @param notificationManager
+	 *            The notification manager
+	 */
+	public ChromeContextCache(Core core, NotificationManager notificationManager) {
+		this.core = core;
+		this.notificationManager = notificationManager;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the chrome context for the given Sone, creating it if the cached
+	 * chrome context is missing or outdated.
+	 *
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @return The chrome context for the given Sone
+	 */
+	public ChromeContext getChromeContext(Sone currentSone) {
+		String soneId = (currentSone != null) ? currentSone.getId() : "";
+		List<Object> version = Arrays.<Object> asList(getNotificationsVersion(), core.getLocalSonesVersion(), core.getTrustCache().getVersion(), chromeVersion.get(), (currentSone != null) ? currentSone.getFriends().hashCode() : 0);
+		long now = System.currentTimeMillis();
+		CachedChromeContext cachedChromeContext = chromeContexts.get(soneId);
+		if ((cachedChromeContext != null) && cachedChromeContext.chromeContext.getVersion().equals(version) && (now < cachedChromeContext.expiration)) {
+			core.getMetricRegistry().counter("ChromeContext.Hits").increment();
+			return cachedChromeContext.chromeContext;
+		}
+		core.getMetricRegistry().counter("ChromeContext.Misses").increment();
+		Collection<Notification> allNotifications = notificationManager.getNotifications();
+		List<Notification> notifications = ListNotificationFilters.filterNotifications(core.getTrustCache(), allNotifications, currentSone);
+		Collections.sort(notifications, Notification.CREATED_TIME_SORTER);
+		ChromeContext chromeContext = new ChromeContext(version, core.getLocalSones(), notifications, core.getUpdateChecker());
+		chromeContexts.put(soneId, new CachedChromeContext(chromeContext, getEarliestFutureTime(allNotifications, now)));
+		return chromeContext;
+	}
+
+	/**
+	 * Returns a version of the current notifications. The version changes
+	 * whenever a notification is added, removed, or updated, including
+	 * changes to the elements of a list notification that happen within the
+	 * same millisecond.
+	 *
+	 * @return The version of the current notifications
+	 */
+	public long getNotificationsVersion() {
+		long notificationsVersion = 0;
+		for (Notification notification : notificationManager.getNotifications()) {
+			notificationsVersion = 31 * notificationsVersion + notification.getId().hashCode();
+			notificationsVersion = 31 * notificationsVersion + notification.getLastUpdatedTime();
+			if (notification instanceof ListNotification) {
+				notificationsVersion = 31 * notificationsVersion + ((ListNotification<?>) notification).getVersion();
+			}
+		}
+		return notificationsVersion;
+	}
+
+	//
+	// EVENT HANDLERS
+	//
+
+	/**
+	 * Outdates all chrome contexts because the options of a Sone have
+	 * changed, which might change the visible notifications.
+	 *
+	 * @param soneOptionsChangedEvent
+	 *            The Sone options change event
+	 */
+	@Subscribe
+	public void soneOptionsChanged(SoneOptionsChangedEvent soneOptionsChangedEvent) {
+		chromeVersion.incrementAndGet();
+	}
+
+	/**
+	 * Outdates all chrome contexts because a new version of Sone was found.
+	 *
+	 * @param updateFoundEvent
+	 *            The update found event
+	 */
+	@Subscribe
+	public void updateFound(UpdateFoundEvent updateFoundEvent) {
+		chromeVersion.incrementAndGet();
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Returns the earliest time of a post or reply of the given notifications
+	 * that lies in the future. Such posts and replies are hidden until their
+	 * time has come, so a chrome context that is created now is only valid
+	 * until then.
+	 *
+	 * @param notifications
+	 *            The notifications
+	 * @param now
+	 *            The current time (in milliseconds since Jan 1, 1970 UTC)
+	 * @return The earliest time in the future, or {@link Long#MAX_VALUE} if
+	 *         there is no post or reply with a time in the future
+	 */
+	private static long getEarliestFutureTime(Collection<Notification> notifications, long now) {
+		long earliestFutureTime = Long.MAX_VALUE;
+		for (Notification notification : notifications) {
+			if (!(notification instanceof ListNotification)) {
+				continue;
+			}
+			for (Object element : ((ListNotification<?>) notification).getElements()) {
+				long time;
+				if (element instanceof Post) {
+					time = ((Post) element).getTime();
+				} else if (element instanceof Reply) {
+					time = ((Reply<?>) element).getTime();
+				} else {
+					continue;
+				}
+				if ((time > now) && (time < earliestFutureTime)) {
+					earliestFutureTime = time;
+				}
+			}
+		}
+		return earliestFutureTime;
+	}
+
+	/**
+	 * A cached chrome context, together with the time it expires.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class CachedChromeContext {
+
+		/** The chrome context. */
+		private final ChromeContext chromeContext;
+
+		/** The time the chrome context expires. */
+		private final long expiration;
+
+		/**
+		 * Creates a new cached chrome context.
+		 *
+		 * @param chromeContext
+		 *            The chrome context
+		 * @param expiration
+		 *            The time the chrome context expires (in milliseconds
+		 *            since Jan 1, 1970 UTC)
+		 */
+		public CachedChromeContext(ChromeContext chromeContext, long expiration) {
+			this.chromeContext = chromeContext;
+			this.expiration = expiration;
+		}
+
+	}
+
+}
@@ -69,7 +69,7 @@ public class CreateAlbumPage extends SoneTemplatePage {
 			}
 			Album album = webInterface.getCore().createAlbum(currentSone, parent);
 			album.modify().setTitle(name).setDescription(TextFilter.filter(request.getHttpRequest().getHeader("host"), description)).update();
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().updateAlbum(album);
 			throw new RedirectException("imageBrowser.html?album=" + album.getId());
 		}
 	}
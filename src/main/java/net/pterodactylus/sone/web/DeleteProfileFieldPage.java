@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Profile;
 import net.pterodactylus.sone.data.Profile.Field;
 import net.pterodactylus.sone.data.Sone;
@@ -74,6 +75,7 @@ public class DeleteProfileFieldPage extends SoneTemplatePage {
 				}
 				profile.removeField(field);
 				currentSone.setProfile(profile);
+				webInterface.getCore().touchConfiguration(currentSone, SoneSection.PROFILE);
 			}
 			throw new RedirectException("editProfile.html#profile-fields");
 		}
@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.text.TextFilter;
 import net.pterodactylus.sone.web.page.FreenetRequest;
@@ -60,11 +61,11 @@ public class EditAlbumPage extends SoneTemplatePage {
 			}
 			if ("true".equals(request.getHttpRequest().getPartAsStringFailsafe("moveLeft", 4))) {
 				album.getParent().moveAlbumUp(album);
-				webInterface.getCore().touchConfiguration();
+				webInterface.getCore().touchConfiguration(album.getSone(), SoneSection.ALBUMS);
 				throw new RedirectException("imageBrowser.html?album=" + album.getParent().getId());
 			} else if ("true".equals(request.getHttpRequest().getPartAsStringFailsafe("moveRight", 4))) {
 				album.getParent().moveAlbumDown(album);
-				webInterface.getCore().touchConfiguration();
+				webInterface.getCore().touchConfiguration(album.getSone(), SoneSection.ALBUMS);
 				throw new RedirectException("imageBrowser.html?album=" + album.getParent().getId());
 			}
 			String albumImageId = request.getHttpRequest().getPartAsStringFailsafe("album-image", 36);
@@ -79,7 +80,7 @@ public class EditAlbumPage extends SoneTemplatePage {
 			}
 			String description = request.getHttpRequest().getPartAsStringFailsafe("description", 1000).trim();
 			album.modify().setTitle(title).setDescription(TextFilter.filter(request.getHttpRequest().getHeader("host"), description)).update();
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().updateAlbum(album);
 			throw new RedirectException("imageBrowser.html?album=" + album.getId());
 		}
 	}
@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.sone.text.TextFilter;
 import net.pterodactylus.sone.web.page.FreenetRequest;
@@ -75,7 +76,7 @@ public class EditImagePage extends SoneTemplatePage {
 				}
 				image.modify().setTitle(title).setDescription(TextFilter.filter(request.getHttpRequest().getHeader("host"), description)).update();
 			}
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().touchConfiguration(image.getSone(), SoneSection.ALBUMS);
 			throw new RedirectException(returnPage);
 		}
 	}
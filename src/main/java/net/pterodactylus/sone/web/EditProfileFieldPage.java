@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Profile;
 import net.pterodactylus.sone.data.Profile.Field;
 import net.pterodactylus.sone.data.Sone;
@@ -79,6 +80,7 @@ public class EditProfileFieldPage extends SoneTemplatePage {
 			if ((existingField == null) || (existingField.equals(field))) {
 				field.setName(name);
 				currentSone.setProfile(profile);
+				webInterface.getCore().touchConfiguration(currentSone, SoneSection.PROFILE);
 				throw new RedirectException("editProfile.html#profile-fields");
 			}
 			templateContext.set("duplicateFieldName", true);
@@ -21,6 +21,7 @@ import static net.pterodactylus.sone.text.TextFilter.filter;
 
 import java.util.List;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Profile;
 import net.pterodactylus.sone.data.Profile.Field;
 import net.pterodactylus.sone.data.Sone;
@@ -92,7 +93,7 @@ public class EditProfilePage extends SoneTemplatePage {
 					field.setValue(filteredValue);
 				}
 				currentSone.setProfile(profile);
-				webInterface.getCore().touchConfiguration();
+				webInterface.getCore().touchConfiguration(currentSone, SoneSection.PROFILE);
 				throw new RedirectException("editProfile.html");
 			} else if (request.getHttpRequest().getPartAsStringFailsafe("add-field", 4).equals("true")) {
 				String fieldName = request.getHttpRequest().getPartAsStringFailsafe("field-name", 256).trim();
@@ -100,7 +101,7 @@ public class EditProfilePage extends SoneTemplatePage {
 					profile.addField(fieldName);
 					currentSone.setProfile(profile);
 					fields = profile.getFields();
-					webInterface.getCore().touchConfiguration();
+					webInterface.getCore().touchConfiguration(currentSone, SoneSection.PROFILE);
 					throw new RedirectException("editProfile.html#profile-fields");
 				} catch (IllegalArgumentException iae1) {
 					templateContext.set("fieldName", fieldName);
@@ -18,20 +18,35 @@
 package net.pterodactylus.sone.web;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import net.pterodactylus.sone.data.TemporaryImage;
 import net.pterodactylus.sone.web.page.FreenetPage;
 import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.util.io.Closer;
 import net.pterodactylus.util.web.Response;
 
+import com.google.common.io.ByteStreams;
+
 /**
- * Page that delivers a {@link TemporaryImage} to the browser.
+ * Page that delivers a {@link TemporaryImage} to the browser. The image data
+ * is streamed in chunks, and single byte ranges (as requested using the
+ * “Range” header) are supported.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
 public class GetImagePage implements FreenetPage {
 
+	/** The size of the chunks the image data is copied in. */
+	private static final int CHUNK_SIZE = 32768;
+
+	/** Pattern for a single byte range. */
+	private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d{0,18})-(\\d{0,18})$");
+
 	/** The Sone web interface. */
 	private final WebInterface webInterface;
 
@@ -71,8 +86,42 @@ public class GetImagePage implements FreenetPage {
 		if (temporaryImage == null) {
 			return response.setStatusCode(404).setStatusText("Not found.").setContentType("text/html; charset=utf-8");
 		}
-		String contentType= temporaryImage.getMimeType();
-		return response.setStatusCode(200).setStatusText("OK").setContentType(contentType).addHeader("Content-Disposition", "attachment; filename=" + temporaryImage.getId() + "." + contentType.substring(contentType.lastIndexOf('/') + 1)).write(temporaryImage.getImageData());
+		String contentType = temporaryImage.getMimeType();
+		response.setContentType(contentType).addHeader("Content-Disposition", "attachment; filename=" + temporaryImage.getId() + "." + contentType.substring(contentType.lastIndexOf('/') + 1)).addHeader("Accept-Ranges", "bytes");
+		long size = temporaryImage.getSize();
+		long start = 0;
+		long end = size - 1;
+		String range = request.getHttpRequest().getHeader("range");
+		if (range != null) {
+			Matcher rangeMatcher = RANGE_PATTERN.matcher(range.trim());
+			if (rangeMatcher.matches() && ((rangeMatcher.group(1).length() > 0) || (rangeMatcher.group(2).length() > 0))) {
+				if (rangeMatcher.group(1).length() == 0) {
+					/* suffix range, i.e. the last n bytes. */
+					start = Math.max(0, size - Long.parseLong(rangeMatcher.group(2)));
+				} else {
+					start = Long.parseLong(rangeMatcher.group(1));
+					if (rangeMatcher.group(2).length() > 0) {
+						end = Math.min(end, Long.parseLong(rangeMatcher.group(2)));
+					}
+				}
+				if ((start > end) || (start >= size)) {
+					return response.setStatusCode(416).setStatusText("Requested Range Not Satisfiable").addHeader("Content-Range", "bytes */" + size);
+				}
+				response.setStatusCode(206).setStatusText("Partial Content").addHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+			} else {
+				response.setStatusCode(200).setStatusText("OK");
+			}
+		} else {
+			response.setStatusCode(200).setStatusText("OK");
+		}
+		InputStream imageInputStream = temporaryImage.getInputStream();
+		try {
+			ByteStreams.skipFully(imageInputStream, start);
+			copyChunks(imageInputStream, response, end - start + 1);
+		} finally {
+			Closer.close(imageInputStream);
+		}
+		return response;
 	}
 
 	/**
@@ -83,4 +132,34 @@ public class GetImagePage implements FreenetPage {
 		return false;
 	}
 
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Copies the given number of bytes from the given input stream to the
+	 * given response, in chunks of {@link #CHUNK_SIZE} bytes.
+	 *
+	 * @param inputStream
+	 *            The input stream to copy
+	 * @param response
+	 *            The response to write to
+	 * @param length
+	 *            The number of bytes to copy
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static void copyChunks(InputStream inputStream, Response response, long length) throws IOException {
+		byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, Math.max(length, 0))];
+		long remaining = length;
+		while (remaining > 0) {
+			int read = inputStream.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+			if (read == -1) {
+				break;
+			}
+			response.write((read == chunk.length) ? chunk : Arrays.copyOf(chunk, read));
+			remaining -= read;
+		}
+	}
+
 }
@@ -0,0 +1,108 @@
+/*
+ * Sone - GetThumbnailPage.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+import net.pterodactylus.sone.core.ThumbnailService;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.web.page.FreenetPage;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.util.number.Numbers;
+import net.pterodactylus.util.web.RedirectResponse;
+import net.pterodactylus.util.web.Response;
+
+import com.google.common.io.Files;
+
+/**
+ * Page that delivers a thumbnail of an {@link Image} to the browser. If the
+ * thumbnail has not been generated yet, the page waits a limited time for its
+ * generation; if it is still not available after that, the browser is
+ * redirected to a placeholder image. As that redirect is not cached, the
+ * thumbnail is requested again the next time a page shows it; thumbnails
+ * that could not be generated recently are not waited for.
+ *
+ * @see ThumbnailService
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class GetThumbnailPage implements FreenetPage {
+
+	/** The maximum time to wait for a thumbnail to be generated (in ms). */
+	private static final long GENERATION_TIMEOUT = 5000;
+
+	/** The image shown while the thumbnail is not available yet. */
+	private static final String PLACEHOLDER_IMAGE = "images/unknown-image-0.png";
+
+	/** The Sone web interface. */
+	private final WebInterface webInterface;
+
+	/**
+	 * Creates a new “get thumbnail” page.
+	 *
+	 * @param webInterface
+	 *            The Sone web interface
+	 */
+	public GetThumbnailPage(WebInterface webInterface) {
+		this.webInterface = webInterface;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getPath() {
+		return "getThumbnail.html";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isPrefixPage() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response handleRequest(FreenetRequest request, Response response) throws IOException {
+		String imageId = request.getHttpRequest().getParam("image");
+		int size = Numbers.safeParseInteger(request.getHttpRequest().getParam("size"), -1);
+		Image image = webInterface.getCore().getImage(imageId, false);
+		if (image == null) {
+			return response.setStatusCode(404).setStatusText("Not found.").setContentType("text/html; charset=utf-8");
+		}
+		File thumbnail = webInterface.getCore().getThumbnailService().getThumbnail(image, size, GENERATION_TIMEOUT);
+		if (thumbnail == null) {
+			return new RedirectResponse(PLACEHOLDER_IMAGE).addHeader("Cache-Control", "no-cache");
+		}
+		return response.setStatusCode(200).setStatusText("OK").setContentType(ThumbnailService.getContentType(thumbnail)).addHeader("Cache-Control", "max-age=86400").write(Files.toByteArray(thumbnail));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isLinkExcepted(URI link) {
+		return false;
+	}
+
+}
@@ -17,24 +17,19 @@
 
 package net.pterodactylus.sone.web;
 
-import static com.google.common.collect.FluentIterable.from;
-import static net.pterodactylus.sone.data.Album.FLATTENER;
-import static net.pterodactylus.sone.data.Album.NOT_EMPTY;
-import static net.pterodactylus.sone.data.Album.TITLE_COMPARATOR;
+import static com.google.common.base.Optional.fromNullable;
+import static com.google.common.base.Strings.emptyToNull;
 
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import com.google.common.base.Optional;
 
+import net.pterodactylus.sone.core.Core;
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.page.FreenetRequest;
-import net.pterodactylus.util.collection.Pagination;
-import net.pterodactylus.util.number.Numbers;
 import net.pterodactylus.util.template.Template;
 import net.pterodactylus.util.template.TemplateContext;
 
@@ -45,6 +40,9 @@ import net.pterodactylus.util.template.TemplateContext;
  */
 public class ImageBrowserPage extends SoneTemplatePage {
 
+	/** The number of albums to show on a page of the gallery. */
+	private static final int ALBUMS_PER_PAGE = 12;
+
 	/**
 	 * Creates a new image browser page.
 	 *
@@ -82,6 +80,36 @@ public class ImageBrowserPage extends SoneTemplatePage {
 			templateContext.set("image", image);
 			return;
 		}
+		String mode = request.getHttpRequest().getParam("mode", null);
+		if ("gallery".equals(mode)) {
+			templateContext.set("galleryRequested", true);
+			Core core = webInterface.getCore();
+			Optional<String> soneId = fromNullable(emptyToNull(request.getHttpRequest().getParam("sone")));
+			String beforeAlbumId = request.getHttpRequest().getParam("before", null);
+			List<Album> albums;
+			if (beforeAlbumId != null) {
+				albums = core.getAlbumsBefore(soneId, fromNullable(emptyToNull(beforeAlbumId)), ALBUMS_PER_PAGE);
+				if (albums.size() < ALBUMS_PER_PAGE) {
+					albums = core.getAlbumsAfter(soneId, Optional.<String>absent(), ALBUMS_PER_PAGE);
+				}
+			} else {
+				albums = core.getAlbumsAfter(soneId, fromNullable(emptyToNull(request.getHttpRequest().getParam("after"))), ALBUMS_PER_PAGE);
+			}
+			templateContext.set("albums", albums);
+			templateContext.set("galleryLink", "imageBrowser.html?mode=gallery" + (soneId.isPresent() ? "&sone=" + soneId.get() : ""));
+			if (!albums.isEmpty()) {
+				Album firstAlbum = albums.get(0);
+				Album lastAlbum = albums.get(albums.size() - 1);
+				templateContext.set("firstAlbum", firstAlbum);
+				templateContext.set("lastAlbum", lastAlbum);
+				boolean previousAlbumsExist = !core.getAlbumsBefore(soneId, Optional.of(firstAlbum.getId()), 1).isEmpty();
+				boolean nextAlbumsExist = !core.getAlbumsAfter(soneId, Optional.of(lastAlbum.getId()), 1).isEmpty();
+				templateContext.set("previousAlbumsExist", previousAlbumsExist);
+				templateContext.set("nextAlbumsExist", nextAlbumsExist);
+				templateContext.set("albumNavigationNecessary", previousAlbumsExist || nextAlbumsExist);
+			}
+			return;
+		}
 		String soneId = request.getHttpRequest().getParam("sone", null);
 		if (soneId != null) {
 			Optional<Sone> sone = webInterface.getCore().getSone(soneId);
@@ -89,24 +117,19 @@ public class ImageBrowserPage extends SoneTemplatePage {
 			templateContext.set("sone", sone.orNull());
 			return;
 		}
-		String mode = request.getHttpRequest().getParam("mode", null);
-		if ("gallery".equals(mode)) {
-			templateContext.set("galleryRequested", true);
-			List<Album> albums = new ArrayList<Album>();
-			for (Sone sone : webInterface.getCore().getSones()) {
-				albums.addAll(from(sone.getRootAlbum().getAlbums()).transformAndConcat(FLATTENER).filter(NOT_EMPTY).toList());
-			}
-			Collections.sort(albums, TITLE_COMPARATOR);
-			Pagination<Album> albumPagination = new Pagination<Album>(albums, 12).setPage(Numbers.safeParseInteger(request.getHttpRequest().getParam("page"), 0));
-			templateContext.set("albumPagination", albumPagination);
-			templateContext.set("albums", albumPagination.getItems());
-			return;
-		}
 		Sone sone = getCurrentSone(request.getToadletContext(), false);
 		templateContext.set("soneRequested", true);
 		templateContext.set("sone", sone);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
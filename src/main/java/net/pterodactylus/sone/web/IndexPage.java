@@ -84,7 +84,7 @@ public class IndexPage extends SoneTemplatePage {
 
 			@Override
 			public boolean apply(Post post) {
-				return ListNotificationFilters.isPostVisible(currentSone, post);
+				return ListNotificationFilters.isPostVisible(webInterface.getCore().getTrustCache(), currentSone, post);
 			}
 		});
 		allPosts = Collections2.filter(allPosts, Post.FUTURE_POSTS_FILTER);
@@ -95,4 +95,12 @@ public class IndexPage extends SoneTemplatePage {
 		templateContext.set("posts", pagination.getItems());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
 }
@@ -21,7 +21,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
+import net.pterodactylus.sone.core.SoneSummaryIndex.SortField;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.page.FreenetRequest;
 import net.pterodactylus.util.collection.Pagination;
@@ -32,7 +34,7 @@ import net.pterodactylus.util.template.TemplateContext;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
-import com.google.common.collect.Ordering;
+import com.google.common.collect.ImmutableSet;
 
 /**
  * This page shows all known Sones.
@@ -70,13 +72,14 @@ public class KnownSonesPage extends SoneTemplatePage {
 		templateContext.set("order", (sortOrder != null) ? sortOrder : "asc");
 		templateContext.set("filter", filter);
 		final Sone currentSone = getCurrentSone(request.getToadletContext(), false);
-		Collection<Sone> knownSones = Collections2.filter(webInterface.getCore().getSones(), Sone.EMPTY_SONE_FILTER);
+		Collection<Sone> knownSones = Collections2.filter(getSortedSones(sortField, sortOrder), Sone.EMPTY_SONE_FILTER);
+		final Set<String> friendSoneIds = (currentSone != null) ? ImmutableSet.copyOf(currentSone.getFriends()) : Collections.<String>emptySet();
 		if ((currentSone != null) && "followed".equals(filter)) {
 			knownSones = Collections2.filter(knownSones, new Predicate<Sone>() {
 
 				@Override
 				public boolean apply(Sone sone) {
-					return currentSone.hasFriend(sone.getId());
+					return friendSoneIds.contains(sone.getId());
 				}
 			});
 		} else if ((currentSone != null) && "not-followed".equals(filter)) {
@@ -84,7 +87,7 @@ public class KnownSonesPage extends SoneTemplatePage {
 
 				@Override
 				public boolean apply(Sone sone) {
-					return !currentSone.hasFriend(sone.getId());
+					return !friendSoneIds.contains(sone.getId());
 				}
 			});
 		} else if ("new".equals(filter)) {
@@ -115,34 +118,44 @@ public class KnownSonesPage extends SoneTemplatePage {
 			knownSones = Collections2.filter(knownSones, Predicates.not(Sone.LOCAL_SONE_FILTER));
 		}
 		List<Sone> sortedSones = new ArrayList<Sone>(knownSones);
+		Pagination<Sone> sonePagination = new Pagination<Sone>(sortedSones, 25).setPage(Numbers.safeParseInteger(request.getHttpRequest().getParam("page"), 0));
+		templateContext.set("pagination", sonePagination);
+		templateContext.set("knownSones", sonePagination.getItems());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns all Sones, sorted by the given field in the given order. Sones
+	 * are sorted by name in ascending order by default, and by all other
+	 * fields in descending order.
+	 *
+	 * @param sortField
+	 *            The field to sort by (“activity”, “posts”, “images”, or
+	 *            anything else to sort by name)
+	 * @param sortOrder
+	 *            The order to sort in (“asc” or “desc”)
+	 * @return All Sones, sorted by the given field
+	 */
+	private List<Sone> getSortedSones(String sortField, String sortOrder) {
 		if ("activity".equals(sortField)) {
-			if ("asc".equals(sortOrder)) {
-				Collections.sort(sortedSones, Ordering.from(Sone.LAST_ACTIVITY_COMPARATOR).reverse());
-			} else {
-				Collections.sort(sortedSones, Sone.LAST_ACTIVITY_COMPARATOR);
-			}
+			return webInterface.getCore().getSortedSones(SortField.ACTIVITY, "asc".equals(sortOrder));
 		} else if ("posts".equals(sortField)) {
-			if ("asc".equals(sortOrder)) {
-				Collections.sort(sortedSones, Ordering.from(Sone.POST_COUNT_COMPARATOR).reverse());
-			} else {
-				Collections.sort(sortedSones, Sone.POST_COUNT_COMPARATOR);
-			}
+			return webInterface.getCore().getSortedSones(SortField.POSTS, "asc".equals(sortOrder));
 		} else if ("images".equals(sortField)) {
-			if ("asc".equals(sortOrder)) {
-				Collections.sort(sortedSones, Ordering.from(Sone.IMAGE_COUNT_COMPARATOR).reverse());
-			} else {
-				Collections.sort(sortedSones, Sone.IMAGE_COUNT_COMPARATOR);
-			}
-		} else {
-			if ("desc".equals(sortOrder)) {
-				Collections.sort(sortedSones, Ordering.from(Sone.NICE_NAME_COMPARATOR).reverse());
-			} else {
-				Collections.sort(sortedSones, Sone.NICE_NAME_COMPARATOR);
-			}
+			return webInterface.getCore().getSortedSones(SortField.IMAGES, "asc".equals(sortOrder));
 		}
-		Pagination<Sone> sonePagination = new Pagination<Sone>(sortedSones, 25).setPage(Numbers.safeParseInteger(request.getHttpRequest().getParam("page"), 0));
-		templateContext.set("pagination", sonePagination);
-		templateContext.set("knownSones", sonePagination.getItems());
+		return webInterface.getCore().getSortedSones(SortField.NAME, "desc".equals(sortOrder));
 	}
 
 }
@@ -0,0 +1,89 @@
+/*
+ * Sone - MentionsPage.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.notify.ListNotificationFilters;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.util.collection.Pagination;
+import net.pterodactylus.util.number.Numbers;
+import net.pterodactylus.util.template.Template;
+import net.pterodactylus.util.template.TemplateContext;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Collections2;
+
+/**
+ * Page that displays all posts that mention the current Sone, either in the
+ * post itself or in one of its replies, sorted by time. Like the mention
+ * notification, the posts are not restricted to the friends of the current
+ * Sone; they are only checked using
+ * {@link ListNotificationFilters#isPostVisible(net.pterodactylus.sone.freenet.wot.TrustCache, Sone, Post)}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class MentionsPage extends SoneTemplatePage {
+
+	/**
+	 * Creates a new “mentions” page.
+	 *
+	 * @param template
+	 *            The template to render
+	 * @param webInterface
+	 *            The Sone web interface
+	 */
+	public MentionsPage(Template template, WebInterface webInterface) {
+		super("mentions.html", template, "Page.Mentions.Title", webInterface, true);
+	}
+
+	//
+	// SONETEMPLATEPAGE METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void processTemplate(FreenetRequest request, TemplateContext templateContext) throws RedirectException {
+		super.processTemplate(request, templateContext);
+		Sone currentSone = getCurrentSone(request.getToadletContext());
+		List<Post> mentioningPosts = new ArrayList<Post>(Collections2.filter(webInterface.getCore().getMentioningPosts(currentSone), new Predicate<Post>() {
+
+			@Override
+			public boolean apply(Post post) {
+				return ListNotificationFilters.isPostVisible(webInterface.getCore().getTrustCache(), null, post);
+			}
+		}));
+		Pagination<Post> pagination = new Pagination<Post>(mentioningPosts, webInterface.getCore().getPreferences().getPostsPerPage()).setPage(Numbers.safeParseInteger(request.getHttpRequest().getParam("page"), 0));
+		templateContext.set("pagination", pagination);
+		templateContext.set("posts", pagination.getItems());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
+}
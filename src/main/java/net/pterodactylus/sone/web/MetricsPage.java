@@ -0,0 +1,118 @@
+/*
+ * Sone - MetricsPage.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.pterodactylus.sone.metrics.Counter;
+import net.pterodactylus.sone.metrics.Gauge;
+import net.pterodactylus.sone.metrics.Histogram;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.util.template.Template;
+import net.pterodactylus.util.template.TemplateContext;
+
+import com.google.common.collect.ImmutableMap;
+
+import freenet.clients.http.ToadletContext;
+
+/**
+ * Shows the counters, gauges, and latency histograms of the
+ * {@link MetricRegistry}. This page is only available to hosts with full
+ * access.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class MetricsPage extends SoneTemplatePage {
+
+	/**
+	 * Creates a new “metrics” page.
+	 *
+	 * @param template
+	 *            The template to render
+	 * @param webInterface
+	 *            The Sone web interface
+	 */
+	public MetricsPage(Template template, WebInterface webInterface) {
+		super("metrics.html", template, "Page.Metrics.Title", webInterface, false);
+	}
+
+	//
+	// TEMPLATEPAGE METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void processTemplate(FreenetRequest request, TemplateContext templateContext) throws RedirectException {
+		super.processTemplate(request, templateContext);
+		MetricRegistry metricRegistry = webInterface.getCore().getMetricRegistry();
+		List<Map<String, Object>> counters = new ArrayList<Map<String, Object>>();
+		for (Entry<String, Counter> counter : metricRegistry.getCounters().entrySet()) {
+			counters.add(ImmutableMap.<String, Object> of("name", counter.getKey(), "value", counter.getValue().getValue()));
+		}
+		List<Map<String, Object>> gauges = new ArrayList<Map<String, Object>>();
+		for (Entry<String, Gauge> gauge : metricRegistry.getGauges().entrySet()) {
+			gauges.add(ImmutableMap.<String, Object> of("name", gauge.getKey(), "value", gauge.getValue().getValue()));
+		}
+		List<Map<String, Object>> histograms = new ArrayList<Map<String, Object>>();
+		for (Entry<String, Histogram> histogramEntry : metricRegistry.getHistograms().entrySet()) {
+			Histogram histogram = histogramEntry.getValue();
+			histograms.add(ImmutableMap.<String, Object> builder().put("name", histogramEntry.getKey()).put("count", histogram.getCount()).put("mean", formatLatency(histogram.getMean())).put("p50", formatLatency(histogram.getPercentile(0.5))).put("p95", formatLatency(histogram.getPercentile(0.95))).put("p99", formatLatency(histogram.getPercentile(0.99))).put("maximum", formatLatency(histogram.getMaximum())).build());
+		}
+		templateContext.set("counters", counters);
+		templateContext.set("gauges", gauges);
+		templateContext.set("histograms", histograms);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isFullAccessOnly() {
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isEnabled(ToadletContext toadletContext) {
+		return toadletContext.isAllowedFullAccess() && super.isEnabled(toadletContext);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Formats the given latency as milliseconds.
+	 *
+	 * @param latency
+	 *            The latency to format (in nanoseconds)
+	 * @return The formatted latency
+	 */
+	private static String formatLatency(long latency) {
+		return String.format("%.2f", latency / 1000000.0);
+	}
+
+}
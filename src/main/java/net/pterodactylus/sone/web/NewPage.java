@@ -73,7 +73,7 @@ public class NewPage extends SoneTemplatePage {
 		}
 
 		/* filter and sort them. */
-		List<Post> sortedPosts = ListNotificationFilters.filterPosts(new ArrayList<Post>(posts), webInterface.getCurrentSone(request.getToadletContext(), false));
+		List<Post> sortedPosts = ListNotificationFilters.filterPosts(webInterface.getCore().getTrustCache(), new ArrayList<Post>(posts), webInterface.getCurrentSone(request.getToadletContext(), false));
 		Collections.sort(sortedPosts, Post.TIME_COMPARATOR);
 
 		/* paginate them. */
@@ -82,4 +82,12 @@ public class NewPage extends SoneTemplatePage {
 		templateContext.set("posts", pagination.getItems());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
 }
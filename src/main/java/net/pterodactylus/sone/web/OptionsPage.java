@@ -20,6 +20,8 @@ package net.pterodactylus.sone.web;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.Section;
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.core.Preferences;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.data.Sone.ShowCustomAvatars;
@@ -76,7 +78,7 @@ public class OptionsPage extends SoneTemplatePage {
 				currentSone.getOptions().getBooleanOption("ShowNotification/NewReplies").set(showNotificationNewReplies);
 				String showCustomAvatars = request.getHttpRequest().getPartAsStringFailsafe("show-custom-avatars", 32);
 				currentSone.getOptions().<ShowCustomAvatars> getEnumOption("ShowCustomAvatars").set(ShowCustomAvatars.valueOf(showCustomAvatars));
-				webInterface.getCore().touchConfiguration();
+				webInterface.getCore().touchConfiguration(currentSone, SoneSection.OPTIONS);
 			}
 			Integer insertionDelay = Numbers.safeParseInteger(request.getHttpRequest().getPartAsStringFailsafe("insertion-delay", 16));
 			if (!preferences.validateInsertionDelay(insertionDelay)) {
@@ -132,7 +134,7 @@ public class OptionsPage extends SoneTemplatePage {
 			Integer fcpFullAccessRequiredInteger = Numbers.safeParseInteger(request.getHttpRequest().getPartAsStringFailsafe("fcp-full-access-required", 1), preferences.getFcpFullAccessRequired().ordinal());
 			FullAccessRequired fcpFullAccessRequired = FullAccessRequired.values()[fcpFullAccessRequiredInteger];
 			preferences.setFcpFullAccessRequired(fcpFullAccessRequired);
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().touchConfiguration(Section.OPTIONS);
 			if (fieldErrors.isEmpty()) {
 				throw new RedirectException(getPath());
 			}
@@ -43,6 +43,7 @@ import net.pterodactylus.util.template.TemplateContext;
 import net.pterodactylus.util.text.StringEscaper;
 import net.pterodactylus.util.text.TextException;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
@@ -158,6 +159,14 @@ public class SearchPage extends SoneTemplatePage {
 		templateContext.set("postHits", postPagination.getItems());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
 	//
 	// PRIVATE METHODS
 	//
@@ -200,7 +209,8 @@ public class SearchPage extends SoneTemplatePage {
 	 *            The query to parse
 	 * @return The parsed phrases
 	 */
-	private static List<Phrase> parseSearchPhrases(String query) {
+	@VisibleForTesting
+	static List<Phrase> parseSearchPhrases(String query) {
 		List<String> parsedPhrases = null;
 		try {
 			parsedPhrases = StringEscaper.parseLine(query);
@@ -240,7 +250,8 @@ public class SearchPage extends SoneTemplatePage {
 	 *            The expression to search
 	 * @return The score of the expression
 	 */
-	private static double calculateScore(List<Phrase> phrases, String expression) {
+	@VisibleForTesting
+	static double calculateScore(List<Phrase> phrases, String expression) {
 		logger.log(Level.FINEST, String.format("Calculating Score for “%s”…", expression));
 		double optionalHits = 0;
 		double requiredHits = 0;
@@ -481,7 +492,8 @@ public class SearchPage extends SoneTemplatePage {
 	 *
 	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
 	 */
-	private static class Phrase {
+	@VisibleForTesting
+	static class Phrase {
 
 		/**
 		 * The optionality of a search phrase.
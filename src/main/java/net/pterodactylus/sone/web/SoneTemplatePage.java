@@ -17,22 +17,22 @@
 
 package net.pterodactylus.sone.web;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.main.SonePlugin;
-import net.pterodactylus.sone.notify.ListNotificationFilters;
+import net.pterodactylus.sone.web.page.ConditionalRequests;
 import net.pterodactylus.sone.web.page.FreenetRequest;
 import net.pterodactylus.sone.web.page.FreenetTemplatePage;
-import net.pterodactylus.util.notify.Notification;
 import net.pterodactylus.util.template.Template;
 import net.pterodactylus.util.template.TemplateContext;
+import net.pterodactylus.util.web.Response;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -226,7 +226,7 @@ public class SoneTemplatePage extends FreenetTemplatePage {
 	 */
 	@Override
 	protected Collection<String> getStyleSheets() {
-		return Arrays.asList("css/sone.css");
+		return Arrays.asList("css/sone.css?v=" + SonePlugin.VERSION);
 	}
 
 	/**
@@ -247,6 +247,32 @@ public class SoneTemplatePage extends FreenetTemplatePage {
 		return requireLogin;
 	}
 
+	/**
+	 * Returns whether this page only shows data that is covered by the
+	 * {@link net.pterodactylus.sone.core.Core#getDataVersion() data version}
+	 * of the core, the current Sone, the notifications, and the request
+	 * parameters, so that it can answer conditional requests.
+	 *
+	 * @return {@code true} if this page supports conditional requests,
+	 *         {@code false} otherwise
+	 */
+	@SuppressWarnings("static-method")
+	protected boolean supportsConditionalRequests() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String getETag(FreenetRequest request) {
+		if (!supportsConditionalRequests()) {
+			return null;
+		}
+		Sone currentSone = getCurrentSone(request.getToadletContext(), false);
+		return ConditionalRequests.createETag(getPath(), webInterface.getCore().getDataVersion(), (currentSone != null) ? currentSone.getId() : null, webInterface.getNotificationsVersion(), webInterface.getCore().getUpdateChecker().getLatestEdition(), webInterface.getL10n().getSelectedLanguage());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -256,17 +282,24 @@ public class SoneTemplatePage extends FreenetTemplatePage {
 		Sone currentSone = getCurrentSone(request.getToadletContext(), false);
 		templateContext.set("core", webInterface.getCore());
 		templateContext.set("currentSone", currentSone);
-		templateContext.set("localSones", webInterface.getCore().getLocalSones());
 		templateContext.set("request", request);
-		templateContext.set("currentVersion", SonePlugin.VERSION);
-		templateContext.set("hasLatestVersion", webInterface.getCore().getUpdateChecker().hasLatestVersion());
-		templateContext.set("latestEdition", webInterface.getCore().getUpdateChecker().getLatestEdition());
-		templateContext.set("latestVersion", webInterface.getCore().getUpdateChecker().getLatestVersion());
-		templateContext.set("latestVersionTime", webInterface.getCore().getUpdateChecker().getLatestVersionDate());
-		List<Notification> notifications = ListNotificationFilters.filterNotifications(webInterface.getNotifications().getNotifications(), currentSone);
-		Collections.sort(notifications, Notification.CREATED_TIME_SORTER);
-		templateContext.set("notifications", notifications);
-		templateContext.set("notificationHash", notifications.hashCode());
+		webInterface.getChromeContext(currentSone).setTemplateVariables(templateContext);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The time it takes to handle the request is recorded in the
+	 * “Page.&lt;path&gt;” histogram of the core’s metric registry.
+	 */
+	@Override
+	public Response handleRequest(FreenetRequest request, Response response) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return super.handleRequest(request, response);
+		} finally {
+			webInterface.getCore().getMetricRegistry().histogram("Page." + getPath()).update(System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.page.FreenetRequest;
@@ -63,6 +64,7 @@ public class UnlikePage extends SoneTemplatePage {
 			} else if ("reply".equals(type)) {
 				currentSone.removeLikedReplyId(id);
 			}
+			webInterface.getCore().touchConfiguration(currentSone, SoneSection.LIKES);
 			throw new RedirectException(returnPage);
 		}
 	}
@@ -79,6 +79,14 @@ public class ViewPostPage extends SoneTemplatePage {
 		templateContext.set("raw", raw);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
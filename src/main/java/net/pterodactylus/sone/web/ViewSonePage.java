@@ -118,6 +118,14 @@ public class ViewSonePage extends SoneTemplatePage {
 		templateContext.set("repliedPosts", repliedPostPagination.getItems());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean supportsConditionalRequests() {
+		return true;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
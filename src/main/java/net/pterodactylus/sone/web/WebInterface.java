@@ -17,7 +17,6 @@
 
 package net.pterodactylus.sone.web;
 
-import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -27,7 +26,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,7 +34,6 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.pterodactylus.sone.core.Core;
@@ -72,6 +69,7 @@ import net.pterodactylus.sone.freenet.wot.Trust;
 import net.pterodactylus.sone.main.SonePlugin;
 import net.pterodactylus.sone.notify.ListNotification;
 import net.pterodactylus.sone.template.AlbumAccessor;
+import net.pterodactylus.sone.template.CachingReflectionAccessor;
 import net.pterodactylus.sone.template.CollectionAccessor;
 import net.pterodactylus.sone.template.CssClassNameFilter;
 import net.pterodactylus.sone.template.HttpRequestAccessor;
@@ -90,9 +88,8 @@ import net.pterodactylus.sone.template.SubstringFilter;
 import net.pterodactylus.sone.template.TrustAccessor;
 import net.pterodactylus.sone.template.UniqueElementFilter;
 import net.pterodactylus.sone.template.UnknownDateFilter;
-import net.pterodactylus.sone.text.Part;
-import net.pterodactylus.sone.text.SonePart;
 import net.pterodactylus.sone.text.SoneTextParser;
+import net.pterodactylus.sone.web.ajax.BatchAjaxPage;
 import net.pterodactylus.sone.web.ajax.BookmarkAjaxPage;
 import net.pterodactylus.sone.web.ajax.CreatePostAjaxPage;
 import net.pterodactylus.sone.web.ajax.CreateReplyAjaxPage;
@@ -106,6 +103,7 @@ import net.pterodactylus.sone.web.ajax.EditImageAjaxPage;
 import net.pterodactylus.sone.web.ajax.EditProfileFieldAjaxPage;
 import net.pterodactylus.sone.web.ajax.FollowSoneAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetLikesAjaxPage;
+import net.pterodactylus.sone.web.ajax.GetMetricsAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetNotificationsAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetPostAjaxPage;
 import net.pterodactylus.sone.web.ajax.GetReplyAjaxPage;
@@ -116,6 +114,7 @@ import net.pterodactylus.sone.web.ajax.LikeAjaxPage;
 import net.pterodactylus.sone.web.ajax.LockSoneAjaxPage;
 import net.pterodactylus.sone.web.ajax.MarkAsKnownAjaxPage;
 import net.pterodactylus.sone.web.ajax.MoveProfileFieldAjaxPage;
+import net.pterodactylus.sone.web.ajax.RenderedFragmentCache;
 import net.pterodactylus.sone.web.ajax.TrustAjaxPage;
 import net.pterodactylus.sone.web.ajax.UnbookmarkAjaxPage;
 import net.pterodactylus.sone.web.ajax.UnfollowSoneAjaxPage;
@@ -125,6 +124,7 @@ import net.pterodactylus.sone.web.ajax.UntrustAjaxPage;
 import net.pterodactylus.sone.web.page.FreenetRequest;
 import net.pterodactylus.sone.web.page.PageToadlet;
 import net.pterodactylus.sone.web.page.PageToadletFactory;
+import net.pterodactylus.sone.web.page.StaticResourcePage;
 import net.pterodactylus.util.logging.Logging;
 import net.pterodactylus.util.notify.Notification;
 import net.pterodactylus.util.notify.NotificationManager;
@@ -138,7 +138,6 @@ import net.pterodactylus.util.template.HtmlFilter;
 import net.pterodactylus.util.template.MatchFilter;
 import net.pterodactylus.util.template.ModFilter;
 import net.pterodactylus.util.template.PaginationFilter;
-import net.pterodactylus.util.template.ReflectionAccessor;
 import net.pterodactylus.util.template.ReplaceFilter;
 import net.pterodactylus.util.template.StoreFilter;
 import net.pterodactylus.util.template.Template;
@@ -147,11 +146,10 @@ import net.pterodactylus.util.template.TemplateParser;
 import net.pterodactylus.util.template.TemplateProvider;
 import net.pterodactylus.util.template.XmlFilter;
 import net.pterodactylus.util.web.RedirectPage;
-import net.pterodactylus.util.web.StaticPage;
 import net.pterodactylus.util.web.TemplatePage;
 
-import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
 
@@ -173,6 +171,9 @@ public class WebInterface {
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(WebInterface.class);
 
+	/** The maximum number of posts or replies to show in a notification. */
+	private static final int MAXIMUM_DISPLAYED_NOTIFICATION_ELEMENTS = 100;
+
 	/** The notification manager. */
 	private final NotificationManager notificationManager = new NotificationManager();
 
@@ -191,6 +192,12 @@ public class WebInterface {
 	/** The Sone text parser. */
 	private final SoneTextParser soneTextParser;
 
+	/** The cache for rendered posts and replies. */
+	private final RenderedFragmentCache renderedFragmentCache;
+
+	/** The cache for chrome contexts. */
+	private final ChromeContextCache chromeContextCache;
+
 	/** The parser filter. */
 	private final ParserFilter parserFilter;
 
@@ -241,15 +248,21 @@ public class WebInterface {
 	 *
 	 * @param sonePlugin
 	 *            The Sone plugin
+	 * @param eventBus
+	 *            The event bus
 	 */
 	@Inject
-	public WebInterface(SonePlugin sonePlugin) {
+	public WebInterface(SonePlugin sonePlugin, EventBus eventBus) {
 		this.sonePlugin = sonePlugin;
 		formPassword = sonePlugin.pluginRespirator().getToadletContainer().getFormPassword();
 		soneTextParser = new SoneTextParser(getCore(), getCore());
+		renderedFragmentCache = new RenderedFragmentCache(getCore());
+		eventBus.register(renderedFragmentCache);
+		chromeContextCache = new ChromeContextCache(getCore(), notificationManager);
+		eventBus.register(chromeContextCache);
 
 		templateContextFactory = new TemplateContextFactory();
-		templateContextFactory.addAccessor(Object.class, new ReflectionAccessor());
+		templateContextFactory.addAccessor(Object.class, new CachingReflectionAccessor());
 		templateContextFactory.addAccessor(Collection.class, new CollectionAccessor());
 		templateContextFactory.addAccessor(Sone.class, new SoneAccessor(getCore()));
 		templateContextFactory.addAccessor(Post.class, new PostAccessor(getCore()));
@@ -291,13 +304,13 @@ public class WebInterface {
 		newSoneNotification = new ListNotification<Sone>("new-sone-notification", "sones", newSoneNotificationTemplate, false);
 
 		Template newPostNotificationTemplate = TemplateParser.parse(createReader("/templates/notify/newPostNotification.html"));
-		newPostNotification = new ListNotification<Post>("new-post-notification", "posts", newPostNotificationTemplate, false);
+		newPostNotification = new ListNotification<Post>("new-post-notification", "posts", newPostNotificationTemplate, false, MAXIMUM_DISPLAYED_NOTIFICATION_ELEMENTS);
 
 		Template localPostNotificationTemplate = TemplateParser.parse(createReader("/templates/notify/newPostNotification.html"));
 		localPostNotification = new ListNotification<Post>("local-post-notification", "posts", localPostNotificationTemplate, false);
 
 		Template newReplyNotificationTemplate = TemplateParser.parse(createReader("/templates/notify/newReplyNotification.html"));
-		newReplyNotification = new ListNotification<PostReply>("new-reply-notification", "replies", newReplyNotificationTemplate, false);
+		newReplyNotification = new ListNotification<PostReply>("new-reply-notification", "replies", newReplyNotificationTemplate, false, MAXIMUM_DISPLAYED_NOTIFICATION_ELEMENTS);
 
 		Template localReplyNotificationTemplate = TemplateParser.parse(createReader("/templates/notify/newReplyNotification.html"));
 		localReplyNotification = new ListNotification<PostReply>("local-reply-notification", "replies", localReplyNotificationTemplate, false);
@@ -443,6 +456,27 @@ public class WebInterface {
 		}
 	}
 
+	/**
+	 * Returns the cache for rendered posts and replies.
+	 *
+	 * @return The rendered fragment cache
+	 */
+	public RenderedFragmentCache getRenderedFragmentCache() {
+		return renderedFragmentCache;
+	}
+
+	/**
+	 * Returns the chrome context for the given Sone.
+	 *
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @return The chrome context for the given Sone
+	 * @see ChromeContextCache#getChromeContext(Sone)
+	 */
+	public ChromeContext getChromeContext(Sone currentSone) {
+		return chromeContextCache.getChromeContext(currentSone);
+	}
+
 	/**
 	 * Returns the notification manager.
 	 *
@@ -452,6 +486,18 @@ public class WebInterface {
 		return notificationManager;
 	}
 
+	/**
+	 * Returns a version of the current notifications. The version changes
+	 * whenever a notification is added, removed, or updated, including
+	 * changes to the elements of a list notification that happen within the
+	 * same millisecond.
+	 *
+	 * @return The version of the current notifications
+	 */
+	public long getNotificationsVersion() {
+		return chromeContextCache.getNotificationsVersion();
+	}
+
 	/**
 	 * Returns the l10n helper of the node.
 	 *
@@ -605,6 +651,7 @@ public class WebInterface {
 		Template loginTemplate = TemplateParser.parse(createReader("/templates/login.html"));
 		Template indexTemplate = TemplateParser.parse(createReader("/templates/index.html"));
 		Template newTemplate = TemplateParser.parse(createReader("/templates/new.html"));
+		Template mentionsTemplate = TemplateParser.parse(createReader("/templates/mentions.html"));
 		Template knownSonesTemplate = TemplateParser.parse(createReader("/templates/knownSones.html"));
 		Template createSoneTemplate = TemplateParser.parse(createReader("/templates/createSone.html"));
 		Template createPostTemplate = TemplateParser.parse(createReader("/templates/createPost.html"));
@@ -627,15 +674,17 @@ public class WebInterface {
 		Template optionsTemplate = TemplateParser.parse(createReader("/templates/options.html"));
 		Template rescueTemplate = TemplateParser.parse(createReader("/templates/rescue.html"));
 		Template aboutTemplate = TemplateParser.parse(createReader("/templates/about.html"));
+		Template metricsTemplate = TemplateParser.parse(createReader("/templates/metrics.html"));
 		Template invalidTemplate = TemplateParser.parse(createReader("/templates/invalid.html"));
 		Template postTemplate = TemplateParser.parse(createReader("/templates/include/viewPost.html"));
 		Template replyTemplate = TemplateParser.parse(createReader("/templates/include/viewReply.html"));
 		Template openSearchTemplate = TemplateParser.parse(createReader("/templates/xml/OpenSearch.xml"));
 
-		PageToadletFactory pageToadletFactory = new PageToadletFactory(sonePlugin.pluginRespirator().getHLSimpleClient(), "/Sone/");
+		PageToadletFactory pageToadletFactory = new PageToadletFactory(sonePlugin.pluginRespirator().getHLSimpleClient(), "/Sone/", getCore().getMetricRegistry());
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new RedirectPage<FreenetRequest>("", "index.html")));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new IndexPage(indexTemplate, this), "Index"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new NewPage(newTemplate, this), "New"));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new MentionsPage(mentionsTemplate, this), "Mentions"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new CreateSonePage(createSoneTemplate, this), "CreateSone"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new KnownSonesPage(knownSonesTemplate, this), "KnownSones"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new EditProfilePage(editProfileTemplate, this), "EditProfile"));
@@ -674,16 +723,19 @@ public class WebInterface {
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new OptionsPage(optionsTemplate, this), "Options"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new RescuePage(rescueTemplate, this), "Rescue"));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new AboutPage(aboutTemplate, this, SonePlugin.VERSION), "About"));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new MetricsPage(metricsTemplate, this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new SoneTemplatePage("noPermission.html", noPermissionTemplate, "Page.NoPermission.Title", this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new DismissNotificationPage(emptyTemplate, this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new SoneTemplatePage("invalid.html", invalidTemplate, "Page.Invalid.Title", this)));
-		pageToadlets.add(pageToadletFactory.createPageToadlet(new StaticPage<FreenetRequest>("css/", "/static/css/", "text/css")));
-		pageToadlets.add(pageToadletFactory.createPageToadlet(new StaticPage<FreenetRequest>("javascript/", "/static/javascript/", "text/javascript")));
-		pageToadlets.add(pageToadletFactory.createPageToadlet(new StaticPage<FreenetRequest>("images/", "/static/images/", "image/png")));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new StaticResourcePage("css/", "/static/css/", "text/css")));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new StaticResourcePage("javascript/", "/static/javascript/", "text/javascript")));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new StaticResourcePage("images/", "/static/images/", "image/png")));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new TemplatePage<FreenetRequest>("OpenSearch.xml", "application/opensearchdescription+xml", templateContextFactory, openSearchTemplate)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetImagePage(this)));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetThumbnailPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetTranslationPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetStatusAjaxPage(this)));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetMetricsAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetNotificationsAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new DismissNotificationAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new CreatePostAjaxPage(this)));
@@ -691,6 +743,7 @@ public class WebInterface {
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetReplyAjaxPage(this, replyTemplate)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetPostAjaxPage(this, postTemplate)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new GetTimesAjaxPage(this)));
+		pageToadlets.add(pageToadletFactory.createPageToadlet(new BatchAjaxPage(this, postTemplate, replyTemplate)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new MarkAsKnownAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new DeletePostAjaxPage(this)));
 		pageToadlets.add(pageToadletFactory.createPageToadlet(new DeleteReplyAjaxPage(this)));
@@ -751,30 +804,6 @@ public class WebInterface {
 		}
 	}
 
-	/**
-	 * Returns all {@link Sone#isLocal() local Sone}s that are referenced by
-	 * {@link SonePart}s in the given text (after parsing it using
-	 * {@link SoneTextParser}).
-	 *
-	 * @param text
-	 *            The text to parse
-	 * @return All mentioned local Sones
-	 */
-	private Collection<Sone> getMentionedSones(String text) {
-		/* we need no context to find mentioned Sones. */
-		Set<Sone> mentionedSones = new HashSet<Sone>();
-		try {
-			for (Part part : soneTextParser.parse(null, new StringReader(text))) {
-				if (part instanceof SonePart) {
-					mentionedSones.add(((SonePart) part).getSone());
-				}
-			}
-		} catch (IOException ioe1) {
-			logger.log(Level.WARNING, String.format("Could not parse post text: %s", text), ioe1);
-		}
-		return Collections2.filter(mentionedSones, Sone.LOCAL_SONE_FILTER);
-	}
-
 	/**
 	 * Returns the Sone insert notification for the given Sone. If no
 	 * notification for the given Sone exists, a new notification is created and
@@ -831,7 +860,7 @@ public class WebInterface {
 		}
 		if (!hasFirstStartNotification()) {
 			notificationManager.addNotification(isLocal ? localPostNotification : newPostNotification);
-			if (!getMentionedSones(post.getText()).isEmpty() && !isLocal) {
+			if (!isLocal && getCore().isLocalSoneMentioned(post)) {
 				mentionNotification.add(post);
 				notificationManager.addNotification(mentionNotification);
 			}
@@ -857,7 +886,7 @@ public class WebInterface {
 		}
 		if (!hasFirstStartNotification()) {
 			notificationManager.addNotification(isLocal ? localReplyNotification : newReplyNotification);
-			if (!getMentionedSones(reply.getText()).isEmpty() && !isLocal && reply.getPost().isPresent() && (reply.getTime() <= System.currentTimeMillis())) {
+			if (!isLocal && reply.getPost().isPresent() && (reply.getTime() <= System.currentTimeMillis()) && getCore().isLocalSoneMentioned(reply)) {
 				mentionNotification.add(reply.getPost().get());
 				notificationManager.addNotification(mentionNotification);
 			}
@@ -938,10 +967,10 @@ public class WebInterface {
 		PostReply reply = postReplyRemovedEvent.postReply();
 		newReplyNotification.remove(reply);
 		localReplyNotification.remove(reply);
-		if (!getMentionedSones(reply.getText()).isEmpty() && reply.getPost().isPresent()) {
-			boolean isMentioned = false;
+		if (reply.getPost().isPresent() && mentionNotification.contains(reply.getPost().get())) {
+			boolean isMentioned = getCore().isLocalSoneMentioned(reply.getPost().get());
 			for (PostReply existingReply : getCore().getReplies(reply.getPostId())) {
-				isMentioned |= !reply.isKnown() && !getMentionedSones(existingReply.getText()).isEmpty();
+				isMentioned |= !existingReply.equals(reply) && !existingReply.isKnown() && getCore().isLocalSoneMentioned(existingReply);
 			}
 			if (!isMentioned) {
 				mentionNotification.remove(reply.getPost().get());
@@ -0,0 +1,282 @@
+/*
+ * Sone - BatchAjaxPage.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import java.io.IOException;
+import java.util.Set;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.util.template.Template;
+import net.pterodactylus.util.template.TemplateContext;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Optional;
+
+/**
+ * AJAX page that answers several requests for posts, replies, times, and
+ * likes at once. Each type of request is given as a parameter containing a
+ * comma-separated list of IDs:
+ * <ul>
+ * <li>“posts” and “replies” return the rendered posts and replies, like
+ * {@link GetPostAjaxPage} and {@link GetReplyAjaxPage} do,</li>
+ * <li>“postTimes” and “replyTimes” return the formatted times of posts and
+ * replies, like {@link GetTimesAjaxPage} does, and</li>
+ * <li>“postLikes” and “replyLikes” return the likes of posts and replies,
+ * like {@link GetLikesAjaxPage} does.</li>
+ * </ul>
+ * The currently logged in Sone is only looked up once, and all posts and
+ * replies are rendered using the same template context. Posts, replies, and
+ * likes are only returned if a Sone is logged in; unknown IDs are skipped.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class BatchAjaxPage extends StreamingJsonPage {
+
+	/** The template to render for posts. */
+	private final Template postTemplate;
+
+	/** The template to render for replies. */
+	private final Template replyTemplate;
+
+	/**
+	 * Creates a new batch AJAX page.
+	 *
+	 * @param webInterface
+	 *            The Sone web interface
+	 * @param postTemplate
+	 *            The template to render for posts
+	 * @param replyTemplate
+	 *            The template to render for replies
+	 */
+	public BatchAjaxPage(WebInterface webInterface, Template postTemplate, Template replyTemplate) {
+		super("batch.ajax", webInterface);
+		this.postTemplate = postTemplate;
+		this.replyTemplate = replyTemplate;
+	}
+
+	//
+	// JSONPAGE METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void writeJsonObject(FreenetRequest request, JsonGenerator jsonGenerator) throws IOException {
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeBooleanField("success", true);
+		jsonGenerator.writeObjectFieldStart("postTimes");
+		writePostTimes(jsonGenerator, GetTimesAjaxPage.getIds(request, "postTimes"));
+		jsonGenerator.writeEndObject();
+		jsonGenerator.writeObjectFieldStart("replyTimes");
+		writeReplyTimes(jsonGenerator, GetTimesAjaxPage.getIds(request, "replyTimes"));
+		jsonGenerator.writeEndObject();
+		Sone currentSone = getCurrentSone(request.getToadletContext(), false);
+		if (currentSone != null) {
+			TemplateContext templateContext = webInterface.getTemplateContextFactory().createTemplateContext();
+			templateContext.set("core", webInterface.getCore());
+			templateContext.set("request", request);
+			templateContext.set("currentSone", currentSone);
+			templateContext.set("localSones", webInterface.getCore().getLocalSones());
+			jsonGenerator.writeArrayFieldStart("posts");
+			writePosts(jsonGenerator, GetTimesAjaxPage.getIds(request, "posts"), currentSone, templateContext);
+			jsonGenerator.writeEndArray();
+			jsonGenerator.writeArrayFieldStart("replies");
+			writeReplies(jsonGenerator, GetTimesAjaxPage.getIds(request, "replies"), currentSone, templateContext);
+			jsonGenerator.writeEndArray();
+			jsonGenerator.writeObjectFieldStart("postLikes");
+			writePostLikes(jsonGenerator, GetTimesAjaxPage.getIds(request, "postLikes"));
+			jsonGenerator.writeEndObject();
+			jsonGenerator.writeObjectFieldStart("replyLikes");
+			writeReplyLikes(jsonGenerator, GetTimesAjaxPage.getIds(request, "replyLikes"));
+			jsonGenerator.writeEndObject();
+		}
+		jsonGenerator.writeEndObject();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean needsFormPassword() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean requiresLogin() {
+		return false;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Writes the rendered posts with the given IDs.
+	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the posts to
+	 * @param ids
+	 *            The IDs of the posts
+	 * @param currentSone
+	 *            The currently logged in Sone
+	 * @param templateContext
+	 *            The template context to render the posts in
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void writePosts(JsonGenerator jsonGenerator, Set<String> ids, Sone currentSone, TemplateContext templateContext) throws IOException {
+		for (String id : ids) {
+			Optional<Post> post = webInterface.getCore().getPost(id);
+			if (post.isPresent()) {
+				jsonGenerator.writeTree(GetPostAjaxPage.createJsonPost(webInterface, post.get(), currentSone, postTemplate, templateContext));
+			}
+		}
+	}
+
+	/**
+	 * Writes the rendered replies with the given IDs.
+	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the replies to
+	 * @param ids
+	 *            The IDs of the replies
+	 * @param currentSone
+	 *            The currently logged in Sone
+	 * @param templateContext
+	 *            The template context to render the replies in
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void writeReplies(JsonGenerator jsonGenerator, Set<String> ids, Sone currentSone, TemplateContext templateContext) throws IOException {
+		for (String id : ids) {
+			Optional<PostReply> reply = webInterface.getCore().getPostReply(id);
+			if (reply.isPresent()) {
+				jsonGenerator.writeTree(GetReplyAjaxPage.createJsonReply(webInterface, reply.get(), currentSone, replyTemplate, templateContext));
+			}
+		}
+	}
+
+	/**
+	 * Writes the formatted times of the posts with the given IDs, by post ID.
+	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the times to
+	 * @param ids
+	 *            The IDs of the posts
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void writePostTimes(JsonGenerator jsonGenerator, Set<String> ids) throws IOException {
+		for (String id : ids) {
+			Optional<Post> post = webInterface.getCore().getPost(id);
+			if (post.isPresent()) {
+				jsonGenerator.writeFieldName(id);
+				GetTimesAjaxPage.writeJsonTime(jsonGenerator, webInterface, post.get().getTime());
+			}
+		}
+	}
+
+	/**
+	 * Writes the formatted times of the replies with the given IDs, by reply
+	 * ID.
+	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the times to
+	 * @param ids
+	 *            The IDs of the replies
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void writeReplyTimes(JsonGenerator jsonGenerator, Set<String> ids) throws IOException {
+		for (String id : ids) {
+			Optional<PostReply> reply = webInterface.getCore().getPostReply(id);
+			if (reply.isPresent()) {
+				jsonGenerator.writeFieldName(id);
+				GetTimesAjaxPage.writeJsonTime(jsonGenerator, webInterface, reply.get().getTime());
+			}
+		}
+	}
+
+	/**
+	 * Writes the likes of the posts with the given IDs, by post ID.
+	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the likes to
+	 * @param ids
+	 *            The IDs of the posts
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void writePostLikes(JsonGenerator jsonGenerator, Set<String> ids) throws IOException {
+		for (String id : ids) {
+			Optional<Post> post = webInterface.getCore().getPost(id);
+			if (post.isPresent()) {
+				jsonGenerator.writeFieldName(id);
+				writeJsonLikes(jsonGenerator, webInterface.getCore().getLikes(post.get()));
+			}
+		}
+	}
+
+	/**
+	 * Writes the likes of the replies with the given IDs, by reply ID.
+	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the likes to
+	 * @param ids
+	 *            The IDs of the replies
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void writeReplyLikes(JsonGenerator jsonGenerator, Set<String> ids) throws IOException {
+		for (String id : ids) {
+			Optional<PostReply> reply = webInterface.getCore().getPostReply(id);
+			if (reply.isPresent()) {
+				jsonGenerator.writeFieldName(id);
+				writeJsonLikes(jsonGenerator, webInterface.getCore().getLikes(reply.get()));
+			}
+		}
+	}
+
+	/**
+	 * Writes a JSON object containing the number of likes and the liking
+	 * Sones.
+	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the likes to
+	 * @param sones
+	 *            The Sones that like a post or reply
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static void writeJsonLikes(JsonGenerator jsonGenerator, Set<Sone> sones) throws IOException {
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeNumberField("likes", sones.size());
+		jsonGenerator.writeFieldName("sones");
+		jsonGenerator.writeTree(GetLikesAjaxPage.getSones(sones));
+		jsonGenerator.writeEndObject();
+	}
+
+}
@@ -19,6 +19,7 @@ package net.pterodactylus.sone.web.ajax;
 
 import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Profile;
 import net.pterodactylus.sone.data.Profile.Field;
 import net.pterodactylus.sone.data.Sone;
@@ -59,7 +60,7 @@ public class DeleteProfileFieldAjaxPage extends JsonPage {
 		}
 		profile.removeField(field);
 		currentSone.setProfile(profile);
-		webInterface.getCore().touchConfiguration();
+		webInterface.getCore().touchConfiguration(currentSone, SoneSection.PROFILE);
 		return createSuccessJsonObject().put("field", new ObjectNode(instance).put("id", new TextNode(field.getId())));
 	}
 
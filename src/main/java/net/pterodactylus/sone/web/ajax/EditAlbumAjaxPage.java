@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web.ajax;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.text.TextFilter;
 import net.pterodactylus.sone.web.WebInterface;
@@ -58,18 +59,18 @@ public class EditAlbumAjaxPage extends JsonPage {
 		}
 		if ("true".equals(request.getHttpRequest().getParam("moveLeft"))) {
 			Album swappedAlbum = album.getParent().moveAlbumUp(album);
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().touchConfiguration(album.getSone(), SoneSection.ALBUMS);
 			return createSuccessJsonObject().put("sourceAlbumId", album.getId()).put("destinationAlbumId", swappedAlbum.getId());
 		}
 		if ("true".equals(request.getHttpRequest().getParam("moveRight"))) {
 			Album swappedAlbum = album.getParent().moveAlbumDown(album);
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().touchConfiguration(album.getSone(), SoneSection.ALBUMS);
 			return createSuccessJsonObject().put("sourceAlbumId", album.getId()).put("destinationAlbumId", swappedAlbum.getId());
 		}
 		String title = request.getHttpRequest().getParam("title").trim();
 		String description = request.getHttpRequest().getParam("description").trim();
 		album.modify().setTitle(title).setDescription(TextFilter.filter(request.getHttpRequest().getHeader("host"), description)).update();
-		webInterface.getCore().touchConfiguration();
+		webInterface.getCore().updateAlbum(album);
 		return createSuccessJsonObject().put("albumId", album.getId()).put("title", album.getTitle()).put("description", album.getDescription());
 	}
 
@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web.ajax;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Image;
 import net.pterodactylus.sone.template.ParserFilter;
 import net.pterodactylus.sone.text.TextFilter;
@@ -68,18 +69,18 @@ public class EditImageAjaxPage extends JsonPage {
 		}
 		if ("true".equals(request.getHttpRequest().getParam("moveLeft"))) {
 			Image swappedImage = image.getAlbum().moveImageUp(image);
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().touchConfiguration(image.getSone(), SoneSection.ALBUMS);
 			return createSuccessJsonObject().put("sourceImageId", image.getId()).put("destinationImageId", swappedImage.getId());
 		}
 		if ("true".equals(request.getHttpRequest().getParam("moveRight"))) {
 			Image swappedImage = image.getAlbum().moveImageDown(image);
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().touchConfiguration(image.getSone(), SoneSection.ALBUMS);
 			return createSuccessJsonObject().put("sourceImageId", image.getId()).put("destinationImageId", swappedImage.getId());
 		}
 		String title = request.getHttpRequest().getParam("title").trim();
 		String description = request.getHttpRequest().getParam("description").trim();
 		image.modify().setTitle(title).setDescription(TextFilter.filter(request.getHttpRequest().getHeader("host"), description)).update();
-		webInterface.getCore().touchConfiguration();
+		webInterface.getCore().touchConfiguration(image.getSone(), SoneSection.ALBUMS);
 		return createSuccessJsonObject().put("imageId", image.getId()).put("title", image.getTitle()).put("description", image.getDescription()).put("parsedDescription", (String) parserFilter.format(new TemplateContext(), image.getDescription(), ImmutableMap.<String, Object>builder().put("sone", image.getSone()).build()));
 	}
 
@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web.ajax;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Profile;
 import net.pterodactylus.sone.data.Profile.Field;
 import net.pterodactylus.sone.data.Sone;
@@ -66,6 +67,7 @@ public class EditProfileFieldAjaxPage extends JsonPage {
 		}
 		field.setName(name);
 		currentSone.setProfile(profile);
+		webInterface.getCore().touchConfiguration(currentSone, SoneSection.PROFILE);
 		return createSuccessJsonObject();
 	}
 
@@ -27,6 +27,7 @@ import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.template.SoneAccessor;
 import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.ConditionalRequests;
 import net.pterodactylus.sone.web.page.FreenetRequest;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -92,8 +93,24 @@ public class GetLikesAjaxPage extends JsonPage {
 		return false;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String getETag(FreenetRequest request) {
+		return ConditionalRequests.createETag(webInterface.getCore().getDataVersion());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected long getLastModified(FreenetRequest request) {
+		return webInterface.getCore().getLastDataUpdate();
+	}
+
 	//
-	// PRIVATE METHODS
+	// STATIC METHODS
 	//
 
 	/**
@@ -104,7 +121,7 @@ public class GetLikesAjaxPage extends JsonPage {
 	 *            The Sones to convert to an array
 	 * @return The Sones, sorted by name
 	 */
-	private static JsonNode getSones(Set<Sone> sones) {
+	static JsonNode getSones(Set<Sone> sones) {
 		ArrayNode soneArray = new ArrayNode(instance);
 		for (Sone sone : FluentIterable.from(sones).toSortedList(NICE_NAME_COMPARATOR)) {
 			soneArray.add(new ObjectNode(instance).put("id", sone.getId()).put("name", SoneAccessor.getNiceName(sone)));
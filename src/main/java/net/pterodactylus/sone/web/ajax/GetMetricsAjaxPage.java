@@ -0,0 +1,121 @@
+/*
+ * Sone - GetMetricsAjaxPage.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
+
+import java.util.Map.Entry;
+
+import net.pterodactylus.sone.metrics.Counter;
+import net.pterodactylus.sone.metrics.Gauge;
+import net.pterodactylus.sone.metrics.Histogram;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The “get metrics” AJAX handler returns all counters, gauges, and latency
+ * histograms of the {@link MetricRegistry}. Latencies are returned in
+ * nanoseconds. This page is only available to hosts with full access.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class GetMetricsAjaxPage extends JsonPage {
+
+	/**
+	 * Creates a new “get metrics” AJAX handler.
+	 *
+	 * @param webInterface
+	 *            The Sone web interface
+	 */
+	public GetMetricsAjaxPage(WebInterface webInterface) {
+		super("getMetrics.ajax", webInterface);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected JsonReturnObject createJsonObject(FreenetRequest request) {
+		MetricRegistry metricRegistry = webInterface.getCore().getMetricRegistry();
+		ObjectNode jsonCounters = new ObjectNode(instance);
+		for (Entry<String, Counter> counter : metricRegistry.getCounters().entrySet()) {
+			jsonCounters.put(counter.getKey(), counter.getValue().getValue());
+		}
+		ObjectNode jsonGauges = new ObjectNode(instance);
+		for (Entry<String, Gauge> gauge : metricRegistry.getGauges().entrySet()) {
+			jsonGauges.put(gauge.getKey(), gauge.getValue().getValue());
+		}
+		ObjectNode jsonHistograms = new ObjectNode(instance);
+		for (Entry<String, Histogram> histogram : metricRegistry.getHistograms().entrySet()) {
+			jsonHistograms.put(histogram.getKey(), createJsonHistogram(histogram.getValue()));
+		}
+		return createSuccessJsonObject().put("counters", jsonCounters).put("gauges", jsonGauges).put("histograms", jsonHistograms);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean needsFormPassword() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean requiresLogin() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean isFullAccessOnly() {
+		return true;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates a JSON object from the given histogram.
+	 *
+	 * @param histogram
+	 *            The histogram to convert to a JSON object
+	 * @return The JSON representation of the given histogram
+	 */
+	private static JsonNode createJsonHistogram(Histogram histogram) {
+		ObjectNode jsonHistogram = new ObjectNode(instance);
+		jsonHistogram.put("count", histogram.getCount());
+		jsonHistogram.put("total", histogram.getTotal());
+		jsonHistogram.put("mean", histogram.getMean());
+		jsonHistogram.put("p50", histogram.getPercentile(0.5));
+		jsonHistogram.put("p95", histogram.getPercentile(0.95));
+		jsonHistogram.put("p99", histogram.getPercentile(0.99));
+		jsonHistogram.put("maximum", histogram.getMaximum());
+		return jsonHistogram;
+	}
+
+}
@@ -17,33 +17,26 @@
 
 package net.pterodactylus.sone.web.ajax;
 
-import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
-
 import java.io.IOException;
 import java.io.StringWriter;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
 
 import net.pterodactylus.sone.data.Sone;
-import net.pterodactylus.sone.main.SonePlugin;
-import net.pterodactylus.sone.notify.ListNotificationFilters;
+import net.pterodactylus.sone.web.ChromeContext;
 import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.ConditionalRequests;
 import net.pterodactylus.sone.web.page.FreenetRequest;
 import net.pterodactylus.util.notify.Notification;
 import net.pterodactylus.util.notify.TemplateNotification;
 import net.pterodactylus.util.template.TemplateContext;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * AJAX handler to return all current notifications.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class GetNotificationsAjaxPage extends JsonPage {
+public class GetNotificationsAjaxPage extends StreamingJsonPage {
 
 	/**
 	 * Creates a new “get notifications” AJAX handler.
@@ -67,6 +60,15 @@ public class GetNotificationsAjaxPage extends JsonPage {
 		return false;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String getETag(FreenetRequest request) {
+		Sone currentSone = getCurrentSone(request.getToadletContext(), false);
+		return ConditionalRequests.createETag(webInterface.getCore().getDataVersion(), webInterface.getNotificationsVersion(), (currentSone != null) ? currentSone.getId() : null, webInterface.getL10n().getSelectedLanguage());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -79,16 +81,20 @@ public class GetNotificationsAjaxPage extends JsonPage {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected JsonReturnObject createJsonObject(FreenetRequest request) {
+	protected void writeJsonObject(FreenetRequest request, JsonGenerator jsonGenerator) throws IOException {
 		Sone currentSone = getCurrentSone(request.getToadletContext(), false);
-		Collection<Notification> notifications = webInterface.getNotifications().getNotifications();
-		List<Notification> filteredNotifications = ListNotificationFilters.filterNotifications(notifications, currentSone);
-		Collections.sort(filteredNotifications, Notification.CREATED_TIME_SORTER);
-		ArrayNode jsonNotifications = new ArrayNode(instance);
-		for (Notification notification : filteredNotifications) {
-			jsonNotifications.add(createJsonNotification(request, notification));
+		ChromeContext chromeContext = webInterface.getChromeContext(currentSone);
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeBooleanField("success", true);
+		jsonGenerator.writeNumberField("notificationHash", chromeContext.getNotificationHash());
+		jsonGenerator.writeArrayFieldStart("notifications");
+		for (Notification notification : chromeContext.getNotifications()) {
+			writeJsonNotification(jsonGenerator, request, currentSone, chromeContext, notification);
 		}
-		return createSuccessJsonObject().put("notificationHash", filteredNotifications.hashCode()).put("notifications", jsonNotifications).put("options", createJsonOptions(currentSone));
+		jsonGenerator.writeEndArray();
+		jsonGenerator.writeFieldName("options");
+		GetStatusAjaxPage.writeJsonOptions(jsonGenerator, currentSone);
+		jsonGenerator.writeEndObject();
 	}
 
 	//
@@ -96,30 +102,30 @@ public class GetNotificationsAjaxPage extends JsonPage {
 	//
 
 	/**
-	 * Creates a JSON object from the given notification.
+	 * Writes a JSON object from the given notification.
 	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the notification to
 	 * @param request
-	 *            The request to load the session from
+	 *            The request being processed
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @param chromeContext
+	 *            The chrome context of the current Sone
 	 * @param notification
 	 *            The notification to create a JSON object
-	 * @return The JSON object
+	 * @throws IOException
+	 *             if an I/O error occurs
 	 */
-	private JsonNode createJsonNotification(FreenetRequest request, Notification notification) {
-		ObjectNode jsonNotification = new ObjectNode(instance);
-		jsonNotification.put("id", notification.getId());
+	private void writeJsonNotification(JsonGenerator jsonGenerator, FreenetRequest request, Sone currentSone, ChromeContext chromeContext, Notification notification) throws IOException {
 		StringWriter notificationWriter = new StringWriter();
 		try {
 			if (notification instanceof TemplateNotification) {
 				TemplateContext templateContext = webInterface.getTemplateContextFactory().createTemplateContext().mergeContext(((TemplateNotification) notification).getTemplateContext());
 				templateContext.set("core", webInterface.getCore());
-				templateContext.set("currentSone", webInterface.getCurrentSone(request.getToadletContext(), false));
-				templateContext.set("localSones", webInterface.getCore().getLocalSones());
+				templateContext.set("currentSone", currentSone);
 				templateContext.set("request", request);
-				templateContext.set("currentVersion", SonePlugin.VERSION);
-				templateContext.set("hasLatestVersion", webInterface.getCore().getUpdateChecker().hasLatestVersion());
-				templateContext.set("latestEdition", webInterface.getCore().getUpdateChecker().getLatestEdition());
-				templateContext.set("latestVersion", webInterface.getCore().getUpdateChecker().getLatestVersion());
-				templateContext.set("latestVersionTime", webInterface.getCore().getUpdateChecker().getLatestVersionDate());
+				chromeContext.setTemplateVariables(templateContext);
 				templateContext.set("notification", notification);
 				((TemplateNotification) notification).render(templateContext, notificationWriter);
 			} else {
@@ -128,30 +134,13 @@ public class GetNotificationsAjaxPage extends JsonPage {
 		} catch (IOException ioe1) {
 			/* StringWriter never throws, ignore. */
 		}
-		jsonNotification.put("text", notificationWriter.toString());
-		jsonNotification.put("createdTime", notification.getCreatedTime());
-		jsonNotification.put("lastUpdatedTime", notification.getLastUpdatedTime());
-		jsonNotification.put("dismissable", notification.isDismissable());
-		return jsonNotification;
-	}
-
-	/**
-	 * Creates a JSON object that contains all options that are currently in
-	 * effect for the given Sone (or overall, if the given Sone is {@code null}
-	 * ).
-	 *
-	 * @param currentSone
-	 *            The current Sone (may be {@code null})
-	 * @return The current options
-	 */
-	private static JsonNode createJsonOptions(Sone currentSone) {
-		ObjectNode options = new ObjectNode(instance);
-		if (currentSone != null) {
-			options.put("ShowNotification/NewSones", currentSone.getOptions().getBooleanOption("ShowNotification/NewSones").get());
-			options.put("ShowNotification/NewPosts", currentSone.getOptions().getBooleanOption("ShowNotification/NewPosts").get());
-			options.put("ShowNotification/NewReplies", currentSone.getOptions().getBooleanOption("ShowNotification/NewReplies").get());
-		}
-		return options;
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeStringField("id", notification.getId());
+		jsonGenerator.writeStringField("text", notificationWriter.toString());
+		jsonGenerator.writeNumberField("createdTime", notification.getCreatedTime());
+		jsonGenerator.writeNumberField("lastUpdatedTime", notification.getLastUpdatedTime());
+		jsonGenerator.writeBooleanField("dismissable", notification.isDismissable());
+		jsonGenerator.writeEndObject();
 	}
 
 }
@@ -17,7 +17,6 @@
 
 package net.pterodactylus.sone.web.ajax;
 
-import java.io.StringWriter;
 import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
 
 import com.google.common.base.Optional;
@@ -25,11 +24,10 @@ import com.google.common.base.Optional;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.ConditionalRequests;
 import net.pterodactylus.sone.web.page.FreenetRequest;
-import net.pterodactylus.util.io.Closer;
 import net.pterodactylus.util.template.Template;
 import net.pterodactylus.util.template.TemplateContext;
-import net.pterodactylus.util.template.TemplateException;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -79,6 +77,15 @@ public class GetPostAjaxPage extends JsonPage {
 		return false;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String getETag(FreenetRequest request) {
+		Sone currentSone = getCurrentSone(request.getToadletContext(), false);
+		return ConditionalRequests.createETag(webInterface.getCore().getDataVersion(), (currentSone != null) ? currentSone.getId() : null, webInterface.getL10n().getSelectedLanguage());
+	}
+
 	//
 	// PRIVATE METHODS
 	//
@@ -96,26 +103,46 @@ public class GetPostAjaxPage extends JsonPage {
 	 * @return The JSON representation of the post
 	 */
 	private JsonNode createJsonPost(FreenetRequest request, Post post, Sone currentSone) {
+		TemplateContext templateContext = webInterface.getTemplateContextFactory().createTemplateContext();
+		templateContext.set("core", webInterface.getCore());
+		templateContext.set("request", request);
+		templateContext.set("currentSone", currentSone);
+		templateContext.set("localSones", webInterface.getCore().getLocalSones());
+		return createJsonPost(webInterface, post, currentSone, postTemplate, templateContext);
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Creates a JSON object from the given post. The JSON object will only
+	 * contain the ID of the post, its time, and its rendered HTML code. The
+	 * post is stored in the given template context before rendering; all
+	 * other variables the template needs have to be set by the caller. The
+	 * rendered HTML code is taken from the web interface’s
+	 * {@link RenderedFragmentCache} if possible.
+	 *
+	 * @param webInterface
+	 *            The Sone web interface
+	 * @param post
+	 *            The post to create a JSON object from
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @param postTemplate
+	 *            The template to render for posts
+	 * @param templateContext
+	 *            The template context to render the post in
+	 * @return The JSON representation of the post
+	 */
+	static JsonNode createJsonPost(WebInterface webInterface, Post post, Sone currentSone, Template postTemplate, TemplateContext templateContext) {
 		ObjectNode jsonPost = new ObjectNode(instance);
 		jsonPost.put("id", post.getId());
 		jsonPost.put("sone", post.getSone().getId());
 		jsonPost.put("recipient", post.getRecipientId().orNull());
 		jsonPost.put("time", post.getTime());
-		StringWriter stringWriter = new StringWriter();
-		TemplateContext templateContext = webInterface.getTemplateContextFactory().createTemplateContext();
-		templateContext.set("core", webInterface.getCore());
-		templateContext.set("request", request);
 		templateContext.set("post", post);
-		templateContext.set("currentSone", currentSone);
-		templateContext.set("localSones", webInterface.getCore().getLocalSones());
-		try {
-			postTemplate.render(templateContext, stringWriter);
-		} catch (TemplateException te1) {
-			/* TODO - shouldn’t happen. */
-		} finally {
-			Closer.close(stringWriter);
-		}
-		jsonPost.put("html", stringWriter.toString());
+		jsonPost.put("html", webInterface.getRenderedFragmentCache().render("post-" + post.getId(), RenderedFragmentCache.getPostState(webInterface.getCore(), post, currentSone), postTemplate, templateContext, (currentSone != null) ? currentSone.getId() : null, webInterface.getL10n().getSelectedLanguage()));
 		return jsonPost;
 	}
 
@@ -17,7 +17,6 @@
 
 package net.pterodactylus.sone.web.ajax;
 
-import java.io.StringWriter;
 import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
 
 import com.google.common.base.Optional;
@@ -25,11 +24,10 @@ import com.google.common.base.Optional;
 import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.ConditionalRequests;
 import net.pterodactylus.sone.web.page.FreenetRequest;
-import net.pterodactylus.util.io.Closer;
 import net.pterodactylus.util.template.Template;
 import net.pterodactylus.util.template.TemplateContext;
-import net.pterodactylus.util.template.TemplateException;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -82,6 +80,15 @@ public class GetReplyAjaxPage extends JsonPage {
 		return false;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String getETag(FreenetRequest request) {
+		Sone currentSone = getCurrentSone(request.getToadletContext(), false);
+		return ConditionalRequests.createETag(webInterface.getCore().getDataVersion(), (currentSone != null) ? currentSone.getId() : null, webInterface.getL10n().getSelectedLanguage());
+	}
+
 	//
 	// PRIVATE METHODS
 	//
@@ -98,25 +105,44 @@ public class GetReplyAjaxPage extends JsonPage {
 	 * @return The JSON representation of the reply
 	 */
 	private JsonNode createJsonReply(FreenetRequest request, PostReply reply, Sone currentSone) {
+		TemplateContext templateContext = webInterface.getTemplateContextFactory().createTemplateContext();
+		templateContext.set("core", webInterface.getCore());
+		templateContext.set("request", request);
+		templateContext.set("currentSone", currentSone);
+		return createJsonReply(webInterface, reply, currentSone, replyTemplate, templateContext);
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Creates a JSON representation of the given reply. The reply is stored
+	 * in the given template context before rendering; all other variables the
+	 * template needs have to be set by the caller. The rendered HTML code is
+	 * taken from the web interface’s {@link RenderedFragmentCache} if
+	 * possible.
+	 *
+	 * @param webInterface
+	 *            The Sone web interface
+	 * @param reply
+	 *            The reply to convert
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @param replyTemplate
+	 *            The template to render for replies
+	 * @param templateContext
+	 *            The template context to render the reply in
+	 * @return The JSON representation of the reply
+	 */
+	static JsonNode createJsonReply(WebInterface webInterface, PostReply reply, Sone currentSone, Template replyTemplate, TemplateContext templateContext) {
 		ObjectNode jsonReply = new ObjectNode(instance);
 		jsonReply.put("id", reply.getId());
 		jsonReply.put("postId", reply.getPostId());
 		jsonReply.put("soneId", reply.getSone().getId());
 		jsonReply.put("time", reply.getTime());
-		StringWriter stringWriter = new StringWriter();
-		TemplateContext templateContext = webInterface.getTemplateContextFactory().createTemplateContext();
-		templateContext.set("core", webInterface.getCore());
-		templateContext.set("request", request);
 		templateContext.set("reply", reply);
-		templateContext.set("currentSone", currentSone);
-		try {
-			replyTemplate.render(templateContext, stringWriter);
-		} catch (TemplateException te1) {
-			/* TODO - shouldn’t happen. */
-		} finally {
-			Closer.close(stringWriter);
-		}
-		return jsonReply.put("html", stringWriter.toString());
+		return jsonReply.put("html", webInterface.getRenderedFragmentCache().render("reply-" + reply.getId(), RenderedFragmentCache.getReplyState(webInterface.getCore(), reply, currentSone), replyTemplate, templateContext, (currentSone != null) ? currentSone.getId() : null, webInterface.getL10n().getSelectedLanguage()));
 	}
 
 }
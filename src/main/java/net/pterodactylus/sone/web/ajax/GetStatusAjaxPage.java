@@ -17,15 +17,10 @@
 
 package net.pterodactylus.sone.web.ajax;
 
-import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
-
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 import net.pterodactylus.sone.data.Post;
@@ -33,13 +28,11 @@ import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.notify.ListNotificationFilters;
 import net.pterodactylus.sone.template.SoneAccessor;
+import net.pterodactylus.sone.web.ChromeContext;
 import net.pterodactylus.sone.web.WebInterface;
 import net.pterodactylus.sone.web.page.FreenetRequest;
-import net.pterodactylus.util.notify.Notification;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 
@@ -49,10 +42,7 @@ import com.google.common.collect.Collections2;
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class GetStatusAjaxPage extends JsonPage {
-
-	/** Date formatter. */
-	private static final DateFormat dateFormat = new SimpleDateFormat("MMM d, yyyy, HH:mm:ss");
+public class GetStatusAjaxPage extends StreamingJsonPage {
 
 	/**
 	 * Creates a new “get status” AJAX handler.
@@ -64,11 +54,15 @@ public class GetStatusAjaxPage extends JsonPage {
 		super("getStatus.ajax", webInterface);
 	}
 
+	//
+	// JSONPAGE METHODS
+	//
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected JsonReturnObject createJsonObject(FreenetRequest request) {
+	protected void writeJsonObject(FreenetRequest request, JsonGenerator jsonGenerator) throws IOException {
 		final Sone currentSone = getCurrentSone(request.getToadletContext(), false);
 		/* load Sones. always return the status of the current Sone. */
 		Set<Sone> sones = new HashSet<Sone>(Collections.singleton(getCurrentSone(request.getToadletContext(), false)));
@@ -80,16 +74,8 @@ public class GetStatusAjaxPage extends JsonPage {
 				sones.add(webInterface.getCore().getSone(soneId).orNull());
 			}
 		}
-		ArrayNode jsonSones = new ArrayNode(instance);
-		for (Sone sone : sones) {
-			if (sone == null) {
-				continue;
-			}
-			jsonSones.add(createJsonSone(sone));
-		}
 		/* load notifications. */
-		List<Notification> notifications = ListNotificationFilters.filterNotifications(webInterface.getNotifications().getNotifications(), currentSone);
-		Collections.sort(notifications, Notification.CREATED_TIME_SORTER);
+		ChromeContext chromeContext = webInterface.getChromeContext(currentSone);
 		/* load new posts. */
 		Collection<Post> newPosts = webInterface.getNewPosts();
 		if (currentSone != null) {
@@ -97,20 +83,11 @@ public class GetStatusAjaxPage extends JsonPage {
 
 				@Override
 				public boolean apply(Post post) {
-					return ListNotificationFilters.isPostVisible(currentSone, post);
+					return ListNotificationFilters.isPostVisible(webInterface.getCore().getTrustCache(), currentSone, post);
 				}
 
 			});
 		}
-		ArrayNode jsonPosts = new ArrayNode(instance);
-		for (Post post : newPosts) {
-			ObjectNode jsonPost = new ObjectNode(instance);
-			jsonPost.put("id", post.getId());
-			jsonPost.put("sone", post.getSone().getId());
-			jsonPost.put("recipient", post.getRecipientId().orNull());
-			jsonPost.put("time", post.getTime());
-			jsonPosts.add(jsonPost);
-		}
 		/* load new replies. */
 		Collection<PostReply> newReplies = webInterface.getNewReplies();
 		if (currentSone != null) {
@@ -118,23 +95,48 @@ public class GetStatusAjaxPage extends JsonPage {
 
 				@Override
 				public boolean apply(PostReply reply) {
-					return ListNotificationFilters.isReplyVisible(currentSone, reply);
+					return ListNotificationFilters.isReplyVisible(webInterface.getCore().getTrustCache(), currentSone, reply);
 				}
 
 			});
 		}
 		/* remove replies to unknown posts. */
 		newReplies = Collections2.filter(newReplies, PostReply.HAS_POST_FILTER);
-		ArrayNode jsonReplies = new ArrayNode(instance);
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeBooleanField("success", true);
+		jsonGenerator.writeBooleanField("loggedIn", currentSone != null);
+		jsonGenerator.writeFieldName("options");
+		writeJsonOptions(jsonGenerator, currentSone);
+		jsonGenerator.writeArrayFieldStart("sones");
+		for (Sone sone : sones) {
+			if (sone == null) {
+				continue;
+			}
+			writeJsonSone(jsonGenerator, sone);
+		}
+		jsonGenerator.writeEndArray();
+		jsonGenerator.writeNumberField("notificationHash", chromeContext.getNotificationHash());
+		jsonGenerator.writeArrayFieldStart("newPosts");
+		for (Post post : newPosts) {
+			jsonGenerator.writeStartObject();
+			jsonGenerator.writeStringField("id", post.getId());
+			jsonGenerator.writeStringField("sone", post.getSone().getId());
+			jsonGenerator.writeStringField("recipient", post.getRecipientId().orNull());
+			jsonGenerator.writeNumberField("time", post.getTime());
+			jsonGenerator.writeEndObject();
+		}
+		jsonGenerator.writeEndArray();
+		jsonGenerator.writeArrayFieldStart("newReplies");
 		for (PostReply reply : newReplies) {
-			ObjectNode jsonReply = new ObjectNode(instance);
-			jsonReply.put("id", reply.getId());
-			jsonReply.put("sone", reply.getSone().getId());
-			jsonReply.put("post", reply.getPostId());
-			jsonReply.put("postSone", reply.getPost().get().getSone().getId());
-			jsonReplies.add(jsonReply);
+			jsonGenerator.writeStartObject();
+			jsonGenerator.writeStringField("id", reply.getId());
+			jsonGenerator.writeStringField("sone", reply.getSone().getId());
+			jsonGenerator.writeStringField("post", reply.getPostId());
+			jsonGenerator.writeStringField("postSone", reply.getPost().get().getSone().getId());
+			jsonGenerator.writeEndObject();
 		}
-		return createSuccessJsonObject().put("loggedIn", currentSone != null).put("options", createJsonOptions(currentSone)).put("sones", jsonSones).put("notificationHash", notifications.hashCode()).put("newPosts", jsonPosts).put("newReplies", jsonReplies);
+		jsonGenerator.writeEndArray();
+		jsonGenerator.writeEndObject();
 	}
 
 	/**
@@ -158,45 +160,53 @@ public class GetStatusAjaxPage extends JsonPage {
 	//
 
 	/**
-	 * Creates a JSON object from the given Sone.
+	 * Writes a JSON object from the given Sone.
 	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the Sone to
 	 * @param sone
 	 *            The Sone to convert to a JSON object
-	 * @return The JSON representation of the given Sone
+	 * @throws IOException
+	 *             if an I/O error occurs
 	 */
-	private JsonNode createJsonSone(Sone sone) {
-		ObjectNode jsonSone = new ObjectNode(instance);
-		jsonSone.put("id", sone.getId());
-		jsonSone.put("name", SoneAccessor.getNiceName(sone));
-		jsonSone.put("local", sone.getInsertUri() != null);
-		jsonSone.put("status", sone.getStatus().name());
-		jsonSone.put("modified", webInterface.getCore().isModifiedSone(sone));
-		jsonSone.put("locked", webInterface.getCore().isLocked(sone));
-		jsonSone.put("lastUpdatedUnknown", sone.getTime() == 0);
-		synchronized (dateFormat) {
-			jsonSone.put("lastUpdated", dateFormat.format(new Date(sone.getTime())));
-		}
-		jsonSone.put("lastUpdatedText", GetTimesAjaxPage.getTime(webInterface, sone.getTime()).getText());
-		return jsonSone;
+	private void writeJsonSone(JsonGenerator jsonGenerator, Sone sone) throws IOException {
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeStringField("id", sone.getId());
+		jsonGenerator.writeStringField("name", SoneAccessor.getNiceName(sone));
+		jsonGenerator.writeBooleanField("local", sone.getInsertUri() != null);
+		jsonGenerator.writeStringField("status", sone.getStatus().name());
+		jsonGenerator.writeBooleanField("modified", webInterface.getCore().isModifiedSone(sone));
+		jsonGenerator.writeBooleanField("locked", webInterface.getCore().isLocked(sone));
+		jsonGenerator.writeBooleanField("lastUpdatedUnknown", sone.getTime() == 0);
+		jsonGenerator.writeStringField("lastUpdated", GetTimesAjaxPage.formatDate(sone.getTime()));
+		jsonGenerator.writeStringField("lastUpdatedText", GetTimesAjaxPage.getTime(webInterface, sone.getTime()).getText());
+		jsonGenerator.writeEndObject();
 	}
 
+	//
+	// STATIC METHODS
+	//
+
 	/**
-	 * Creates a JSON object that contains all options that are currently in
+	 * Writes a JSON object that contains all options that are currently in
 	 * effect for the given Sone (or overall, if the given Sone is {@code null}
 	 * ).
 	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the options to
 	 * @param currentSone
 	 *            The current Sone (may be {@code null})
-	 * @return The current options
+	 * @throws IOException
+	 *             if an I/O error occurs
 	 */
-	private static JsonNode createJsonOptions(Sone currentSone) {
-		ObjectNode options = new ObjectNode(instance);
+	static void writeJsonOptions(JsonGenerator jsonGenerator, Sone currentSone) throws IOException {
+		jsonGenerator.writeStartObject();
 		if (currentSone != null) {
-			options.put("ShowNotification/NewSones", currentSone.getOptions().getBooleanOption("ShowNotification/NewSones").get());
-			options.put("ShowNotification/NewPosts", currentSone.getOptions().getBooleanOption("ShowNotification/NewPosts").get());
-			options.put("ShowNotification/NewReplies", currentSone.getOptions().getBooleanOption("ShowNotification/NewReplies").get());
+			jsonGenerator.writeBooleanField("ShowNotification/NewSones", currentSone.getOptions().getBooleanOption("ShowNotification/NewSones").get());
+			jsonGenerator.writeBooleanField("ShowNotification/NewPosts", currentSone.getOptions().getBooleanOption("ShowNotification/NewPosts").get());
+			jsonGenerator.writeBooleanField("ShowNotification/NewReplies", currentSone.getOptions().getBooleanOption("ShowNotification/NewReplies").get());
 		}
-		return options;
+		jsonGenerator.writeEndObject();
 	}
 
 }
@@ -17,11 +17,12 @@
 
 package net.pterodactylus.sone.web.ajax;
 
-import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
-
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import net.pterodactylus.sone.data.Post;
@@ -29,18 +30,25 @@ import net.pterodactylus.sone.data.PostReply;
 import net.pterodactylus.sone.web.WebInterface;
 import net.pterodactylus.sone.web.page.FreenetRequest;
 
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Optional;
+import com.google.common.collect.MapMaker;
+import freenet.l10n.BaseL10n;
+import freenet.l10n.BaseL10n.LANGUAGE;
+import org.apache.commons.lang.time.FastDateFormat;
 
 /**
  * Ajax page that returns a formatted, relative timestamp for replies or posts.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
-public class GetTimesAjaxPage extends JsonPage {
+public class GetTimesAjaxPage extends StreamingJsonPage {
 
 	/** Formatter for tooltips. */
-	private static final DateFormat dateFormat = new SimpleDateFormat("MMM d, yyyy, HH:mm:ss");
+	private static final FastDateFormat dateFormat = FastDateFormat.getInstance("MMM d, yyyy, HH:mm:ss");
+
+	/** Cache for formatted relative times. */
+	private static final ConcurrentMap<TimeKey, Time> times = new MapMaker().makeMap();
 
 	/**
 	 * Creates a new get times AJAX page.
@@ -52,50 +60,38 @@ public class GetTimesAjaxPage extends JsonPage {
 		super("getTimes.ajax", webInterface);
 	}
 
+	//
+	// JSONPAGE METHODS
+	//
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected JsonReturnObject createJsonObject(FreenetRequest request) {
-		String allIds = request.getHttpRequest().getParam("posts");
-		ObjectNode postTimes = new ObjectNode(instance);
-		if (allIds.length() > 0) {
-			String[] ids = allIds.split(",");
-			for (String id : ids) {
-				Optional<Post> post = webInterface.getCore().getPost(id);
-				if (!post.isPresent()) {
-					continue;
-				}
-				ObjectNode postTime = new ObjectNode(instance);
-				Time time = getTime(post.get().getTime());
-				postTime.put("timeText", time.getText());
-				postTime.put("refreshTime", TimeUnit.MILLISECONDS.toSeconds(time.getRefresh()));
-				synchronized (dateFormat) {
-					postTime.put("tooltip", dateFormat.format(new Date(post.get().getTime())));
-				}
-				postTimes.put(id, postTime);
+	protected void writeJsonObject(FreenetRequest request, JsonGenerator jsonGenerator) throws IOException {
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeBooleanField("success", true);
+		jsonGenerator.writeObjectFieldStart("postTimes");
+		for (String id : getIds(request, "posts")) {
+			Optional<Post> post = webInterface.getCore().getPost(id);
+			if (!post.isPresent()) {
+				continue;
 			}
+			jsonGenerator.writeFieldName(id);
+			writeJsonTime(jsonGenerator, webInterface, post.get().getTime());
 		}
-		ObjectNode replyTimes = new ObjectNode(instance);
-		allIds = request.getHttpRequest().getParam("replies");
-		if (allIds.length() > 0) {
-			String[] ids = allIds.split(",");
-			for (String id : ids) {
-				Optional<PostReply> reply = webInterface.getCore().getPostReply(id);
-				if (!reply.isPresent()) {
-					continue;
-				}
-				ObjectNode replyTime = new ObjectNode(instance);
-				Time time = getTime(reply.get().getTime());
-				replyTime.put("timeText", time.getText());
-				replyTime.put("refreshTime", TimeUnit.MILLISECONDS.toSeconds(time.getRefresh()));
-				synchronized (dateFormat) {
-					replyTime.put("tooltip", dateFormat.format(new Date(reply.get().getTime())));
-				}
-				replyTimes.put(id, replyTime);
+		jsonGenerator.writeEndObject();
+		jsonGenerator.writeObjectFieldStart("replyTimes");
+		for (String id : getIds(request, "replies")) {
+			Optional<PostReply> reply = webInterface.getCore().getPostReply(id);
+			if (!reply.isPresent()) {
+				continue;
 			}
+			jsonGenerator.writeFieldName(id);
+			writeJsonTime(jsonGenerator, webInterface, reply.get().getTime());
 		}
-		return createSuccessJsonObject().put("postTimes", postTimes).put("replyTimes", replyTimes);
+		jsonGenerator.writeEndObject();
+		jsonGenerator.writeEndObject();
 	}
 
 	/**
@@ -115,23 +111,59 @@ public class GetTimesAjaxPage extends JsonPage {
 	}
 
 	//
-	// PRIVATE METHODS
+	// STATIC METHODS
 	//
 
 	/**
-	 * Returns the formatted relative time for a given time.
+	 * Returns the distinct IDs of the given parameter.
 	 *
+	 * @param request
+	 *            The request being processed
+	 * @param parameter
+	 *            The name of the parameter
+	 * @return The IDs of the parameter, in request order (may be empty)
+	 */
+	static Set<String> getIds(FreenetRequest request, String parameter) {
+		String allIds = request.getHttpRequest().getParam(parameter).trim();
+		if (allIds.length() == 0) {
+			return Collections.emptySet();
+		}
+		return new LinkedHashSet<String>(Arrays.asList(allIds.split(",")));
+	}
+
+	/**
+	 * Writes a JSON object containing the formatted relative time, the
+	 * refresh time (in seconds), and the tooltip for the given time.
+	 *
+	 * @param jsonGenerator
+	 *            The JSON generator to write the time to
+	 * @param webInterface
+	 *            The Sone web interface (for l10n access)
 	 * @param time
-	 *            The time to format the difference from (in milliseconds)
-	 * @return The formatted age
+	 *            The time to format (in milliseconds)
+	 * @throws IOException
+	 *             if an I/O error occurs
 	 */
-	private Time getTime(long time) {
-		return getTime(webInterface, time);
+	static void writeJsonTime(JsonGenerator jsonGenerator, WebInterface webInterface, long time) throws IOException {
+		Time formattedTime = getTime(webInterface, time);
+		jsonGenerator.writeStartObject();
+		jsonGenerator.writeStringField("timeText", formattedTime.getText());
+		jsonGenerator.writeNumberField("refreshTime", TimeUnit.MILLISECONDS.toSeconds(formattedTime.getRefresh()));
+		jsonGenerator.writeStringField("tooltip", formatDate(time));
+		jsonGenerator.writeEndObject();
 	}
 
-	//
-	// STATIC METHODS
-	//
+	/**
+	 * Formats the given time as absolute date and time, e.g. for tooltips.
+	 * This method is thread-safe and does not block.
+	 *
+	 * @param time
+	 *            The time to format (in milliseconds)
+	 * @return The formatted time
+	 */
+	public static String formatDate(long time) {
+		return dateFormat.format(time);
+	}
 
 	/**
 	 * Returns the formatted relative time for a given time.
@@ -143,62 +175,158 @@ public class GetTimesAjaxPage extends JsonPage {
 	 * @return The formatted age
 	 */
 	public static Time getTime(WebInterface webInterface, long time) {
+		return getTime(webInterface.getL10n(), time);
+	}
+
+	/**
+	 * Returns the formatted relative time for a given time. Formatted times
+	 * are cached per language, l10n key, and value, so that the l10n handler
+	 * is only asked once for every text.
+	 *
+	 * @param l10n
+	 *            The l10n handler
+	 * @param time
+	 *            The time to format the difference from (in milliseconds)
+	 * @return The formatted age
+	 */
+	public static Time getTime(BaseL10n l10n, long time) {
 		if (time == 0) {
-			return new Time(webInterface.getL10n().getString("View.Sone.Text.UnknownDate"), TimeUnit.HOURS.toMillis(12));
+			return getTime(l10n, "View.Sone.Text.UnknownDate", false, null, 0, TimeUnit.HOURS.toMillis(12));
 		}
 		long age = System.currentTimeMillis() - time;
-		String text;
-		long refresh;
 		if (age < 0) {
-			text = webInterface.getL10n().getDefaultString("View.Time.InTheFuture");
-			refresh = TimeUnit.MINUTES.toMillis(5);
+			return getTime(l10n, "View.Time.InTheFuture", true, null, 0, TimeUnit.MINUTES.toMillis(5));
 		} else if (age < TimeUnit.SECONDS.toMillis(20)) {
-			text = webInterface.getL10n().getDefaultString("View.Time.AFewSecondsAgo");
-			refresh = TimeUnit.SECONDS.toMillis(10);
+			return getTime(l10n, "View.Time.AFewSecondsAgo", true, null, 0, TimeUnit.SECONDS.toMillis(10));
 		} else if (age < TimeUnit.SECONDS.toMillis(45)) {
-			text = webInterface.getL10n().getString("View.Time.HalfAMinuteAgo");
-			refresh = TimeUnit.SECONDS.toMillis(20);
+			return getTime(l10n, "View.Time.HalfAMinuteAgo", false, null, 0, TimeUnit.SECONDS.toMillis(20));
 		} else if (age < TimeUnit.SECONDS.toMillis(90)) {
-			text = webInterface.getL10n().getString("View.Time.AMinuteAgo");
-			refresh = TimeUnit.MINUTES.toMillis(1);
+			return getTime(l10n, "View.Time.AMinuteAgo", false, null, 0, TimeUnit.MINUTES.toMillis(1));
 		} else if (age < TimeUnit.MINUTES.toMillis(30)) {
-			text = webInterface.getL10n().getString("View.Time.XMinutesAgo", "min", String.valueOf(TimeUnit.MILLISECONDS.toMinutes(age + TimeUnit.SECONDS.toMillis(30))));
-			refresh = TimeUnit.MINUTES.toMillis(1);
+			return getTime(l10n, "View.Time.XMinutesAgo", false, "min", TimeUnit.MILLISECONDS.toMinutes(age + TimeUnit.SECONDS.toMillis(30)), TimeUnit.MINUTES.toMillis(1));
 		} else if (age < TimeUnit.MINUTES.toMillis(45)) {
-			text = webInterface.getL10n().getString("View.Time.HalfAnHourAgo");
-			refresh = TimeUnit.MINUTES.toMillis(10);
+			return getTime(l10n, "View.Time.HalfAnHourAgo", false, null, 0, TimeUnit.MINUTES.toMillis(10));
 		} else if (age < TimeUnit.MINUTES.toMillis(90)) {
-			text = webInterface.getL10n().getString("View.Time.AnHourAgo");
-			refresh = TimeUnit.HOURS.toMillis(1);
+			return getTime(l10n, "View.Time.AnHourAgo", false, null, 0, TimeUnit.HOURS.toMillis(1));
 		} else if (age < TimeUnit.HOURS.toMillis(21)) {
-			text = webInterface.getL10n().getString("View.Time.XHoursAgo", "hour", String.valueOf(TimeUnit.MILLISECONDS.toHours(age + TimeUnit.MINUTES.toMillis(30))));
-			refresh = TimeUnit.HOURS.toMillis(1);
+			return getTime(l10n, "View.Time.XHoursAgo", false, "hour", TimeUnit.MILLISECONDS.toHours(age + TimeUnit.MINUTES.toMillis(30)), TimeUnit.HOURS.toMillis(1));
 		} else if (age < TimeUnit.HOURS.toMillis(42)) {
-			text = webInterface.getL10n().getString("View.Time.ADayAgo");
-			refresh = TimeUnit.DAYS.toMillis(1);
+			return getTime(l10n, "View.Time.ADayAgo", false, null, 0, TimeUnit.DAYS.toMillis(1));
 		} else if (age < TimeUnit.DAYS.toMillis(6)) {
-			text = webInterface.getL10n().getString("View.Time.XDaysAgo", "day", String.valueOf(TimeUnit.MILLISECONDS.toDays(age + TimeUnit.HOURS.toMillis(12))));
-			refresh = TimeUnit.DAYS.toMillis(1);
+			return getTime(l10n, "View.Time.XDaysAgo", false, "day", TimeUnit.MILLISECONDS.toDays(age + TimeUnit.HOURS.toMillis(12)), TimeUnit.DAYS.toMillis(1));
 		} else if (age < TimeUnit.DAYS.toMillis(11)) {
-			text = webInterface.getL10n().getString("View.Time.AWeekAgo");
-			refresh = TimeUnit.DAYS.toMillis(1);
+			return getTime(l10n, "View.Time.AWeekAgo", false, null, 0, TimeUnit.DAYS.toMillis(1));
 		} else if (age < TimeUnit.DAYS.toMillis(28)) {
-			text = webInterface.getL10n().getString("View.Time.XWeeksAgo", "week", String.valueOf((TimeUnit.MILLISECONDS.toHours(age) + 84) / (7 * 24)));
-			refresh = TimeUnit.DAYS.toMillis(1);
+			return getTime(l10n, "View.Time.XWeeksAgo", false, "week", (TimeUnit.MILLISECONDS.toHours(age) + 84) / (7 * 24), TimeUnit.DAYS.toMillis(1));
 		} else if (age < TimeUnit.DAYS.toMillis(42)) {
-			text = webInterface.getL10n().getString("View.Time.AMonthAgo");
-			refresh = TimeUnit.DAYS.toMillis(1);
+			return getTime(l10n, "View.Time.AMonthAgo", false, null, 0, TimeUnit.DAYS.toMillis(1));
 		} else if (age < TimeUnit.DAYS.toMillis(330)) {
-			text = webInterface.getL10n().getString("View.Time.XMonthsAgo", "month", String.valueOf((TimeUnit.MILLISECONDS.toDays(age) + 15) / 30));
-			refresh = TimeUnit.DAYS.toMillis(1);
+			return getTime(l10n, "View.Time.XMonthsAgo", false, "month", (TimeUnit.MILLISECONDS.toDays(age) + 15) / 30, TimeUnit.DAYS.toMillis(1));
 		} else if (age < TimeUnit.DAYS.toMillis(540)) {
-			text = webInterface.getL10n().getString("View.Time.AYearAgo");
-			refresh = TimeUnit.DAYS.toMillis(7);
+			return getTime(l10n, "View.Time.AYearAgo", false, null, 0, TimeUnit.DAYS.toMillis(7));
+		}
+		return getTime(l10n, "View.Time.XYearsAgo", false, "year", (long) ((TimeUnit.MILLISECONDS.toDays(age) + 182.64) / 365.28), TimeUnit.DAYS.toMillis(7));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the formatted time for the given l10n key and value from the
+	 * cache, creating it if necessary.
+	 *
+	 * @param l10n
+	 *            The l10n handler
+	 * @param key
+	 *            The l10n key of the text
+	 * @param useDefault
+	 *            {@code true} to use the text of the default language,
+	 *            {@code false} to use the text of the selected language
+	 * @param variable
+	 *            The name of the variable to replace in the text (or
+	 *            {@code null} if the text does not contain a variable)
+	 * @param value
+	 *            The value of the variable
+	 * @param refresh
+	 *            The time after which to refresh the time (in milliseconds)
+	 * @return The formatted time
+	 */
+	private static Time getTime(BaseL10n l10n, String key, boolean useDefault, String variable, long value, long refresh) {
+		TimeKey timeKey = new TimeKey(l10n.getSelectedLanguage(), key, value);
+		Time time = times.get(timeKey);
+		if (time != null) {
+			return time;
+		}
+		String text;
+		if (useDefault) {
+			text = l10n.getDefaultString(key);
+		} else if (variable != null) {
+			text = l10n.getString(key, variable, String.valueOf(value));
 		} else {
-			text = webInterface.getL10n().getString("View.Time.XYearsAgo", "year", String.valueOf((long) ((TimeUnit.MILLISECONDS.toDays(age) + 182.64) / 365.28)));
-			refresh = TimeUnit.DAYS.toMillis(7);
+			text = l10n.getString(key);
+		}
+		time = new Time(text, refresh);
+		Time existingTime = times.putIfAbsent(timeKey, time);
+		return (existingTime != null) ? existingTime : time;
+	}
+
+	/**
+	 * Key for the cache of formatted times.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class TimeKey {
+
+		/** The language of the formatted time. */
+		private final LANGUAGE language;
+
+		/** The l10n key of the formatted time. */
+		private final String key;
+
+		/** The value of the formatted time. */
+		private final long value;
+
+		/**
+		 * Creates a new time key.
+		 *
+		 * @param language
+		 *            The language of the formatted time
+		 * @param key
+		 *            The l10n key of the formatted time
+		 * @param value
+		 *            The value of the formatted time
+		 */
+		public TimeKey(LANGUAGE language, String key, long value) {
+			this.language = language;
+			this.key = key;
+			this.value = value;
 		}
-		return new Time(text, refresh);
+
+		//
+		// OBJECT METHODS
+		//
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int hashCode() {
+			return ((((language != null) ? language.hashCode() : 0) * 31) + key.hashCode()) * 31 + (int) (value ^ (value >>> 32));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof TimeKey)) {
+				return false;
+			}
+			TimeKey timeKey = (TimeKey) object;
+			return (language == timeKey.language) && key.equals(timeKey.key) && (value == timeKey.value);
+		}
+
 	}
 
 	/**
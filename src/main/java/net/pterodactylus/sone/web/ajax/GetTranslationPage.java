@@ -18,6 +18,7 @@
 package net.pterodactylus.sone.web.ajax;
 
 import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.ConditionalRequests;
 import net.pterodactylus.sone.web.page.FreenetRequest;
 
 /**
@@ -59,6 +60,14 @@ public class GetTranslationPage extends JsonPage {
 		return false;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String getETag(FreenetRequest request) {
+		return ConditionalRequests.createETag(webInterface.getL10n().getSelectedLanguage());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
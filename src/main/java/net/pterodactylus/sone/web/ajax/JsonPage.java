@@ -19,6 +19,8 @@ package net.pterodactylus.sone.web.ajax;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.URI;
@@ -27,16 +29,23 @@ import java.util.logging.Logger;
 
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.ConditionalRequests;
 import net.pterodactylus.sone.web.page.FreenetPage;
 import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.sone.web.page.ResponseOutputStream;
 import net.pterodactylus.util.io.Closer;
 import net.pterodactylus.util.logging.Logging;
+import net.pterodactylus.util.web.Method;
 import net.pterodactylus.util.web.Page;
 import net.pterodactylus.util.web.Response;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
 import freenet.clients.http.SessionManager.Session;
 import freenet.clients.http.ToadletContext;
+import freenet.support.api.Bucket;
 
 /**
  * A JSON page is a specialized {@link Page} that will always return a JSON
@@ -145,6 +154,26 @@ public abstract class JsonPage implements FreenetPage {
 	 */
 	protected abstract JsonReturnObject createJsonObject(FreenetRequest request);
 
+	/**
+	 * Writes the JSON object that is returned back to the browser to the
+	 * given JSON generator. The generator writes into a temporary bucket that
+	 * is only copied into the response once the JSON object has been written
+	 * completely. This implementation serializes the JSON object created by
+	 * {@link #createJsonObject(FreenetRequest)}; pages that can create large
+	 * JSON objects can override this method to write them without creating
+	 * them in memory first.
+	 *
+	 * @param request
+	 *            The request to handle
+	 * @param jsonGenerator
+	 *            The JSON generator to write the JSON object to
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	protected void writeJsonObject(FreenetRequest request, JsonGenerator jsonGenerator) throws IOException {
+		objectMapper.writeValue(jsonGenerator, createJsonObject(request));
+	}
+
 	/**
 	 * Returns whether this command needs the form password for authentication
 	 * and to prevent abuse.
@@ -168,6 +197,49 @@ public abstract class JsonPage implements FreenetPage {
 		return true;
 	}
 
+	/**
+	 * Returns the entity tag of the JSON object that would be returned for
+	 * the given request. If a GET request carries the same entity tag in its
+	 * “If-None-Match” header, the JSON object is not created again and “304
+	 * Not Modified” is returned instead.
+	 *
+	 * @param request
+	 *            The request to handle
+	 * @return The entity tag of the JSON object, or {@code null} if this page
+	 *         does not support conditional requests
+	 */
+	@SuppressWarnings("static-method")
+	protected String getETag(FreenetRequest request) {
+		return null;
+	}
+
+	/**
+	 * Returns the time of the last modification of the JSON object that would
+	 * be returned for the given request. If a GET request carries an
+	 * “If-Modified-Since” header (and no “If-None-Match” header) that is not
+	 * older than this time, “304 Not Modified” is returned instead.
+	 *
+	 * @param request
+	 *            The request to handle
+	 * @return The time of the last modification, or {@code 0} if the time is
+	 *         not known
+	 */
+	@SuppressWarnings("static-method")
+	protected long getLastModified(FreenetRequest request) {
+		return 0;
+	}
+
+	/**
+	 * Returns whether this page should only be allowed for requests from hosts
+	 * with full access.
+	 *
+	 * @return {@code true} if this page should only be allowed for hosts with
+	 *         full access, {@code false} to allow this page for any host
+	 */
+	protected boolean isFullAccessOnly() {
+		return webInterface.getCore().getPreferences().isRequireFullAccess();
+	}
+
 	//
 	// PROTECTED METHODS
 	//
@@ -217,7 +289,7 @@ public abstract class JsonPage implements FreenetPage {
 	 */
 	@Override
 	public Response handleRequest(FreenetRequest request, Response response) throws IOException {
-		if (webInterface.getCore().getPreferences().isRequireFullAccess() && !request.getToadletContext().isAllowedFullAccess()) {
+		if (isFullAccessOnly() && !request.getToadletContext().isAllowedFullAccess()) {
 			return response.setStatusCode(403).setStatusText("Forbidden").setContentType("application/json").write(objectMapper.writeValueAsString(new JsonErrorReturnObject("auth-required")));
 		}
 		if (needsFormPassword()) {
@@ -231,12 +303,33 @@ public abstract class JsonPage implements FreenetPage {
 				return response.setStatusCode(403).setStatusText("Forbidden").setContentType("application/json").write(objectMapper.writeValueAsString(new JsonErrorReturnObject("auth-required")));
 			}
 		}
+		String eTag = null;
+		long lastModified = 0;
+		if (request.getMethod() == Method.GET) {
+			eTag = getETag(request);
+			lastModified = getLastModified(request);
+			if (ConditionalRequests.isNotModified(request, eTag, lastModified)) {
+				return ConditionalRequests.addValidators(response, eTag, lastModified).setStatusCode(304).setStatusText("Not Modified").setContentType("application/json");
+			}
+		}
+		long start = System.nanoTime();
+		Bucket jsonBucket = null;
 		try {
-			JsonReturnObject jsonObject = createJsonObject(request);
-			return response.setStatusCode(200).setStatusText("OK").setContentType("application/json").write(objectMapper.writeValueAsString(jsonObject));
+			jsonBucket = request.getToadletContext().getBucketFactory().makeBucket(-1);
+			writeJsonBucket(request, jsonBucket);
+			ConditionalRequests.addValidators(response, eTag, lastModified);
+			response.setStatusCode(200).setStatusText("OK").setContentType("application/json");
+			copy(jsonBucket, response);
+			webInterface.getCore().getMetricRegistry().histogram("Ajax." + path).update(System.nanoTime() - start);
+			return response;
 		} catch (Exception e1) {
+			webInterface.getCore().getMetricRegistry().counter("Ajax.FailedRequests").increment();
 			logger.log(Level.WARNING, "Error executing JSON page!", e1);
 			return response.setStatusCode(500).setStatusText(e1.getMessage()).setContentType("text/plain").write(dumpStackTrace(e1));
+		} finally {
+			if (jsonBucket != null) {
+				jsonBucket.free();
+			}
 		}
 	}
 
@@ -252,6 +345,49 @@ public abstract class JsonPage implements FreenetPage {
 	// PRIVATE METHODS
 	//
 
+	/**
+	 * Writes the JSON object of this page into the given bucket. The JSON
+	 * object is not written into the response directly so that a request
+	 * that fails halfway through does not leave a partial JSON object in
+	 * front of the error response.
+	 *
+	 * @param request
+	 *            The request to handle
+	 * @param jsonBucket
+	 *            The bucket to write the JSON object to
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private void writeJsonBucket(FreenetRequest request, Bucket jsonBucket) throws IOException {
+		OutputStream jsonOutputStream = jsonBucket.getOutputStream();
+		try {
+			JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(jsonOutputStream, JsonEncoding.UTF8);
+			writeJsonObject(request, jsonGenerator);
+			jsonGenerator.close();
+		} finally {
+			Closer.close(jsonOutputStream);
+		}
+	}
+
+	/**
+	 * Copies the content of the given bucket into the given response.
+	 *
+	 * @param bucket
+	 *            The bucket to copy
+	 * @param response
+	 *            The response to copy the bucket into
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static void copy(Bucket bucket, Response response) throws IOException {
+		InputStream bucketInputStream = bucket.getInputStream();
+		try {
+			ByteStreams.copy(bucketInputStream, new ResponseOutputStream(response));
+		} finally {
+			Closer.close(bucketInputStream);
+		}
+	}
+
 	/**
 	 * Returns a byte array containing the stack trace of the given throwable.
 	 *
@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web.ajax;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Post;
 import net.pterodactylus.sone.data.Sone;
 import net.pterodactylus.sone.web.WebInterface;
@@ -55,10 +56,10 @@ public class LikeAjaxPage extends JsonPage {
 		}
 		if ("post".equals(type)) {
 			currentSone.addLikedPostId(id);
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().touchConfiguration(currentSone, SoneSection.LIKES);
 		} else if ("reply".equals(type)) {
 			currentSone.addLikedReplyId(id);
-			webInterface.getCore().touchConfiguration();
+			webInterface.getCore().touchConfiguration(currentSone, SoneSection.LIKES);
 		} else {
 			return createErrorJsonObject("invalid-type");
 		}
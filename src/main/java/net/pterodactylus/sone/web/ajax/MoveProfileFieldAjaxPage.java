@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web.ajax;
 
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
 import net.pterodactylus.sone.data.Profile;
 import net.pterodactylus.sone.data.Profile.Field;
 import net.pterodactylus.sone.data.Sone;
@@ -71,7 +72,7 @@ public class MoveProfileFieldAjaxPage extends JsonPage {
 			return createErrorJsonObject("not-possible");
 		}
 		currentSone.setProfile(profile);
-		webInterface.getCore().touchConfiguration();
+		webInterface.getCore().touchConfiguration(currentSone, SoneSection.PROFILE);
 		return createSuccessJsonObject();
 	}
 
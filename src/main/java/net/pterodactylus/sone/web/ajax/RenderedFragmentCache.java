@@ -0,0 +1,442 @@
+/*
+ * Sone - RenderedFragmentCache.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.event.MarkPostKnownEvent;
+import net.pterodactylus.sone.core.event.MarkPostReplyKnownEvent;
+import net.pterodactylus.sone.core.event.NewPostReplyFoundEvent;
+import net.pterodactylus.sone.core.event.PostRemovedEvent;
+import net.pterodactylus.sone.core.event.PostReplyRemovedEvent;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Reply;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.Sone.ShowCustomAvatars;
+import net.pterodactylus.sone.freenet.wot.OwnIdentity;
+import net.pterodactylus.sone.freenet.wot.Trust;
+import net.pterodactylus.sone.freenet.wot.event.TrustUpdatedEvent;
+import net.pterodactylus.util.io.Closer;
+import net.pterodactylus.util.logging.Logging;
+import net.pterodactylus.util.template.Template;
+import net.pterodactylus.util.template.TemplateContext;
+import net.pterodactylus.util.template.TemplateException;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Collections2;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Cache for rendered HTML fragments, such as posts and replies, that are
+ * returned by the AJAX pages. A fragment is identified by an ID (e.g. the ID
+ * of a post) and a number of viewer-specific values (e.g. the ID of the
+ * currently logged in Sone and the selected language) that influence the
+ * rendered HTML.
+ * <p>
+ * Together with a fragment, the state of the post or reply it was rendered
+ * from—text, likes, bookmark and known status, trust of the viewer in the
+ * author, the avatar option and the friends of the viewer—is stored, and the
+ * fragment is only reused while the state is unchanged. Fragments are also evicted as soon as an event changes the
+ * post or reply they were rendered from, so that changes to other posts do
+ * not affect them. The number of cached posts and replies is limited; hits
+ * and misses are counted as “FragmentCache.Hits” and “FragmentCache.Misses”
+ * in the {@link Core#getMetricRegistry() metric registry}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class RenderedFragmentCache {
+
+	/** The logger. */
+	private static final Logger logger = Logging.getLogger(RenderedFragmentCache.class);
+
+	/** The default maximum number of cached posts and replies. */
+	public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+	/** The Sone core. */
+	private final Core core;
+
+	/** The rendered fragments, by ID and viewer-specific values. */
+	private final Cache<String, ConcurrentMap<List<Object>, Fragment>> fragments;
+
+	/**
+	 * Creates a new rendered fragment cache that holds the fragments of at
+	 * most {@link #DEFAULT_MAXIMUM_SIZE} posts and replies.
+	 *
+	 * @param core
+	 *            The Sone core
+	 */
+	public RenderedFragmentCache(Core core) {
+		this(core, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * Creates a new rendered fragment cache.
+	 *
+	 * @param core
+	 *            The Sone core
+	 * @param maximumSize
+	 *            The maximum number of cached posts and replies
+	 */
+	public RenderedFragmentCache(Core core, int maximumSize) {
+		this.core = core;
+		fragments = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of currently cached fragments.
+	 *
+	 * @return The number of cached fragments
+	 */
+	public long size() {
+		long size = 0;
+		for (ConcurrentMap<List<Object>, Fragment> viewerFragments : fragments.asMap().values()) {
+			size += viewerFragments.size();
+		}
+		return size;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Returns the rendered fragment with the given ID, rendering the given
+	 * template in the given template context if it is not cached or if it
+	 * was cached for a different state. The template context has to be
+	 * completely set up by the caller.
+	 *
+	 * @param id
+	 *            The ID of the fragment
+	 * @param state
+	 *            The state of the post or reply the fragment is rendered
+	 *            from (may contain {@code null})
+	 * @param template
+	 *            The template to render
+	 * @param templateContext
+	 *            The template context to render the template in
+	 * @param viewerValues
+	 *            The viewer-specific values that influence the rendered
+	 *            fragment (may contain {@code null})
+	 * @return The rendered fragment; if the template could not be rendered,
+	 *         the partially rendered fragment, which is not cached
+	 */
+	public String render(String id, List<?> state, Template template, TemplateContext templateContext, Object... viewerValues) {
+		ConcurrentMap<List<Object>, Fragment> viewerFragments = fragments.getIfPresent(id);
+		if (viewerFragments == null) {
+			viewerFragments = new ConcurrentHashMap<List<Object>, Fragment>();
+			ConcurrentMap<List<Object>, Fragment> existingViewerFragments = fragments.asMap().putIfAbsent(id, viewerFragments);
+			if (existingViewerFragments != null) {
+				viewerFragments = existingViewerFragments;
+			}
+		}
+		List<Object> viewerKey = Arrays.asList(viewerValues);
+		Fragment fragment = viewerFragments.get(viewerKey);
+		if ((fragment != null) && fragment.state.equals(state)) {
+			core.getMetricRegistry().counter("FragmentCache.Hits").increment();
+			return fragment.html;
+		}
+		core.getMetricRegistry().counter("FragmentCache.Misses").increment();
+		StringWriter stringWriter = new StringWriter();
+		try {
+			template.render(templateContext, stringWriter);
+		} catch (TemplateException te1) {
+			logger.log(Level.WARNING, String.format("Could not render fragment %s!", id), te1);
+			return stringWriter.toString();
+		} finally {
+			Closer.close(stringWriter);
+		}
+		String html = stringWriter.toString();
+		viewerFragments.put(viewerKey, new Fragment(state, html));
+		return html;
+	}
+
+	/**
+	 * Removes all fragments with the given ID.
+	 *
+	 * @param id
+	 *            The ID of the fragments to remove
+	 */
+	public void evict(String id) {
+		fragments.invalidate(id);
+	}
+
+	//
+	// EVENT HANDLERS
+	//
+
+	/**
+	 * Evicts the fragments of a post that has been marked as known.
+	 *
+	 * @param markPostKnownEvent
+	 *            The “mark post known” event
+	 */
+	@Subscribe
+	public void markPostKnown(MarkPostKnownEvent markPostKnownEvent) {
+		evictPost(markPostKnownEvent.post().getId());
+	}
+
+	/**
+	 * Evicts the fragments of a reply that has been marked as known, and of
+	 * its post.
+	 *
+	 * @param markPostReplyKnownEvent
+	 *            The “mark reply known” event
+	 */
+	@Subscribe
+	public void markReplyKnown(MarkPostReplyKnownEvent markPostReplyKnownEvent) {
+		evictReply(markPostReplyKnownEvent.postReply());
+	}
+
+	/**
+	 * Evicts the fragments of the post a new reply has been found for.
+	 *
+	 * @param newPostReplyFoundEvent
+	 *            The “new reply found” event
+	 */
+	@Subscribe
+	public void newReplyFound(NewPostReplyFoundEvent newPostReplyFoundEvent) {
+		evictPost(newPostReplyFoundEvent.postReply().getPostId());
+	}
+
+	/**
+	 * Evicts the fragments of a removed post.
+	 *
+	 * @param postRemovedEvent
+	 *            The “post removed” event
+	 */
+	@Subscribe
+	public void postRemoved(PostRemovedEvent postRemovedEvent) {
+		evictPost(postRemovedEvent.post().getId());
+	}
+
+	/**
+	 * Evicts the fragments of a removed reply, and of its post.
+	 *
+	 * @param postReplyRemovedEvent
+	 *            The “reply removed” event
+	 */
+	@Subscribe
+	public void replyRemoved(PostReplyRemovedEvent postReplyRemovedEvent) {
+		evictReply(postReplyRemovedEvent.postReply());
+	}
+
+	/**
+	 * Evicts the fragments of all posts and replies of the Sone whose trust
+	 * has been changed, and of the posts of the replies.
+	 *
+	 * @param trustUpdatedEvent
+	 *            The “trust updated” event
+	 */
+	@Subscribe
+	public void trustUpdated(TrustUpdatedEvent trustUpdatedEvent) {
+		Optional<Sone> sone = core.getSone(trustUpdatedEvent.identity().getId());
+		if (!sone.isPresent()) {
+			return;
+		}
+		for (Post post : sone.get().getPosts()) {
+			evictPost(post.getId());
+		}
+		for (PostReply reply : sone.get().getReplies()) {
+			evictReply(reply);
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Evicts the fragments of the post with the given ID.
+	 *
+	 * @param postId
+	 *            The ID of the post
+	 */
+	private void evictPost(String postId) {
+		evict("post-" + postId);
+	}
+
+	/**
+	 * Evicts the fragments of the given reply and of its post, which shows
+	 * the reply, too.
+	 *
+	 * @param reply
+	 *            The reply
+	 */
+	private void evictReply(PostReply reply) {
+		evict("reply-" + reply.getId());
+		evictPost(reply.getPostId());
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Returns the state of the given post that influences its rendered
+	 * fragment, including the states of its replies.
+	 *
+	 * @param core
+	 *            The Sone core
+	 * @param post
+	 *            The post
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @return The state of the post
+	 */
+	public static List<Object> getPostState(Core core, Post post, Sone currentSone) {
+		List<Object> viewerState = getViewerState(core, currentSone);
+		List<Object> state = new ArrayList<Object>(Arrays.<Object> asList(post.getText(), getSoneTime(post.getSone()), getSoneTime(post.getRecipient().orNull()), (currentSone != null) && currentSone.isLikedPostId(post.getId()), post.isKnown(), core.isBookmarked(post), getTrust(core, post.getSone(), currentSone), viewerState));
+		for (PostReply reply : Collections2.filter(core.getReplies(post.getId()), Reply.FUTURE_REPLY_FILTER)) {
+			state.add(reply.getId());
+			state.add(getReplyState(core, reply, currentSone, viewerState));
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the state of the given reply that influences its rendered
+	 * fragment.
+	 *
+	 * @param core
+	 *            The Sone core
+	 * @param reply
+	 *            The reply
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @return The state of the reply
+	 */
+	public static List<Object> getReplyState(Core core, PostReply reply, Sone currentSone) {
+		return getReplyState(core, reply, currentSone, getViewerState(core, currentSone));
+	}
+
+	/**
+	 * Returns the state of the given reply that influences its rendered
+	 * fragment.
+	 *
+	 * @param core
+	 *            The Sone core
+	 * @param reply
+	 *            The reply
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @param viewerState
+	 *            The state of the viewer
+	 * @return The state of the reply
+	 */
+	private static List<Object> getReplyState(Core core, PostReply reply, Sone currentSone, List<Object> viewerState) {
+		return Arrays.<Object> asList(reply.getText(), getSoneTime(reply.getSone()), (currentSone != null) && currentSone.isLikedReplyId(reply.getId()), reply.isKnown(), getTrust(core, reply.getSone(), currentSone), viewerState);
+	}
+
+	/**
+	 * Returns the state that influences the rendered fragments of all posts
+	 * and replies: the likes and local Sones versions, the preferences that
+	 * shorten posts, and the avatar option and the friends of the viewer.
+	 *
+	 * @param core
+	 *            The Sone core
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @return The state of the viewer
+	 */
+	private static List<Object> getViewerState(Core core, Sone currentSone) {
+		ShowCustomAvatars showCustomAvatars = null;
+		Integer friendsHashCode = null;
+		if (currentSone != null) {
+			showCustomAvatars = currentSone.getOptions().<ShowCustomAvatars> getEnumOption("ShowCustomAvatars").get();
+			friendsHashCode = currentSone.getFriends().hashCode();
+		}
+		return Arrays.<Object> asList(core.getLikesVersion(), core.getLocalSonesVersion(), core.getPreferences().getCharactersPerPost(), core.getPreferences().getPostCutOffLength(), showCustomAvatars, friendsHashCode);
+	}
+
+	/**
+	 * Returns the time of the given Sone, which changes whenever a new
+	 * edition of the Sone, e.g. with a changed profile, is loaded.
+	 *
+	 * @param sone
+	 *            The Sone (may be {@code null})
+	 * @return The time of the Sone, or {@code null} if there is no Sone
+	 */
+	private static Long getSoneTime(Sone sone) {
+		return (sone != null) ? sone.getTime() : null;
+	}
+
+	/**
+	 * Returns the explicit and implicit trust the given current Sone has in
+	 * the given Sone.
+	 *
+	 * @param core
+	 *            The Sone core
+	 * @param sone
+	 *            The trusted Sone (may be {@code null})
+	 * @param currentSone
+	 *            The currently logged in Sone (may be {@code null})
+	 * @return The explicit and the implicit trust (either may be
+	 *         {@code null})
+	 */
+	private static List<Integer> getTrust(Core core, Sone sone, Sone currentSone) {
+		if ((sone == null) || (currentSone == null)) {
+			return Arrays.<Integer> asList(null, null);
+		}
+		Trust trust = core.getTrustCache().getTrust((OwnIdentity) currentSone.getIdentity(), sone.getIdentity());
+		return (trust != null) ? Arrays.asList(trust.getExplicit(), trust.getImplicit()) : Arrays.<Integer> asList(null, null);
+	}
+
+	/**
+	 * A rendered fragment, together with the state it was rendered from.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class Fragment {
+
+		/** The state the fragment was rendered from. */
+		private final List<?> state;
+
+		/** The rendered fragment. */
+		private final String html;
+
+		/**
+		 * Creates a new fragment.
+		 *
+		 * @param state
+		 *            The state the fragment was rendered from
+		 * @param html
+		 *            The rendered fragment
+		 */
+		public Fragment(List<?> state, String html) {
+			this.state = state;
+			this.html = html;
+		}
+
+	}
+
+}
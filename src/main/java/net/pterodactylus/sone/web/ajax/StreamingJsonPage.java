@@ -0,0 +1,110 @@
+/*
+ * Sone - StreamingJsonPage.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * {@link JsonPage} for JSON objects that can become large. Instead of
+ * creating a {@link JsonReturnObject} that is then serialized, subclasses
+ * write their JSON object directly to a {@link JsonGenerator} that writes
+ * into a temporary bucket, which is copied into the response on success.
+ * <p>
+ * {@link #createJsonObject(FreenetRequest)} is still available but has to
+ * buffer the complete JSON object; it should only be used where the JSON
+ * object is needed in memory, e.g. in tests.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public abstract class StreamingJsonPage extends JsonPage {
+
+	/** The object mapper used to buffer JSON objects. */
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * Creates a new streaming JSON page at the given path.
+	 *
+	 * @param path
+	 *            The path of the page
+	 * @param webInterface
+	 *            The Sone web interface
+	 */
+	public StreamingJsonPage(String path, WebInterface webInterface) {
+		super(path, webInterface);
+	}
+
+	//
+	// METHODS FOR SUBCLASSES TO OVERRIDE
+	//
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The written JSON object has to contain the field “success” and, if
+	 * “success” is {@code false}, the field “error”, just like a
+	 * {@link JsonReturnObject}.
+	 */
+	@Override
+	protected abstract void writeJsonObject(FreenetRequest request, JsonGenerator jsonGenerator) throws IOException;
+
+	//
+	// JSONPAGE METHODS
+	//
+
+	/**
+	 * Creates the JSON object by buffering everything that
+	 * {@link #writeJsonObject(FreenetRequest, JsonGenerator)} writes.
+	 *
+	 * @param request
+	 *            The request to handle
+	 * @return The created JSON object
+	 */
+	@Override
+	protected final JsonReturnObject createJsonObject(FreenetRequest request) {
+		TokenBuffer tokenBuffer = new TokenBuffer(objectMapper);
+		JsonNode jsonObject;
+		try {
+			writeJsonObject(request, tokenBuffer);
+			tokenBuffer.close();
+			jsonObject = objectMapper.readTree(tokenBuffer.asParser());
+		} catch (IOException ioe1) {
+			/* token buffers do not throw. */
+			throw new IllegalStateException("Could not buffer JSON object!", ioe1);
+		}
+		JsonReturnObject jsonReturnObject = jsonObject.path("success").asBoolean() ? createSuccessJsonObject() : createErrorJsonObject(jsonObject.path("error").asText());
+		Iterator<Entry<String, JsonNode>> fields = jsonObject.fields();
+		while (fields.hasNext()) {
+			Entry<String, JsonNode> field = fields.next();
+			if (!field.getKey().equals("success") && !field.getKey().equals("error")) {
+				jsonReturnObject.put(field.getKey(), field.getValue());
+			}
+		}
+		return jsonReturnObject;
+	}
+
+}
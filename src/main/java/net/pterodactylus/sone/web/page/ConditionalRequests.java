@@ -0,0 +1,164 @@
+/*
+ * Sone - ConditionalRequests.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.page;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import net.pterodactylus.util.web.Method;
+import net.pterodactylus.util.web.Response;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.lang.time.FastDateFormat;
+
+/**
+ * Helper methods for HTTP conditional requests. Pages can create an entity
+ * tag from the versions of all the data they display, and a time of their
+ * last modification; a request that carries a matching “If-None-Match” or
+ * “If-Modified-Since” header can then be answered with “304 Not Modified”
+ * without rendering the page.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ConditionalRequests {
+
+	/** The pattern of HTTP dates. */
+	private static final String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+	/** The parser for HTTP dates. */
+	private static final DateFormat httpDateFormat = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+
+	/** The formatter for HTTP dates, which does not need to be synchronized. */
+	private static final FastDateFormat httpDateFormatter = FastDateFormat.getInstance(HTTP_DATE_PATTERN, TimeZone.getTimeZone("GMT"), Locale.US);
+
+	static {
+		httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+	}
+
+	/**
+	 * Creates an entity tag from the given components. The entity tag
+	 * changes whenever one of the components changes.
+	 *
+	 * @param components
+	 *            The components of the entity tag (may contain {@code null})
+	 * @return The entity tag
+	 */
+	public static String createETag(Object... components) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		for (Object component : components) {
+			hasher.putString(String.valueOf(component)).putChar('\0');
+		}
+		return hasher.hash().toString();
+	}
+
+	/**
+	 * Returns whether the client already has the current version of the page
+	 * requested by the given request. Only GET requests are considered. If
+	 * the request contains an “If-None-Match” header, only the entity tag is
+	 * compared; otherwise, the “If-Modified-Since” header is compared with the
+	 * given time of the last modification.
+	 *
+	 * @param request
+	 *            The request
+	 * @param eTag
+	 *            The current entity tag of the page (or {@code null} if the
+	 *            page does not have an entity tag)
+	 * @param lastModified
+	 *            The time of the last modification of the page (or {@code 0}
+	 *            if the time is not known)
+	 * @return {@code true} if the page has not been modified, {@code false}
+	 *         if the page has to be sent
+	 */
+	public static boolean isNotModified(FreenetRequest request, String eTag, long lastModified) {
+		if (request.getMethod() != Method.GET) {
+			return false;
+		}
+		String ifNoneMatch = request.getHttpRequest().getHeader("if-none-match");
+		if (ifNoneMatch != null) {
+			if (eTag == null) {
+				return false;
+			}
+			String quotedETag = quote(eTag);
+			for (String candidate : ifNoneMatch.split(",")) {
+				String trimmedCandidate = candidate.trim();
+				if (trimmedCandidate.equals("*") || trimmedCandidate.equals(quotedETag) || trimmedCandidate.equals("W/" + quotedETag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		String ifModifiedSince = request.getHttpRequest().getHeader("if-modified-since");
+		if ((ifModifiedSince == null) || (lastModified <= 0)) {
+			return false;
+		}
+		try {
+			Date ifModifiedSinceDate;
+			synchronized (httpDateFormat) {
+				ifModifiedSinceDate = httpDateFormat.parse(ifModifiedSince);
+			}
+			return (lastModified / 1000) <= (ifModifiedSinceDate.getTime() / 1000);
+		} catch (ParseException pe1) {
+			return false;
+		}
+	}
+
+	/**
+	 * Adds the given validators to the given response. The response is also
+	 * marked so that clients have to revalidate it before reusing it.
+	 *
+	 * @param response
+	 *            The response to add the validators to
+	 * @param eTag
+	 *            The entity tag of the page (or {@code null} if the page does
+	 *            not have an entity tag)
+	 * @param lastModified
+	 *            The time of the last modification of the page (or {@code 0}
+	 *            if the time is not known)
+	 * @return The response
+	 */
+	public static Response addValidators(Response response, String eTag, long lastModified) {
+		if (eTag != null) {
+			response.addHeader("ETag", quote(eTag));
+		}
+		if (lastModified > 0) {
+			response.addHeader("Last-Modified", httpDateFormatter.format(lastModified));
+		}
+		return response.addHeader("Cache-Control", "private, no-cache");
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Quotes the given entity tag.
+	 *
+	 * @param eTag
+	 *            The entity tag to quote
+	 * @return The quoted entity tag
+	 */
+	private static String quote(String eTag) {
+		return "\"" + eTag + "\"";
+	}
+
+}
@@ -17,8 +17,10 @@
 
 package net.pterodactylus.sone.web.page;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Collections;
@@ -53,6 +55,16 @@ public class FreenetTemplatePage implements FreenetPage, LinkEnabledCallback {
 	/** The logger. */
 	private static final Logger logger = Logging.getLogger(FreenetTemplatePage.class);
 
+	/**
+	 * Marker that is placed into the content of the page node so that the
+	 * generated page chrome can be split into the parts before and after the
+	 * content.
+	 */
+	private static final String CONTENT_MARKER = "<!-- sone-page-content -->";
+
+	/** The size of the buffer used when rendering the template. */
+	private static final int RENDER_BUFFER_SIZE = 8192;
+
 	/** The path of the page. */
 	private final String path;
 
@@ -134,6 +146,16 @@ public class FreenetTemplatePage implements FreenetPage, LinkEnabledCallback {
 				return new RedirectResponse(invalidFormPasswordRedirectTarget);
 			}
 		}
+		if (request.getMethod() == Method.GET) {
+			String eTag = getETag(request);
+			long lastModified = getLastModified(request);
+			if ((eTag != null) || (lastModified > 0)) {
+				ConditionalRequests.addValidators(response, eTag, lastModified);
+				if (ConditionalRequests.isNotModified(request, eTag, lastModified)) {
+					return response.setStatusCode(304).setStatusText("Not Modified").setContentType("text/html");
+				}
+			}
+		}
 		PageMaker pageMaker = toadletContext.getPageMaker();
 		PageNode pageNode = pageMaker.getPageNode(getPageTitle(request), toadletContext);
 		for (String styleSheet : getStyleSheets()) {
@@ -161,13 +183,20 @@ public class FreenetTemplatePage implements FreenetPage, LinkEnabledCallback {
 			return new RedirectResponse(re1.getTarget());
 		}
 
-		StringWriter stringWriter = new StringWriter();
-		template.render(templateContext, stringWriter);
-		pageNode.content.addChild("%", stringWriter.toString());
+		/* render the template directly between the two halves of the chrome. */
+		pageNode.content.addChild("%", CONTENT_MARKER);
+		String pageChrome = pageNode.outer.generate();
+		int contentIndex = pageChrome.indexOf(CONTENT_MARKER);
+		response.setStatusCode(200).setStatusText("OK").setContentType("text/html");
+		Writer pageWriter = new BufferedWriter(new OutputStreamWriter(new ResponseOutputStream(response), "UTF-8"), RENDER_BUFFER_SIZE);
+		pageWriter.write(pageChrome, 0, contentIndex);
+		template.render(templateContext, pageWriter);
+		pageWriter.write(pageChrome, contentIndex + CONTENT_MARKER.length(), pageChrome.length() - contentIndex - CONTENT_MARKER.length());
+		pageWriter.flush();
 
 		postProcess(request, templateContext);
 
-		return response.setStatusCode(200).setStatusText("OK").setContentType("text/html").write(pageNode.outer.generate());
+		return response;
 	}
 
 	/**
@@ -247,6 +276,38 @@ public class FreenetTemplatePage implements FreenetPage, LinkEnabledCallback {
 		return Collections.emptyList();
 	}
 
+	/**
+	 * Returns the entity tag of the page that would be rendered for the given
+	 * request. If a GET request carries the same entity tag in its
+	 * “If-None-Match” header, the page is not rendered again and “304 Not
+	 * Modified” is returned instead.
+	 *
+	 * @param request
+	 *            The request to serve
+	 * @return The entity tag of the page, or {@code null} if the page does not
+	 *         support conditional requests
+	 */
+	@SuppressWarnings("static-method")
+	protected String getETag(FreenetRequest request) {
+		return null;
+	}
+
+	/**
+	 * Returns the time of the last modification of the page that would be
+	 * rendered for the given request. If a GET request carries an
+	 * “If-Modified-Since” header (and no “If-None-Match” header) that is not
+	 * older than this time, “304 Not Modified” is returned instead.
+	 *
+	 * @param request
+	 *            The request to serve
+	 * @return The time of the last modification of the page, or {@code 0} if
+	 *         the time is not known
+	 */
+	@SuppressWarnings("static-method")
+	protected long getLastModified(FreenetRequest request) {
+		return 0;
+	}
+
 	/**
 	 * Returns whether this page should only be allowed for requests from hosts
 	 * with full access.
@@ -18,14 +18,19 @@
 package net.pterodactylus.sone.web.page;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.zip.GZIPOutputStream;
 
+import net.pterodactylus.sone.metrics.MetricRegistry;
 import net.pterodactylus.util.web.Header;
 import net.pterodactylus.util.web.Method;
 import net.pterodactylus.util.web.Page;
 import net.pterodactylus.util.web.Response;
 
+import com.google.common.io.ByteStreams;
+
 import freenet.client.HighLevelSimpleClient;
 import freenet.clients.http.LinkEnabledCallback;
 import freenet.clients.http.LinkFilterExceptedToadlet;
@@ -44,6 +49,9 @@ import freenet.support.io.Closer;
  */
 public class PageToadlet extends Toadlet implements LinkEnabledCallback, LinkFilterExceptedToadlet {
 
+	/** Responses larger than this (in bytes) are compressed. */
+	private static final int COMPRESSION_THRESHOLD = 1024;
+
 	/** The name of the menu item. */
 	private final String menuName;
 
@@ -53,6 +61,9 @@ public class PageToadlet extends Toadlet implements LinkEnabledCallback, LinkFil
 	/** The path prefix for the page. */
 	private final String pathPrefix;
 
+	/** The metric registry. */
+	private final MetricRegistry metricRegistry;
+
 	/**
 	 * Creates a new toadlet that hands off processing to a {@link Page}.
 	 *
@@ -65,12 +76,15 @@ public class PageToadlet extends Toadlet implements LinkEnabledCallback, LinkFil
 	 * @param pathPrefix
 	 *            Prefix that is prepended to all {@link Page#getPath()} return
 	 *            values
+	 * @param metricRegistry
+	 *            The metric registry
 	 */
-	protected PageToadlet(HighLevelSimpleClient highLevelSimpleClient, String menuName, Page<FreenetRequest> page, String pathPrefix) {
+	protected PageToadlet(HighLevelSimpleClient highLevelSimpleClient, String menuName, Page<FreenetRequest> page, String pathPrefix, MetricRegistry metricRegistry) {
 		super(highLevelSimpleClient);
 		this.menuName = menuName;
 		this.page = page;
 		this.pathPrefix = pathPrefix;
+		this.metricRegistry = metricRegistry;
 	}
 
 	/**
@@ -167,12 +181,80 @@ public class PageToadlet extends Toadlet implements LinkEnabledCallback, LinkFil
 			}
 		}
 		try {
+			if (shouldCompress(pageRequest, pageResponse, pageBucket)) {
+				Bucket compressedBucket = compress(pageRequest.getToadletContext(), pageBucket);
+				Closer.close(pageBucket);
+				pageBucket = compressedBucket;
+				headers.put("Content-Encoding", "gzip");
+				headers.put("Vary", "Accept-Encoding");
+			}
+			metricRegistry.counter("Web.ResponseBytes").add(pageBucket.size());
 			writeReply(pageRequest.getToadletContext(), pageResponse.getStatusCode(), pageResponse.getContentType(), pageResponse.getStatusText(), headers, pageBucket);
 		} finally {
 			Closer.close(pageBucket);
 		}
 	}
 
+	/**
+	 * Returns whether the given response should be compressed before sending
+	 * it. Only successful HTML and JSON responses that are larger than
+	 * {@link #COMPRESSION_THRESHOLD} are compressed, and only if the client
+	 * accepts gzip-encoded content.
+	 *
+	 * @param pageRequest
+	 *            The request
+	 * @param pageResponse
+	 *            The response
+	 * @param pageBucket
+	 *            The bucket containing the response
+	 * @return {@code true} if the response should be compressed, {@code false}
+	 *         otherwise
+	 */
+	private static boolean shouldCompress(FreenetRequest pageRequest, Response pageResponse, Bucket pageBucket) {
+		if ((pageResponse.getStatusCode() != 200) || (pageBucket.size() <= COMPRESSION_THRESHOLD)) {
+			return false;
+		}
+		String contentType = pageResponse.getContentType();
+		if ((contentType == null) || !(contentType.startsWith("text/html") || contentType.startsWith("application/json"))) {
+			return false;
+		}
+		return StaticResourcePage.acceptsGzip(pageRequest);
+	}
+
+	/**
+	 * Compresses the content of the given bucket into a new bucket.
+	 *
+	 * @param toadletContext
+	 *            The toadlet context
+	 * @param pageBucket
+	 *            The bucket to compress
+	 * @return The bucket with the compressed content
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private Bucket compress(ToadletContext toadletContext, Bucket pageBucket) throws IOException {
+		long start = System.nanoTime();
+		Bucket compressedBucket = toadletContext.getBucketFactory().makeBucket(-1);
+		InputStream pageInputStream = null;
+		OutputStream compressedOutputStream = null;
+		try {
+			pageInputStream = pageBucket.getInputStream();
+			compressedOutputStream = new GZIPOutputStream(compressedBucket.getOutputStream());
+			ByteStreams.copy(pageInputStream, compressedOutputStream);
+			compressedOutputStream.close();
+		} catch (IOException ioe1) {
+			Closer.close(compressedBucket);
+			throw ioe1;
+		} finally {
+			Closer.close(compressedOutputStream);
+			Closer.close(pageInputStream);
+		}
+		metricRegistry.counter("Web.UncompressedBytes").add(pageBucket.size());
+		metricRegistry.counter("Web.CompressedBytes").add(compressedBucket.size());
+		metricRegistry.histogram("Web.Compression").update(System.nanoTime() - start);
+		return compressedBucket;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
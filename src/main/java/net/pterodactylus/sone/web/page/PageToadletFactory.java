@@ -17,6 +17,7 @@
 
 package net.pterodactylus.sone.web.page;
 
+import net.pterodactylus.sone.metrics.MetricRegistry;
 import net.pterodactylus.util.web.Page;
 import freenet.client.HighLevelSimpleClient;
 
@@ -34,6 +35,9 @@ public class PageToadletFactory {
 	/** The prefix for all pages’ paths. */
 	private final String pathPrefix;
 
+	/** The metric registry. */
+	private final MetricRegistry metricRegistry;
+
 	/**
 	 * Creates a new {@link PageToadlet} factory.
 	 *
@@ -41,10 +45,13 @@ public class PageToadletFactory {
 	 *            The client to use when creating the toadlets
 	 * @param pathPrefix
 	 *            The path that is prepended to all pages’ paths
+	 * @param metricRegistry
+	 *            The metric registry
 	 */
-	public PageToadletFactory(HighLevelSimpleClient highLevelSimpleClient, String pathPrefix) {
+	public PageToadletFactory(HighLevelSimpleClient highLevelSimpleClient, String pathPrefix, MetricRegistry metricRegistry) {
 		this.highLevelSimpleClient = highLevelSimpleClient;
 		this.pathPrefix = pathPrefix;
+		this.metricRegistry = metricRegistry;
 	}
 
 	/**
@@ -70,7 +77,7 @@ public class PageToadletFactory {
 	 * @return The toadlet wrapped around the page
 	 */
 	public PageToadlet createPageToadlet(Page<FreenetRequest> page, String menuName) {
-		return new PageToadlet(highLevelSimpleClient, menuName, page, pathPrefix);
+		return new PageToadlet(highLevelSimpleClient, menuName, page, pathPrefix, metricRegistry);
 	}
 
 }
@@ -0,0 +1,68 @@
+/*
+ * Sone - ResponseOutputStream.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.page;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import net.pterodactylus.util.web.Response;
+
+/**
+ * {@link OutputStream} that writes everything to a {@link Response}. This
+ * allows pages to write their content directly into the response instead of
+ * creating it in memory first.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ResponseOutputStream extends OutputStream {
+
+	/** The response to write to. */
+	private final Response response;
+
+	/**
+	 * Creates a new response output stream.
+	 *
+	 * @param response
+	 *            The response to write to
+	 */
+	public ResponseOutputStream(Response response) {
+		this.response = response;
+	}
+
+	//
+	// OUTPUTSTREAM METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(int data) throws IOException {
+		response.write(new byte[] { (byte) data });
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		response.write(((offset == 0) && (length == buffer.length)) ? buffer : Arrays.copyOfRange(buffer, offset, offset + length));
+	}
+
+}
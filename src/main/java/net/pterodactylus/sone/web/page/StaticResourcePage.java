@@ -0,0 +1,182 @@
+/*
+ * Sone - StaticResourcePage.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.page;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.ConcurrentMap;
+
+import net.pterodactylus.util.io.Closer;
+import net.pterodactylus.util.web.Response;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.io.ByteStreams;
+
+/**
+ * {@link FreenetPage} that serves static resources from the class path.
+ * Resources are kept in memory once they have been loaded. If a gzipped
+ * variant of a resource (with “.gz” appended to its name) exists and the
+ * client accepts gzip-encoded content, the gzipped variant is served instead.
+ * <p>
+ * Requests that carry a “v” parameter (usually the version of Sone) are
+ * answered with headers that allow clients to cache the resource for a year;
+ * all other requests may only be cached for a day.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class StaticResourcePage implements FreenetPage {
+
+	/** The cache control header for versioned requests (one year). */
+	private static final String VERSIONED_CACHE_CONTROL = "public, max-age=31536000";
+
+	/** The cache control header for unversioned requests (one day). */
+	private static final String UNVERSIONED_CACHE_CONTROL = "public, max-age=86400";
+
+	/** The path prefix of the page. */
+	private final String pathPrefix;
+
+	/** The prefix of the resources on the class path. */
+	private final String resourcePathPrefix;
+
+	/** The MIME type of the resources. */
+	private final String mimeType;
+
+	/** The contents of already loaded resources, by resource name. */
+	private final ConcurrentMap<String, byte[]> resources = new MapMaker().makeMap();
+
+	/**
+	 * Creates a new static resource page.
+	 *
+	 * @param pathPrefix
+	 *            The path prefix of the page
+	 * @param resourcePathPrefix
+	 *            The prefix of the resources on the class path
+	 * @param mimeType
+	 *            The MIME type of the resources
+	 */
+	public StaticResourcePage(String pathPrefix, String resourcePathPrefix, String mimeType) {
+		this.pathPrefix = pathPrefix;
+		this.resourcePathPrefix = resourcePathPrefix;
+		this.mimeType = mimeType;
+	}
+
+	//
+	// PAGE METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getPath() {
+		return pathPrefix;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isPrefixPage() {
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Response handleRequest(FreenetRequest request, Response response) throws IOException {
+		String path = request.getUri().getPath();
+		String filename = path.substring(path.lastIndexOf('/') + 1);
+		String resourceName = resourcePathPrefix + filename;
+		byte[] resource = (filename.length() > 0) ? getResource(resourceName) : null;
+		if (resource == null) {
+			return response.setStatusCode(404).setStatusText("Not found").setContentType("text/plain");
+		}
+		response.setStatusCode(200).setStatusText("OK").setContentType(mimeType);
+		response.addHeader("Cache-Control", request.getHttpRequest().isParameterSet("v") ? VERSIONED_CACHE_CONTROL : UNVERSIONED_CACHE_CONTROL);
+		response.addHeader("Vary", "Accept-Encoding");
+		if (acceptsGzip(request)) {
+			byte[] gzippedResource = getResource(resourceName + ".gz");
+			if (gzippedResource != null) {
+				return response.addHeader("Content-Encoding", "gzip").write(gzippedResource);
+			}
+		}
+		return response.write(resource);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isLinkExcepted(URI link) {
+		return false;
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Returns whether the client that sent the given request accepts
+	 * gzip-encoded content.
+	 *
+	 * @param request
+	 *            The request
+	 * @return {@code true} if the client accepts gzip-encoded content,
+	 *         {@code false} otherwise
+	 */
+	static boolean acceptsGzip(FreenetRequest request) {
+		String acceptEncoding = request.getHttpRequest().getHeader("accept-encoding");
+		return (acceptEncoding != null) && acceptEncoding.toLowerCase().contains("gzip");
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the contents of the resource with the given name, loading it
+	 * from the class path if necessary.
+	 *
+	 * @param resourceName
+	 *            The name of the resource
+	 * @return The contents of the resource, or {@code null} if there is no
+	 *         such resource
+	 * @throws IOException
+	 *             if the resource can not be read
+	 */
+	private byte[] getResource(String resourceName) throws IOException {
+		byte[] resource = resources.get(resourceName);
+		if (resource != null) {
+			return resource;
+		}
+		InputStream resourceInputStream = getClass().getResourceAsStream(resourceName);
+		if (resourceInputStream == null) {
+			return null;
+		}
+		try {
+			resource = ByteStreams.toByteArray(resourceInputStream);
+		} finally {
+			Closer.close(resourceInputStream);
+		}
+		resources.putIfAbsent(resourceName, resource);
+		return resource;
+	}
+
+}
@@ -2,7 +2,7 @@
 
 function ajaxGet(url, data, successCallback, errorCallback) {
 	(function(url, data, successCallback, errorCallback) {
-		$.ajax({"cache": false, "type": "GET", "url": url, "data": data, "dataType": "json", "success": function(data, textStatus, xmlHttpRequest) {
+		$.ajax({"cache": true, "type": "GET", "url": url, "data": data, "dataType": "json", "success": function(data, textStatus, xmlHttpRequest) {
 			ajaxSuccess();
 			if (typeof successCallback != "undefined") {
 				successCallback(data, textStatus);
@@ -464,11 +464,12 @@ function unlikePost(postId) {
 }
 
 function updatePostLikes(postId) {
-	ajaxGet("getLikes.ajax", { "type": "post", "post": postId }, function(data, textStatus) {
-		if ((data != null) && data.success) {
-			sone.find(".post#post-" + postId + " > .inner-part > .status-line .likes").toggleClass("hidden", data.likes == 0);
-			sone.find(".post#post-" + postId + " > .inner-part > .status-line .likes span.like-count").text(data.likes);
-			sone.find(".post#post-" + postId + " > .inner-part > .status-line .likes > span").attr("title", generateSoneList(data.sones));
+	ajaxGet("batch.ajax", { "postLikes": postId }, function(data, textStatus) {
+		if ((data != null) && data.success && (typeof data.postLikes != "undefined") && (typeof data.postLikes[postId] != "undefined")) {
+			var likes = data.postLikes[postId];
+			sone.find(".post#post-" + postId + " > .inner-part > .status-line .likes").toggleClass("hidden", likes.likes == 0);
+			sone.find(".post#post-" + postId + " > .inner-part > .status-line .likes span.like-count").text(likes.likes);
+			sone.find(".post#post-" + postId + " > .inner-part > .status-line .likes > span").attr("title", generateSoneList(likes.sones));
 		}
 	}, function(xmlHttpRequest, textStatus, error) {
 		/* ignore error. */
@@ -602,11 +603,12 @@ function unbookmarkPost(postId) {
 }
 
 function updateReplyLikes(replyId) {
-	ajaxGet("getLikes.ajax", { "type": "reply", "reply": replyId }, function(data, textStatus) {
-		if ((data != null) && data.success) {
-			sone.find(".reply#reply-" + replyId + " .status-line .likes").toggleClass("hidden", data.likes == 0);
-			sone.find(".reply#reply-" + replyId + " .status-line .likes span.like-count").text(data.likes);
-			sone.find(".reply#reply-" + replyId + " .status-line .likes > span").attr("title", generateSoneList(data.sones));
+	ajaxGet("batch.ajax", { "replyLikes": replyId }, function(data, textStatus) {
+		if ((data != null) && data.success && (typeof data.replyLikes != "undefined") && (typeof data.replyLikes[replyId] != "undefined")) {
+			var likes = data.replyLikes[replyId];
+			sone.find(".reply#reply-" + replyId + " .status-line .likes").toggleClass("hidden", likes.likes == 0);
+			sone.find(".reply#reply-" + replyId + " .status-line .likes span.like-count").text(likes.likes);
+			sone.find(".reply#reply-" + replyId + " .status-line .likes > span").attr("title", generateSoneList(likes.sones));
 		}
 	}, function(xmlHttpRequest, textStatus, error) {
 		/* ignore error. */
@@ -1206,14 +1208,8 @@ function getStatus() {
 			if (data.notificationHash != getNotificationHash()) {
 				console.log("Old hash: ", getNotificationHash(), ", new hash: ", data.notificationHash);
 				requestNotifications();
-				/* process new posts. */
-				$.each(data.newPosts, function(index, value) {
-					loadNewPost(value.id, value.sone, value.recipient, value.time);
-				});
-				/* process new replies. */
-				$.each(data.newReplies, function(index, value) {
-					loadNewReply(value.id, value.sone, value.post, value.postSone);
-				});
+				/* process new posts and replies. */
+				loadNewPostsAndReplies(data.newPosts, data.newReplies);
 			}
 			/* do it again in 5 seconds. */
 			setTimeout(getStatus, 5000);
@@ -1426,96 +1422,161 @@ function hasReply(replyId) {
 	return sone.find(".reply#reply-" + replyId).length > 0;
 }
 
-function loadNewPost(postId, soneId, recipientId, time) {
+/**
+ * Returns whether the post with the given details would be shown on the
+ * current page and is not shown yet.
+ *
+ * @param postId
+ *            The ID of the post
+ * @param soneId
+ *            The ID of the Sone that sent the post
+ * @param recipientId
+ *            The ID of the recipient of the post (may be null)
+ * @param time
+ *            The time of the post
+ * @returns {Boolean} <code>true</code> if the post should be loaded,
+ *          <code>false</code> otherwise
+ */
+function isNewPostShown(postId, soneId, recipientId, time) {
 	if (hasPost(postId)) {
-		return;
+		return false;
 	}
 	if (!isIndexPage() || (getPage(".pagination-index") > 1)) {
 		if (!isViewPostPage() || (getShownPostId() != postId)) {
 			if (!isViewSonePage() || ((getShownSoneId() != soneId) && (getShownSoneId() != recipientId)) || (getPage(".post-navigation") > 1)) {
-				return;
+				return false;
 			}
 		}
 	}
 	if (getPostTime(sone.find(".post").last()) > time) {
+		return false;
+	}
+	return true;
+}
+
+function loadNewPost(postId, soneId, recipientId, time) {
+	loadNewPostsAndReplies([ { "id": postId, "sone": soneId, "recipient": recipientId, "time": time } ], []);
+}
+
+function loadNewReply(replyId, soneId, postId, postSoneId) {
+	loadNewPostsAndReplies([], [ { "id": replyId, "sone": soneId, "post": postId, "postSone": postSoneId } ]);
+}
+
+/**
+ * Loads the given new posts and replies with a single request and inserts
+ * them into the page. Posts that would not be shown on the current page and
+ * replies to posts that are not shown are skipped.
+ *
+ * @param newPosts
+ *            The new posts (objects with “id”, “sone”, “recipient”, and
+ *            “time”)
+ * @param newReplies
+ *            The new replies (objects with “id”, “sone”, “post”, and
+ *            “postSone”)
+ */
+function loadNewPostsAndReplies(newPosts, newReplies) {
+	var postIds = [];
+	$.each(newPosts, function(index, value) {
+		if (isNewPostShown(value.id, value.sone, value.recipient, value.time)) {
+			postIds.push(value.id);
+		}
+	});
+	var replyIds = [];
+	$.each(newReplies, function(index, value) {
+		if (!hasReply(value.id) && (hasPost(value.post) || ($.inArray(value.post, postIds) != -1))) {
+			replyIds.push(value.id);
+		}
+	});
+	if ((postIds.length == 0) && (replyIds.length == 0)) {
 		return;
 	}
-	ajaxGet("getPost.ajax", { "post" : postId }, function(data, textStatus) {
-		if ((data != null) && data.success) {
-			if (hasPost(data.post.id)) {
-				return;
-			}
-			if ((!isIndexPage() || (getPage(".pagination-index") > 1)) && !(isViewSonePage() && ((getShownSoneId() == data.post.sone) || (getShownSoneId() == data.post.recipient) || (getPage(".post-navigation") > 1)))) {
-				return;
-			}
-			var firstOlderPost = null;
-			sone.find(".post").each(function() {
-				if (getPostTime(this) < data.post.time) {
-					firstOlderPost = $(this);
-					return false;
-				}
+	ajaxGet("batch.ajax", { "posts": postIds.join(","), "replies": replyIds.join(","), "postTimes": postIds.join(","), "replyTimes": replyIds.join(",") }, function(data, textStatus) {
+		if ((data != null) && data.success && (typeof data.posts != "undefined")) {
+			$.each(data.posts, function(index, value) {
+				insertNewPost(value);
 			});
-			var newPost = $(data.post.html).addClass("hidden");
-			if ($(".post-author-local", newPost).text() == "true") {
-				newPost.removeClass("new");
-			}
-			if (firstOlderPost != null) {
-				newPost.insertBefore(firstOlderPost);
-			}
-			ajaxifyPost(newPost);
-			updatePostTimes(data.post.id);
-			newPost.slideDown();
-			setActivity();
+			$.each(data.replies, function(index, value) {
+				insertNewReply(value);
+			});
+			processTimes(data);
 		}
 	});
 }
 
-function loadNewReply(replyId, soneId, postId, postSoneId) {
-	if (hasReply(replyId)) {
+/**
+ * Inserts the given post into the page.
+ *
+ * @param post
+ *            The post to insert (as returned by “batch.ajax”)
+ */
+function insertNewPost(post) {
+	if (hasPost(post.id)) {
 		return;
 	}
-	if (!hasPost(postId)) {
+	if ((!isIndexPage() || (getPage(".pagination-index") > 1)) && !(isViewSonePage() && ((getShownSoneId() == post.sone) || (getShownSoneId() == post.recipient) || (getPage(".post-navigation") > 1)))) {
 		return;
 	}
-	ajaxGet("getReply.ajax", { "reply": replyId }, function(data, textStatus) {
-		/* find post. */
-		if ((data != null) && data.success) {
-			if (hasReply(data.reply.id)) {
-				return;
-			}
-			sone.find(".post#post-" + data.reply.postId).each(function() {
-				var firstNewerReply = null;
-				$(this).find(".replies .reply").each(function() {
-					if (getReplyTime(this) > data.reply.time) {
-						firstNewerReply = $(this);
-						return false;
-					}
-				});
-				var newReply = $(data.reply.html).addClass("hidden");
-				if ($(".reply-author-local", newReply).text() == "true") {
-					newReply.removeClass("new");
-					(function(newReply) {
-						setTimeout(function() {
-							markReplyAsKnown(newReply, false);
-						}, 5000);
-					})(newReply);
-				}
-				if (firstNewerReply != null) {
-					newReply.insertBefore(firstNewerReply);
-				} else {
-					if ($(this).find(".replies .create-reply")) {
-						$(this).find(".replies .create-reply").before(newReply);
-					} else {
-						$(this).find(".replies").append(newReply);
-					}
-				}
-				ajaxifyReply(newReply);
-				updateReplyTimes(data.reply.id);
-				newReply.slideDown();
-				setActivity();
+	var firstOlderPost = null;
+	sone.find(".post").each(function() {
+		if (getPostTime(this) < post.time) {
+			firstOlderPost = $(this);
+			return false;
+		}
+	});
+	var newPost = $(post.html).addClass("hidden");
+	newPost.find("input[name=returnPage]").val($.url.attr("relative"));
+	if ($(".post-author-local", newPost).text() == "true") {
+		newPost.removeClass("new");
+	}
+	if (firstOlderPost != null) {
+		newPost.insertBefore(firstOlderPost);
+	}
+	ajaxifyPost(newPost);
+	newPost.slideDown();
+	setActivity();
+}
+
+/**
+ * Inserts the given reply into the page.
+ *
+ * @param reply
+ *            The reply to insert (as returned by “batch.ajax”)
+ */
+function insertNewReply(reply) {
+	if (hasReply(reply.id)) {
+		return;
+	}
+	sone.find(".post#post-" + reply.postId).each(function() {
+		var firstNewerReply = null;
+		$(this).find(".replies .reply").each(function() {
+			if (getReplyTime(this) > reply.time) {
+				firstNewerReply = $(this);
 				return false;
-			});
+			}
+		});
+		var newReply = $(reply.html).addClass("hidden");
+		newReply.find("input[name=returnPage]").val($.url.attr("relative"));
+		if ($(".reply-author-local", newReply).text() == "true") {
+			newReply.removeClass("new");
+			(function(newReply) {
+				setTimeout(function() {
+					markReplyAsKnown(newReply, false);
+				}, 5000);
+			})(newReply);
 		}
+		if (firstNewerReply != null) {
+			newReply.insertBefore(firstNewerReply);
+		} else {
+			if ($(this).find(".replies .create-reply")) {
+				$(this).find(".replies .create-reply").before(newReply);
+			} else {
+				$(this).find(".replies").append(newReply);
+			}
+		}
+		ajaxifyReply(newReply);
+		newReply.slideDown();
+		setActivity();
+		return false;
 	});
 }
 
@@ -1601,13 +1662,7 @@ function updatePostTime(postId, timeText, refreshTime, tooltip) {
  *            Comma-separated post IDs
  */
 function updatePostTimes(postIds) {
-	ajaxGet("getTimes.ajax", { "posts" : postIds }, function(data, textStatus) {
-		if ((data != null) && data.success) {
-			$.each(data.postTimes, function(index, value) {
-				updatePostTime(index, value.timeText, value.refreshTime, value.tooltip);
-			});
-		}
-	});
+	queueTimeRequest(postIds, pendingPostTimes);
 }
 
 /**
@@ -1632,17 +1687,66 @@ function updateReplyTime(replyId, timeText, refreshTime, tooltip) {
 }
 
 /**
- * Requests new rendered times for the posts with the given IDs.
+ * Requests new rendered times for the replies with the given IDs.
  *
- * @param postIds
- *            Comma-separated post IDs
+ * @param replyIds
+ *            Comma-separated reply IDs
  */
 function updateReplyTimes(replyIds) {
-	ajaxGet("getTimes.ajax", { "replies" : replyIds }, function(data, textStatus) {
+	queueTimeRequest(replyIds, pendingReplyTimes);
+}
+
+/**
+ * Adds the given IDs to the given list of pending IDs and makes sure that a
+ * request for the times of all pending posts and replies is sent shortly.
+ * This collects the time requests of all posts and replies that are
+ * processed at the same time into a single request.
+ *
+ * @param ids
+ *            Comma-separated post or reply IDs
+ * @param pendingIds
+ *            The list of pending IDs to add the IDs to
+ */
+function queueTimeRequest(ids, pendingIds) {
+	$.each(ids.split(","), function(index, id) {
+		if ((id != "") && ($.inArray(id, pendingIds) == -1)) {
+			pendingIds.push(id);
+		}
+	});
+	if (!timeRequestQueued && ((pendingPostTimes.length > 0) || (pendingReplyTimes.length > 0))) {
+		timeRequestQueued = true;
+		setTimeout(requestTimes, 100);
+	}
+}
+
+/**
+ * Requests the times of all pending posts and replies.
+ */
+function requestTimes() {
+	var postIds = pendingPostTimes.splice(0, pendingPostTimes.length);
+	var replyIds = pendingReplyTimes.splice(0, pendingReplyTimes.length);
+	timeRequestQueued = false;
+	ajaxGet("batch.ajax", { "postTimes": postIds.join(","), "replyTimes": replyIds.join(",") }, function(data, textStatus) {
 		if ((data != null) && data.success) {
-			$.each(data.replyTimes, function(index, value) {
-				updateReplyTime(index, value.timeText, value.refreshTime, value.tooltip);
-			});
+			processTimes(data);
+		}
+	});
+}
+
+/**
+ * Updates the times of all posts and replies contained in the given reply of
+ * “batch.ajax”.
+ *
+ * @param data
+ *            The reply of “batch.ajax”
+ */
+function processTimes(data) {
+	$.each(data.postTimes, function(index, value) {
+		updatePostTime(index, value.timeText, value.refreshTime, value.tooltip);
+	});
+	$.each(data.replyTimes, function(index, value) {
+		if (hasReply(index)) {
+			updateReplyTime(index, value.timeText, value.refreshTime, value.tooltip);
 		}
 	});
 }
@@ -1825,6 +1929,11 @@ function moveProfileFieldDown(fieldId, successFunction) {
 
 var statusRequestQueued = true;
 
+/* IDs of posts and replies whose times will be requested shortly. */
+var pendingPostTimes = [];
+var pendingReplyTimes = [];
+var timeRequestQueued = false;
+
 /**
  * Sets the status of the web interface as offline.
  */
@@ -0,0 +1,79 @@
+/*
+ * Sone - DirtyConfigurationTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import net.pterodactylus.sone.core.DirtyConfiguration.Section;
+import net.pterodactylus.sone.core.DirtyConfiguration.SoneSection;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link DirtyConfiguration}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class DirtyConfigurationTest {
+
+	/** The dirty configuration under test. */
+	private final DirtyConfiguration dirtyConfiguration = new DirtyConfiguration();
+
+	@Test
+	public void testChangesAreMergedUntilTheyAreTaken() {
+		dirtyConfiguration.touch(Section.BOOKMARKS);
+		dirtyConfiguration.touch("sone", SoneSection.LIKES);
+		dirtyConfiguration.touch("sone", SoneSection.POSTS);
+		dirtyConfiguration.touch(Section.BOOKMARKS);
+
+		DirtyConfiguration changes = dirtyConfiguration.takeChanges();
+		assertThat(changes.getSections(), is((Set<Section>) EnumSet.of(Section.BOOKMARKS)));
+		assertThat(changes.getSoneSections(), is(Collections.<String, Set<SoneSection>> singletonMap("sone", EnumSet.of(SoneSection.LIKES, SoneSection.POSTS))));
+		assertThat(changes.isAllSones(), is(false));
+		assertThat(dirtyConfiguration.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testFailedChangesCanBeRestored() {
+		dirtyConfiguration.touchAll();
+		DirtyConfiguration changes = dirtyConfiguration.takeChanges();
+		dirtyConfiguration.touch("sone", SoneSection.PROFILE);
+		dirtyConfiguration.touch(changes);
+
+		assertThat(dirtyConfiguration.getSections(), is((Set<Section>) EnumSet.allOf(Section.class)));
+		assertThat(dirtyConfiguration.isAllSones(), is(true));
+		assertThat(dirtyConfiguration.getSoneSections().get("sone"), is((Set<SoneSection>) EnumSet.of(SoneSection.PROFILE)));
+	}
+
+	@Test
+	public void testSaveIsDueAfterQuietTimeOrMaximumDelay() {
+		long now = System.currentTimeMillis();
+		assertThat(dirtyConfiguration.isSaveDue(now + 10000, 5000, 60000), is(false));
+		dirtyConfiguration.touch(Section.OPTIONS);
+		assertThat(dirtyConfiguration.isSaveDue(now, 5000, 60000), is(false));
+		assertThat(dirtyConfiguration.isSaveDue(now + 10000, 5000, 60000), is(true));
+		assertThat(dirtyConfiguration.isSaveDue(now + 10000, 60000, 5000), is(true));
+		assertThat(dirtyConfiguration.isSaveDue(now + 1000, 60000, 5000), is(false));
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Sone - ImageInserterTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import net.pterodactylus.sone.core.FreenetInterface.ImageInsertListener;
+import net.pterodactylus.sone.core.FreenetInterface.InsertToken;
+import net.pterodactylus.sone.core.event.ImageInsertAbortedEvent;
+import net.pterodactylus.sone.core.event.ImageInsertFailedEvent;
+import net.pterodactylus.sone.core.event.ImageInsertFinishedEvent;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.TemporaryImage;
+
+import freenet.client.InsertException;
+import freenet.keys.FreenetURI;
+
+import com.google.common.eventbus.EventBus;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ImageInserter}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ImageInserterTest {
+
+	private final FreenetInterface freenetInterface = mock(FreenetInterface.class);
+	private final EventBus eventBus = mock(EventBus.class);
+
+	@Test
+	public void testConcurrentInsertsAreLimited() throws SoneException {
+		ImageInserter imageInserter = new ImageInserter(freenetInterface, eventBus, 2, 0);
+		Image[] images = createImages(imageInserter, 3);
+
+		verify(freenetInterface).insertImage(any(TemporaryImage.class), eq(images[0]), eq(imageInserter));
+		verify(freenetInterface).insertImage(any(TemporaryImage.class), eq(images[1]), eq(imageInserter));
+		verify(freenetInterface, never()).insertImage(any(TemporaryImage.class), eq(images[2]), any(ImageInsertListener.class));
+		assertThat(imageInserter.getImageInserts().size(), is(3));
+		assertThat(imageInserter.getImageInserts().get(2).isRunning(), is(false));
+	}
+
+	@Test
+	public void testFinishedInsertStartsNextInsert() throws SoneException {
+		ImageInserter imageInserter = new ImageInserter(freenetInterface, eventBus, 1, 0);
+		Image[] images = createImages(imageInserter, 2);
+		FreenetURI resultingUri = mock(FreenetURI.class);
+
+		imageInserter.imageInsertFinished(images[0], resultingUri);
+
+		verify(eventBus).post(any(ImageInsertFinishedEvent.class));
+		verify(freenetInterface).insertImage(any(TemporaryImage.class), eq(images[1]), eq(imageInserter));
+		assertThat(imageInserter.isInserting(images[0]), is(false));
+		assertThat(imageInserter.isInserting(images[1]), is(true));
+	}
+
+	@Test
+	public void testProgressIsTracked() throws SoneException {
+		ImageInserter imageInserter = new ImageInserter(freenetInterface, eventBus, 1, 0);
+		Image[] images = createImages(imageInserter, 1);
+
+		imageInserter.imageInsertProgressed(images[0], 3, 7);
+
+		assertThat(imageInserter.getImageInserts().get(0).getSucceededBlocks(), is(3));
+		assertThat(imageInserter.getImageInserts().get(0).getTotalBlocks(), is(7));
+	}
+
+	@Test
+	public void testNonFatalFailureIsRetried() throws SoneException {
+		ImageInserter imageInserter = new ImageInserter(freenetInterface, eventBus, 1, 0);
+		Image[] images = createImages(imageInserter, 1);
+		InsertException insertException = mock(InsertException.class);
+		when(insertException.isFatal()).thenReturn(false);
+
+		imageInserter.imageInsertFailed(images[0], insertException);
+
+		verify(freenetInterface, timeout(1000).times(2)).insertImage(any(TemporaryImage.class), eq(images[0]), eq(imageInserter));
+		verify(eventBus, never()).post(any(ImageInsertFailedEvent.class));
+		imageInserter.stop();
+	}
+
+	@Test
+	public void testFatalFailureIsNotRetried() throws SoneException {
+		ImageInserter imageInserter = new ImageInserter(freenetInterface, eventBus, 1, 0);
+		Image[] images = createImages(imageInserter, 2);
+		InsertException insertException = mock(InsertException.class);
+		when(insertException.isFatal()).thenReturn(true);
+
+		imageInserter.imageInsertFailed(images[0], insertException);
+
+		verify(eventBus).post(any(ImageInsertFailedEvent.class));
+		verify(freenetInterface, times(1)).insertImage(any(TemporaryImage.class), eq(images[0]), eq(imageInserter));
+		verify(freenetInterface).insertImage(any(TemporaryImage.class), eq(images[1]), eq(imageInserter));
+	}
+
+	@Test
+	public void testCancellingRunningInsertCancelsTokenAndStartsNextInsert() throws SoneException {
+		InsertToken insertToken = mock(InsertToken.class);
+		when(freenetInterface.insertImage(any(TemporaryImage.class), any(Image.class), any(ImageInsertListener.class))).thenReturn(insertToken);
+		ImageInserter imageInserter = new ImageInserter(freenetInterface, eventBus, 1, 0);
+		Image[] images = createImages(imageInserter, 2);
+
+		imageInserter.cancelImageInsert(images[0]);
+
+		verify(insertToken).cancel();
+		verify(eventBus).post(any(ImageInsertAbortedEvent.class));
+		verify(freenetInterface).insertImage(any(TemporaryImage.class), eq(images[1]), eq(imageInserter));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static Image[] createImages(ImageInserter imageInserter, int count) {
+		Image[] images = new Image[count];
+		for (int index = 0; index < count; ++index) {
+			images[index] = mock(Image.class);
+			when(images[index].getId()).thenReturn("Image" + index);
+			imageInserter.insertImage(new TemporaryImage("Image" + index), images[index]);
+		}
+		return images;
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Sone - MentionIndexTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MentionIndex}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class MentionIndexTest {
+
+	/** The ID of the first Sone. */
+	private static final String FIRST_SONE_ID = "FirstSoneFirstSoneFirstSoneFirstSoneFirstSo";
+
+	/** The ID of the second Sone. */
+	private static final String SECOND_SONE_ID = "SecondSoneSecondSoneSecondSoneSecondSoneSec";
+
+	/** The index under test. */
+	private final MentionIndex mentionIndex = new MentionIndex();
+
+	@Test
+	public void testSoneLinksAreFound() {
+		assertThat(MentionIndex.getMentionedSoneIds("Hello sone://" + FIRST_SONE_ID + ", how are you?"), is((Object) ImmutableSet.of(FIRST_SONE_ID)));
+		assertThat(MentionIndex.getMentionedSoneIds("sone://" + FIRST_SONE_ID + "sone://" + SECOND_SONE_ID + "\nsone://" + FIRST_SONE_ID), is((Object) ImmutableSet.of(FIRST_SONE_ID, SECOND_SONE_ID)));
+	}
+
+	@Test
+	public void testIncompleteSoneLinksAreIgnored() {
+		assertThat(MentionIndex.getMentionedSoneIds("No links here."), is((Object) Collections.emptySet()));
+		assertThat(MentionIndex.getMentionedSoneIds("sone://"), is((Object) Collections.emptySet()));
+		assertThat(MentionIndex.getMentionedSoneIds("sone://" + FIRST_SONE_ID.substring(0, 20) + "\n" + FIRST_SONE_ID.substring(20)), is((Object) Collections.emptySet()));
+		assertThat(MentionIndex.getMentionedSoneIds(null), is((Object) Collections.emptySet()));
+	}
+
+	@Test
+	public void testPostsAreFoundForMentionsInPostsAndReplies() {
+		mentionIndex.indexPost(createPost("post1", "Hi, sone://" + FIRST_SONE_ID + "!"));
+		mentionIndex.indexPost(createPost("post2", "Nobody here."));
+		mentionIndex.indexReply(createReply("reply1", "post2", "sone://" + FIRST_SONE_ID + " and sone://" + SECOND_SONE_ID));
+
+		assertThat(mentionIndex.getMentioningPostIds(FIRST_SONE_ID), is((Object) ImmutableSet.of("post1", "post2")));
+		assertThat(mentionIndex.getMentioningPostIds(SECOND_SONE_ID), is((Object) ImmutableSet.of("post2")));
+		assertThat(mentionIndex.getMentionedSoneIdsOfPost("post1"), is((Object) ImmutableSet.of(FIRST_SONE_ID)));
+		assertThat(mentionIndex.getMentionedSoneIdsOfPost("post2"), is((Object) Collections.emptySet()));
+		assertThat(mentionIndex.getMentionedSoneIdsOfReply("reply1"), is((Object) ImmutableSet.of(FIRST_SONE_ID, SECOND_SONE_ID)));
+	}
+
+	@Test
+	public void testRemovedPostsAndRepliesAreNotFound() {
+		mentionIndex.indexPost(createPost("post1", "sone://" + FIRST_SONE_ID));
+		mentionIndex.indexReply(createReply("reply1", "post2", "sone://" + FIRST_SONE_ID));
+		mentionIndex.removePost("post1");
+		mentionIndex.removeReply("reply1");
+		mentionIndex.removeReply("reply2");
+
+		assertThat(mentionIndex.getMentioningPostIds(FIRST_SONE_ID), is((Object) Collections.emptySet()));
+		assertThat(mentionIndex.getMentionedSoneIdsOfPost("post1"), is((Object) Collections.emptySet()));
+		assertThat(mentionIndex.getMentionedSoneIdsOfReply("reply1"), is((Object) Collections.emptySet()));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates a mocked post.
+	 *
+	 * @param id
+	 *            The ID of the post
+	 * @param text
+	 *            The text of the post
+	 * @return The mocked post
+	 */
+	private static Post createPost(String id, String text) {
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn(id);
+		when(post.getText()).thenReturn(text);
+		return post;
+	}
+
+	/**
+	 * Creates a mocked reply.
+	 *
+	 * @param id
+	 *            The ID of the reply
+	 * @param postId
+	 *            The ID of the post the reply belongs to
+	 * @param text
+	 *            The text of the reply
+	 * @return The mocked reply
+	 */
+	private static PostReply createReply(String id, String postId, String text) {
+		PostReply reply = mock(PostReply.class);
+		when(reply.getId()).thenReturn(id);
+		when(reply.getPostId()).thenReturn(postId);
+		when(reply.getText()).thenReturn(text);
+		return reply;
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Sone - SoneSummaryIndexTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.pterodactylus.sone.core.SoneSummaryIndex.SortField;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.SoneImpl;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SoneSummaryIndex}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneSummaryIndexTest {
+
+	/** The index under test. */
+	private final SoneSummaryIndex soneSummaryIndex = new SoneSummaryIndex();
+
+	@Test
+	public void testSonesAreSortedByEachField() {
+		Sone alice = createSone("alice", "Alice", 3000, 1);
+		Sone bob = createSone("bob", "bob", 1000, 3);
+		Sone carol = createSone("carol", "Carol", 2000, 2);
+		soneSummaryIndex.update(bob);
+		soneSummaryIndex.update(carol);
+		soneSummaryIndex.update(alice);
+
+		assertThat(soneSummaryIndex.getSones(SortField.NAME, false), is(asList(alice, bob, carol)));
+		assertThat(soneSummaryIndex.getSones(SortField.NAME, true), is(asList(carol, bob, alice)));
+		assertThat(soneSummaryIndex.getSones(SortField.ACTIVITY, false), is(asList(alice, carol, bob)));
+		assertThat(soneSummaryIndex.getSones(SortField.POSTS, false), is(asList(bob, carol, alice)));
+		assertThat(soneSummaryIndex.getSones(SortField.POSTS, true), is(asList(alice, carol, bob)));
+		assertThat(soneSummaryIndex.getSones(SortField.IMAGES, false), is(asList(alice, bob, carol)));
+	}
+
+	@Test
+	public void testUpdatedSoneReplacesPreviousVersion() {
+		Sone alice = createSone("alice", "Alice", 3000, 1);
+		Sone bob = createSone("bob", "Bob", 1000, 3);
+		soneSummaryIndex.update(alice);
+		soneSummaryIndex.update(bob);
+		Sone newAlice = createSone("alice", "Alice", 4000, 5);
+		soneSummaryIndex.update(newAlice);
+
+		assertThat(soneSummaryIndex.getSones(SortField.POSTS, false), is(asList(newAlice, bob)));
+		assertThat(soneSummaryIndex.getSones(SortField.NAME, false), is(asList(newAlice, bob)));
+	}
+
+	@Test
+	public void testRemovedSoneIsNotReturned() {
+		Sone alice = createSone("alice", "Alice", 3000, 1);
+		Sone bob = createSone("bob", "Bob", 1000, 3);
+		soneSummaryIndex.update(alice);
+		soneSummaryIndex.update(bob);
+		soneSummaryIndex.remove("alice");
+		soneSummaryIndex.remove("unknown");
+
+		for (SortField sortField : SortField.values()) {
+			assertThat(soneSummaryIndex.getSones(sortField, false), is(Collections.singletonList(bob)));
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates a Sone.
+	 *
+	 * @param id
+	 *            The ID of the Sone
+	 * @param firstName
+	 *            The first name of the Sone
+	 * @param time
+	 *            The time of the Sone
+	 * @param postCount
+	 *            The number of posts of the Sone
+	 * @return The created Sone
+	 */
+	private static Sone createSone(String id, String firstName, long time, int postCount) {
+		SoneImpl sone = new SoneImpl(id, false);
+		sone.setProfile(new Profile(sone).setFirstName(firstName));
+		sone.setTime(time);
+		List<Post> posts = new ArrayList<Post>();
+		for (int postIndex = 0; postIndex < postCount; ++postIndex) {
+			posts.add(mock(Post.class));
+		}
+		sone.setPosts(posts);
+		return sone;
+	}
+
+}
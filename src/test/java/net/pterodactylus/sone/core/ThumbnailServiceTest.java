@@ -0,0 +1,143 @@
+/*
+ * Sone - ThumbnailServiceTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import javax.imageio.ImageIO;
+
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.TemporaryImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link ThumbnailService}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ThumbnailServiceTest {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final FreenetInterface freenetInterface = mock(FreenetInterface.class);
+	private final TemporaryImageStore temporaryImageStore = mock(TemporaryImageStore.class);
+	private final Image image = mock(Image.class);
+	private ThumbnailService thumbnailService;
+
+	@Before
+	public void setup() {
+		when(image.getId()).thenReturn("image");
+		thumbnailService = new ThumbnailService(freenetInterface, temporaryImageStore, temporaryFolder.getRoot(), ThumbnailService.DEFAULT_CACHE_SIZE);
+	}
+
+	@After
+	public void tearDown() {
+		thumbnailService.stop();
+	}
+
+	@Test
+	public void testThumbnailIsGeneratedAndCached() throws IOException {
+		when(temporaryImageStore.getTemporaryImage("image")).thenReturn(createTemporaryImage(BufferedImage.TYPE_INT_RGB, "jpg"));
+
+		File thumbnail = thumbnailService.getThumbnail(image, 64, 5000);
+		assertThat(thumbnail, notNullValue());
+		assertThat(ThumbnailService.getContentType(thumbnail), is("image/jpeg"));
+		BufferedImage thumbnailImage = ImageIO.read(thumbnail);
+		assertThat(thumbnailImage.getWidth(), is(64));
+		assertThat(thumbnailImage.getHeight(), is(32));
+
+		assertThat(thumbnailService.getThumbnail(image, 64, 5000), sameInstance(thumbnail));
+		verify(temporaryImageStore, times(1)).getTemporaryImage("image");
+	}
+
+	@Test
+	public void testThumbnailOfImageWithTransparencyIsStoredAsPng() throws IOException {
+		when(temporaryImageStore.getTemporaryImage("image")).thenReturn(createTemporaryImage(BufferedImage.TYPE_INT_ARGB, "png"));
+
+		File thumbnail = thumbnailService.getThumbnail(image, 64, 5000);
+		assertThat(ThumbnailService.getContentType(thumbnail), is("image/png"));
+		assertThat(ImageIO.read(thumbnail).getColorModel().hasAlpha(), is(true));
+	}
+
+	@Test
+	public void testSlowGenerationReturnsNullAfterTimeout() throws IOException, InterruptedException {
+		final TemporaryImage temporaryImage = createTemporaryImage(BufferedImage.TYPE_INT_RGB, "jpg");
+		final CountDownLatch generationAllowed = new CountDownLatch(1);
+		when(temporaryImageStore.getTemporaryImage("image")).thenAnswer(new Answer<TemporaryImage>() {
+
+			@Override
+			public TemporaryImage answer(InvocationOnMock invocation) throws InterruptedException {
+				generationAllowed.await();
+				return temporaryImage;
+			}
+		});
+
+		assertThat(thumbnailService.getThumbnail(image, 64, 100), nullValue());
+		generationAllowed.countDown();
+		assertThat(thumbnailService.getThumbnail(image, 64, 5000), notNullValue());
+		verify(temporaryImageStore, times(1)).getTemporaryImage("image");
+	}
+
+	@Test
+	public void testFailedGenerationIsNotRetriedImmediately() {
+		when(image.isInserted()).thenReturn(false);
+
+		assertThat(thumbnailService.getThumbnail(image, 64, 5000), nullValue());
+		assertThat(thumbnailService.getThumbnail(image, 64, 5000), nullValue());
+		verify(temporaryImageStore, times(1)).getTemporaryImage("image");
+	}
+
+	@Test
+	public void testInvalidSizesAreRejected() {
+		assertThat(thumbnailService.getThumbnail(image, 100, 5000), nullValue());
+		verify(temporaryImageStore, times(0)).getTemporaryImage("image");
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static TemporaryImage createTemporaryImage(int type, String format) throws IOException {
+		ByteArrayOutputStream imageOutputStream = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(200, 100, type), format, imageOutputStream);
+		return new TemporaryImage("image").setImageData(imageOutputStream.toByteArray());
+	}
+
+}
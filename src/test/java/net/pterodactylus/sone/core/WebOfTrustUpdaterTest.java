@@ -0,0 +1,67 @@
+/*
+ * © 2013 xplosion interactive
+ */
+
+package net.pterodactylus.sone.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import net.pterodactylus.sone.freenet.plugin.PluginException;
+import net.pterodactylus.sone.freenet.wot.OwnIdentity;
+import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector;
+
+import com.google.common.eventbus.EventBus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Tests for {@link WebOfTrustUpdater}.
+ *
+ * @author <a href="mailto:d.roden@xplosion.de">David Roden</a>
+ */
+public class WebOfTrustUpdaterTest {
+
+	private final WebOfTrustConnector webOfTrustConnector = mock(WebOfTrustConnector.class);
+	private final OwnIdentity ownIdentity = mock(OwnIdentity.class);
+	private final WebOfTrustUpdater webOfTrustUpdater = new WebOfTrustUpdater(new EventBus(), webOfTrustConnector, 1);
+
+	@Before
+	public void setup() {
+		when(ownIdentity.getId()).thenReturn("own");
+	}
+
+	@After
+	public void tearDown() {
+		webOfTrustUpdater.stop();
+	}
+
+	@Test
+	public void testJobsForTheSameKeyAreCoalescedAndKeepTheirOrder() throws InterruptedException, PluginException {
+		webOfTrustUpdater.setProperty(ownIdentity, "A", "1");
+		webOfTrustUpdater.setProperty(ownIdentity, "B", "1");
+		webOfTrustUpdater.setProperty(ownIdentity, "A", "2");
+		assertThat(webOfTrustUpdater.getQueueSize(), is(2));
+		assertThat(webOfTrustUpdater.getCoalescedJobCount(), is(1L));
+
+		webOfTrustUpdater.start();
+		long stopTime = System.currentTimeMillis() + 5000;
+		while ((webOfTrustUpdater.getFinishedJobCount() < 2) && (System.currentTimeMillis() < stopTime)) {
+			Thread.sleep(10);
+		}
+		assertThat(webOfTrustUpdater.getFinishedJobCount(), is(2L));
+
+		InOrder inOrder = inOrder(webOfTrustConnector);
+		inOrder.verify(webOfTrustConnector).setProperty(ownIdentity, "A", "2");
+		inOrder.verify(webOfTrustConnector).setProperty(ownIdentity, "B", "1");
+		verify(webOfTrustConnector, never()).setProperty(ownIdentity, "A", "1");
+	}
+
+}
@@ -18,11 +18,19 @@
 package net.pterodactylus.sone.database.memory;
 
 import static com.google.common.base.Optional.of;
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.util.Collections;
+
 import net.pterodactylus.sone.data.Album;
 import net.pterodactylus.sone.data.AlbumImpl;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.ImageImpl;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.SoneImpl;
+import net.pterodactylus.sone.metrics.MetricRegistry;
 
 import com.google.common.base.Optional;
 import org.junit.Test;
@@ -34,7 +42,7 @@ import org.junit.Test;
  */
 public class MemoryDatabaseTest {
 
-	private final MemoryDatabase memoryDatabase = new MemoryDatabase(null, null);
+	private final MemoryDatabase memoryDatabase = new MemoryDatabase(null, null, new MetricRegistry());
 
 	@Test
 	public void testBasicAlbumFunctionality() {
@@ -46,4 +54,85 @@ public class MemoryDatabaseTest {
 		assertThat(memoryDatabase.getAlbum(newAlbum.getId()), is(Optional.<Album>absent()));
 	}
 
+	@Test
+	public void testAlbumsAreIndexedByTitle() {
+		Sone firstSone = new SoneImpl("first", false);
+		Sone secondSone = new SoneImpl("second", false);
+		Album charlie = createAlbum(firstSone.getRootAlbum(), "Charlie");
+		Album alpha = createAlbum(secondSone.getRootAlbum(), "alpha");
+		Album bravo = createAlbum(firstSone.getRootAlbum(), "Bravo");
+		Album emptyAlbum = createAlbum(firstSone.getRootAlbum(), "Empty");
+		storeImage(charlie, "charlie-image");
+		storeImage(alpha, "alpha-image");
+		storeImage(bravo, "bravo-image");
+
+		Optional<String> allSones = Optional.absent();
+		assertThat(memoryDatabase.getAlbumsAfter(allSones, Optional.<String>absent(), 10), is(asList(alpha, bravo, charlie)));
+		assertThat(memoryDatabase.getAlbumsAfter(allSones, of(alpha.getId()), 1), is(asList(bravo)));
+		assertThat(memoryDatabase.getAlbumsAfter(allSones, of(charlie.getId()), 10), is(Collections.<Album>emptyList()));
+		assertThat(memoryDatabase.getAlbumsBefore(allSones, of(charlie.getId()), 10), is(asList(alpha, bravo)));
+		assertThat(memoryDatabase.getAlbumsBefore(allSones, Optional.<String>absent(), 2), is(asList(bravo, charlie)));
+		assertThat(memoryDatabase.getAlbumsAfter(of("first"), Optional.<String>absent(), 10), is(asList(bravo, charlie)));
+		assertThat(memoryDatabase.getAlbumsAfter(of("unknown"), Optional.<String>absent(), 10), is(Collections.<Album>emptyList()));
+		assertThat(memoryDatabase.getAlbumsAfter(allSones, of(emptyAlbum.getId()), 10), is(asList(alpha, bravo, charlie)));
+	}
+
+	@Test
+	public void testIndexFollowsChangedAlbumsAndImages() {
+		Sone sone = new SoneImpl("sone", false);
+		Album parent = createAlbum(sone.getRootAlbum(), "Parent");
+		Album child = createAlbum(parent, "Child");
+		Image image = storeImage(child, "image");
+		assertThat(memoryDatabase.getAlbumsAfter(Optional.<String>absent(), Optional.<String>absent(), 10), is(asList(child, parent)));
+
+		parent.modify().setTitle("Aardvark").update();
+		memoryDatabase.storeAlbum(parent);
+		assertThat(memoryDatabase.getAlbumsAfter(Optional.<String>absent(), Optional.<String>absent(), 10), is(asList(parent, child)));
+
+		child.removeImage(image);
+		memoryDatabase.removeImage(image);
+		assertThat(memoryDatabase.getAlbumsAfter(Optional.<String>absent(), Optional.<String>absent(), 10), is(Collections.<Album>emptyList()));
+
+		child.addImage(image);
+		memoryDatabase.storeImage(image);
+		memoryDatabase.removeAlbum(child);
+		assertThat(memoryDatabase.getAlbumsAfter(Optional.<String>absent(), Optional.<String>absent(), 10), is(asList(parent)));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates and stores a new album.
+	 *
+	 * @param parent
+	 * 		The parent of the new album
+	 * @param title
+	 * 		The title of the new album
+	 * @return The new album
+	 */
+	private Album createAlbum(Album parent, String title) {
+		Album album = new AlbumImpl().setSone(parent.getSone()).modify().setTitle(title).setDescription("").update();
+		parent.addAlbum(album);
+		memoryDatabase.storeAlbum(album);
+		return album;
+	}
+
+	/**
+	 * Creates and stores a new inserted image.
+	 *
+	 * @param album
+	 * 		The album of the new image
+	 * @param key
+	 * 		The key of the new image
+	 * @return The new image
+	 */
+	private Image storeImage(Album album, String key) {
+		Image image = new ImageImpl().modify().setSone(album.getSone()).setKey(key).update();
+		album.addImage(image);
+		memoryDatabase.storeImage(image);
+		return image;
+	}
+
 }
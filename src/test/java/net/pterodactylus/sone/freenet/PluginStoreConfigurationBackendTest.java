@@ -0,0 +1,99 @@
+/*
+ * Sone - PluginStoreConfigurationBackendTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.freenet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.ConfigurationException;
+
+import freenet.client.async.DatabaseDisabledException;
+import freenet.pluginmanager.PluginRespirator;
+import freenet.pluginmanager.PluginStore;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PluginStoreConfigurationBackend}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class PluginStoreConfigurationBackendTest {
+
+	/** The plugin store. */
+	private final PluginStore pluginStore = new PluginStore();
+
+	/** The plugin respirator. */
+	private final PluginRespirator pluginRespirator = mock(PluginRespirator.class);
+
+	/** The configuration using the backend under test. */
+	private Configuration configuration;
+
+	/**
+	 * Creates the configuration using the backend under test.
+	 *
+	 * @throws DatabaseDisabledException
+	 *             if the plugin store is not available
+	 */
+	@Before
+	public void setup() throws DatabaseDisabledException {
+		when(pluginRespirator.getStore()).thenReturn(pluginStore);
+		configuration = new Configuration(new PluginStoreConfigurationBackend(pluginRespirator));
+	}
+
+	@Test
+	public void testSavingASoneStoresThePluginStoreOnce() throws ConfigurationException, DatabaseDisabledException {
+		String sonePrefix = "Sone/sone";
+		configuration.getLongValue(sonePrefix + "/Time").setValue(1000L);
+		configuration.getStringValue(sonePrefix + "/Profile/FirstName").setValue("First");
+		configuration.getIntValue(sonePrefix + "/Profile/BirthYear").setValue(1970);
+		for (int postIndex = 0; postIndex < 500; ++postIndex) {
+			String postPrefix = sonePrefix + "/Posts/" + postIndex;
+			configuration.getStringValue(postPrefix + "/ID").setValue("post-" + postIndex);
+			configuration.getLongValue(postPrefix + "/Time").setValue(1000L + postIndex);
+			configuration.getStringValue(postPrefix + "/Text").setValue("Post " + postIndex);
+		}
+		configuration.getStringValue(sonePrefix + "/Posts/500/ID").setValue(null);
+		configuration.getBooleanValue(sonePrefix + "/Options/AutoFollow").setValue(true);
+		verify(pluginRespirator, never()).putStore(pluginStore);
+
+		configuration.save();
+		verify(pluginRespirator, times(1)).putStore(pluginStore);
+		assertThat(pluginStore.strings.get(sonePrefix + "/Posts/499/ID"), is("post-499"));
+		assertThat(pluginStore.longs.get(sonePrefix + "/Time"), is(1000L));
+	}
+
+	@Test
+	public void testUnchangedStoreIsNotStoredAgain() throws ConfigurationException, DatabaseDisabledException {
+		configuration.getStringValue("Option/TrustComment").setValue("Comment");
+		configuration.save();
+		configuration.save();
+		verify(pluginRespirator, times(1)).putStore(pluginStore);
+
+		configuration.getStringValue("Option/TrustComment").setValue("Other Comment");
+		configuration.save();
+		verify(pluginRespirator, times(2)).putStore(pluginStore);
+	}
+
+}
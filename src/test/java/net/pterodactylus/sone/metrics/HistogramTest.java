@@ -0,0 +1,79 @@
+/*
+ * Sone - HistogramTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.metrics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Histogram}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class HistogramTest {
+
+	private final Histogram histogram = new Histogram();
+
+	@Test
+	public void testEmptyHistogram() {
+		assertThat(histogram.getCount(), is(0L));
+		assertThat(histogram.getMean(), is(0L));
+		assertThat(histogram.getMaximum(), is(0L));
+		assertThat(histogram.getPercentile(0.5), is(0L));
+	}
+
+	@Test
+	public void testCountMeanAndMaximum() {
+		histogram.update(1000);
+		histogram.update(3000);
+		histogram.update(-5);
+		assertThat(histogram.getCount(), is(3L));
+		assertThat(histogram.getTotal(), is(4000L));
+		assertThat(histogram.getMean(), is(1333L));
+		assertThat(histogram.getMaximum(), is(3000L));
+	}
+
+	@Test
+	public void testPercentilesAreUpperBoundsOfBuckets() {
+		for (int i = 0; i < 90; ++i) {
+			histogram.update(1500);
+		}
+		for (int i = 0; i < 10; ++i) {
+			histogram.update(100000000);
+		}
+		assertThat(histogram.getPercentile(0.5), is(2000L));
+		assertThat(histogram.getPercentile(0.9), is(2000L));
+		assertThat(histogram.getPercentile(0.95), is(100000000L));
+		assertThat(histogram.getPercentile(1), is(100000000L));
+	}
+
+	@Test
+	public void testRegistryReturnsSameMetricForSameName() {
+		MetricRegistry metricRegistry = new MetricRegistry();
+		assertThat(metricRegistry.histogram("Test") == metricRegistry.histogram("Test"), is(true));
+		assertThat(metricRegistry.counter("Test") == metricRegistry.counter("Test"), is(true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidFraction() {
+		histogram.getPercentile(1.5);
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Sone - ListNotificationTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.notify;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import net.pterodactylus.util.template.Template;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ListNotification}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ListNotificationTest {
+
+	/** The template of the notification under test. */
+	private final Template template = new Template();
+
+	/** The notification under test. */
+	private final ListNotification<String> listNotification = new ListNotification<String>("test-notification", "elements", template, false, 2);
+
+	@Test
+	public void testElementsAreKeptInOrderAndOnlyOnce() {
+		listNotification.add("a");
+		listNotification.add("b");
+		listNotification.add("a");
+		listNotification.add("c");
+		listNotification.remove("b");
+
+		assertThat(listNotification.getElements(), is(asList("a", "c")));
+		assertThat(listNotification.contains("b"), is(false));
+	}
+
+	@Test
+	public void testVersionAndHashCodeFollowTheElements() {
+		int emptyHashCode = listNotification.hashCode();
+		long emptyVersion = listNotification.getVersion();
+		listNotification.add("a");
+		assertThat(listNotification.hashCode(), is(not(emptyHashCode)));
+		assertThat(listNotification.getVersion(), is(not(emptyVersion)));
+		long version = listNotification.getVersion();
+		listNotification.add("a");
+		assertThat(listNotification.getVersion(), is(version));
+		listNotification.add("b");
+		listNotification.remove("b");
+		listNotification.remove("a");
+		assertThat(listNotification.hashCode(), is(emptyHashCode));
+		assertThat(listNotification.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testFilteredNotificationsAreShared() {
+		listNotification.setElements(asList("a", "bb", "c"));
+		Predicate<String> shortElements = new Predicate<String>() {
+
+			@Override
+			public boolean apply(String element) {
+				return element.length() == 1;
+			}
+		};
+
+		assertThat(listNotification.filter(Predicates.<String> alwaysTrue()), sameInstance(listNotification));
+		ListNotification<String> filteredNotification = listNotification.filter(shortElements);
+		assertThat(filteredNotification.getElements(), is(asList("a", "c")));
+		assertThat(listNotification.filter(shortElements), sameInstance(filteredNotification));
+		listNotification.add("d");
+		assertThat(listNotification.filter(shortElements), not(sameInstance(filteredNotification)));
+		assertThat(listNotification.filter(Predicates.<String> alwaysFalse()).isEmpty(), is(true));
+	}
+
+	@Test
+	public void testOnlyTheMaximumNumberOfElementsIsDisplayed() {
+		listNotification.setElements(asList("a", "b", "c"));
+		@SuppressWarnings("unchecked")
+		ListNotification<String>.DisplayedElements displayedElements = (ListNotification<String>.DisplayedElements) template.getInitialContext().get("elements");
+
+		assertThat(displayedElements, is(asList("a", "b")));
+		assertThat(displayedElements.getHiddenCount(), is(1));
+		listNotification.remove("a");
+		assertThat(displayedElements, is(asList("b", "c")));
+		assertThat(displayedElements.getHiddenCount(), is(0));
+	}
+
+}
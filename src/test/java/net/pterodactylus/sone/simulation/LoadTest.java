@@ -0,0 +1,592 @@
+/*
+ * Sone - LoadTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.FreenetInterface;
+import net.pterodactylus.sone.core.WebOfTrustUpdater;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.database.Database;
+import net.pterodactylus.sone.database.PostBuilderFactory;
+import net.pterodactylus.sone.database.PostProvider;
+import net.pterodactylus.sone.database.PostReplyBuilderFactory;
+import net.pterodactylus.sone.database.SoneProvider;
+import net.pterodactylus.sone.database.memory.MemoryDatabase;
+import net.pterodactylus.sone.fcp.FcpInterface;
+import net.pterodactylus.sone.freenet.plugin.PluginConnector;
+import net.pterodactylus.sone.freenet.wot.IdentityManager;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
+import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector;
+import net.pterodactylus.sone.freenet.wot.WebOfTrustConnector.RequestStatistics;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.util.config.Configuration;
+import net.pterodactylus.util.config.ConfigurationException;
+import net.pterodactylus.util.config.MapConfigurationBackend;
+import net.pterodactylus.util.number.Numbers;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.google.inject.TypeLiteral;
+import com.google.inject.matcher.Matchers;
+import com.google.inject.name.Names;
+import com.google.inject.spi.InjectionListener;
+import com.google.inject.spi.TypeEncounter;
+import com.google.inject.spi.TypeListener;
+
+import freenet.keys.FreenetURI;
+import freenet.support.Base64;
+
+/**
+ * Load test harness that runs a complete {@link Core} against a
+ * {@link SimulatedFreenetInterface} and a {@link SimulatedPluginConnector}.
+ * The harness creates a configurable number of own and other identities,
+ * publishes a number of editions of every other identity’s Sone, creates
+ * posts for every local Sone, and measures how long the core takes to
+ * download all remote Sones and to insert all local Sones.
+ * <p/>
+ * Run it with {@code java net.pterodactylus.sone.simulation.LoadTest
+ * [identities] [ownIdentities] [editions] [latency]}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class LoadTest {
+
+	/** The number of other identities. */
+	private int identityCount = 1000;
+
+	/** The number of own identities. */
+	private int ownIdentityCount = 2;
+
+	/** The number of editions to publish for every other Sone. */
+	private int editionCount = 3;
+
+	/** The number of posts every edition adds. */
+	private int postsPerEdition = 5;
+
+	/** The number of replies every edition adds. */
+	private int repliesPerEdition = 10;
+
+	/** The number of likes every edition adds. */
+	private int likesPerEdition = 10;
+
+	/** The maximum latency of the simulated Freenet (in milliseconds). */
+	private long freenetLatency = 50;
+
+	/** The maximum latency of the simulated Web of Trust (in milliseconds). */
+	private long webOfTrustLatency = 10;
+
+	/** The time to wait for each phase of the test (in milliseconds). */
+	private long timeout = TimeUnit.MINUTES.toMillis(5);
+
+	/** The seed of the random number generator. */
+	private long seed = 0;
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Sets the number of identities.
+	 *
+	 * @param identityCount
+	 *            The number of other identities
+	 * @param ownIdentityCount
+	 *            The number of own identities
+	 * @return This load test
+	 */
+	public LoadTest setIdentityCount(int identityCount, int ownIdentityCount) {
+		this.identityCount = identityCount;
+		this.ownIdentityCount = ownIdentityCount;
+		return this;
+	}
+
+	/**
+	 * Sets the number of editions that are published for every other Sone,
+	 * and the number of elements every edition adds.
+	 *
+	 * @param editionCount
+	 *            The number of editions
+	 * @param postsPerEdition
+	 *            The number of posts every edition adds
+	 * @param repliesPerEdition
+	 *            The number of replies every edition adds
+	 * @param likesPerEdition
+	 *            The number of likes every edition adds
+	 * @return This load test
+	 */
+	public LoadTest setEditions(int editionCount, int postsPerEdition, int repliesPerEdition, int likesPerEdition) {
+		this.editionCount = editionCount;
+		this.postsPerEdition = postsPerEdition;
+		this.repliesPerEdition = repliesPerEdition;
+		this.likesPerEdition = likesPerEdition;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum latencies of the simulated Freenet and Web of Trust.
+	 * The minimum latencies are half the maximum latencies.
+	 *
+	 * @param freenetLatency
+	 *            The maximum latency of the simulated Freenet (in
+	 *            milliseconds)
+	 * @param webOfTrustLatency
+	 *            The maximum latency of the simulated Web of Trust (in
+	 *            milliseconds)
+	 * @return This load test
+	 */
+	public LoadTest setLatency(long freenetLatency, long webOfTrustLatency) {
+		this.freenetLatency = freenetLatency;
+		this.webOfTrustLatency = webOfTrustLatency;
+		return this;
+	}
+
+	/**
+	 * Sets the time to wait for each phase of the test.
+	 *
+	 * @param timeout
+	 *            The timeout (in milliseconds)
+	 * @return This load test
+	 */
+	public LoadTest setTimeout(long timeout) {
+		this.timeout = timeout;
+		return this;
+	}
+
+	/**
+	 * Sets the seed of the random number generator.
+	 *
+	 * @param seed
+	 *            The seed
+	 * @return This load test
+	 */
+	public LoadTest setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @return The result of the load test
+	 * @throws ConfigurationException
+	 *             if the configuration can not be created
+	 */
+	public Result run() throws ConfigurationException {
+		Random random = new Random(seed);
+		final EventBus eventBus = new EventBus();
+		final Configuration configuration = new Configuration(new MapConfigurationBackend());
+		configuration.getIntValue("Option/InsertionDelay").setValue(0);
+		final SimulatedFreenetInterface freenetInterface = new SimulatedFreenetInterface(random).setLatency(freenetLatency / 2, freenetLatency);
+		final SimulatedPluginConnector pluginConnector = new SimulatedPluginConnector(eventBus, random).setLatency(webOfTrustLatency / 2, webOfTrustLatency);
+
+		/* create identities. */
+		List<String> ownIdentityIds = new ArrayList<String>();
+		for (int ownIdentityIndex = 0; ownIdentityIndex < ownIdentityCount; ++ownIdentityIndex) {
+			String[] keyPair = freenetInterface.generateKeyPair();
+			FreenetURI requestUri = createIdentityUri(keyPair[0]);
+			String id = Base64.encode(requestUri.getRoutingKey());
+			pluginConnector.addOwnIdentity(id, "Own" + ownIdentityIndex, requestUri.toString(), createIdentityUri(keyPair[1]).toString(), "Sone");
+			ownIdentityIds.add(id);
+		}
+		final Map<String, FreenetURI> requestUris = new HashMap<String, FreenetURI>();
+		for (int identityIndex = 0; identityIndex < identityCount; ++identityIndex) {
+			FreenetURI requestUri = createIdentityUri(freenetInterface.generateKeyPair()[0]);
+			String id = Base64.encode(requestUri.getRoutingKey());
+			pluginConnector.addIdentity(id, "Identity" + identityIndex, requestUri.toString(), "Sone");
+			for (String ownIdentityId : ownIdentityIds) {
+				pluginConnector.setTrust(ownIdentityId, id, 75);
+			}
+			requestUris.put(id, requestUri);
+		}
+		SoneXmlGenerator soneXmlGenerator = new SoneXmlGenerator(new ArrayList<String>(requestUris.keySet()));
+
+		/* publish first edition of all Sones. */
+		final Map<String, Long> soneTimes = new HashMap<String, Long>();
+		publishEdition(freenetInterface, soneXmlGenerator, requestUris, soneTimes, 1);
+
+		/* create core. */
+		Injector injector = Guice.createInjector(new AbstractModule() {
+
+			@Override
+			protected void configure() {
+				bind(Core.class).in(Singleton.class);
+				bind(MemoryDatabase.class).in(Singleton.class);
+				bind(EventBus.class).toInstance(eventBus);
+				bind(Configuration.class).toInstance(configuration);
+				bind(FreenetInterface.class).toInstance(freenetInterface);
+				bind(PluginConnector.class).toInstance(pluginConnector);
+				bind(WebOfTrustConnector.class).in(Singleton.class);
+				bind(WebOfTrustUpdater.class).in(Singleton.class);
+				bind(IdentityManager.class).in(Singleton.class);
+				bind(TrustCache.class).in(Singleton.class);
+				bind(MetricRegistry.class).in(Singleton.class);
+				bind(String.class).annotatedWith(Names.named("WebOfTrustContext")).toInstance("Sone");
+				bind(FcpInterface.class).in(Singleton.class);
+				bind(Database.class).to(MemoryDatabase.class);
+				bind(PostBuilderFactory.class).to(MemoryDatabase.class);
+				bind(PostReplyBuilderFactory.class).to(MemoryDatabase.class);
+				bind(SoneProvider.class).to(Core.class).in(Singleton.class);
+				bind(PostProvider.class).to(MemoryDatabase.class);
+				bindListener(Matchers.any(), new TypeListener() {
+
+					@Override
+					public <I> void hear(TypeLiteral<I> typeLiteral, TypeEncounter<I> typeEncounter) {
+						typeEncounter.register(new InjectionListener<I>() {
+
+							@Override
+							public void afterInjection(I injectee) {
+								eventBus.register(injectee);
+							}
+						});
+					}
+				});
+			}
+		});
+		final Core core = injector.getInstance(Core.class);
+		core.setFcpInterface(injector.getInstance(FcpInterface.class));
+		WebOfTrustConnector webOfTrustConnector = injector.getInstance(WebOfTrustConnector.class);
+
+		Result result = new Result();
+		try {
+			/* initial synchronization. */
+			long startTime = System.currentTimeMillis();
+			core.start();
+			boolean synchronizedSones = waitUntil(new Supplier<Boolean>() {
+
+				@Override
+				public Boolean get() {
+					return isSynchronized(core, soneTimes);
+				}
+			});
+			result.initialSyncTime = System.currentTimeMillis() - startTime;
+			result.complete = synchronizedSones;
+
+			/* further editions and local posts. */
+			for (int edition = 2; synchronizedSones && (edition <= editionCount); ++edition) {
+				startTime = System.currentTimeMillis();
+				publishEdition(freenetInterface, soneXmlGenerator, requestUris, soneTimes, edition);
+				final Map<Sone, Long> localEditions = new HashMap<Sone, Long>();
+				for (Sone localSone : core.getLocalSones()) {
+					localEditions.put(localSone, freenetInterface.getLatestEdition(localSone.getRequestUri()));
+					core.createPost(localSone, "Load test post " + edition);
+				}
+				synchronizedSones = waitUntil(new Supplier<Boolean>() {
+
+					@Override
+					public Boolean get() {
+						if (!isSynchronized(core, soneTimes)) {
+							return false;
+						}
+						for (Entry<Sone, Long> localEdition : localEditions.entrySet()) {
+							if (freenetInterface.getLatestEdition(localEdition.getKey().getRequestUri()) <= localEdition.getValue()) {
+								return false;
+							}
+						}
+						return true;
+					}
+				});
+				long editionTime = System.currentTimeMillis() - startTime;
+				result.totalEditionTime += editionTime;
+				result.maximumEditionTime = Math.max(result.maximumEditionTime, editionTime);
+				result.editionCount++;
+				result.complete = synchronizedSones;
+			}
+
+			result.remoteSoneCount = core.getRemoteSones().size();
+			result.localSoneCount = core.getLocalSones().size();
+			result.fetchCount = freenetInterface.getFetchCount();
+			result.failedFetchCount = freenetInterface.getFailedFetchCount();
+			result.insertCount = freenetInterface.getInsertCount();
+			result.webOfTrustRequestCount = pluginConnector.getRequestCount();
+			result.webOfTrustRequestStatistics = webOfTrustConnector.getRequestStatistics();
+		} finally {
+			core.stop();
+			webOfTrustConnector.stop();
+			pluginConnector.stop();
+			freenetInterface.stop();
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Publishes the given edition of all remote Sones.
+	 *
+	 * @param freenetInterface
+	 *            The simulated Freenet interface
+	 * @param soneXmlGenerator
+	 *            The Sone XML generator
+	 * @param requestUris
+	 *            The request URIs of the remote Sones, by Sone ID
+	 * @param soneTimes
+	 *            The times of the published Sones, by Sone ID
+	 * @param edition
+	 *            The edition to publish
+	 */
+	private void publishEdition(SimulatedFreenetInterface freenetInterface, SoneXmlGenerator soneXmlGenerator, Map<String, FreenetURI> requestUris, Map<String, Long> soneTimes, int edition) {
+		long time = System.currentTimeMillis();
+		for (Entry<String, FreenetURI> requestUri : requestUris.entrySet()) {
+			byte[] soneXml = soneXmlGenerator.generateSoneXml(requestUri.getKey(), time, edition * postsPerEdition, edition * repliesPerEdition, edition * likesPerEdition);
+			synchronized (soneTimes) {
+				soneTimes.put(requestUri.getKey(), time);
+			}
+			freenetInterface.publish(requestUri.getValue(), edition, "sone.xml", "text/xml; charset=utf-8", soneXml);
+		}
+	}
+
+	/**
+	 * Returns whether the core has downloaded the latest published edition of
+	 * every remote Sone.
+	 *
+	 * @param core
+	 *            The core
+	 * @param soneTimes
+	 *            The times of the published Sones, by Sone ID
+	 * @return {@code true} if all remote Sones are up to date, {@code false}
+	 *         otherwise
+	 */
+	private static boolean isSynchronized(Core core, Map<String, Long> soneTimes) {
+		synchronized (soneTimes) {
+			for (Entry<String, Long> soneTime : soneTimes.entrySet()) {
+				Optional<Sone> sone = core.getSone(soneTime.getKey());
+				if (!sone.isPresent() || (sone.get().getTime() != soneTime.getValue())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Waits until the given condition is met or the timeout has passed.
+	 *
+	 * @param condition
+	 *            The condition to wait for
+	 * @return {@code true} if the condition was met, {@code false} if the
+	 *         timeout has passed
+	 */
+	private boolean waitUntil(Supplier<Boolean> condition) {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (System.currentTimeMillis() < deadline) {
+			if (condition.get()) {
+				return true;
+			}
+			Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+		}
+		return condition.get();
+	}
+
+	/**
+	 * Creates a Web of Trust identity URI from the given SSK.
+	 *
+	 * @param ssk
+	 *            The SSK
+	 * @return The identity URI
+	 */
+	private static FreenetURI createIdentityUri(String ssk) {
+		try {
+			return new FreenetURI(ssk).setKeyType("USK").setDocName("WebOfTrust").setSuggestedEdition(0);
+		} catch (MalformedURLException mue1) {
+			throw new IllegalStateException("Invalid SSK: " + ssk, mue1);
+		}
+	}
+
+	//
+	// MAIN METHOD
+	//
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param arguments
+	 *            The number of other identities, the number of own
+	 *            identities, the number of editions, and the latency of the
+	 *            simulated Freenet (in milliseconds), all optional
+	 * @throws ConfigurationException
+	 *             if the configuration can not be created
+	 */
+	public static void main(String... arguments) throws ConfigurationException {
+		LoadTest loadTest = new LoadTest();
+		loadTest.setIdentityCount(Numbers.safeParseInteger((arguments.length > 0) ? arguments[0] : null, 1000), Numbers.safeParseInteger((arguments.length > 1) ? arguments[1] : null, 2));
+		loadTest.setEditions(Numbers.safeParseInteger((arguments.length > 2) ? arguments[2] : null, 3), 5, 10, 10);
+		loadTest.setLatency(Numbers.safeParseInteger((arguments.length > 3) ? arguments[3] : null, 50), 10);
+		System.out.println(loadTest.run());
+		System.exit(0);
+	}
+
+	/**
+	 * The result of a load test.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	public static class Result {
+
+		/** Whether all Sones were synchronized within the timeout. */
+		private boolean complete;
+
+		/** The number of known remote Sones. */
+		private int remoteSoneCount;
+
+		/** The number of local Sones. */
+		private int localSoneCount;
+
+		/** The time of the initial synchronization (in milliseconds). */
+		private long initialSyncTime;
+
+		/** The number of further editions. */
+		private int editionCount;
+
+		/** The total time of all further editions (in milliseconds). */
+		private long totalEditionTime;
+
+		/** The maximum time of a further edition (in milliseconds). */
+		private long maximumEditionTime;
+
+		/** The number of fetches. */
+		private long fetchCount;
+
+		/** The number of failed fetches. */
+		private long failedFetchCount;
+
+		/** The number of inserts. */
+		private long insertCount;
+
+		/** The number of Web of Trust requests. */
+		private long webOfTrustRequestCount;
+
+		/** The statistics of the Web of Trust requests, by message. */
+		private Map<String, RequestStatistics> webOfTrustRequestStatistics = new HashMap<String, RequestStatistics>();
+
+		//
+		// ACCESSORS
+		//
+
+		/**
+		 * Returns whether all Sones were synchronized within the timeout.
+		 *
+		 * @return {@code true} if the load test completed, {@code false}
+		 *         otherwise
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+
+		/**
+		 * Returns the number of known remote Sones.
+		 *
+		 * @return The number of remote Sones
+		 */
+		public int getRemoteSoneCount() {
+			return remoteSoneCount;
+		}
+
+		/**
+		 * Returns the number of local Sones.
+		 *
+		 * @return The number of local Sones
+		 */
+		public int getLocalSoneCount() {
+			return localSoneCount;
+		}
+
+		/**
+		 * Returns the time it took to download the first edition of all
+		 * remote Sones.
+		 *
+		 * @return The time of the initial synchronization (in milliseconds)
+		 */
+		public long getInitialSyncTime() {
+			return initialSyncTime;
+		}
+
+		/**
+		 * Returns the average time it took to download a further edition of
+		 * all remote Sones and to insert all local Sones.
+		 *
+		 * @return The average time of a further edition (in milliseconds)
+		 */
+		public long getAverageEditionTime() {
+			return (editionCount == 0) ? 0 : (totalEditionTime / editionCount);
+		}
+
+		/**
+		 * Returns the number of fetches.
+		 *
+		 * @return The number of fetches
+		 */
+		public long getFetchCount() {
+			return fetchCount;
+		}
+
+		/**
+		 * Returns the number of inserts.
+		 *
+		 * @return The number of inserts
+		 */
+		public long getInsertCount() {
+			return insertCount;
+		}
+
+		//
+		// OBJECT METHODS
+		//
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			StringBuilder report = new StringBuilder();
+			report.append(String.format("Complete: %s%n", complete));
+			report.append(String.format("Sones: %d remote, %d local%n", remoteSoneCount, localSoneCount));
+			report.append(String.format("Initial synchronization: %d ms%n", initialSyncTime));
+			report.append(String.format("Further editions: %d, average %d ms, maximum %d ms%n", editionCount, getAverageEditionTime(), maximumEditionTime));
+			report.append(String.format("Fetches: %d (%d failed), inserts: %d%n", fetchCount, failedFetchCount, insertCount));
+			report.append(String.format("Web of Trust requests: %d%n", webOfTrustRequestCount));
+			for (Entry<String, RequestStatistics> requestStatistics : webOfTrustRequestStatistics.entrySet()) {
+				RequestStatistics statistics = requestStatistics.getValue();
+				report.append(String.format("  %s: %d successful, %d errors, %d timeouts, average %.1f ms, maximum %.1f ms%n", requestStatistics.getKey(), statistics.getSuccessCount(), statistics.getErrorCount(), statistics.getTimeoutCount(), statistics.getAverageLatency(), statistics.getMaximumLatency()));
+			}
+			return report.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,596 @@
+/*
+ * Sone - SimulatedFreenetInterface.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.pterodactylus.sone.core.FreenetInterface;
+import net.pterodactylus.sone.core.SoneDownloader;
+import net.pterodactylus.sone.core.SoneException;
+import net.pterodactylus.sone.data.Image;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.TemporaryImage;
+import net.pterodactylus.util.logging.Logging;
+import net.pterodactylus.util.thread.NamedThreadFactory;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import freenet.client.ClientMetadata;
+import freenet.client.FetchResult;
+import freenet.client.async.ManifestElement;
+import freenet.keys.FreenetURI;
+import freenet.support.Base64;
+import freenet.support.io.ArrayBucket;
+import freenet.support.io.BucketTools;
+
+/**
+ * {@link FreenetInterface} implementation that keeps all inserted data in
+ * memory. Inserted directories can be fetched again using the request URI
+ * that belongs to the insert URI they were inserted under, and USK
+ * subscribers are notified about every new edition. Every operation is
+ * delayed by a configurable latency.
+ * <p/>
+ * Only keys that were created by {@link #generateKeyPair()} can be used for
+ * inserts.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SimulatedFreenetInterface implements FreenetInterface {
+
+	/** The logger. */
+	private static final Logger logger = Logging.getLogger(SimulatedFreenetInterface.class);
+
+	/** The random number generator for keys and latencies. */
+	private final Random random;
+
+	/** The executor for asynchronous notifications. */
+	private final ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("Simulated Freenet %2$d"));
+
+	/** The request URIs, by routing key of their insert URI. */
+	/* synchronize access on editions. */
+	private final Map<String, FreenetURI> requestUris = new HashMap<String, FreenetURI>();
+
+	/** The inserted editions, by routing key of the request URI. */
+	/* synchronize access on itself. */
+	private final Map<String, SortedMap<Long, Map<String, StoredFile>>> editions = new HashMap<String, SortedMap<Long, Map<String, StoredFile>>>();
+
+	/** The Sone subscriptions, by routing key of the Sone’s request URI. */
+	/* synchronize access on editions. */
+	private final Map<String, SoneSubscription> soneSubscriptions = new HashMap<String, SoneSubscription>();
+
+	/** The URI subscriptions. */
+	/* synchronize access on editions. */
+	private final Map<FreenetURI, Callback> uriSubscriptions = new HashMap<FreenetURI, Callback>();
+
+	/** The minimum latency of an operation (in milliseconds). */
+	private volatile long minimumLatency;
+
+	/** The maximum latency of an operation (in milliseconds). */
+	private volatile long maximumLatency;
+
+	/** The number of fetches. */
+	private final AtomicLong fetchCount = new AtomicLong();
+
+	/** The number of failed fetches. */
+	private final AtomicLong failedFetchCount = new AtomicLong();
+
+	/** The number of inserts. */
+	private final AtomicLong insertCount = new AtomicLong();
+
+	/**
+	 * Creates a new simulated Freenet interface without latency.
+	 *
+	 * @param random
+	 *            The random number generator for keys and latencies
+	 */
+	public SimulatedFreenetInterface(Random random) {
+		this.random = random;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Sets the latency of all operations. Every operation will take a random
+	 * time between the given minimum and maximum latency.
+	 *
+	 * @param minimumLatency
+	 *            The minimum latency (in milliseconds)
+	 * @param maximumLatency
+	 *            The maximum latency (in milliseconds)
+	 * @return This simulated Freenet interface
+	 */
+	public SimulatedFreenetInterface setLatency(long minimumLatency, long maximumLatency) {
+		this.minimumLatency = minimumLatency;
+		this.maximumLatency = Math.max(minimumLatency, maximumLatency);
+		return this;
+	}
+
+	/**
+	 * Returns the number of fetches.
+	 *
+	 * @return The number of fetches
+	 */
+	public long getFetchCount() {
+		return fetchCount.get();
+	}
+
+	/**
+	 * Returns the number of fetches that did not find any data.
+	 *
+	 * @return The number of failed fetches
+	 */
+	public long getFailedFetchCount() {
+		return failedFetchCount.get();
+	}
+
+	/**
+	 * Returns the number of directory and image inserts.
+	 *
+	 * @return The number of inserts
+	 */
+	public long getInsertCount() {
+		return insertCount.get();
+	}
+
+	/**
+	 * Returns the latest edition that has been inserted for the given request
+	 * URI.
+	 *
+	 * @param requestUri
+	 *            The request URI
+	 * @return The latest edition, or {@code -1} if nothing has been inserted
+	 */
+	public long getLatestEdition(FreenetURI requestUri) {
+		synchronized (editions) {
+			SortedMap<Long, Map<String, StoredFile>> uriEditions = editions.get(getRoutingKey(requestUri));
+			return ((uriEditions == null) || uriEditions.isEmpty()) ? -1 : uriEditions.lastKey();
+		}
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Stores a single file as a new edition of the given request URI, as if
+	 * it had been inserted by another node, and notifies all subscribers.
+	 *
+	 * @param requestUri
+	 *            The request URI
+	 * @param edition
+	 *            The edition
+	 * @param name
+	 *            The name of the file
+	 * @param contentType
+	 *            The content type of the file
+	 * @param data
+	 *            The content of the file
+	 */
+	public void publish(FreenetURI requestUri, long edition, String name, String contentType, byte[] data) {
+		Map<String, StoredFile> files = new HashMap<String, StoredFile>();
+		files.put(name, new StoredFile(contentType, data));
+		publish(getRoutingKey(requestUri), edition, files);
+	}
+
+	/**
+	 * Stops the simulated Freenet interface.
+	 */
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	//
+	// INTERFACE FreenetInterface
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Fetched fetchUri(FreenetURI uri) {
+		simulateLatency();
+		fetchCount.incrementAndGet();
+		long edition = uri.getEdition();
+		StoredFile storedFile = null;
+		synchronized (editions) {
+			SortedMap<Long, Map<String, StoredFile>> uriEditions = editions.get(getRoutingKey(uri));
+			if (uriEditions != null) {
+				if (uri.getKeyType().equals("USK") && !uriEditions.tailMap(edition).isEmpty()) {
+					/* USKs always find the latest edition. */
+					edition = uriEditions.lastKey();
+				}
+				Map<String, StoredFile> files = uriEditions.get(edition);
+				if (files != null) {
+					String[] metaStrings = uri.getAllMetaStrings();
+					storedFile = files.get(((metaStrings != null) && (metaStrings.length > 0)) ? metaStrings[0] : "index.html");
+				}
+			}
+		}
+		if (storedFile == null) {
+			failedFetchCount.incrementAndGet();
+			logger.log(Level.FINE, String.format("Could not fetch “%s”!", uri));
+			return null;
+		}
+		FreenetURI fetchedUri = uri.getKeyType().equals("USK") ? uri.setSuggestedEdition(edition) : uri;
+		return new Fetched(fetchedUri, new FetchResult(new ClientMetadata(storedFile.getContentType()), new ArrayBucket(storedFile.getData())));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[] generateKeyPair() {
+		byte[] routingKey = new byte[32];
+		byte[] insertRoutingKey = new byte[32];
+		byte[] cryptoKey = new byte[32];
+		synchronized (random) {
+			random.nextBytes(routingKey);
+			random.nextBytes(insertRoutingKey);
+			random.nextBytes(cryptoKey);
+		}
+		String requestUri = "SSK@" + Base64.encode(routingKey) + "," + Base64.encode(cryptoKey) + ",AQACAAE/";
+		String insertUri = "SSK@" + Base64.encode(insertRoutingKey) + "," + Base64.encode(cryptoKey) + ",AQECAAE/";
+		try {
+			synchronized (editions) {
+				requestUris.put(Base64.encode(insertRoutingKey), new FreenetURI(requestUri));
+			}
+		} catch (MalformedURLException mue1) {
+			throw new IllegalStateException("Generated invalid request URI: " + requestUri, mue1);
+		}
+		return new String[] { requestUri, insertUri };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InsertToken insertImage(TemporaryImage temporaryImage, final Image image, final ImageInsertListener imageInsertListener) throws SoneException {
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		imageInsertListener.imageInsertStarted(image);
+		executor.execute(new Runnable() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void run() {
+				simulateLatency();
+				if (cancelled.get()) {
+					return;
+				}
+				insertCount.incrementAndGet();
+				imageInsertListener.imageInsertProgressed(image, 1, 1);
+				imageInsertListener.imageInsertFinished(image, createChk(image.getId()));
+			}
+		});
+		return new InsertToken() {
+
+			@Override
+			public void cancel() {
+				if (!cancelled.getAndSet(true)) {
+					imageInsertListener.imageInsertAborted(image);
+				}
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public FreenetURI insertDirectory(FreenetURI insertUri, HashMap<String, Object> manifestEntries, String defaultFile) throws SoneException {
+		simulateLatency();
+		Map<String, StoredFile> files = new HashMap<String, StoredFile>();
+		for (Entry<String, Object> manifestEntry : manifestEntries.entrySet()) {
+			ManifestElement manifestElement = (ManifestElement) manifestEntry.getValue();
+			try {
+				files.put(manifestEntry.getKey(), new StoredFile(manifestElement.getMimeTypeOverride(), BucketTools.toByteArray(manifestElement.getData())));
+			} catch (IOException ioe1) {
+				throw new SoneException("Could not read manifest entry " + manifestEntry.getKey(), ioe1);
+			}
+		}
+		if (files.containsKey(defaultFile)) {
+			files.put("index.html", files.get(defaultFile));
+		}
+		FreenetURI requestUri;
+		long edition;
+		synchronized (editions) {
+			requestUri = requestUris.get(getRoutingKey(insertUri));
+			if (requestUri == null) {
+				throw new SoneException("Unknown insert key: " + insertUri);
+			}
+			edition = Math.max(insertUri.getSuggestedEdition(), getLatestEdition(requestUri) + 1);
+			publish(getRoutingKey(requestUri), edition, files);
+		}
+		insertCount.incrementAndGet();
+		return requestUri.setKeyType("USK").setDocName(insertUri.getDocName()).setSuggestedEdition(edition);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerUsk(Sone sone, SoneDownloader soneDownloader) {
+		SoneSubscription soneSubscription = new SoneSubscription(sone, soneDownloader);
+		long latestEdition;
+		synchronized (editions) {
+			soneSubscriptions.put(getRoutingKey(sone.getRequestUri()), soneSubscription);
+			latestEdition = getLatestEdition(sone.getRequestUri());
+		}
+		if (latestEdition > -1) {
+			notifySoneSubscription(soneSubscription, latestEdition);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unregisterUsk(Sone sone) {
+		synchronized (editions) {
+			soneSubscriptions.remove(getRoutingKey(sone.getRequestUri()));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerUsk(FreenetURI uri, Callback callback) {
+		synchronized (editions) {
+			uriSubscriptions.put(uri, callback);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unregisterUsk(FreenetURI uri) {
+		synchronized (editions) {
+			uriSubscriptions.remove(uri);
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Stores the given files as the given edition and notifies the
+	 * subscribers of the routing key.
+	 *
+	 * @param routingKey
+	 *            The routing key of the request URI
+	 * @param edition
+	 *            The edition
+	 * @param files
+	 *            The files of the edition
+	 */
+	private void publish(String routingKey, final long edition, Map<String, StoredFile> files) {
+		SoneSubscription soneSubscription;
+		Map<FreenetURI, Callback> callbacks = new HashMap<FreenetURI, Callback>();
+		synchronized (editions) {
+			SortedMap<Long, Map<String, StoredFile>> uriEditions = editions.get(routingKey);
+			if (uriEditions == null) {
+				uriEditions = new TreeMap<Long, Map<String, StoredFile>>();
+				editions.put(routingKey, uriEditions);
+			}
+			uriEditions.put(edition, files);
+			soneSubscription = soneSubscriptions.get(routingKey);
+			for (Entry<FreenetURI, Callback> uriSubscription : uriSubscriptions.entrySet()) {
+				if (routingKey.equals(getRoutingKey(uriSubscription.getKey()))) {
+					callbacks.put(uriSubscription.getKey(), uriSubscription.getValue());
+				}
+			}
+		}
+		if (soneSubscription != null) {
+			notifySoneSubscription(soneSubscription, edition);
+		}
+		for (final Entry<FreenetURI, Callback> callback : callbacks.entrySet()) {
+			executor.execute(new Runnable() {
+
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public void run() {
+					simulateLatency();
+					callback.getValue().editionFound(callback.getKey().setSuggestedEdition(edition), edition, true, true);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Notifies the Sone downloader of the given subscription about a new
+	 * edition of the Sone, the same way the node’s USK manager would.
+	 *
+	 * @param soneSubscription
+	 *            The Sone subscription to notify
+	 * @param edition
+	 *            The found edition
+	 */
+	private void notifySoneSubscription(final SoneSubscription soneSubscription, final long edition) {
+		executor.execute(new Runnable() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void run() {
+				simulateLatency();
+				Sone sone = soneSubscription.getSone();
+				if (edition > sone.getLatestEdition()) {
+					sone.setLatestEdition(edition);
+					soneSubscription.getSoneDownloader().fetchSone(sone);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sleeps for a random time between the minimum and the maximum latency.
+	 */
+	private void simulateLatency() {
+		long latency = minimumLatency;
+		if (maximumLatency > minimumLatency) {
+			synchronized (random) {
+				latency += (long) (random.nextDouble() * (maximumLatency - minimumLatency));
+			}
+		}
+		if (latency > 0) {
+			Uninterruptibles.sleepUninterruptibly(latency, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Creates a random CHK with the given filename.
+	 *
+	 * @param filename
+	 *            The filename of the CHK
+	 * @return The created CHK
+	 */
+	private FreenetURI createChk(String filename) {
+		byte[] routingKey = new byte[32];
+		byte[] cryptoKey = new byte[32];
+		synchronized (random) {
+			random.nextBytes(routingKey);
+			random.nextBytes(cryptoKey);
+		}
+		try {
+			return new FreenetURI("CHK@" + Base64.encode(routingKey) + "," + Base64.encode(cryptoKey) + ",AAMC--8/" + filename);
+		} catch (MalformedURLException mue1) {
+			throw new IllegalStateException("Generated invalid CHK.", mue1);
+		}
+	}
+
+	/**
+	 * Returns the routing key of the given URI.
+	 *
+	 * @param uri
+	 *            The URI
+	 * @return The routing key of the URI, in Freenet’s Base64 encoding
+	 */
+	private static String getRoutingKey(FreenetURI uri) {
+		return Base64.encode(uri.getRoutingKey());
+	}
+
+	/**
+	 * A file of an inserted edition.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class StoredFile {
+
+		/** The content type of the file. */
+		private final String contentType;
+
+		/** The content of the file. */
+		private final byte[] data;
+
+		/**
+		 * Creates a new stored file.
+		 *
+		 * @param contentType
+		 *            The content type of the file
+		 * @param data
+		 *            The content of the file
+		 */
+		public StoredFile(String contentType, byte[] data) {
+			this.contentType = contentType;
+			this.data = data;
+		}
+
+		/**
+		 * Returns the content type of the file.
+		 *
+		 * @return The content type of the file
+		 */
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * Returns the content of the file.
+		 *
+		 * @return The content of the file
+		 */
+		public byte[] getData() {
+			return data;
+		}
+
+	}
+
+	/**
+	 * The USK subscription of a Sone.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class SoneSubscription {
+
+		/** The subscribed Sone. */
+		private final Sone sone;
+
+		/** The Sone downloader to notify. */
+		private final SoneDownloader soneDownloader;
+
+		/**
+		 * Creates a new Sone subscription.
+		 *
+		 * @param sone
+		 *            The subscribed Sone
+		 * @param soneDownloader
+		 *            The Sone downloader to notify
+		 */
+		public SoneSubscription(Sone sone, SoneDownloader soneDownloader) {
+			this.sone = sone;
+			this.soneDownloader = soneDownloader;
+		}
+
+		/**
+		 * Returns the subscribed Sone.
+		 *
+		 * @return The subscribed Sone
+		 */
+		public Sone getSone() {
+			return sone;
+		}
+
+		/**
+		 * Returns the Sone downloader to notify.
+		 *
+		 * @return The Sone downloader to notify
+		 */
+		public SoneDownloader getSoneDownloader() {
+			return soneDownloader;
+		}
+
+	}
+
+}
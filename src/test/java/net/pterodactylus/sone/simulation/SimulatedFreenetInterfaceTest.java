@@ -0,0 +1,118 @@
+/*
+ * Sone - SimulatedFreenetInterfaceTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Random;
+
+import net.pterodactylus.sone.core.FreenetInterface.Fetched;
+import net.pterodactylus.sone.core.SoneDownloader;
+import net.pterodactylus.sone.core.SoneException;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.freenet.StringBucket;
+
+import com.google.common.base.Charsets;
+
+import freenet.client.async.ManifestElement;
+import freenet.keys.FreenetURI;
+import freenet.support.io.BucketTools;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SimulatedFreenetInterface}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SimulatedFreenetInterfaceTest {
+
+	private final SimulatedFreenetInterface freenetInterface = new SimulatedFreenetInterface(new Random(0));
+
+	@After
+	public void stopFreenetInterface() {
+		freenetInterface.stop();
+	}
+
+	@Test
+	public void testInsertedDirectoryCanBeFetchedWithRequestUri() throws MalformedURLException, SoneException, IOException {
+		String[] keyPair = freenetInterface.generateKeyPair();
+		FreenetURI insertUri = new FreenetURI(keyPair[1]).setKeyType("USK").setDocName("Sone").setSuggestedEdition(0);
+
+		FreenetURI resultingUri = freenetInterface.insertDirectory(insertUri, createManifestEntries("sone.xml", "<sone/>"), "sone.xml");
+		Fetched fetched = freenetInterface.fetchUri(resultingUri.sskForUSK().setMetaString(new String[] { "sone.xml" }));
+
+		assertThat(resultingUri.getEdition(), is(0L));
+		assertThat(new String(BucketTools.toByteArray(fetched.getFetchResult().asBucket()), Charsets.UTF_8), is("<sone/>"));
+	}
+
+	@Test
+	public void testUskFetchFindsLatestEdition() throws MalformedURLException, SoneException {
+		String[] keyPair = freenetInterface.generateKeyPair();
+		FreenetURI insertUri = new FreenetURI(keyPair[1]).setKeyType("USK").setDocName("Sone").setSuggestedEdition(0);
+		freenetInterface.insertDirectory(insertUri, createManifestEntries("sone.xml", "<sone/>"), "sone.xml");
+		FreenetURI resultingUri = freenetInterface.insertDirectory(insertUri, createManifestEntries("sone.xml", "<sone/>"), "sone.xml");
+
+		Fetched fetched = freenetInterface.fetchUri(resultingUri.setSuggestedEdition(0).setMetaString(new String[] { "sone.xml" }));
+
+		assertThat(fetched.getFreenetUri().getEdition(), is(1L));
+	}
+
+	@Test
+	public void testFetchingUnknownUriReturnsNull() throws MalformedURLException {
+		FreenetURI requestUri = new FreenetURI(freenetInterface.generateKeyPair()[0]).setKeyType("USK").setDocName("Sone").setSuggestedEdition(0);
+
+		assertThat(freenetInterface.fetchUri(requestUri.setMetaString(new String[] { "sone.xml" })), nullValue());
+		assertThat(freenetInterface.getFailedFetchCount(), is(1L));
+	}
+
+	@Test
+	public void testPublishedEditionNotifiesSoneDownloader() throws MalformedURLException {
+		FreenetURI requestUri = new FreenetURI(freenetInterface.generateKeyPair()[0]).setKeyType("USK").setDocName("Sone").setSuggestedEdition(0);
+		Sone sone = mock(Sone.class);
+		when(sone.getRequestUri()).thenReturn(requestUri);
+		SoneDownloader soneDownloader = mock(SoneDownloader.class);
+		freenetInterface.registerUsk(sone, soneDownloader);
+
+		freenetInterface.publish(requestUri, 3, "sone.xml", "text/xml", "<sone/>".getBytes(Charsets.UTF_8));
+
+		verify(soneDownloader, timeout(1000)).fetchSone(sone);
+		verify(sone).setLatestEdition(3);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static HashMap<String, Object> createManifestEntries(String name, String content) {
+		HashMap<String, Object> manifestEntries = new HashMap<String, Object>();
+		StringBucket bucket = new StringBucket(content, Charsets.UTF_8);
+		manifestEntries.put(name, new ManifestElement(name, bucket, "text/xml", bucket.size()));
+		return manifestEntries;
+	}
+
+}
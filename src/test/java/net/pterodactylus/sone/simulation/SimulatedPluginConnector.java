@@ -0,0 +1,500 @@
+/*
+ * Sone - SimulatedPluginConnector.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.pterodactylus.sone.freenet.plugin.PluginConnector;
+import net.pterodactylus.sone.freenet.plugin.PluginException;
+import net.pterodactylus.sone.freenet.plugin.event.ReceivedReplyEvent;
+import net.pterodactylus.util.thread.NamedThreadFactory;
+
+import com.google.common.eventbus.EventBus;
+
+import freenet.support.SimpleFieldSet;
+import freenet.support.api.Bucket;
+
+/**
+ * {@link PluginConnector} implementation that simulates the Web of Trust
+ * plugin. Identities, their contexts and properties, and the trust values
+ * between them are kept in memory; every request is answered with the reply
+ * the Web of Trust plugin would send, delayed by a configurable latency.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SimulatedPluginConnector implements PluginConnector {
+
+	/** The name of the Web of Trust plugin. */
+	public static final String WOT_PLUGIN_NAME = "plugins.WebOfTrust.WebOfTrust";
+
+	/** The event bus. */
+	private final EventBus eventBus;
+
+	/** The random number generator for latencies. */
+	private final Random random;
+
+	/** The executor that delivers the replies. */
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("Simulated Web of Trust %2$d"));
+
+	/** All identities, by ID. */
+	/* synchronize access on itself. */
+	private final Map<String, SimulatedIdentity> identities = new LinkedHashMap<String, SimulatedIdentity>();
+
+	/** The trust values, by truster ID and trustee ID. */
+	/* synchronize access on identities. */
+	private final Map<String, Map<String, Integer>> trusts = new HashMap<String, Map<String, Integer>>();
+
+	/** The minimum latency of a request (in milliseconds). */
+	private volatile long minimumLatency;
+
+	/** The maximum latency of a request (in milliseconds). */
+	private volatile long maximumLatency;
+
+	/** The number of received requests. */
+	private final AtomicLong requestCount = new AtomicLong();
+
+	/**
+	 * Creates a new simulated plugin connector without latency.
+	 *
+	 * @param eventBus
+	 *            The event bus to post replies to
+	 * @param random
+	 *            The random number generator for latencies
+	 */
+	public SimulatedPluginConnector(EventBus eventBus, Random random) {
+		this.eventBus = eventBus;
+		this.random = random;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Sets the latency of all requests. Every reply will be sent after a
+	 * random time between the given minimum and maximum latency.
+	 *
+	 * @param minimumLatency
+	 *            The minimum latency (in milliseconds)
+	 * @param maximumLatency
+	 *            The maximum latency (in milliseconds)
+	 * @return This simulated plugin connector
+	 */
+	public SimulatedPluginConnector setLatency(long minimumLatency, long maximumLatency) {
+		this.minimumLatency = minimumLatency;
+		this.maximumLatency = Math.max(minimumLatency, maximumLatency);
+		return this;
+	}
+
+	/**
+	 * Returns the number of requests this connector has received.
+	 *
+	 * @return The number of received requests
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Adds an own identity.
+	 *
+	 * @param id
+	 *            The ID of the identity
+	 * @param nickname
+	 *            The nickname of the identity
+	 * @param requestUri
+	 *            The request URI of the identity
+	 * @param insertUri
+	 *            The insert URI of the identity
+	 * @param contexts
+	 *            The contexts of the identity
+	 */
+	public void addOwnIdentity(String id, String nickname, String requestUri, String insertUri, String... contexts) {
+		synchronized (identities) {
+			identities.put(id, new SimulatedIdentity(id, nickname, requestUri, insertUri, contexts));
+		}
+	}
+
+	/**
+	 * Adds an identity.
+	 *
+	 * @param id
+	 *            The ID of the identity
+	 * @param nickname
+	 *            The nickname of the identity
+	 * @param requestUri
+	 *            The request URI of the identity
+	 * @param contexts
+	 *            The contexts of the identity
+	 */
+	public void addIdentity(String id, String nickname, String requestUri, String... contexts) {
+		addOwnIdentity(id, nickname, requestUri, null, contexts);
+	}
+
+	/**
+	 * Sets the trust the given truster assigns to the given trustee.
+	 *
+	 * @param trusterId
+	 *            The ID of the truster
+	 * @param trusteeId
+	 *            The ID of the trustee
+	 * @param trust
+	 *            The trust value, or {@code null} to remove the trust
+	 */
+	public void setTrust(String trusterId, String trusteeId, Integer trust) {
+		synchronized (identities) {
+			Map<String, Integer> trusterTrusts = trusts.get(trusterId);
+			if (trusterTrusts == null) {
+				trusterTrusts = new HashMap<String, Integer>();
+				trusts.put(trusterId, trusterTrusts);
+			}
+			if (trust == null) {
+				trusterTrusts.remove(trusteeId);
+			} else {
+				trusterTrusts.put(trusteeId, trust);
+			}
+		}
+	}
+
+	/**
+	 * Stops this simulated plugin connector.
+	 */
+	public void stop() {
+		executor.shutdownNow();
+	}
+
+	//
+	// INTERFACE PluginConnector
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendRequest(String pluginName, String identifier, SimpleFieldSet fields) throws PluginException {
+		sendRequest(pluginName, identifier, fields, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void sendRequest(final String pluginName, final String identifier, final SimpleFieldSet fields, Bucket data) throws PluginException {
+		if (!WOT_PLUGIN_NAME.equals(pluginName)) {
+			throw new PluginException("Plugin not found: " + pluginName);
+		}
+		requestCount.incrementAndGet();
+		executor.schedule(new Runnable() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void run() {
+				eventBus.post(new ReceivedReplyEvent(SimulatedPluginConnector.this, pluginName, identifier, createReply(fields), null));
+			}
+		}, getLatency(), TimeUnit.MILLISECONDS);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates the reply the Web of Trust plugin would send for the given
+	 * request.
+	 *
+	 * @param fields
+	 *            The fields of the request
+	 * @return The fields of the reply
+	 */
+	private SimpleFieldSet createReply(SimpleFieldSet fields) {
+		String message = fields.get("Message");
+		SimpleFieldSet reply = new SimpleFieldSet(true);
+		synchronized (identities) {
+			if ("Ping".equals(message)) {
+				reply.putOverwrite("Message", "Pong");
+			} else if ("GetOwnIdentities".equals(message)) {
+				reply.putOverwrite("Message", "OwnIdentities");
+				int ownIdentityCounter = 0;
+				for (SimulatedIdentity identity : identities.values()) {
+					if (identity.getInsertUri() != null) {
+						putIdentity(reply, identity, ownIdentityCounter++);
+					}
+				}
+			} else if ("GetIdentitiesByScore".equals(message)) {
+				Map<String, Integer> trusterTrusts = trusts.get(fields.get("Truster"));
+				if (!identities.containsKey(fields.get("Truster"))) {
+					return createError(message, "Unknown truster");
+				}
+				String context = fields.get("Context");
+				reply.putOverwrite("Message", "Identities");
+				int identityCounter = 0;
+				if (trusterTrusts != null) {
+					for (Entry<String, Integer> trust : trusterTrusts.entrySet()) {
+						SimulatedIdentity identity = identities.get(trust.getKey());
+						if ((identity == null) || (trust.getValue() <= 0) || (((context != null) && (context.length() > 0)) && !identity.getContexts().contains(context))) {
+							continue;
+						}
+						putIdentity(reply, identity, identityCounter);
+						reply.putOverwrite("Trust" + identityCounter, String.valueOf(trust.getValue()));
+						reply.putOverwrite("Score" + identityCounter, String.valueOf(trust.getValue()));
+						reply.putOverwrite("Rank" + identityCounter, "1");
+						identityCounter++;
+					}
+				}
+			} else if ("AddContext".equals(message) || "RemoveContext".equals(message)) {
+				SimulatedIdentity identity = identities.get(fields.get("Identity"));
+				if (identity == null) {
+					return createError(message, "Unknown identity");
+				}
+				if ("AddContext".equals(message)) {
+					identity.getContexts().add(fields.get("Context"));
+					reply.putOverwrite("Message", "ContextAdded");
+				} else {
+					identity.getContexts().remove(fields.get("Context"));
+					reply.putOverwrite("Message", "ContextRemoved");
+				}
+			} else if ("GetProperty".equals(message)) {
+				SimulatedIdentity identity = identities.get(fields.get("Identity"));
+				if (identity == null) {
+					return createError(message, "Unknown identity");
+				}
+				reply.putOverwrite("Message", "PropertyValue");
+				String value = identity.getProperties().get(fields.get("Property"));
+				if (value != null) {
+					reply.putOverwrite("Property", value);
+				}
+			} else if ("SetProperty".equals(message) || "RemoveProperty".equals(message)) {
+				SimulatedIdentity identity = identities.get(fields.get("Identity"));
+				if (identity == null) {
+					return createError(message, "Unknown identity");
+				}
+				if ("SetProperty".equals(message)) {
+					identity.getProperties().put(fields.get("Property"), fields.get("Value"));
+					reply.putOverwrite("Message", "PropertyAdded");
+				} else {
+					identity.getProperties().remove(fields.get("Property"));
+					reply.putOverwrite("Message", "PropertyRemoved");
+				}
+			} else if ("GetIdentity".equals(message)) {
+				if (!identities.containsKey(fields.get("Truster")) || !identities.containsKey(fields.get("Identity"))) {
+					return createError(message, "Unknown identity");
+				}
+				Map<String, Integer> trusterTrusts = trusts.get(fields.get("Truster"));
+				Integer trust = (trusterTrusts != null) ? trusterTrusts.get(fields.get("Identity")) : null;
+				reply.putOverwrite("Message", "Identity");
+				reply.putOverwrite("Trust", (trust != null) ? String.valueOf(trust) : "null");
+				reply.putOverwrite("Score", (trust != null) ? String.valueOf(trust) : "null");
+				reply.putOverwrite("Rank", (trust != null) ? "1" : "null");
+			} else if ("SetTrust".equals(message) || "RemoveTrust".equals(message)) {
+				if (!identities.containsKey(fields.get("Truster")) || !identities.containsKey(fields.get("Trustee"))) {
+					return createError(message, "Unknown identity");
+				}
+				if ("SetTrust".equals(message)) {
+					setTrust(fields.get("Truster"), fields.get("Trustee"), Integer.valueOf(fields.get("Value")));
+					reply.putOverwrite("Message", "TrustSet");
+				} else {
+					setTrust(fields.get("Truster"), fields.get("Trustee"), null);
+					reply.putOverwrite("Message", "TrustRemoved");
+				}
+			} else {
+				return createError(message, "Unknown message");
+			}
+		}
+		return reply;
+	}
+
+	/**
+	 * Stores the given identity in the given reply, using the format of the
+	 * “OwnIdentities” and “Identities” replies.
+	 *
+	 * @param reply
+	 *            The reply to store the identity in
+	 * @param identity
+	 *            The identity to store
+	 * @param index
+	 *            The index of the identity in the reply
+	 */
+	private static void putIdentity(SimpleFieldSet reply, SimulatedIdentity identity, int index) {
+		reply.putOverwrite("Identity" + index, identity.getId());
+		reply.putOverwrite("Nickname" + index, identity.getNickname());
+		reply.putOverwrite("RequestURI" + index, identity.getRequestUri());
+		if (identity.getInsertUri() != null) {
+			reply.putOverwrite("InsertURI" + index, identity.getInsertUri());
+		}
+		int contextCounter = 0;
+		for (String context : identity.getContexts()) {
+			reply.putOverwrite("Contexts" + index + ".Context" + contextCounter++, context);
+		}
+		int propertyCounter = 0;
+		for (Entry<String, String> property : identity.getProperties().entrySet()) {
+			reply.putOverwrite("Properties" + index + ".Property" + propertyCounter + ".Name", property.getKey());
+			reply.putOverwrite("Properties" + index + ".Property" + propertyCounter++ + ".Value", property.getValue());
+		}
+	}
+
+	/**
+	 * Creates an error reply.
+	 *
+	 * @param message
+	 *            The name of the request message
+	 * @param description
+	 *            The description of the error
+	 * @return The error reply
+	 */
+	private static SimpleFieldSet createError(String message, String description) {
+		SimpleFieldSet reply = new SimpleFieldSet(true);
+		reply.putOverwrite("Message", "Error");
+		reply.putOverwrite("OriginalMessage", message);
+		reply.putOverwrite("Description", description);
+		return reply;
+	}
+
+	/**
+	 * Returns a random latency between the minimum and the maximum latency.
+	 *
+	 * @return The latency of a request (in milliseconds)
+	 */
+	private long getLatency() {
+		if (maximumLatency <= minimumLatency) {
+			return minimumLatency;
+		}
+		synchronized (random) {
+			return minimumLatency + (long) (random.nextDouble() * (maximumLatency - minimumLatency));
+		}
+	}
+
+	/**
+	 * An identity of the simulated Web of Trust.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	private static class SimulatedIdentity {
+
+		/** The ID of the identity. */
+		private final String id;
+
+		/** The nickname of the identity. */
+		private final String nickname;
+
+		/** The request URI of the identity. */
+		private final String requestUri;
+
+		/** The insert URI of the identity, or {@code null} for other identities. */
+		private final String insertUri;
+
+		/** The contexts of the identity. */
+		private final Set<String> contexts;
+
+		/** The properties of the identity. */
+		private final Map<String, String> properties = new HashMap<String, String>();
+
+		/**
+		 * Creates a new simulated identity.
+		 *
+		 * @param id
+		 *            The ID of the identity
+		 * @param nickname
+		 *            The nickname of the identity
+		 * @param requestUri
+		 *            The request URI of the identity
+		 * @param insertUri
+		 *            The insert URI of the identity, or {@code null} if the
+		 *            identity is not an own identity
+		 * @param contexts
+		 *            The contexts of the identity
+		 */
+		public SimulatedIdentity(String id, String nickname, String requestUri, String insertUri, String... contexts) {
+			this.id = id;
+			this.nickname = nickname;
+			this.requestUri = requestUri;
+			this.insertUri = insertUri;
+			this.contexts = new HashSet<String>(Arrays.asList(contexts));
+		}
+
+		/**
+		 * Returns the ID of the identity.
+		 *
+		 * @return The ID of the identity
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * Returns the nickname of the identity.
+		 *
+		 * @return The nickname of the identity
+		 */
+		public String getNickname() {
+			return nickname;
+		}
+
+		/**
+		 * Returns the request URI of the identity.
+		 *
+		 * @return The request URI of the identity
+		 */
+		public String getRequestUri() {
+			return requestUri;
+		}
+
+		/**
+		 * Returns the insert URI of the identity.
+		 *
+		 * @return The insert URI of the identity, or {@code null} for other identities
+		 */
+		public String getInsertUri() {
+			return insertUri;
+		}
+
+		/**
+		 * Returns the contexts of the identity.
+		 *
+		 * @return The contexts of the identity
+		 */
+		public Set<String> getContexts() {
+			return contexts;
+		}
+
+		/**
+		 * Returns the properties of the identity.
+		 *
+		 * @return The properties of the identity
+		 */
+		public Map<String, String> getProperties() {
+			return properties;
+		}
+
+	}
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Sone - SoneXmlGenerator.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import net.pterodactylus.sone.main.SonePlugin;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Generates synthetic sone.xml payloads. Posts and replies are derived from
+ * the ID of the Sone and their index so that every edition of a Sone
+ * contains the posts and replies of all earlier editions unchanged; replies,
+ * likes, recipients and mentions refer to the posts of other Sones.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class SoneXmlGenerator {
+
+	/** The words used to generate texts. */
+	private static final String[] WORDS = { "the", "node", "is", "a", "freenet", "post", "reply", "sone", "about", "with", "slow", "fast", "and", "or", "not", "today", "image", "album", "trust", "identity", "network", "update", "insert", "fetch", "key" };
+
+	/** The IDs of all Sones that can be referenced. */
+	private final List<String> soneIds = new ArrayList<String>();
+
+	/**
+	 * Creates a new Sone XML generator.
+	 *
+	 * @param soneIds
+	 *            The IDs of all Sones that generated Sones can reference
+	 */
+	public SoneXmlGenerator(List<String> soneIds) {
+		this.soneIds.addAll(soneIds);
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Generates the sone.xml of a Sone.
+	 *
+	 * @param soneId
+	 *            The ID of the Sone
+	 * @param time
+	 *            The time of the Sone
+	 * @param postCount
+	 *            The number of posts of the Sone
+	 * @param replyCount
+	 *            The number of replies of the Sone
+	 * @param likeCount
+	 *            The number of liked posts of the Sone
+	 * @return The encoded sone.xml
+	 */
+	public byte[] generateSoneXml(String soneId, long time, int postCount, int replyCount, int likeCount) {
+		StringBuilder soneXml = new StringBuilder();
+		soneXml.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<sone>\n");
+		soneXml.append("<time>").append(time).append("</time>\n");
+		soneXml.append("<protocol-version>0</protocol-version>\n");
+		soneXml.append("<client><name>Sone</name><version>").append(SonePlugin.VERSION).append("</version></client>\n");
+		soneXml.append("<profile><first-name>").append(soneId.substring(0, 8)).append("</first-name><fields></fields></profile>\n");
+		soneXml.append("<posts>\n");
+		for (int postIndex = 0; postIndex < postCount; ++postIndex) {
+			Random random = createRandom(soneId, "Post", postIndex);
+			soneXml.append("<post><id>").append(getPostId(soneId, postIndex)).append("</id>");
+			soneXml.append("<recipient>");
+			if (random.nextInt(10) == 0) {
+				soneXml.append(getRandomSoneId(random));
+			}
+			soneXml.append("</recipient>");
+			soneXml.append("<time>").append(time - (postCount - postIndex) * 60000L).append("</time>");
+			soneXml.append("<text>").append(generateText(random)).append("</text></post>\n");
+		}
+		soneXml.append("</posts>\n<replies>\n");
+		for (int replyIndex = 0; replyIndex < replyCount; ++replyIndex) {
+			Random random = createRandom(soneId, "Reply", replyIndex);
+			soneXml.append("<reply><id>").append(getReplyId(soneId, replyIndex)).append("</id>");
+			soneXml.append("<post-id>").append(getPostId(getRandomSoneId(random), random.nextInt(Math.max(1, postCount)))).append("</post-id>");
+			soneXml.append("<time>").append(time - (replyCount - replyIndex) * 30000L).append("</time>");
+			soneXml.append("<text>").append(generateText(random)).append("</text></reply>\n");
+		}
+		soneXml.append("</replies>\n<post-likes>\n");
+		for (int likeIndex = 0; likeIndex < likeCount; ++likeIndex) {
+			Random random = createRandom(soneId, "Like", likeIndex);
+			soneXml.append("<post-like>").append(getPostId(getRandomSoneId(random), random.nextInt(Math.max(1, postCount)))).append("</post-like>\n");
+		}
+		soneXml.append("</post-likes>\n<reply-likes>\n</reply-likes>\n</sone>\n");
+		return soneXml.toString().getBytes(Charsets.UTF_8);
+	}
+
+	//
+	// STATIC METHODS
+	//
+
+	/**
+	 * Returns the ID of the post with the given index of the given Sone.
+	 *
+	 * @param soneId
+	 *            The ID of the Sone
+	 * @param postIndex
+	 *            The index of the post
+	 * @return The ID of the post
+	 */
+	public static String getPostId(String soneId, int postIndex) {
+		return UUID.nameUUIDFromBytes((soneId + "/Post/" + postIndex).getBytes(Charsets.UTF_8)).toString();
+	}
+
+	/**
+	 * Returns the ID of the reply with the given index of the given Sone.
+	 *
+	 * @param soneId
+	 *            The ID of the Sone
+	 * @param replyIndex
+	 *            The index of the reply
+	 * @return The ID of the reply
+	 */
+	public static String getReplyId(String soneId, int replyIndex) {
+		return UUID.nameUUIDFromBytes((soneId + "/Reply/" + replyIndex).getBytes(Charsets.UTF_8)).toString();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates a random number generator that always generates the same
+	 * numbers for the same element of the same Sone.
+	 *
+	 * @param soneId
+	 *            The ID of the Sone
+	 * @param type
+	 *            The type of the element
+	 * @param index
+	 *            The index of the element
+	 * @return The random number generator for the element
+	 */
+	private static Random createRandom(String soneId, String type, int index) {
+		return new Random(((soneId.hashCode() * 31L) + type.hashCode()) * 31L + index);
+	}
+
+	/**
+	 * Returns the ID of a random Sone.
+	 *
+	 * @param random
+	 *            The random number generator to use
+	 * @return The ID of a random Sone
+	 */
+	private String getRandomSoneId(Random random) {
+		return soneIds.get(random.nextInt(soneIds.size()));
+	}
+
+	/**
+	 * Generates a text of random words that sometimes mentions another Sone.
+	 *
+	 * @param random
+	 *            The random number generator to use
+	 * @return The generated text
+	 */
+	private String generateText(Random random) {
+		StringBuilder text = new StringBuilder();
+		int wordCount = 8 + random.nextInt(32);
+		for (int wordIndex = 0; wordIndex < wordCount; ++wordIndex) {
+			if (wordIndex > 0) {
+				text.append(' ');
+			}
+			if (random.nextInt(50) == 0) {
+				text.append("sone://").append(getRandomSoneId(random));
+			} else {
+				text.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+		}
+		return text.toString();
+	}
+
+}
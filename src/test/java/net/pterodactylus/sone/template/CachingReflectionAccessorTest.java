@@ -0,0 +1,89 @@
+/*
+ * Sone - CachingReflectionAccessorTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.template;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CachingReflectionAccessor}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class CachingReflectionAccessorTest {
+
+	/** The accessor under test. */
+	private final CachingReflectionAccessor accessor = new CachingReflectionAccessor();
+
+	@Test
+	public void testMembersAreResolvedInOrder() {
+		Bean bean = new Bean();
+		assertThat(accessor.get(null, bean, "name"), is((Object) "getName"));
+		assertThat(accessor.get(null, bean, "visible"), is((Object) true));
+		assertThat(accessor.get(null, bean, "size"), is((Object) 3));
+		assertThat(accessor.get(null, bean, "value"), is((Object) "getValue"));
+	}
+
+	@Test
+	public void testUnknownMembersAndNullObjectsResolveToNull() {
+		assertThat(accessor.get(null, new Bean(), "unknown"), nullValue());
+		assertThat(accessor.get(null, new Bean(), ""), nullValue());
+		assertThat(accessor.get(null, null, "name"), nullValue());
+	}
+
+	@Test
+	public void testMethodsAreOnlyResolvedOnce() {
+		assertThat(CachingReflectionAccessor.getMethod(Bean.class, "name").get(), sameInstance(CachingReflectionAccessor.getMethod(Bean.class, "name").get()));
+		assertThat(CachingReflectionAccessor.getMethod(Bean.class, "unknown").isPresent(), is(false));
+	}
+
+	/**
+	 * Non-public class with members that can be resolved by the accessor.
+	 *
+	 * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+	 */
+	@SuppressWarnings("static-method")
+	private static class Bean {
+
+		public String getName() {
+			return "getName";
+		}
+
+		public boolean isVisible() {
+			return true;
+		}
+
+		public int size() {
+			return 3;
+		}
+
+		public String getValue() {
+			return "getValue";
+		}
+
+		public String value() {
+			return "value";
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * © 2013 xplosion interactive
+ */
+
+package net.pterodactylus.sone.web;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.UpdateChecker;
+import net.pterodactylus.sone.core.event.SoneInsertingEvent;
+import net.pterodactylus.sone.core.event.SoneOptionsChangedEvent;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.sone.notify.ListNotification;
+import net.pterodactylus.util.notify.NotificationManager;
+import net.pterodactylus.util.template.Template;
+
+import com.google.common.eventbus.EventBus;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ChromeContextCache}.
+ *
+ * @author <a href="mailto:d.roden@xplosion.de">David Roden</a>
+ */
+public class ChromeContextCacheTest {
+
+	private final Core core = mock(Core.class);
+	private final MetricRegistry metricRegistry = new MetricRegistry();
+	private final EventBus eventBus = new EventBus();
+	private final TrustCache trustCache = mock(TrustCache.class);
+	private final NotificationManager notificationManager = new NotificationManager();
+	private final Sone sone = mock(Sone.class);
+	private ChromeContextCache chromeContextCache;
+
+	@Before
+	public void setup() {
+		when(core.getMetricRegistry()).thenReturn(metricRegistry);
+		when(core.getLocalSones()).thenReturn(Collections.<Sone> emptySet());
+		when(core.getUpdateChecker()).thenReturn(mock(UpdateChecker.class));
+		when(core.getTrustCache()).thenReturn(trustCache);
+		when(sone.getId()).thenReturn("sone");
+		when(sone.getFriends()).thenReturn(asList("friend"));
+		chromeContextCache = new ChromeContextCache(core, notificationManager);
+		eventBus.register(chromeContextCache);
+	}
+
+	@Test
+	public void testChromeContextIsReusedUntilItIsOutdated() {
+		ChromeContext chromeContext = chromeContextCache.getChromeContext(sone);
+		assertThat(chromeContextCache.getChromeContext(sone), sameInstance(chromeContext));
+
+		/* unrelated events and other Sones do not outdate it. */
+		eventBus.post(new SoneInsertingEvent(sone));
+		chromeContextCache.getChromeContext(null);
+		assertThat(chromeContextCache.getChromeContext(sone), sameInstance(chromeContext));
+		assertThat(metricRegistry.counter("ChromeContext.Hits").getValue(), is(2L));
+		assertThat(metricRegistry.counter("ChromeContext.Misses").getValue(), is(2L));
+
+		/* trust and option changes do. */
+		when(trustCache.getVersion()).thenReturn(1L);
+		ChromeContext newChromeContext = chromeContextCache.getChromeContext(sone);
+		assertThat(newChromeContext, not(sameInstance(chromeContext)));
+		eventBus.post(new SoneOptionsChangedEvent(sone));
+		assertThat(chromeContextCache.getChromeContext(sone), not(sameInstance(newChromeContext)));
+		assertThat(metricRegistry.counter("ChromeContext.Misses").getValue(), is(4L));
+	}
+
+	@Test
+	public void testChromeContextIsOutdatedByLocalSonesAndFriends() {
+		ChromeContext chromeContext = chromeContextCache.getChromeContext(sone);
+		when(core.getLocalSonesVersion()).thenReturn(1L);
+		ChromeContext newChromeContext = chromeContextCache.getChromeContext(sone);
+		assertThat(newChromeContext, not(sameInstance(chromeContext)));
+		when(sone.getFriends()).thenReturn(asList("friend", "other-friend"));
+		assertThat(chromeContextCache.getChromeContext(sone), not(sameInstance(newChromeContext)));
+		assertThat(metricRegistry.counter("ChromeContext.Hits").getValue(), is(0L));
+	}
+
+	@Test
+	public void testChromeContextExpiresWhenAFuturePostBecomesVisible() throws InterruptedException {
+		Post post = mock(Post.class);
+		when(post.getTime()).thenReturn(System.currentTimeMillis() + 500);
+		ListNotification<Post> notification = new ListNotification<Post>("test-notification", "posts", new Template());
+		notification.add(post);
+		notificationManager.addNotification(notification);
+
+		ChromeContext chromeContext = chromeContextCache.getChromeContext(null);
+		assertThat(chromeContextCache.getChromeContext(null), sameInstance(chromeContext));
+		Thread.sleep(600);
+		assertThat(chromeContextCache.getChromeContext(null), not(sameInstance(chromeContext)));
+	}
+
+}
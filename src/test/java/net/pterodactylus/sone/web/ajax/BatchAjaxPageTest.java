@@ -0,0 +1,128 @@
+/*
+ * © 2013 xplosion interactive
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.util.template.Template;
+import net.pterodactylus.util.template.TemplateContext;
+import net.pterodactylus.util.template.TemplateContextFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import freenet.clients.http.HTTPRequestImpl;
+import freenet.clients.http.ToadletContext;
+import freenet.support.api.HTTPRequest;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BatchAjaxPage}.
+ *
+ * @author <a href="mailto:d.roden@xplosion.de">David Roden</a>
+ */
+public class BatchAjaxPageTest {
+
+	@Test
+	public void testLikesOfExistingAndMissingPosts() throws URISyntaxException {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		Post post = mock(Post.class);
+		Sone likingSone = mock(Sone.class);
+		when(likingSone.getId()).thenReturn("sone");
+		when(likingSone.getProfile()).thenReturn(mock(Profile.class));
+		when(likingSone.getName()).thenReturn("Sone");
+		when(core.getPost(anyString())).thenReturn(Optional.<Post>absent());
+		when(core.getPost("abc")).thenReturn(Optional.of(post));
+		when(core.getPostReply(anyString())).thenReturn(Optional.<PostReply>absent());
+		when(core.getLikes(post)).thenReturn(ImmutableSet.of(likingSone));
+		WebInterface webInterface = mock(WebInterface.class);
+		when(webInterface.getCore()).thenReturn(core);
+		when(webInterface.getCurrentSone(any(ToadletContext.class), anyBoolean())).thenReturn(mock(Sone.class));
+		TemplateContextFactory templateContextFactory = mock(TemplateContextFactory.class);
+		when(templateContextFactory.createTemplateContext()).thenReturn(new TemplateContext());
+		when(webInterface.getTemplateContextFactory()).thenReturn(templateContextFactory);
+		FreenetRequest request = createRequest("/ajax/batch.ajax?postLikes=abc,def");
+
+		/* create JSON page. */
+		BatchAjaxPage batchAjaxPage = new BatchAjaxPage(webInterface, mock(Template.class), mock(Template.class));
+		JsonReturnObject jsonReturnObject = batchAjaxPage.createJsonObject(request);
+
+		/* verify response. */
+		assertThat(jsonReturnObject, notNullValue());
+		assertThat(jsonReturnObject.isSuccess(), is(true));
+		assertThat(jsonReturnObject.get("postLikes").size(), is(1));
+		assertThat(jsonReturnObject.get("postLikes").get("abc").get("likes").asInt(), is(1));
+		assertThat(jsonReturnObject.get("postLikes").get("abc").get("sones").get(0).get("id").asText(), is("sone"));
+		assertThat(jsonReturnObject.get("postLikes").get("abc").get("sones").get(0).get("name").asText(), is("Sone"));
+		assertThat(jsonReturnObject.get("posts").size(), is(0));
+		assertThat(jsonReturnObject.get("replyLikes").size(), is(0));
+	}
+
+	@Test
+	public void testPostsAreNotReturnedWithoutLoggedInSone() throws URISyntaxException {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		WebInterface webInterface = mock(WebInterface.class);
+		when(webInterface.getCore()).thenReturn(core);
+		FreenetRequest request = createRequest("/ajax/batch.ajax?posts=abc&postLikes=abc");
+
+		/* create JSON page. */
+		BatchAjaxPage batchAjaxPage = new BatchAjaxPage(webInterface, mock(Template.class), mock(Template.class));
+		JsonReturnObject jsonReturnObject = batchAjaxPage.createJsonObject(request);
+
+		/* verify response. */
+		assertThat(jsonReturnObject, notNullValue());
+		assertThat(jsonReturnObject.isSuccess(), is(true));
+		assertThat(jsonReturnObject.get("postTimes").size(), is(0));
+		assertThat(jsonReturnObject.get("replyTimes").size(), is(0));
+		assertThat(jsonReturnObject.get("posts"), nullValue());
+		assertThat(jsonReturnObject.get("postLikes"), nullValue());
+
+		/* verify behaviour. */
+		verify(core, never()).getPost(anyString());
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates a request for the given URI.
+	 *
+	 * @param uri
+	 *            The URI of the request
+	 * @return The request
+	 * @throws URISyntaxException
+	 *             if the URI is not valid
+	 */
+	private static FreenetRequest createRequest(String uri) throws URISyntaxException {
+		HTTPRequest httpRequest = new HTTPRequestImpl(new URI(uri), "GET");
+		FreenetRequest request = mock(FreenetRequest.class);
+		when(request.getHttpRequest()).thenReturn(httpRequest);
+		when(request.getToadletContext()).thenReturn(mock(ToadletContext.class));
+		return request;
+	}
+
+}
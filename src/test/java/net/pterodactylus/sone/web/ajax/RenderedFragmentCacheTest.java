@@ -0,0 +1,195 @@
+/*
+ * © 2013 xplosion interactive
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.Options;
+import net.pterodactylus.sone.core.Options.DefaultOption;
+import net.pterodactylus.sone.core.Preferences;
+import net.pterodactylus.sone.core.event.MarkPostKnownEvent;
+import net.pterodactylus.sone.core.event.SoneInsertingEvent;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.Sone.ShowCustomAvatars;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
+import net.pterodactylus.sone.metrics.MetricRegistry;
+import net.pterodactylus.util.template.Template;
+import net.pterodactylus.util.template.TemplateContext;
+import net.pterodactylus.util.template.TemplateException;
+
+import com.google.common.base.Optional;
+import com.google.common.eventbus.EventBus;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RenderedFragmentCache}.
+ *
+ * @author <a href="mailto:d.roden@xplosion.de">David Roden</a>
+ */
+public class RenderedFragmentCacheTest {
+
+	/** The state of an unchanged post. */
+	private static final List<Object> STATE = Collections.<Object> singletonList("text");
+
+	@Test
+	public void testFragmentIsOnlyRenderedOncePerViewer() throws Exception {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		MetricRegistry metricRegistry = new MetricRegistry();
+		when(core.getMetricRegistry()).thenReturn(metricRegistry);
+		Template template = mock(Template.class);
+
+		/* render fragments. */
+		RenderedFragmentCache renderedFragmentCache = new RenderedFragmentCache(core);
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-1");
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-1");
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-2");
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), (Object) null);
+
+		/* verify behaviour. */
+		verify(template, times(3)).render(any(TemplateContext.class), any(Writer.class));
+		assertThat(metricRegistry.counter("FragmentCache.Hits").getValue(), is(1L));
+		assertThat(metricRegistry.counter("FragmentCache.Misses").getValue(), is(3L));
+		assertThat(renderedFragmentCache.size(), is(3L));
+	}
+
+	@Test
+	public void testFragmentIsRenderedAgainWhenItsStateChanges() throws Exception {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		when(core.getMetricRegistry()).thenReturn(new MetricRegistry());
+		Template template = mock(Template.class);
+
+		/* render fragments. */
+		RenderedFragmentCache renderedFragmentCache = new RenderedFragmentCache(core);
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-1");
+		renderedFragmentCache.render("post-2", STATE, template, new TemplateContext(), "sone-1");
+		renderedFragmentCache.render("post-1", asList((Object) "text", 1), template, new TemplateContext(), "sone-1");
+		renderedFragmentCache.render("post-2", STATE, template, new TemplateContext(), "sone-1");
+
+		/* verify behaviour. */
+		verify(template, times(3)).render(any(TemplateContext.class), any(Writer.class));
+		assertThat(renderedFragmentCache.size(), is(2L));
+	}
+
+	@Test
+	public void testOnlyEventsForAPostEvictItsFragments() throws Exception {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		when(core.getMetricRegistry()).thenReturn(new MetricRegistry());
+		Template template = mock(Template.class);
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn("1");
+		Post otherPost = mock(Post.class);
+		when(otherPost.getId()).thenReturn("2");
+		RenderedFragmentCache renderedFragmentCache = new RenderedFragmentCache(core);
+		EventBus eventBus = new EventBus();
+		eventBus.register(renderedFragmentCache);
+
+		/* render fragment and post unrelated events. */
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-1");
+		eventBus.post(new SoneInsertingEvent(mock(Sone.class)));
+		eventBus.post(new MarkPostKnownEvent(otherPost));
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-1");
+		verify(template, times(1)).render(any(TemplateContext.class), any(Writer.class));
+
+		/* post event for the post. */
+		eventBus.post(new MarkPostKnownEvent(post));
+		assertThat(renderedFragmentCache.size(), is(0L));
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-1");
+		verify(template, times(2)).render(any(TemplateContext.class), any(Writer.class));
+	}
+
+	@Test
+	public void testNumberOfFragmentsIsLimited() throws Exception {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		when(core.getMetricRegistry()).thenReturn(new MetricRegistry());
+		Template template = mock(Template.class);
+
+		/* render fragments. */
+		RenderedFragmentCache renderedFragmentCache = new RenderedFragmentCache(core, 10);
+		for (int postIndex = 0; postIndex < 100; ++postIndex) {
+			renderedFragmentCache.render("post-" + postIndex, STATE, template, new TemplateContext());
+		}
+
+		/* verify cache size. */
+		assertThat(renderedFragmentCache.size() <= 10, is(true));
+	}
+
+	@Test
+	public void testFragmentIsRenderedAgainWhenTheViewerChanges() throws Exception {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		when(core.getMetricRegistry()).thenReturn(new MetricRegistry());
+		when(core.getPreferences()).thenReturn(mock(Preferences.class));
+		when(core.getTrustCache()).thenReturn(mock(TrustCache.class));
+		Template template = mock(Template.class);
+		Sone author = mock(Sone.class);
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn("1");
+		when(post.getText()).thenReturn("text");
+		when(post.getSone()).thenReturn(author);
+		when(post.getRecipient()).thenReturn(Optional.<Sone> absent());
+		Options options = new Options();
+		options.addEnumOption("ShowCustomAvatars", new DefaultOption<ShowCustomAvatars>(ShowCustomAvatars.NEVER));
+		Sone viewer = mock(Sone.class);
+		when(viewer.getOptions()).thenReturn(options);
+		when(viewer.getFriends()).thenReturn(Collections.<String> emptyList());
+		RenderedFragmentCache renderedFragmentCache = new RenderedFragmentCache(core);
+
+		/* render fragment twice. */
+		renderedFragmentCache.render("post-1", RenderedFragmentCache.getPostState(core, post, viewer), template, new TemplateContext(), "sone-1");
+		renderedFragmentCache.render("post-1", RenderedFragmentCache.getPostState(core, post, viewer), template, new TemplateContext(), "sone-1");
+		verify(template, times(1)).render(any(TemplateContext.class), any(Writer.class));
+
+		/* follow the author. */
+		when(viewer.getFriends()).thenReturn(asList("author"));
+		renderedFragmentCache.render("post-1", RenderedFragmentCache.getPostState(core, post, viewer), template, new TemplateContext(), "sone-1");
+		verify(template, times(2)).render(any(TemplateContext.class), any(Writer.class));
+
+		/* change the avatar option. */
+		options.<ShowCustomAvatars> getEnumOption("ShowCustomAvatars").set(ShowCustomAvatars.FOLLOWED);
+		renderedFragmentCache.render("post-1", RenderedFragmentCache.getPostState(core, post, viewer), template, new TemplateContext(), "sone-1");
+		verify(template, times(3)).render(any(TemplateContext.class), any(Writer.class));
+
+		/* like something else. */
+		when(core.getLikesVersion()).thenReturn(1L);
+		renderedFragmentCache.render("post-1", RenderedFragmentCache.getPostState(core, post, viewer), template, new TemplateContext(), "sone-1");
+		verify(template, times(4)).render(any(TemplateContext.class), any(Writer.class));
+	}
+
+	@Test
+	public void testFailedRenderingIsNotCached() throws Exception {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		when(core.getMetricRegistry()).thenReturn(new MetricRegistry());
+		Template template = mock(Template.class);
+		doThrow(new TemplateException("failed")).doNothing().when(template).render(any(TemplateContext.class), any(Writer.class));
+
+		/* render fragments. */
+		RenderedFragmentCache renderedFragmentCache = new RenderedFragmentCache(core);
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-1");
+		assertThat(renderedFragmentCache.size(), is(0L));
+		renderedFragmentCache.render("post-1", STATE, template, new TemplateContext(), "sone-1");
+		assertThat(renderedFragmentCache.size(), is(1L));
+		verify(template, times(2)).render(any(TemplateContext.class), any(Writer.class));
+	}
+
+}
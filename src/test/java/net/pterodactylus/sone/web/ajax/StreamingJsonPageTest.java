@@ -0,0 +1,312 @@
+/*
+ * © 2013 xplosion interactive
+ */
+
+package net.pterodactylus.sone.web.ajax;
+
+import static com.fasterxml.jackson.databind.node.JsonNodeFactory.instance;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+
+import net.pterodactylus.sone.core.Core;
+import net.pterodactylus.sone.core.UpdateChecker;
+import net.pterodactylus.sone.data.Post;
+import net.pterodactylus.sone.data.PostReply;
+import net.pterodactylus.sone.data.Profile;
+import net.pterodactylus.sone.data.Sone;
+import net.pterodactylus.sone.data.Sone.SoneStatus;
+import net.pterodactylus.sone.freenet.wot.TrustCache;
+import net.pterodactylus.sone.web.ChromeContext;
+import net.pterodactylus.sone.web.WebInterface;
+import net.pterodactylus.sone.web.page.FreenetRequest;
+import net.pterodactylus.util.notify.Notification;
+import net.pterodactylus.util.template.Template;
+import net.pterodactylus.util.template.TemplateContext;
+import net.pterodactylus.util.template.TemplateContextFactory;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import freenet.clients.http.HTTPRequestImpl;
+import freenet.clients.http.ToadletContext;
+import freenet.l10n.BaseL10n;
+import freenet.support.api.HTTPRequest;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StreamingJsonPage}s, verifying that the streamed JSON
+ * objects are equivalent to the JSON objects the pages created before they
+ * were streamed.
+ *
+ * @author <a href="mailto:d.roden@xplosion.de">David Roden</a>
+ */
+public class StreamingJsonPageTest {
+
+	/** The object mapper. */
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	public void testStreamedTimesAreEquivalent() throws IOException, URISyntaxException {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		Post post = mock(Post.class);
+		when(core.getPost(anyString())).thenReturn(Optional.<Post>absent());
+		when(core.getPost("abc")).thenReturn(Optional.of(post));
+		when(core.getPostReply(anyString())).thenReturn(Optional.<PostReply>absent());
+		WebInterface webInterface = mock(WebInterface.class);
+		when(webInterface.getCore()).thenReturn(core);
+		when(webInterface.getL10n()).thenReturn(mock(BaseL10n.class));
+		FreenetRequest request = createRequest("/ajax/getTimes.ajax?posts=abc,def&replies=ghi");
+
+		/* create expected JSON object. */
+		ObjectNode postTime = new ObjectNode(instance);
+		postTime.put("timeText", (String) null);
+		postTime.put("refreshTime", 43200L);
+		postTime.put("tooltip", new SimpleDateFormat("MMM d, yyyy, HH:mm:ss").format(new Date(0)));
+		ObjectNode postTimes = new ObjectNode(instance);
+		postTimes.put("abc", postTime);
+		ObjectNode expectedJsonObject = new ObjectNode(instance);
+		expectedJsonObject.put("success", true);
+		expectedJsonObject.put("postTimes", postTimes);
+		expectedJsonObject.put("replyTimes", new ObjectNode(instance));
+
+		/* verify response. */
+		GetTimesAjaxPage getTimesAjaxPage = new GetTimesAjaxPage(webInterface);
+		assertThat(stream(getTimesAjaxPage, request), is(normalize(expectedJsonObject)));
+		assertThat(normalize(getTimesAjaxPage.createJsonObject(request)), is(normalize(expectedJsonObject)));
+	}
+
+	@Test
+	public void testStreamedStatusIsEquivalent() throws IOException, URISyntaxException {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn("sone");
+		when(sone.getName()).thenReturn("Sone");
+		when(sone.getProfile()).thenReturn(mock(Profile.class));
+		when(sone.getStatus()).thenReturn(SoneStatus.idle);
+		when(core.getSone("sone")).thenReturn(Optional.of(sone));
+		when(core.isLocked(sone)).thenReturn(true);
+		when(core.getTrustCache()).thenReturn(new TrustCache());
+		Post post = mock(Post.class);
+		when(post.getId()).thenReturn("post");
+		when(post.getSone()).thenReturn(sone);
+		when(post.getRecipientId()).thenReturn(Optional.<String>absent());
+		when(post.getTime()).thenReturn(12345L);
+		ChromeContext chromeContext = new ChromeContext(Collections.<Object>emptyList(), Collections.<Sone>emptySet(), Collections.<Notification>emptyList(), mock(UpdateChecker.class));
+		WebInterface webInterface = mock(WebInterface.class);
+		when(webInterface.getCore()).thenReturn(core);
+		when(webInterface.getL10n()).thenReturn(mock(BaseL10n.class));
+		when(webInterface.getChromeContext(null)).thenReturn(chromeContext);
+		when(webInterface.getNewPosts()).thenReturn(ImmutableSet.of(post));
+		when(webInterface.getNewReplies()).thenReturn(Collections.<PostReply>emptySet());
+		FreenetRequest request = createRequest("/ajax/getStatus.ajax?soneIds=sone");
+
+		/* create expected JSON object. */
+		ObjectNode jsonSone = new ObjectNode(instance);
+		jsonSone.put("id", "sone");
+		jsonSone.put("name", "Sone");
+		jsonSone.put("local", false);
+		jsonSone.put("status", "idle");
+		jsonSone.put("modified", false);
+		jsonSone.put("locked", true);
+		jsonSone.put("lastUpdatedUnknown", true);
+		jsonSone.put("lastUpdated", new SimpleDateFormat("MMM d, yyyy, HH:mm:ss").format(new Date(0)));
+		jsonSone.put("lastUpdatedText", (String) null);
+		ObjectNode jsonPost = new ObjectNode(instance);
+		jsonPost.put("id", "post");
+		jsonPost.put("sone", "sone");
+		jsonPost.put("recipient", (String) null);
+		jsonPost.put("time", 12345L);
+		ArrayNode jsonSones = new ArrayNode(instance);
+		jsonSones.add(jsonSone);
+		ArrayNode jsonPosts = new ArrayNode(instance);
+		jsonPosts.add(jsonPost);
+		ObjectNode expectedJsonObject = new ObjectNode(instance);
+		expectedJsonObject.put("success", true);
+		expectedJsonObject.put("loggedIn", false);
+		expectedJsonObject.put("options", new ObjectNode(instance));
+		expectedJsonObject.put("sones", jsonSones);
+		expectedJsonObject.put("notificationHash", Collections.emptyList().hashCode());
+		expectedJsonObject.put("newPosts", jsonPosts);
+		expectedJsonObject.put("newReplies", new ArrayNode(instance));
+
+		/* verify response. */
+		GetStatusAjaxPage getStatusAjaxPage = new GetStatusAjaxPage(webInterface);
+		assertThat(stream(getStatusAjaxPage, request), is(normalize(expectedJsonObject)));
+		assertThat(normalize(getStatusAjaxPage.createJsonObject(request)), is(normalize(expectedJsonObject)));
+	}
+
+	@Test
+	public void testStreamedNotificationsAreEquivalent() throws IOException, URISyntaxException {
+		/* create mocks. */
+		Notification notification = mock(Notification.class);
+		when(notification.getId()).thenReturn("notification");
+		when(notification.getCreatedTime()).thenReturn(1000L);
+		when(notification.getLastUpdatedTime()).thenReturn(2000L);
+		when(notification.isDismissable()).thenReturn(true);
+		ChromeContext chromeContext = new ChromeContext(Collections.<Object>emptyList(), Collections.<Sone>emptySet(), Collections.singletonList(notification), mock(UpdateChecker.class));
+		WebInterface webInterface = mock(WebInterface.class);
+		when(webInterface.getCore()).thenReturn(mock(Core.class));
+		when(webInterface.getChromeContext(null)).thenReturn(chromeContext);
+		FreenetRequest request = createRequest("/ajax/getNotifications.ajax");
+
+		/* create expected JSON object. */
+		ObjectNode jsonNotification = new ObjectNode(instance);
+		jsonNotification.put("id", "notification");
+		jsonNotification.put("text", "");
+		jsonNotification.put("createdTime", 1000L);
+		jsonNotification.put("lastUpdatedTime", 2000L);
+		jsonNotification.put("dismissable", true);
+		ArrayNode jsonNotifications = new ArrayNode(instance);
+		jsonNotifications.add(jsonNotification);
+		ObjectNode expectedJsonObject = new ObjectNode(instance);
+		expectedJsonObject.put("success", true);
+		expectedJsonObject.put("notificationHash", Collections.singletonList(notification).hashCode());
+		expectedJsonObject.put("notifications", jsonNotifications);
+		expectedJsonObject.put("options", new ObjectNode(instance));
+
+		/* verify response. */
+		GetNotificationsAjaxPage getNotificationsAjaxPage = new GetNotificationsAjaxPage(webInterface);
+		assertThat(stream(getNotificationsAjaxPage, request), is(normalize(expectedJsonObject)));
+		assertThat(normalize(getNotificationsAjaxPage.createJsonObject(request)), is(normalize(expectedJsonObject)));
+	}
+
+	@Test
+	public void testStreamedBatchIsEquivalent() throws IOException, URISyntaxException {
+		/* create mocks. */
+		Core core = mock(Core.class);
+		Sone sone = mock(Sone.class);
+		when(sone.getId()).thenReturn("sone");
+		when(sone.getName()).thenReturn("Sone");
+		when(sone.getProfile()).thenReturn(mock(Profile.class));
+		Post post = mock(Post.class);
+		PostReply reply = mock(PostReply.class);
+		when(core.getPost(anyString())).thenReturn(Optional.<Post>absent());
+		when(core.getPost("abc")).thenReturn(Optional.of(post));
+		when(core.getPostReply(anyString())).thenReturn(Optional.<PostReply>absent());
+		when(core.getPostReply("ghi")).thenReturn(Optional.of(reply));
+		when(core.getLikes(post)).thenReturn(ImmutableSet.of(sone));
+		when(core.getLikes(reply)).thenReturn(Collections.<Sone>emptySet());
+		TemplateContextFactory templateContextFactory = mock(TemplateContextFactory.class);
+		when(templateContextFactory.createTemplateContext()).thenReturn(new TemplateContext());
+		WebInterface webInterface = mock(WebInterface.class);
+		when(webInterface.getCore()).thenReturn(core);
+		when(webInterface.getL10n()).thenReturn(mock(BaseL10n.class));
+		when(webInterface.getCurrentSone(any(ToadletContext.class), anyBoolean())).thenReturn(sone);
+		when(webInterface.getTemplateContextFactory()).thenReturn(templateContextFactory);
+		FreenetRequest request = createRequest("/ajax/batch.ajax?postTimes=abc,def&replyTimes=ghi&posts=def&replies=jkl&postLikes=abc&replyLikes=ghi,jkl");
+
+		/* create expected JSON object. */
+		ObjectNode time = new ObjectNode(instance);
+		time.put("timeText", (String) null);
+		time.put("refreshTime", 43200L);
+		time.put("tooltip", new SimpleDateFormat("MMM d, yyyy, HH:mm:ss").format(new Date(0)));
+		ObjectNode postTimes = new ObjectNode(instance);
+		postTimes.put("abc", time);
+		ObjectNode replyTimes = new ObjectNode(instance);
+		replyTimes.put("ghi", time);
+		ObjectNode jsonSone = new ObjectNode(instance);
+		jsonSone.put("id", "sone");
+		jsonSone.put("name", "Sone");
+		ArrayNode likingSones = new ArrayNode(instance);
+		likingSones.add(jsonSone);
+		ObjectNode postLike = new ObjectNode(instance);
+		postLike.put("likes", 1);
+		postLike.put("sones", likingSones);
+		ObjectNode postLikes = new ObjectNode(instance);
+		postLikes.put("abc", postLike);
+		ObjectNode replyLike = new ObjectNode(instance);
+		replyLike.put("likes", 0);
+		replyLike.put("sones", new ArrayNode(instance));
+		ObjectNode replyLikes = new ObjectNode(instance);
+		replyLikes.put("ghi", replyLike);
+		ObjectNode expectedJsonObject = new ObjectNode(instance);
+		expectedJsonObject.put("success", true);
+		expectedJsonObject.put("postTimes", postTimes);
+		expectedJsonObject.put("replyTimes", replyTimes);
+		expectedJsonObject.put("posts", new ArrayNode(instance));
+		expectedJsonObject.put("replies", new ArrayNode(instance));
+		expectedJsonObject.put("postLikes", postLikes);
+		expectedJsonObject.put("replyLikes", replyLikes);
+
+		/* verify response. */
+		BatchAjaxPage batchAjaxPage = new BatchAjaxPage(webInterface, mock(Template.class), mock(Template.class));
+		assertThat(stream(batchAjaxPage, request), is(normalize(expectedJsonObject)));
+		assertThat(normalize(batchAjaxPage.createJsonObject(request)), is(normalize(expectedJsonObject)));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Streams the JSON object of the given page into a byte array and parses
+	 * it again.
+	 *
+	 * @param streamingJsonPage
+	 *            The page to stream the JSON object of
+	 * @param request
+	 *            The request to handle
+	 * @return The parsed JSON object
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private JsonNode stream(StreamingJsonPage streamingJsonPage, FreenetRequest request) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+		streamingJsonPage.writeJsonObject(request, jsonGenerator);
+		jsonGenerator.close();
+		return objectMapper.readTree(outputStream.toByteArray());
+	}
+
+	/**
+	 * Serializes the given object and parses it again, so that it can be
+	 * compared to a parsed JSON object.
+	 *
+	 * @param object
+	 *            The object to normalize
+	 * @return The parsed JSON object
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private JsonNode normalize(Object object) throws IOException {
+		return objectMapper.readTree(objectMapper.writeValueAsBytes(object));
+	}
+
+	/**
+	 * Creates a request for the given URI.
+	 *
+	 * @param uri
+	 *            The URI of the request
+	 * @return The request
+	 * @throws URISyntaxException
+	 *             if the URI is not valid
+	 */
+	private static FreenetRequest createRequest(String uri) throws URISyntaxException {
+		HTTPRequest httpRequest = new HTTPRequestImpl(new URI(uri), "GET");
+		FreenetRequest request = mock(FreenetRequest.class);
+		when(request.getHttpRequest()).thenReturn(httpRequest);
+		when(request.getToadletContext()).thenReturn(mock(ToadletContext.class));
+		return request;
+	}
+
+}
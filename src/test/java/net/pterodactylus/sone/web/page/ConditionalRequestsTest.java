@@ -0,0 +1,92 @@
+/*
+ * Sone - ConditionalRequestsTest.java - Copyright © 2013 David Roden
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.pterodactylus.sone.web.page;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import net.pterodactylus.util.web.Method;
+
+import freenet.support.api.HTTPRequest;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConditionalRequests}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ConditionalRequestsTest {
+
+	@Test
+	public void testETagChangesWithComponents() {
+		assertThat(ConditionalRequests.createETag(1, "sone"), is(ConditionalRequests.createETag(1, "sone")));
+		assertThat(ConditionalRequests.createETag(1, "sone"), not(ConditionalRequests.createETag(2, "sone")));
+		assertThat(ConditionalRequests.createETag(1, null), not(ConditionalRequests.createETag(1, "sone")));
+	}
+
+	@Test
+	public void testMatchingETag() throws URISyntaxException {
+		String eTag = ConditionalRequests.createETag(1);
+		FreenetRequest request = createRequest(Method.GET, "\"other\", \"" + eTag + "\"", null);
+		assertThat(ConditionalRequests.isNotModified(request, eTag, 0), is(true));
+	}
+
+	@Test
+	public void testDifferentETag() throws URISyntaxException {
+		FreenetRequest request = createRequest(Method.GET, "\"" + ConditionalRequests.createETag(1) + "\"", null);
+		assertThat(ConditionalRequests.isNotModified(request, ConditionalRequests.createETag(2), 0), is(false));
+	}
+
+	@Test
+	public void testETagTakesPrecedenceOverModificationTime() throws URISyntaxException {
+		FreenetRequest request = createRequest(Method.GET, "\"other\"", "Sun, 06 Nov 1994 08:49:37 GMT");
+		assertThat(ConditionalRequests.isNotModified(request, ConditionalRequests.createETag(1), 784111777000L), is(false));
+	}
+
+	@Test
+	public void testModificationTime() throws URISyntaxException {
+		FreenetRequest request = createRequest(Method.GET, null, "Sun, 06 Nov 1994 08:49:37 GMT");
+		assertThat(ConditionalRequests.isNotModified(request, null, 784111777000L), is(true));
+		assertThat(ConditionalRequests.isNotModified(request, null, 784111778000L), is(false));
+	}
+
+	@Test
+	public void testPostRequestsAreAlwaysModified() throws URISyntaxException {
+		String eTag = ConditionalRequests.createETag(1);
+		FreenetRequest request = createRequest(Method.POST, "\"" + eTag + "\"", null);
+		assertThat(ConditionalRequests.isNotModified(request, eTag, 0), is(false));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static FreenetRequest createRequest(Method method, String ifNoneMatch, String ifModifiedSince) throws URISyntaxException {
+		HTTPRequest httpRequest = mock(HTTPRequest.class);
+		when(httpRequest.getHeader("if-none-match")).thenReturn(ifNoneMatch);
+		when(httpRequest.getHeader("if-modified-since")).thenReturn(ifModifiedSince);
+		return new FreenetRequest(new URI("/Sone/index.html"), method, httpRequest, null);
+	}
+
+}